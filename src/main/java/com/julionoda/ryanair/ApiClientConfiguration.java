@@ -0,0 +1,218 @@
+package com.julionoda.ryanair;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import reactor.ipc.netty.resources.PoolResources;
+
+/**
+ * Configuration of the clients of the external APIs.
+ * 
+ * @author jnoda
+ *
+ */
+@Configuration
+public class ApiClientConfiguration {
+	/**
+	 * Name of the blocking client of the external APIs.
+	 */
+	public static final String API_REST_TEMPLATE = "apiRestTemplate";
+
+	/**
+	 * Maximum number of pooled connections of the blocking client.
+	 */
+	@Value("${apiMaxConnections}")
+	private int apiMaxConnections;
+
+	/**
+	 * Maximum number of pooled connections of the blocking client to the same
+	 * host.
+	 */
+	@Value("${apiMaxConnectionsPerRoute}")
+	private int apiMaxConnectionsPerRoute;
+
+	/**
+	 * Time to establish a connection, in milliseconds.
+	 */
+	@Value("${apiConnectTimeout}")
+	private int apiConnectTimeout;
+
+	/**
+	 * Maximum time between two packets of a response, in milliseconds.
+	 */
+	@Value("${apiReadTimeout}")
+	private int apiReadTimeout;
+
+	/**
+	 * Time to wait for a pooled connection, in milliseconds.
+	 */
+	@Value("${apiConnectionRequestTimeout}")
+	private int apiConnectionRequestTimeout;
+
+	/**
+	 * Time an idle connection is kept alive, in milliseconds.
+	 */
+	@Value("${apiKeepAlive}")
+	private long apiKeepAlive;
+
+	/**
+	 * Whether compressed responses are requested.
+	 */
+	@Value("${apiCompression}")
+	private boolean apiCompression;
+
+	/**
+	 * Maximum number of connections of the non-blocking client.
+	 */
+	@Value("${webClientMaxConnections}")
+	private int webClientMaxConnections;
+
+	/**
+	 * Pool of the connections of the blocking client.
+	 * 
+	 * <p>
+	 * Idle connections are checked before being leased again, so a connection
+	 * closed by the server is not handed out to a request. The connections have
+	 * no time to live: a busy one is reused as long as it is kept alive, and the
+	 * client evicts the idle ones.
+	 * </p>
+	 * 
+	 * @return the pool
+	 */
+	@Bean(destroyMethod = "shutdown")
+	@ConditionalOnProperty(name = "apiClient", havingValue = "restTemplate", matchIfMissing = true)
+	public PoolingHttpClientConnectionManager apiConnectionManager() {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(apiMaxConnections);
+		connectionManager.setDefaultMaxPerRoute(apiMaxConnectionsPerRoute);
+		connectionManager.setValidateAfterInactivity(1000);
+		return connectionManager;
+	}
+
+	/**
+	 * Blocking client of the external APIs, used when
+	 * {@code apiClient=restTemplate}.
+	 * 
+	 * <p>
+	 * Requests reuse the kept alive connections of the pool, instead of opening
+	 * (and handshaking) a new one each, and give up after the configured
+	 * timeouts.
+	 * </p>
+	 * 
+	 * @param builder
+	 *            the builder, with the application message converters
+	 * @param apiConnectionManager
+	 *            the pool of the connections
+	 * @return the client
+	 */
+	@Bean(API_REST_TEMPLATE)
+	@ConditionalOnProperty(name = "apiClient", havingValue = "restTemplate", matchIfMissing = true)
+	public RestTemplate apiRestTemplate(RestTemplateBuilder builder,
+			PoolingHttpClientConnectionManager apiConnectionManager) {
+		RequestConfig requestConfig = RequestConfig
+				.custom()
+				.setConnectTimeout(apiConnectTimeout)
+				.setSocketTimeout(apiReadTimeout)
+				.setConnectionRequestTimeout(apiConnectionRequestTimeout)
+				.setContentCompressionEnabled(apiCompression)
+				.build();
+		HttpClient httpClient = HttpClients
+				.custom()
+				.setConnectionManager(apiConnectionManager)
+				// the pool is closed by its own bean
+				.setConnectionManagerShared(true)
+				.setDefaultRequestConfig(requestConfig)
+				// kept alive as long as the server says, up to the configured time
+				.setKeepAliveStrategy((response, context) -> {
+					long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+							.getKeepAliveDuration(response, context);
+					return (keepAlive > 0) ? Math.min(keepAlive, apiKeepAlive) : apiKeepAlive;
+				})
+				.evictIdleConnections(apiKeepAlive, TimeUnit.MILLISECONDS)
+				.build();
+		return builder.requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient)).build();
+	}
+
+	/**
+	 * Metrics of the connections (leased, available, pending a connection, and
+	 * maximum) of the blocking client.
+	 * 
+	 * @param apiConnectionManager
+	 *            the pool of the connections
+	 * @return the binder of the metrics
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "apiClient", havingValue = "restTemplate", matchIfMissing = true)
+	public MeterBinder apiConnectionManagerMetrics(PoolingHttpClientConnectionManager apiConnectionManager) {
+		return registry -> {
+			registerConnectionGauge(registry, apiConnectionManager, "leased", PoolStats::getLeased);
+			registerConnectionGauge(registry, apiConnectionManager, "available", PoolStats::getAvailable);
+			registerConnectionGauge(registry, apiConnectionManager, "pending", PoolStats::getPending);
+			registerConnectionGauge(registry, apiConnectionManager, "max", PoolStats::getMax);
+		};
+	}
+
+	/**
+	 * Registers a gauge of the connections of the pool in the given state.
+	 * 
+	 * @param registry
+	 *            the registry of the gauge
+	 * @param connectionManager
+	 *            the pool of the connections
+	 * @param state
+	 *            the state of the connections
+	 * @param value
+	 *            the number of connections in the state, from the pool stats
+	 */
+	private static void registerConnectionGauge(MeterRegistry registry,
+			PoolingHttpClientConnectionManager connectionManager, String state, ToDoubleFunction<PoolStats> value) {
+		Gauge
+				.builder("api.connections", connectionManager,
+						manager -> value.applyAsDouble(manager.getTotalStats()))
+				.tag("state", state)
+				.description("Connections of the external APIs client")
+				.register(registry);
+	}
+
+	/**
+	 * Non-blocking client of the external APIs, used when
+	 * {@code apiClient=webClient}.
+	 * 
+	 * <p>
+	 * Requests share a fixed pool of kept alive connections, and no thread waits
+	 * for their responses, so the number of threads does not grow with the number
+	 * of requests in flight.
+	 * </p>
+	 * 
+	 * @param builder
+	 *            the builder, with the application codecs
+	 * @return the client
+	 */
+	@Bean
+	@ConditionalOnProperty(name = "apiClient", havingValue = "webClient")
+	public WebClient apiWebClient(WebClient.Builder builder) {
+		return builder
+				.clientConnector(new ReactorClientHttpConnector(
+						options -> options.poolResources(PoolResources.fixed("api", webClientMaxConnections))))
+				.build();
+	}
+}
@@ -0,0 +1,179 @@
+package com.julionoda.ryanair;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.service.FlightSchedule;
+import com.julionoda.ryanair.service.InterconnectionResultCache;
+import com.julionoda.ryanair.service.ScheduleCacheListener;
+import com.julionoda.ryanair.service.ScheduleDiff;
+import com.julionoda.ryanair.service.ScheduleKey;
+import com.julionoda.ryanair.service.Timetable;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Configuration of the application caches.
+ * 
+ * @author jnoda
+ *
+ */
+@Configuration
+public class CacheConfiguration {
+	/**
+	 * Name of the cache of routes.
+	 */
+	public static final String ROUTES_CACHE = "routes";
+
+	/**
+	 * Name of the cache of the route graph.
+	 */
+	public static final String ROUTE_GRAPH_CACHE = "routeGraph";
+
+	/**
+	 * Name of the cache of monthly schedules.
+	 */
+	public static final String SCHEDULES_CACHE = "schedules";
+
+	/**
+	 * Name of the cache of the monthly schedules the external API does not have.
+	 */
+	public static final String MISSING_SCHEDULES_CACHE = "missingSchedules";
+
+	/**
+	 * Name of the generator of the keys of the schedules cache.
+	 */
+	public static final String SCHEDULE_KEY_GENERATOR = "scheduleKeyGenerator";
+
+	/**
+	 * Specification of the schedules cache (size, expiration and statistics).
+	 */
+	@Value("${schedulesCacheSpec}")
+	private String schedulesCacheSpec;
+
+	/**
+	 * Specification of the cache of missing schedules (size and expiration).
+	 */
+	@Value("${missingSchedulesCacheSpec}")
+	private String missingSchedulesCacheSpec;
+
+	/**
+	 * Generator of the keys of the schedules cache, which are the
+	 * {@link ScheduleKey} of the route and month asked for, so that the cache
+	 * contents can be told apart.
+	 * 
+	 * @return the key generator
+	 */
+	@Bean(SCHEDULE_KEY_GENERATOR)
+	public KeyGenerator scheduleKeyGenerator() {
+		return (target, method, params) -> new ScheduleKey((String) params[0], (String) params[1],
+				YearMonth.of((Integer) params[2], (Integer) params[3]));
+	}
+
+	/**
+	 * Cache manager with the caches used by the application.
+	 * 
+	 * <p>
+	 * Routes are small and rarely change, so they are kept in memory for the life
+	 * of the application. Monthly schedules are many and change over time, so they
+	 * are bounded in size and expire after a while, unless revalidated, and are
+	 * served stale while revalidated in the meantime; every change of their
+	 * flights is also told to the listeners, such as the {@link Timetable} and the
+	 * {@link InterconnectionResultCache}, if enabled. The schedules the external
+	 * API does not have are cached apart, and expire soon, so they are not asked
+	 * for on every query.
+	 * </p>
+	 * 
+	 * @param listeners
+	 *            the listeners of the schedules cache, if any
+	 * @return the cache manager
+	 */
+	@Bean
+	public CacheManager cacheManager(ObjectProvider<List<ScheduleCacheListener>> listeners) {
+		Caffeine<Object, Object> schedules = Caffeine.from(schedulesCacheSpec);
+		List<ScheduleCacheListener> schedulesListeners = listeners.getIfAvailable(Collections::emptyList);
+		if (!schedulesListeners.isEmpty()) {
+			schedules.writer(new ListenerWriter(schedulesListeners));
+		}
+
+		SimpleCacheManager cacheManager = new SimpleCacheManager();
+		cacheManager.setCaches(Arrays.asList(new ConcurrentMapCache(ROUTES_CACHE),
+				new ConcurrentMapCache(ROUTE_GRAPH_CACHE), new CaffeineCache(SCHEDULES_CACHE, schedules.build()),
+				new CaffeineCache(MISSING_SCHEDULES_CACHE, Caffeine.from(missingSchedulesCacheSpec).build())));
+		return cacheManager;
+	}
+
+	/**
+	 * Writer of the schedules cache that tells every change to the
+	 * {@link ScheduleCacheListener listeners}.
+	 * 
+	 * <p>
+	 * A schedule replaced by one with the same flights, such as a revalidated one,
+	 * is not told, so the listeners only rebuild or invalidate what depends on
+	 * the schedules that actually changed. The cache calls the writer within the
+	 * change of each key, so the changes of a key are told in order.
+	 * </p>
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	@Slf4j
+	@RequiredArgsConstructor
+	static class ListenerWriter implements CacheWriter<Object, Object> {
+		/**
+		 * The listeners.
+		 */
+		private final List<ScheduleCacheListener> listeners;
+
+		/**
+		 * The schedules last told to the listeners, by key.
+		 */
+		private final ConcurrentMap<ScheduleKey, FlightSchedule> published = new ConcurrentHashMap<>();
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public void write(Object key, Object value) {
+			ScheduleKey scheduleKey = (ScheduleKey) key;
+			FlightSchedule schedule = FlightSchedule.of(scheduleKey.getAirportFrom(), scheduleKey.getAirportTo(),
+					(Iterable<Flight>) value);
+			FlightSchedule previous = published.put(scheduleKey, schedule);
+			if (previous == schedule) {
+				return;
+			}
+			if (previous != null) {
+				ScheduleDiff diff = ScheduleDiff.of(previous, schedule);
+				if (diff.isEmpty()) {
+					return;
+				}
+				log.debug("Schedule {} changed, {} flights added and {} removed", scheduleKey,
+						diff.getAdded(), diff.getRemoved());
+			}
+			listeners.forEach(listener -> listener.put(scheduleKey, schedule));
+		}
+
+		@Override
+		public void delete(Object key, Object value, RemovalCause cause) {
+			published.remove(key);
+			listeners.forEach(listener -> listener.remove((ScheduleKey) key));
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package com.julionoda.ryanair;
+
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import com.julionoda.ryanair.service.ComputeExecutor;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * Configuration of the application executors.
+ * 
+ * @author jnoda
+ *
+ */
+@Configuration
+public class ExecutorConfiguration {
+	/**
+	 * Name of the executor used to fetch schedules.
+	 */
+	public static final String SCHEDULE_FETCH_EXECUTOR = "scheduleFetchExecutor";
+
+	/**
+	 * Name of the executor used to revalidate schedules in the background.
+	 */
+	public static final String SCHEDULE_REVALIDATE_EXECUTOR = "scheduleRevalidateExecutor";
+
+	/**
+	 * Number of threads of the compute pool; 0 to use one per processor.
+	 */
+	@Value("${computeParallelism}")
+	private int computeParallelism;
+
+	/**
+	 * Minimum number of elements to process an input in parallel.
+	 */
+	@Value("${computeParallelThreshold}")
+	private int computeParallelThreshold;
+
+	/**
+	 * Number of threads fetching schedules.
+	 */
+	@Value("${scheduleFetchPoolSize}")
+	private int scheduleFetchPoolSize;
+
+	/**
+	 * Maximum number of schedule fetches waiting for a thread.
+	 */
+	@Value("${scheduleFetchQueueCapacity}")
+	private int scheduleFetchQueueCapacity;
+
+	/**
+	 * Number of threads revalidating schedules in the background.
+	 */
+	@Value("${scheduleRevalidatePoolSize}")
+	private int scheduleRevalidatePoolSize;
+
+	/**
+	 * Maximum number of schedule revalidations waiting for a thread.
+	 */
+	@Value("${scheduleRevalidateQueueCapacity}")
+	private int scheduleRevalidateQueueCapacity;
+
+	/**
+	 * Number of threads running the scheduled tasks.
+	 */
+	@Value("${schedulerPoolSize}")
+	private int schedulerPoolSize;
+
+	/**
+	 * Bounded executor used to fetch schedules concurrently.
+	 * 
+	 * <p>
+	 * When the queue is full, the fetch is rejected, and falls back to an
+	 * unavailable schedule, rather than running on the calling thread, which may
+	 * be the event loop of the non-blocking client ending a call of the limiter.
+	 * </p>
+	 * 
+	 * @return the executor
+	 */
+	@Bean(SCHEDULE_FETCH_EXECUTOR)
+	public ThreadPoolTaskExecutor scheduleFetchExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(scheduleFetchPoolSize);
+		executor.setMaxPoolSize(scheduleFetchPoolSize);
+		executor.setQueueCapacity(scheduleFetchQueueCapacity);
+		executor.setThreadNamePrefix("schedule-fetch-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		return executor;
+	}
+
+	/**
+	 * Metrics (pool size, active threads, queued tasks...) of the schedule fetch
+	 * executor.
+	 * 
+	 * @param scheduleFetchExecutor
+	 *            the schedule fetch executor
+	 * @return the binder of the metrics
+	 */
+	@Bean
+	public MeterBinder scheduleFetchExecutorMetrics(
+			@Qualifier(SCHEDULE_FETCH_EXECUTOR) ThreadPoolTaskExecutor scheduleFetchExecutor) {
+		return new ExecutorServiceMetrics(scheduleFetchExecutor.getThreadPoolExecutor(), SCHEDULE_FETCH_EXECUTOR,
+				Collections.emptyList());
+	}
+
+	/**
+	 * Bounded executor used to revalidate schedules in the background, apart from
+	 * the fetches asked for by the queries.
+	 * 
+	 * <p>
+	 * When the queue is full, the revalidation is rejected, so that it never runs
+	 * on the calling thread, which is serving a query.
+	 * </p>
+	 * 
+	 * @return the executor
+	 */
+	@Bean(SCHEDULE_REVALIDATE_EXECUTOR)
+	public ThreadPoolTaskExecutor scheduleRevalidateExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(scheduleRevalidatePoolSize);
+		executor.setMaxPoolSize(scheduleRevalidatePoolSize);
+		executor.setQueueCapacity(scheduleRevalidateQueueCapacity);
+		executor.setThreadNamePrefix("schedule-revalidate-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		return executor;
+	}
+
+	/**
+	 * Metrics (pool size, active threads, queued tasks...) of the schedule
+	 * revalidation executor.
+	 * 
+	 * @param scheduleRevalidateExecutor
+	 *            the schedule revalidation executor
+	 * @return the binder of the metrics
+	 */
+	@Bean
+	public MeterBinder scheduleRevalidateExecutorMetrics(
+			@Qualifier(SCHEDULE_REVALIDATE_EXECUTOR) ThreadPoolTaskExecutor scheduleRevalidateExecutor) {
+		return new ExecutorServiceMetrics(scheduleRevalidateExecutor.getThreadPoolExecutor(),
+				SCHEDULE_REVALIDATE_EXECUTOR, Collections.emptyList());
+	}
+
+	/**
+	 * Scheduler of the scheduled tasks, such as the preloading, the revalidation
+	 * and the snapshot of the schedules, with a thread for each, so none of them
+	 * waits for another; instead of the default one of a single thread.
+	 * 
+	 * @return the scheduler
+	 */
+	@Bean
+	public ThreadPoolTaskScheduler taskScheduler() {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(schedulerPoolSize);
+		scheduler.setThreadNamePrefix("scheduler-");
+		return scheduler;
+	}
+
+	/**
+	 * Executor used for CPU bound work, so that it does not compete with other
+	 * users of the common fork join pool.
+	 * 
+	 * @return the executor
+	 */
+	@Bean
+	public ComputeExecutor computeExecutor() {
+		int parallelism = (computeParallelism > 0) ? computeParallelism
+				: Runtime.getRuntime().availableProcessors();
+		return new ComputeExecutor(new ForkJoinPool(parallelism), computeParallelThreshold);
+	}
+
+	/**
+	 * Metrics (parallelism, active threads, queued tasks...) of the compute
+	 * executor.
+	 * 
+	 * @param computeExecutor
+	 *            the compute executor
+	 * @return the binder of the metrics
+	 */
+	@Bean
+	public MeterBinder computeExecutorMetrics(ComputeExecutor computeExecutor) {
+		return new ExecutorServiceMetrics(computeExecutor.getPool(), "computeExecutor", Collections.emptyList());
+	}
+}
@@ -11,12 +11,17 @@ import org.springframework.boot.web.servlet.support.SpringBootServletInitializer
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cloud.client.circuitbreaker.EnableCircuitBreaker;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
 import org.springframework.expression.ParseException;
 import org.springframework.format.Formatter;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableCaching
+// caching wraps the circuit breaker, so cache hits do not go through the
+// Hystrix thread pool
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
 @EnableCircuitBreaker
+@EnableScheduling
 public class RyanairApplication extends SpringBootServletInitializer {
 	@Override
 	protected SpringApplicationBuilder configure(SpringApplicationBuilder application) {
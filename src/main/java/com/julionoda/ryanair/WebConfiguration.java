@@ -0,0 +1,185 @@
+package com.julionoda.ryanair;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.julionoda.ryanair.service.SearchMetrics;
+import com.julionoda.ryanair.service.SearchMetrics.Stage;
+import com.julionoda.ryanair.web.InterconnectionController;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * Configuration of Spring MVC.
+ * 
+ * @author jnoda
+ *
+ */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+	/**
+	 * Name of the executor of the asynchronous requests, such as the streamed
+	 * ones.
+	 */
+	public static final String ASYNC_REQUEST_EXECUTOR = "asyncRequestExecutor";
+
+	/**
+	 * Number of threads writing the bodies of the asynchronous requests.
+	 */
+	@Value("${asyncRequestPoolSize}")
+	private int asyncRequestPoolSize;
+
+	/**
+	 * Maximum number of asynchronous requests waiting for a thread.
+	 */
+	@Value("${asyncRequestQueueCapacity}")
+	private int asyncRequestQueueCapacity;
+
+	/**
+	 * Time an asynchronous request may take, in milliseconds.
+	 */
+	@Value("${asyncRequestTimeout}")
+	private long asyncRequestTimeout;
+
+	/**
+	 * The metrics of the search
+	 */
+	@Autowired
+	private SearchMetrics searchMetrics;
+
+	/**
+	 * Runs the bodies of the asynchronous requests, such as the streamed ones, on
+	 * a bounded executor, instead of the default one, which starts a thread for
+	 * each; and ends the requests that take longer than the timeout.
+	 */
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(asyncRequestExecutor());
+		configurer.setDefaultTimeout(asyncRequestTimeout);
+	}
+
+	/**
+	 * Bounded executor of the asynchronous requests.
+	 * 
+	 * <p>
+	 * When the queue is full, the request is rejected, and fails at once, rather
+	 * than running on the container thread that is dispatching it.
+	 * </p>
+	 * 
+	 * @return the executor
+	 */
+	@Bean(ASYNC_REQUEST_EXECUTOR)
+	public ThreadPoolTaskExecutor asyncRequestExecutor() {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(asyncRequestPoolSize);
+		executor.setMaxPoolSize(asyncRequestPoolSize);
+		executor.setQueueCapacity(asyncRequestQueueCapacity);
+		executor.setThreadNamePrefix("async-request-");
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+		return executor;
+	}
+
+	/**
+	 * Metrics (pool size, active threads, queued tasks...) of the executor of the
+	 * asynchronous requests.
+	 * 
+	 * @param asyncRequestExecutor
+	 *            the executor of the asynchronous requests
+	 * @return the binder of the metrics
+	 */
+	@Bean
+	public MeterBinder asyncRequestExecutorMetrics(
+			@Qualifier(ASYNC_REQUEST_EXECUTOR) ThreadPoolTaskExecutor asyncRequestExecutor) {
+		return new ExecutorServiceMetrics(asyncRequestExecutor.getThreadPoolExecutor(), ASYNC_REQUEST_EXECUTOR,
+				Collections.emptyList());
+	}
+
+	/**
+	 * Allows the JSON converter to write newline delimited JSON too. A single JSON
+	 * object is a valid newline delimited JSON document, so errors, such as
+	 * validation ones, can still be returned to clients asking for streamed
+	 * results.
+	 * 
+	 * <p>
+	 * The converter is replaced by one that times the serialization of the
+	 * interconnections.
+	 * </p>
+	 */
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		ListIterator<HttpMessageConverter<?>> iterator = converters.listIterator();
+		while (iterator.hasNext()) {
+			HttpMessageConverter<?> next = iterator.next();
+			if (next instanceof MappingJackson2HttpMessageConverter) {
+				MappingJackson2HttpMessageConverter converter = new TimedJsonHttpMessageConverter(
+						((MappingJackson2HttpMessageConverter) next), searchMetrics);
+				List<MediaType> mediaTypes = new ArrayList<>(converter.getSupportedMediaTypes());
+				mediaTypes.add(MediaType.valueOf(InterconnectionController.APPLICATION_NDJSON_VALUE));
+				converter.setSupportedMediaTypes(mediaTypes);
+				iterator.set(converter);
+			}
+		}
+	}
+
+	/**
+	 * JSON converter that records how long it takes to write the interconnections,
+	 * as the {@link Stage#SERIALIZE} stage. Only collections are timed, so the
+	 * errors and any other object are not mistaken for them.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	static class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+		/**
+		 * The metrics of the search
+		 */
+		private final SearchMetrics searchMetrics;
+
+		/**
+		 * Class constructor.
+		 * 
+		 * @param converter
+		 *            the converter replaced, whose object mapper and media types
+		 *            are kept
+		 * @param searchMetrics
+		 *            the metrics of the search
+		 */
+		TimedJsonHttpMessageConverter(MappingJackson2HttpMessageConverter converter, SearchMetrics searchMetrics) {
+			super(converter.getObjectMapper());
+			setSupportedMediaTypes(converter.getSupportedMediaTypes());
+			this.searchMetrics = searchMetrics;
+		}
+
+		@Override
+		protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+			if (!(object instanceof Iterable)) {
+				super.writeInternal(object, type, outputMessage);
+				return;
+			}
+
+			Timer.Sample sample = searchMetrics.start();
+			super.writeInternal(object, type, outputMessage);
+			searchMetrics.stop(sample, Stage.SERIALIZE);
+		}
+	}
+}
@@ -0,0 +1,491 @@
+package com.julionoda.ryanair.service;
+
+import static java.util.stream.Collectors.toList;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+import com.julionoda.ryanair.model.Route;
+import com.julionoda.ryanair.service.SearchMetrics.Stage;
+
+import io.micrometer.core.instrument.Timer;
+
+import lombok.Value;
+
+/**
+ * Base of the implementations of {@link InterconnectionService}, which only
+ * differ in their search engine.
+ * 
+ * <p>
+ * The queries, blocking or not, ranked or not, alone or in a batch, are
+ * answered here: from the {@link InterconnectionResultCache} if it has them, or
+ * otherwise by planning a search, fetching its schedules, searching them once
+ * available, and caching every interconnection over its months in the
+ * background. The subclasses plan and do the search.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public abstract class AbstractInterconnectionService implements InterconnectionService {
+	/**
+	 * The route graph service
+	 */
+	@Autowired
+	private RouteGraphService routeGraphService;
+
+	/**
+	 * The schedule fetcher
+	 */
+	@Autowired
+	protected ScheduleFetcher scheduleFetcher;
+
+	/**
+	 * The executor of CPU bound work
+	 */
+	@Autowired
+	protected ComputeExecutor computeExecutor;
+
+	/**
+	 * The schedule preloader
+	 */
+	@Autowired
+	private SchedulePreloader schedulePreloader;
+
+	/**
+	 * The result cache
+	 */
+	@Autowired
+	private InterconnectionResultCache resultCache;
+
+	/**
+	 * The metrics of the search
+	 */
+	@Autowired
+	private SearchMetrics searchMetrics;
+
+	@Override
+	public Iterable<Interconnection> findBy(String departure, String arrival, LocalDateTime departureDateTime,
+			LocalDateTime arrivalDateTime) {
+		return findBy(departure, arrival, departureDateTime, arrivalDateTime, 1);
+	}
+
+	@Override
+	public Iterable<Interconnection> findBy(String departure, String arrival, LocalDateTime departureDateTime,
+			LocalDateTime arrivalDateTime, int maxStops) {
+		List<Interconnection> results = new ArrayList<>();
+		findBy(departure, arrival, departureDateTime, arrivalDateTime, maxStops, results::addAll);
+		return results;
+	}
+
+	@Override
+	public void findBy(String departure, String arrival, LocalDateTime departureDateTime,
+			LocalDateTime arrivalDateTime, int maxStops, Consumer<? super List<Interconnection>> consumer) {
+		List<YearMonth> months = findMonths(departureDateTime, arrivalDateTime);
+		int minDeparture = toMinDeparture(departureDateTime);
+		int maxArrival = FlightSchedule.toEpochMinute(arrivalDateTime);
+		List<Interconnection> cached = new ArrayList<>();
+		if (findCached(departure, arrival, maxStops, months, minDeparture, maxArrival, InterconnectionSet.Filter.ALL,
+				cached::add)) {
+			consumer.accept(cached);
+			return;
+		}
+
+		SearchPlan plan = planQuery(routeGraphService.getRouteGraph(), departure, arrival, months, minDeparture,
+				maxArrival, maxStops, new HashMap<>());
+		searchQuery(plan, InterconnectionSet.Filter.ALL, consumer);
+		cache(plan);
+	}
+
+	@Override
+	public CompletableFuture<Iterable<Interconnection>> findByAsync(String departure, String arrival,
+			LocalDateTime departureDateTime, LocalDateTime arrivalDateTime, int maxStops) {
+		return findAsync(InterconnectionQuery.of(departure, arrival, departureDateTime, arrivalDateTime, maxStops),
+				routeGraphService.getRouteGraph(), new HashMap<>()).thenApply(results -> results);
+	}
+
+	@Override
+	public CompletableFuture<List<Interconnection>> findTopAsync(String departure, String arrival,
+			LocalDateTime departureDateTime, LocalDateTime arrivalDateTime, int maxStops, InterconnectionOrder order,
+			int limit, InterconnectionKey after) {
+		return findAsync(new InterconnectionQuery(departure, arrival, departureDateTime, arrivalDateTime, maxStops,
+				order, limit, after), routeGraphService.getRouteGraph(), new HashMap<>());
+	}
+
+	@Override
+	public List<CompletableFuture<List<Interconnection>>> findAllAsync(List<InterconnectionQuery> queries) {
+		RouteGraph routeGraph = routeGraphService.getRouteGraph();
+		Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched = new HashMap<>();
+		Map<InterconnectionQuery, CompletableFuture<List<Interconnection>>> found = new HashMap<>();
+		return queries
+				.stream()
+				.map(query -> found.computeIfAbsent(query, ignored -> findAsync(query, routeGraph, fetched)))
+				.collect(toList());
+	}
+
+	/**
+	 * Finds the interconnections of a query without blocking the calling thread
+	 * while the schedules are fetched.
+	 * 
+	 * @param query
+	 *            the query
+	 * @param routeGraph
+	 *            the route graph
+	 * @param fetched
+	 *            the schedules fetched for the batch of the query so far, by key
+	 * @return a future of the interconnections, the best first if ranked
+	 */
+	private CompletableFuture<List<Interconnection>> findAsync(InterconnectionQuery query, RouteGraph routeGraph,
+			Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched) {
+		if (!query.isRanked()) {
+			List<Interconnection> results = new ArrayList<>();
+			return findAsync(query.getDeparture(), query.getArrival(), query.getDepartureDateTime(),
+					query.getArrivalDateTime(), query.getMaxStops(), routeGraph, fetched,
+					InterconnectionSet.Filter.ALL, results::add).thenApply(ignored -> results);
+		}
+
+		TopInterconnections top = new TopInterconnections(query.getOrder(), query.getLimit(), query.getAfter());
+		return findAsync(query.getDeparture(), query.getArrival(), query.getDepartureDateTime(),
+				query.getArrivalDateTime(), query.getMaxStops(), routeGraph, fetched, top::isCandidate, top::add)
+						.thenApply(ignored -> top.getResults());
+	}
+
+	/**
+	 * Finds the interconnections without blocking the calling thread while the
+	 * schedules are fetched.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param departureDateTime
+	 *            the departure datetime
+	 * @param arrivalDateTime
+	 *            the arrival datetime
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @param routeGraph
+	 *            the route graph
+	 * @param fetched
+	 *            the schedules fetched for the batch of the query so far, by key
+	 * @param filter
+	 *            the filter of the cached interconnections worth creating
+	 * @param action
+	 *            the action for each interconnection
+	 * @return a future completed once every interconnection is found
+	 */
+	private CompletableFuture<Void> findAsync(String departure, String arrival, LocalDateTime departureDateTime,
+			LocalDateTime arrivalDateTime, int maxStops, RouteGraph routeGraph,
+			Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched, InterconnectionSet.Filter filter,
+			Consumer<Interconnection> action) {
+		List<YearMonth> months = findMonths(departureDateTime, arrivalDateTime);
+		int minDeparture = toMinDeparture(departureDateTime);
+		int maxArrival = FlightSchedule.toEpochMinute(arrivalDateTime);
+		if (findCached(departure, arrival, maxStops, months, minDeparture, maxArrival, filter, action)) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		SearchPlan plan = planQuery(routeGraph, departure, arrival, months, minDeparture, maxArrival, maxStops,
+				fetched);
+
+		// search once every schedule is available, without holding any thread
+		// meanwhile
+		return CompletableFuture
+				.allOf(plan.getSchedules().values().toArray(new CompletableFuture<?>[0]))
+				.thenRunAsync(() -> {
+					// the interconnections the filter rejects are not even created
+					searchQuery(plan, filter, batch -> batch.forEach(action));
+					cache(plan);
+				}, computeExecutor.getPool());
+	}
+
+	/**
+	 * Finds the interconnections within a timeframe in the result cache.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @param months
+	 *            the months of the timeframe
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @param filter
+	 *            the filter of the interconnections worth creating
+	 * @param action
+	 *            the action for each interconnection
+	 * @return whether they are cached
+	 */
+	private boolean findCached(String departure, String arrival, int maxStops, List<YearMonth> months,
+			int minDeparture, int maxArrival, InterconnectionSet.Filter filter, Consumer<Interconnection> action) {
+		InterconnectionSet cached = resultCache.find(departure, arrival, maxStops, months);
+		if (cached == null) {
+			return false;
+		}
+
+		// there are interconnections only if the airports are connected
+		if (cached.size() > 0) {
+			schedulePreloader.recordQuery(departure, arrival);
+		}
+		cached.forEach(minDeparture, maxArrival, filter, action);
+		return true;
+	}
+
+	/**
+	 * Plans the search of a query, records how long it takes, and remembers the
+	 * airports asked for, if they are connected at all, so their schedules are
+	 * preloaded.
+	 * 
+	 * @param routeGraph
+	 *            the route graph
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param months
+	 *            the months to look the flights in
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @param fetched
+	 *            the schedules fetched for the batch so far, by key
+	 * @return the plan of the search
+	 */
+	private SearchPlan planQuery(RouteGraph routeGraph, String departure, String arrival, List<YearMonth> months,
+			int minDeparture, int maxArrival, int maxStops,
+			Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched) {
+		Timer.Sample sample = searchMetrics.start();
+		SearchPlan plan = plan(routeGraph, departure, arrival, months, minDeparture, maxArrival, maxStops, fetched);
+		searchMetrics.stop(sample, Stage.FILTER);
+		if (plan.isConnected()) {
+			schedulePreloader.recordQuery(departure, arrival);
+		}
+		return plan;
+	}
+
+	/**
+	 * Caches in the background every interconnection over the months of a plan
+	 * already searched, unless its {@link FetchPlan} is trimmed.
+	 * 
+	 * @param plan
+	 *            the plan searched, whose schedules are available
+	 */
+	void cache(SearchPlan plan) {
+		// the schedules fetched miss some months of some legs
+		if (plan.getFetchPlan().isTrimmed()) {
+			return;
+		}
+
+		String departure = plan.getDeparture();
+		String arrival = plan.getArrival();
+		List<YearMonth> months = plan.getMonths();
+		int maxStops = plan.getMaxStops();
+		resultCache.cacheAsync(departure, arrival, maxStops, months, ScheduleFetcher.joinAll(plan.getSchedules()),
+				consumer -> search(plan(routeGraphService.getRouteGraph(), departure, arrival, months,
+						InterconnectionResultCache.getStart(months), Integer.MAX_VALUE, maxStops, new HashMap<>()),
+						InterconnectionSet.Filter.ALL, consumer));
+	}
+
+	/**
+	 * Searches the interconnections of a plan for a query, and records how long it
+	 * takes, including the consumer, how many candidates it examines and how many
+	 * interconnections it finds.
+	 * 
+	 * @param plan
+	 *            the plan of the search
+	 * @param filter
+	 *            the filter of the interconnections worth creating
+	 * @param consumer
+	 *            the consumer of each batch of interconnections
+	 */
+	private void searchQuery(SearchPlan plan, InterconnectionSet.Filter filter,
+			Consumer<? super List<Interconnection>> consumer) {
+		Timer.Sample sample = searchMetrics.start();
+		AtomicInteger results = new AtomicInteger();
+		int candidates = search(plan, filter, batch -> {
+			results.addAndGet(batch.size());
+			consumer.accept(batch);
+		});
+		searchMetrics.stopSearch(sample, candidates, results.get());
+	}
+
+	/**
+	 * Plans a search in the given route graph: finds the routes that may be part
+	 * of an interconnection, and starts fetching their schedules, sharing those
+	 * fetched for the other queries of the same batch.
+	 * 
+	 * @param routeGraph
+	 *            the route graph
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param months
+	 *            the months to look the flights in
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @param fetched
+	 *            the schedules fetched for the batch so far, by key
+	 * @return the plan of the search
+	 */
+	abstract SearchPlan plan(RouteGraph routeGraph, String departure, String arrival, List<YearMonth> months,
+			int minDeparture, int maxArrival, int maxStops,
+			Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched);
+
+	/**
+	 * Searches the interconnections of a plan, waiting for its schedules. Only
+	 * the interconnections the filter accepts are created, and it is checked just
+	 * before each one, after the consumer took the previous batches, so a filter
+	 * tightened by the consumer, such as the bound of a page, skips them early.
+	 * 
+	 * @param plan
+	 *            the plan of the search
+	 * @param filter
+	 *            the filter of the interconnections worth creating
+	 * @param consumer
+	 *            the consumer of each batch of interconnections
+	 * @return the number of candidates examined, such as flights or connections
+	 */
+	abstract int search(SearchPlan plan, InterconnectionSet.Filter filter,
+			Consumer<? super List<Interconnection>> consumer);
+
+	/**
+	 * Gets the departure time of a timeframe in minutes since the epoch, as the
+	 * schedules hold them, rounded up so no flight departs before it.
+	 * 
+	 * @param departureDateTime
+	 *            the departure datetime
+	 * @return the departure time, in minutes since the epoch
+	 */
+	static int toMinDeparture(LocalDateTime departureDateTime) {
+		return FlightSchedule.toEpochMinute(departureDateTime.plusSeconds(59));
+	}
+
+	/**
+	 * Finds the months spanned by the given departure and arrival datetimes.
+	 * 
+	 * @param departureDateTime
+	 *            the departure date and time
+	 * @param arrivalDateTime
+	 *            the arrival date and time
+	 * @return a list of months, in chronological order
+	 */
+	static List<YearMonth> findMonths(LocalDateTime departureDateTime, LocalDateTime arrivalDateTime) {
+		List<YearMonth> result = new ArrayList<>();
+
+		// the difference between departureDate and arrival date can span several months,
+		// and years
+		YearMonth lastMonth = YearMonth.from(arrivalDateTime);
+		YearMonth month = YearMonth.from(departureDateTime);
+		do {
+			result.add(month);
+			month = month.plusMonths(1);
+		} while (!month.isAfter(lastMonth));
+
+		return result;
+	}
+
+	/**
+	 * Represents the plan of a search: what to search, the routes that may be part
+	 * of an interconnection, and their schedules being fetched.
+	 * 
+	 * @author jnoda
+	 */
+	@Value
+	static class SearchPlan {
+		/**
+		 * The departure airport IATA code.
+		 */
+		private String departure;
+
+		/**
+		 * The arrival airport IATA code.
+		 */
+		private String arrival;
+
+		/**
+		 * The maximum number of stops.
+		 */
+		private int maxStops;
+
+		/**
+		 * The months of the timeframe.
+		 */
+		private List<YearMonth> months;
+
+		/**
+		 * The departure time, in minutes since the epoch.
+		 */
+		private int minDeparture;
+
+		/**
+		 * The arrival time, in minutes since the epoch.
+		 */
+		private int maxArrival;
+
+		/**
+		 * Whether the airports are connected by any route or path.
+		 */
+		private boolean connected;
+
+		/**
+		 * The tuples of routes through each connecting airport, if searched apart.
+		 */
+		private List<RouteTuple> routeTuples;
+
+		/**
+		 * The routes in any path, if searched together.
+		 */
+		private List<Route> routes;
+
+		/**
+		 * The schedules of each leg to look the flights in.
+		 */
+		private FetchPlan fetchPlan;
+
+		/**
+		 * The schedules being fetched.
+		 */
+		private Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> schedules;
+	}
+
+	/**
+	 * Represents a tuple of routes.
+	 * 
+	 * @author jnoda
+	 */
+	@Value
+	static class RouteTuple {
+		/**
+		 * The starting route.
+		 */
+		private Route startingRoute;
+
+		/**
+		 * The next route.
+		 */
+		private Route nextRoute;
+	}
+}
@@ -0,0 +1,137 @@
+package com.julionoda.ryanair.service;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.stereotype.Component;
+
+import com.julionoda.ryanair.model.Route;
+
+/**
+ * Dictionary of airport IATA codes, which gives every code a small, dense
+ * identifier, so that the search engine can hold airports as numbers instead
+ * of strings.
+ * 
+ * <p>
+ * Identifiers are assigned in order of arrival and never change during the
+ * life of the dictionary. The codes of the routes are interned when they are
+ * read, so every code is held once, and compared by reference first; the
+ * codes of the queries are only ever looked up with {@link #findId(String)},
+ * so that unknown airports are never added.
+ * </p>
+ * 
+ * <p>
+ * The application holds a single dictionary, shared by every component that
+ * holds airports as identifiers; tests create a new one each.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Component
+public class AirportDictionary {
+	/**
+	 * Identifiers by code.
+	 */
+	private final ConcurrentMap<String, Short> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * Codes by identifier.
+	 */
+	private final List<String> codes = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Gets the identifier of an airport, assigning a new one if the airport is not
+	 * known yet.
+	 * 
+	 * @param code
+	 *            the airport IATA code
+	 * @return the identifier of the airport
+	 */
+	public short getId(String code) {
+		Short id = ids.get(code);
+		if (id != null) {
+			return id;
+		}
+
+		synchronized (codes) {
+			id = ids.get(code);
+			if (id == null) {
+				if (codes.size() > Short.MAX_VALUE) {
+					throw new IllegalStateException("Too many airports in the dictionary");
+				}
+				id = (short) codes.size();
+				// the code is published before the identifier, so it can be read by anyone
+				// who sees the identifier
+				codes.add(code);
+				ids.put(code, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * Finds the identifier of an airport, without assigning a new one.
+	 * 
+	 * @param code
+	 *            the airport IATA code
+	 * @return the identifier of the airport, or -1 if it is not known
+	 */
+	public short findId(String code) {
+		Short id = ids.get(code);
+		return (id != null) ? id : -1;
+	}
+
+	/**
+	 * Interns the code of an airport, assigning an identifier to it if the airport
+	 * is not known yet.
+	 * 
+	 * @param code
+	 *            the airport IATA code
+	 * @return the same code, held by the dictionary
+	 */
+	public String intern(String code) {
+		return getCode(getId(code));
+	}
+
+	/**
+	 * Interns the airport codes of a route.
+	 * 
+	 * @param route
+	 *            the route
+	 * @return the same route, with the codes held by the dictionary
+	 */
+	public Route intern(Route route) {
+		String connectingAirport = route.getConnectingAirport();
+		return Route
+				.builder()
+				.airportFrom(intern(route.getAirportFrom()))
+				.airportTo(intern(route.getAirportTo()))
+				.connectingAirport(((connectingAirport == null) || connectingAirport.isEmpty()) ? connectingAirport
+						: intern(connectingAirport))
+				.build();
+	}
+
+	/**
+	 * Gets the code of an airport.
+	 * 
+	 * @param id
+	 *            the identifier of the airport
+	 * @return the airport IATA code
+	 */
+	public String getCode(short id) {
+		return codes.get(id);
+	}
+
+	/**
+	 * Gets the number of airports in the dictionary. Every identifier is lower
+	 * than it.
+	 * 
+	 * @return the number of airports
+	 */
+	public int size() {
+		return codes.size();
+	}
+}
@@ -0,0 +1,29 @@
+package com.julionoda.ryanair.service;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.julionoda.ryanair.model.Flight;
+
+/**
+ * Service for flight schedules that does not block while they are found.
+ * 
+ * @author jnoda
+ *
+ */
+public interface AsyncScheduleService {
+	/**
+	 * Finds all flights going from the departure to the arrival airport for the
+	 * given year and month, without waiting for them.
+	 * 
+	 * @param airportFrom
+	 *            the departure airport
+	 * @param airportTo
+	 *            the arrival airport
+	 * @param year
+	 *            the year
+	 * @param month
+	 *            the month
+	 * @return a future of the flights
+	 */
+	CompletableFuture<Iterable<Flight>> findFlightsAsync(String airportFrom, String airportTo, int year, int month);
+}
@@ -0,0 +1,93 @@
+package com.julionoda.ryanair.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Runs CPU bound stream pipelines on a dedicated pool, instead of the common
+ * {@link ForkJoinPool} shared by every parallel stream of the application.
+ * 
+ * <p>
+ * Inputs smaller than the parallel threshold are processed sequentially on the
+ * calling thread, as splitting them costs more than it gains.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class ComputeExecutor {
+	/**
+	 * Pool where the parallel pipelines run.
+	 */
+	@Getter
+	private final ForkJoinPool pool;
+
+	/**
+	 * Minimum number of elements to process an input in parallel.
+	 */
+	@Getter
+	private final int parallelThreshold;
+
+	/**
+	 * Class constructor.
+	 * 
+	 * @param pool
+	 *            the pool where the parallel pipelines run
+	 * @param parallelThreshold
+	 *            the minimum number of elements to process an input in parallel
+	 */
+	public ComputeExecutor(@NonNull ForkJoinPool pool, int parallelThreshold) {
+		this.pool = pool;
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	/**
+	 * Applies a stream pipeline to the given input, in parallel on the pool if
+	 * the input is big enough, or sequentially on the calling thread otherwise.
+	 * 
+	 * @param input
+	 *            the input
+	 * @param pipeline
+	 *            the pipeline to apply to the stream of the input
+	 * @return the result of the pipeline
+	 */
+	public <T, R> R compute(Iterable<T> input, Function<Stream<T>, R> pipeline) {
+		Collection<T> collection = toCollection(input);
+		if (collection.size() < parallelThreshold) {
+			return pipeline.apply(collection.stream());
+		}
+
+		// parallel streams run on the pool of the task that starts them
+		return pool.submit(() -> pipeline.apply(collection.parallelStream())).join();
+	}
+
+	/**
+	 * Shuts down the pool.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Gets the given iterable as a collection, copying it only if needed.
+	 * 
+	 * @param input
+	 *            the iterable
+	 * @return a collection with the same elements
+	 */
+	static <T> Collection<T> toCollection(Iterable<T> input) {
+		if (input instanceof Collection) {
+			return (Collection<T>) input;
+		}
+
+		Collection<T> result = new ArrayList<>();
+		input.forEach(result::add);
+		return result;
+	}
+}
@@ -0,0 +1,284 @@
+package com.julionoda.ryanair.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+import com.julionoda.ryanair.service.Timetable.Connections;
+
+import lombok.NonNull;
+
+/**
+ * Search of interconnections with the Connection Scan Algorithm, over the
+ * connections of a {@link Timetable} sorted by departure.
+ * 
+ * <p>
+ * A single pass over the connections, from the latest departure to the
+ * earliest, computes the profile of the arrival airport: for every connection,
+ * the minimum number of legs to reach the arrival airport after taking it,
+ * knowing the latest departure from each airport that still reaches it with a
+ * given number of legs. Then the interconnections are found taking only the
+ * connections that reach the arrival airport with the legs left, so no
+ * combination of flights is ever tried in vain.
+ * </p>
+ * 
+ * <p>
+ * Interconnections never go through the same airport twice, and a connection
+ * is valid if the next flight departs more than
+ * {@value InterconnectionServiceImpl#MIN_CONNECTION_MINUTES} minutes after the
+ * arrival.
+ * </p>
+ * 
+ * <p>
+ * Airports are held as identifiers of the {@link AirportDictionary} of the
+ * connections; an airport it does not know has no connections, so there are
+ * no interconnections to search, and it is not added.
+ * </p>
+ * 
+ * <p>
+ * Instances are meant for a single query and are not thread safe.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class ConnectionScan {
+	/**
+	 * The connections, sorted by departure.
+	 */
+	private final Connections connections;
+
+	/**
+	 * Departure airport identifier, or -1 if unknown.
+	 */
+	private final short departure;
+
+	/**
+	 * Arrival airport identifier, or -1 if unknown.
+	 */
+	private final short arrival;
+
+	/**
+	 * Maximum number of legs of an interconnection.
+	 */
+	private final int maxLegs;
+
+	/**
+	 * Minimum number of legs to reach the arrival airport taking each connection,
+	 * or zero if it cannot be reached.
+	 */
+	private final byte[] minLegs;
+
+	/**
+	 * Latest departure from each airport that reaches the arrival airport, by
+	 * number of legs and airport identifier.
+	 */
+	private final int[][] latestDepartures;
+
+	/**
+	 * Indexes of the connections that reach the arrival airport, by departure
+	 * airport identifier, sorted by departure.
+	 */
+	private final int[][] outgoing;
+
+	/**
+	 * Flights already created, by connection index.
+	 */
+	private final Flight[] flights;
+
+	/**
+	 * Class constructor. Scans the connections to compute the profile of the
+	 * arrival airport.
+	 * 
+	 * @param connections
+	 *            the connections, with only the ones in the desired timeframe
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param maxLegs
+	 *            the maximum number of legs of an interconnection
+	 */
+	public ConnectionScan(@NonNull Connections connections, @NonNull String departure, @NonNull String arrival,
+			int maxLegs) {
+		this.connections = connections;
+		this.departure = connections.getDictionary().findId(departure);
+		this.arrival = connections.getDictionary().findId(arrival);
+		this.maxLegs = maxLegs;
+		this.minLegs = new byte[connections.size()];
+		this.flights = new Flight[connections.size()];
+
+		int airports = connections.getDictionary().size();
+		this.latestDepartures = new int[maxLegs + 1][airports];
+		for (int[] latest : latestDepartures) {
+			Arrays.fill(latest, Integer.MIN_VALUE);
+		}
+		if (isKnown()) {
+			scan();
+		}
+
+		// index the connections reaching the arrival airport by departure airport
+		int[] counts = new int[airports];
+		for (int i = 0; i < connections.size(); i++) {
+			if (minLegs[i] > 0) {
+				counts[connections.getAirportFrom(i)]++;
+			}
+		}
+		this.outgoing = new int[airports][];
+		for (int airport = 0; airport < airports; airport++) {
+			outgoing[airport] = new int[counts[airport]];
+			counts[airport] = 0;
+		}
+		for (int i = 0; i < connections.size(); i++) {
+			if (minLegs[i] > 0) {
+				short airport = connections.getAirportFrom(i);
+				outgoing[airport][counts[airport]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * Scans the connections from the latest departure to the earliest, computing
+	 * the minimum number of legs to reach the arrival airport from each one. Any
+	 * connection that can follow another one departs after it, so it has already
+	 * been scanned.
+	 */
+	private void scan() {
+		for (int i = connections.size() - 1; i >= 0; i--) {
+			short from = connections.getAirportFrom(i);
+			short to = connections.getAirportTo(i);
+			// interconnections end on the arrival airport, and never return to the
+			// departure one
+			if ((from == arrival) || (to == departure)) {
+				continue;
+			}
+
+			int legs = 0;
+			if (to == arrival) {
+				legs = 1;
+			} else {
+				int ready = connections.getArrival(i) + InterconnectionServiceImpl.MIN_CONNECTION_MINUTES;
+				for (int next = 1; next < maxLegs; next++) {
+					if (latestDepartures[next][to] > ready) {
+						legs = next + 1;
+						break;
+					}
+				}
+			}
+
+			if (legs > 0) {
+				minLegs[i] = (byte) legs;
+				// the first one scanned is the latest departure
+				for (int l = legs; l <= maxLegs; l++) {
+					if (latestDepartures[l][from] == Integer.MIN_VALUE) {
+						latestDepartures[l][from] = connections.getDeparture(i);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Searches the interconnections, and hands them over to the given consumer in
+	 * batches, one for each first flight.
+	 * 
+	 * @param consumer
+	 *            the consumer of each batch of interconnections
+	 */
+	public void search(Consumer<? super List<Interconnection>> consumer) {
+		search(InterconnectionSet.Filter.ALL, consumer);
+	}
+
+	/**
+	 * Searches the interconnections the given filter accepts, and hands them over
+	 * to the given consumer in batches, one for each first flight. The filter is
+	 * checked before the flights of each interconnection are created.
+	 * 
+	 * @param filter
+	 *            the filter of the interconnections worth creating
+	 * @param consumer
+	 *            the consumer of each batch of interconnections
+	 */
+	public void search(InterconnectionSet.Filter filter, Consumer<? super List<Interconnection>> consumer) {
+		if (!isKnown()) {
+			return;
+		}
+
+		int[] path = new int[maxLegs];
+		boolean[] visited = new boolean[outgoing.length];
+		visited[departure] = true;
+
+		for (int i : outgoing[departure]) {
+			if (minLegs[i] <= maxLegs) {
+				List<Interconnection> batch = new ArrayList<>();
+				follow(i, 0, path, visited, filter, batch);
+				consumer.accept(batch);
+			}
+		}
+	}
+
+	/**
+	 * Follows a connection, adding the interconnections it leads to.
+	 * 
+	 * @param index
+	 *            the index of the connection
+	 * @param depth
+	 *            the number of legs before the connection
+	 * @param path
+	 *            the connections taken so far
+	 * @param visited
+	 *            the airports visited so far
+	 * @param filter
+	 *            the filter of the interconnections worth creating
+	 * @param result
+	 *            the interconnections found
+	 */
+	private void follow(int index, int depth, int[] path, boolean[] visited, InterconnectionSet.Filter filter,
+			List<Interconnection> result) {
+		path[depth] = index;
+
+		short airport = connections.getAirportTo(index);
+		if (airport == arrival) {
+			if (!filter.accept(connections.getDeparture(path[0]), connections.getArrival(index), depth)) {
+				return;
+			}
+			List<Flight> legs = new ArrayList<>(depth + 1);
+			for (int i = 0; i <= depth; i++) {
+				legs.add(getFlight(path[i]));
+			}
+			result.add(new Interconnection(legs));
+		} else if (!visited[airport]) {
+			visited[airport] = true;
+			int legsLeft = maxLegs - depth - 1;
+			int ready = connections.getArrival(index) + InterconnectionServiceImpl.MIN_CONNECTION_MINUTES;
+			int[] next = outgoing[airport];
+			for (int i = connections.findFirstDepartureAfter(next, ready); i < next.length
+					&& connections.getDeparture(next[i]) <= latestDepartures[legsLeft][airport]; i++) {
+				if ((minLegs[next[i]] <= legsLeft) && !visited[connections.getAirportTo(next[i])]) {
+					follow(next[i], depth + 1, path, visited, filter, result);
+				}
+			}
+			visited[airport] = false;
+		}
+	}
+
+	/**
+	 * Whether both the departure and the arrival airports are known.
+	 */
+	private boolean isKnown() {
+		return (departure >= 0) && (arrival >= 0);
+	}
+
+	/**
+	 * Gets the flight of a connection, creating it only once.
+	 */
+	private Flight getFlight(int index) {
+		if (flights[index] == null) {
+			flights[index] = connections.toFlight(index);
+		}
+		return flights[index];
+	}
+}
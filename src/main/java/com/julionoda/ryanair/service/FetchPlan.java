@@ -0,0 +1,245 @@
+package com.julionoda.ryanair.service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.julionoda.ryanair.model.Route;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Immutable plan of the monthly schedules to fetch for a query: the months of
+ * each leg that may be part of an interconnection, computed once and shared by
+ * the fetch and the search.
+ * 
+ * <p>
+ * The months of a leg are the months of the query trimmed by the earliest time
+ * its flights may depart: a leg that does not start at the departure airport
+ * departs at least {@value InterconnectionServiceImpl#MIN_CONNECTION_MINUTES}
+ * minutes after the departure time, and a leg that does not end at the arrival
+ * airport departs at least as long before the arrival time. So a query that
+ * starts late in a month, or ends early in one, does not fetch the schedules of
+ * that month for the legs that could not depart in it.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class FetchPlan {
+	/**
+	 * The keys of the schedules of each leg, in chronological order, by leg in
+	 * order of addition.
+	 */
+	private final Map<Leg, List<ScheduleKey>> keys;
+
+	/**
+	 * Whether any leg has fewer months than the query.
+	 */
+	private final boolean trimmed;
+
+	/**
+	 * Class constructor.
+	 */
+	private FetchPlan(Map<Leg, List<ScheduleKey>> keys, boolean trimmed) {
+		this.keys = keys;
+		this.trimmed = trimmed;
+	}
+
+	/**
+	 * Creates a builder of a plan for the given query.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param months
+	 *            the months of the query, in chronological order
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @return a new builder
+	 */
+	public static Builder builder(@NonNull String departure, @NonNull String arrival, @NonNull List<YearMonth> months,
+			int minDeparture, int maxArrival) {
+		return new Builder(departure, arrival, months, minDeparture, maxArrival);
+	}
+
+	/**
+	 * Gets the keys of the schedules of a leg.
+	 * 
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @return the keys, in chronological order, or an empty list if the leg is not
+	 *         in the plan
+	 */
+	public List<ScheduleKey> getKeys(String airportFrom, String airportTo) {
+		return keys.getOrDefault(new Leg(airportFrom, airportTo), Collections.emptyList());
+	}
+
+	/**
+	 * Gets the keys of the schedules of a route.
+	 * 
+	 * @param route
+	 *            the route
+	 * @return the keys, in chronological order, or an empty list if the route is
+	 *         not in the plan
+	 */
+	public List<ScheduleKey> getKeys(Route route) {
+		return getKeys(route.getAirportFrom(), route.getAirportTo());
+	}
+
+	/**
+	 * Gets the keys of the schedules of every leg, to fetch them all at once.
+	 */
+	public Set<ScheduleKey> getScheduleKeys() {
+		Set<ScheduleKey> result = new LinkedHashSet<>();
+		keys.values().forEach(result::addAll);
+		return result;
+	}
+
+	/**
+	 * Whether any leg has fewer months than the query, so the schedules fetched
+	 * are not enough to search the whole months.
+	 */
+	public boolean isTrimmed() {
+		return trimmed;
+	}
+
+	/**
+	 * Builder for {@link FetchPlan}.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	public static class Builder {
+		/**
+		 * The departure airport IATA code.
+		 */
+		private final String departure;
+
+		/**
+		 * The arrival airport IATA code.
+		 */
+		private final String arrival;
+
+		/**
+		 * The months of the query, in chronological order.
+		 */
+		private final List<YearMonth> months;
+
+		/**
+		 * The departure time, in minutes since the epoch.
+		 */
+		private final int minDeparture;
+
+		/**
+		 * The arrival time, in minutes since the epoch.
+		 */
+		private final int maxArrival;
+
+		/**
+		 * The keys of the schedules of each leg added so far.
+		 */
+		private final Map<Leg, List<ScheduleKey>> keys = new LinkedHashMap<>();
+
+		/**
+		 * Whether any leg added so far has fewer months than the query.
+		 */
+		private boolean trimmed;
+
+		/**
+		 * Class constructor.
+		 */
+		private Builder(String departure, String arrival, List<YearMonth> months, int minDeparture, int maxArrival) {
+			this.departure = departure;
+			this.arrival = arrival;
+			this.months = months;
+			this.minDeparture = minDeparture;
+			this.maxArrival = maxArrival;
+		}
+
+		/**
+		 * Adds a leg, unless added already.
+		 * 
+		 * @param airportFrom
+		 *            the departure airport IATA code
+		 * @param airportTo
+		 *            the arrival airport IATA code
+		 * @return this builder
+		 */
+		public Builder addLeg(@NonNull String airportFrom, @NonNull String airportTo) {
+			keys.computeIfAbsent(new Leg(airportFrom, airportTo), leg -> {
+				// the months the flights of the leg may depart in
+				YearMonth first = toYearMonth(airportFrom.equals(departure) ? minDeparture
+						: minDeparture + InterconnectionServiceImpl.MIN_CONNECTION_MINUTES);
+				YearMonth last = toYearMonth(airportTo.equals(arrival) ? maxArrival
+						: maxArrival - InterconnectionServiceImpl.MIN_CONNECTION_MINUTES);
+
+				List<ScheduleKey> result = new ArrayList<>(months.size());
+				months.forEach(month -> {
+					if (!month.isBefore(first) && !month.isAfter(last)) {
+						result.add(new ScheduleKey(airportFrom, airportTo, month));
+					}
+				});
+				trimmed |= result.size() < months.size();
+				return result;
+			});
+			return this;
+		}
+
+		/**
+		 * Adds a route as a leg, unless added already.
+		 * 
+		 * @param route
+		 *            the route
+		 * @return this builder
+		 */
+		public Builder addLeg(Route route) {
+			return addLeg(route.getAirportFrom(), route.getAirportTo());
+		}
+
+		/**
+		 * Builds the plan.
+		 * 
+		 * @return the plan
+		 */
+		public FetchPlan build() {
+			return new FetchPlan(new LinkedHashMap<>(keys), trimmed);
+		}
+
+		/**
+		 * Gets the month of a time in minutes since the epoch.
+		 */
+		private static YearMonth toYearMonth(int minute) {
+			return YearMonth.from(FlightSchedule.toLocalDateTime(minute));
+		}
+	}
+
+	/**
+	 * Represents a leg of an interconnection.
+	 * 
+	 * @author jnoda
+	 */
+	@Value
+	private static class Leg {
+		/**
+		 * The departure airport IATA code.
+		 */
+		private String airportFrom;
+
+		/**
+		 * The arrival airport IATA code.
+		 */
+		private String airportTo;
+	}
+}
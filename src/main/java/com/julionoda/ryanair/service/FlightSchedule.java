@@ -0,0 +1,412 @@
+package com.julionoda.ryanair.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.julionoda.ryanair.model.Flight;
+
+import lombok.NonNull;
+
+/**
+ * Compact, immutable representation of the flights of a route, usually for a
+ * month, sorted by departure.
+ * 
+ * <p>
+ * The flights are stored as a structure of arrays: airports are held once for
+ * the whole schedule, and times are minutes since the epoch, in the timezone of
+ * each airport. {@link Flight} objects are
+ * only created when the schedule is iterated, or for a given flight with
+ * {@link #toFlight(int)}, so that only the flights that are returned are ever
+ * materialized.
+ * </p>
+ * 
+ * <p>
+ * The airports are kept as IATA codes, as a schedule is created without the
+ * {@link AirportDictionary}; the {@link Timetable} and the
+ * {@link TimeDependentSearch} turn them into dense ids once, when they index
+ * the schedules, as the {@link RouteGraph} does with the routes.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class FlightSchedule implements Iterable<Flight> {
+	/**
+	 * Minutes in a day.
+	 */
+	static final int MINUTES_PER_DAY = 24 * 60;
+
+	/**
+	 * Departure airport IATA code.
+	 */
+	private final String airportFrom;
+
+	/**
+	 * Arrival airport IATA code.
+	 */
+	private final String airportTo;
+
+	/**
+	 * Flight numbers.
+	 */
+	private final String[] numbers;
+
+	/**
+	 * Departure times, in minutes since the epoch, sorted.
+	 */
+	private final int[] departures;
+
+	/**
+	 * Arrival times, in minutes since the epoch.
+	 */
+	private final int[] arrivals;
+
+	/**
+	 * Class constructor. The flights must be already sorted by departure.
+	 */
+	private FlightSchedule(String airportFrom, String airportTo, String[] numbers, int[] departures, int[] arrivals) {
+		this.airportFrom = airportFrom;
+		this.airportTo = airportTo;
+		this.numbers = numbers;
+		this.departures = departures;
+		this.arrivals = arrivals;
+	}
+
+	/**
+	 * Creates a schedule with the given flights, which must depart and arrive
+	 * from the given airports.
+	 * 
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @param flights
+	 *            the flights, in any order
+	 * @return a new schedule
+	 */
+	public static FlightSchedule of(String airportFrom, String airportTo, @NonNull Iterable<Flight> flights) {
+		if (flights instanceof FlightSchedule) {
+			return (FlightSchedule) flights;
+		}
+
+		Builder builder = builder(airportFrom, airportTo);
+		flights.forEach(flight -> builder.add(flight.getNumber(), toEpochMinute(flight.getDepartureDateTime()),
+				toEpochMinute(flight.getArrivalDateTime())));
+		return builder.build();
+	}
+
+	/**
+	 * Concatenates schedules of the same route, where each one departs after the
+	 * previous one, such as consecutive months.
+	 * 
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @param schedules
+	 *            the schedules, in chronological order
+	 * @return a new schedule with the flights of all the schedules
+	 */
+	public static FlightSchedule concat(String airportFrom, String airportTo, List<FlightSchedule> schedules) {
+		if (schedules.size() == 1) {
+			return schedules.get(0);
+		}
+
+		Builder builder = builder(airportFrom, airportTo);
+		schedules.forEach(schedule -> {
+			for (int i = 0; i < schedule.size(); i++) {
+				builder.add(schedule.numbers[i], schedule.departures[i], schedule.arrivals[i]);
+			}
+		});
+		return builder.build();
+	}
+
+	/**
+	 * Creates a builder of a schedule for the given airports.
+	 * 
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @return a new builder
+	 */
+	public static Builder builder(@NonNull String airportFrom, @NonNull String airportTo) {
+		return new Builder(airportFrom, airportTo);
+	}
+
+	/**
+	 * Gets the number of flights.
+	 */
+	public int size() {
+		return departures.length;
+	}
+
+	/**
+	 * Gets the departure airport IATA code.
+	 */
+	public String getAirportFrom() {
+		return airportFrom;
+	}
+
+	/**
+	 * Gets the arrival airport IATA code.
+	 */
+	public String getAirportTo() {
+		return airportTo;
+	}
+
+	/**
+	 * Gets the number of a flight.
+	 * 
+	 * @param index
+	 *            the index of the flight
+	 */
+	public String getNumber(int index) {
+		return numbers[index];
+	}
+
+	/**
+	 * Gets the departure time of a flight, in minutes since the epoch.
+	 * 
+	 * @param index
+	 *            the index of the flight
+	 */
+	public int getDeparture(int index) {
+		return departures[index];
+	}
+
+	/**
+	 * Gets the arrival time of a flight, in minutes since the epoch.
+	 * 
+	 * @param index
+	 *            the index of the flight
+	 */
+	public int getArrival(int index) {
+		return arrivals[index];
+	}
+
+	/**
+	 * Creates the {@link Flight} at the given index.
+	 * 
+	 * @param index
+	 *            the index of the flight
+	 * @return a new flight
+	 */
+	public Flight toFlight(int index) {
+		return new Flight(numbers[index], getAirportFrom(), getAirportTo(), toLocalDateTime(departures[index]),
+				toLocalDateTime(arrivals[index]));
+	}
+
+	/**
+	 * Finds the first flight departing after the given time. As the flights are
+	 * sorted, all the following ones depart after it too.
+	 * 
+	 * @param minute
+	 *            the time, in minutes since the epoch
+	 * @return the index of the first flight departing after the time, or the size
+	 *         of the schedule if there is none
+	 */
+	public int findFirstDepartureAfter(int minute) {
+		int low = 0;
+		int high = departures.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (departures[middle] > minute) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Gets the flights that depart not earlier than the given departure time and
+	 * arrive not after the given arrival time. The times are local to each
+	 * airport, so a flight may arrive in time even if it departs after the arrival
+	 * time, westbound, and every flight departing after the departure time is
+	 * checked.
+	 * 
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @return a schedule with the flights in the timeframe
+	 */
+	public FlightSchedule filter(int minDeparture, int maxArrival) {
+		Builder builder = new Builder(airportFrom, airportTo);
+		for (int i = findFirstDepartureAfter(minDeparture - 1); i < size(); i++) {
+			if (arrivals[i] <= maxArrival) {
+				builder.add(numbers[i], departures[i], arrivals[i]);
+			}
+		}
+		return (builder.size == size()) ? this : builder.build();
+	}
+
+	@Override
+	public Iterator<Flight> iterator() {
+		return new Iterator<Flight>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < size();
+			}
+
+			@Override
+			public Flight next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return toFlight(index++);
+			}
+		};
+	}
+
+	/**
+	 * Converts a date and time to minutes since the epoch, rounding down.
+	 * 
+	 * @param dateTime
+	 *            the date and time
+	 * @return the minutes since the epoch
+	 */
+	public static int toEpochMinute(LocalDateTime dateTime) {
+		return Math.toIntExact(Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60));
+	}
+
+	/**
+	 * Converts a date and a time to minutes since the epoch.
+	 * 
+	 * @param date
+	 *            the date
+	 * @param time
+	 *            the time
+	 * @return the minutes since the epoch
+	 */
+	public static int toEpochMinute(LocalDate date, LocalTime time) {
+		return Math.toIntExact(date.toEpochDay() * MINUTES_PER_DAY + time.getHour() * 60 + time.getMinute());
+	}
+
+	/**
+	 * Converts minutes since the epoch to a date and time.
+	 * 
+	 * @param minute
+	 *            the minutes since the epoch
+	 * @return the date and time
+	 */
+	public static LocalDateTime toLocalDateTime(int minute) {
+		return LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+	}
+
+	/**
+	 * Builder for {@link FlightSchedule}.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	public static class Builder {
+		/**
+		 * Departure airport IATA code.
+		 */
+		private final String airportFrom;
+
+		/**
+		 * Arrival airport IATA code.
+		 */
+		private final String airportTo;
+
+		/**
+		 * Flight numbers.
+		 */
+		private String[] numbers = new String[16];
+
+		/**
+		 * Departure times, in minutes since the epoch.
+		 */
+		private int[] departures = new int[16];
+
+		/**
+		 * Arrival times, in minutes since the epoch.
+		 */
+		private int[] arrivals = new int[16];
+
+		/**
+		 * Number of flights added.
+		 */
+		private int size;
+
+		/**
+		 * Whether the flights were added sorted by departure.
+		 */
+		private boolean sorted = true;
+
+		/**
+		 * Class constructor.
+		 */
+		private Builder(String airportFrom, String airportTo) {
+			this.airportFrom = airportFrom;
+			this.airportTo = airportTo;
+		}
+
+		/**
+		 * Adds a flight.
+		 * 
+		 * @param number
+		 *            the flight number
+		 * @param departure
+		 *            the departure time, in minutes since the epoch
+		 * @param arrival
+		 *            the arrival time, in minutes since the epoch
+		 * @return this builder
+		 */
+		public Builder add(@NonNull String number, int departure, int arrival) {
+			if (size == departures.length) {
+				numbers = Arrays.copyOf(numbers, size * 2);
+				departures = Arrays.copyOf(departures, size * 2);
+				arrivals = Arrays.copyOf(arrivals, size * 2);
+			}
+			sorted &= (size == 0) || (departures[size - 1] <= departure);
+
+			numbers[size] = number;
+			departures[size] = departure;
+			arrivals[size] = arrival;
+			size++;
+			return this;
+		}
+
+		/**
+		 * Builds the schedule, sorting the flights by departure if needed.
+		 * 
+		 * @return a new schedule
+		 */
+		public FlightSchedule build() {
+			if (sorted) {
+				return new FlightSchedule(airportFrom, airportTo, Arrays.copyOf(numbers, size),
+						Arrays.copyOf(departures, size), Arrays.copyOf(arrivals, size));
+			}
+
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			// stable, so flights departing at the same time keep their order
+			Arrays.sort(order, (a, b) -> Integer.compare(departures[a], departures[b]));
+
+			String[] sortedNumbers = new String[size];
+			int[] sortedDepartures = new int[size];
+			int[] sortedArrivals = new int[size];
+			for (int i = 0; i < size; i++) {
+				sortedNumbers[i] = numbers[order[i]];
+				sortedDepartures[i] = departures[order[i]];
+				sortedArrivals[i] = arrivals[order[i]];
+			}
+			return new FlightSchedule(airportFrom, airportTo, sortedNumbers, sortedDepartures, sortedArrivals);
+		}
+	}
+}
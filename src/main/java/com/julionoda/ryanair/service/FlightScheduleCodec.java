@@ -0,0 +1,142 @@
+package com.julionoda.ryanair.service;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a {@link FlightSchedule}, for the schedules
+ * persisted out of the cache.
+ * 
+ * <p>
+ * A schedule is encoded as a table of its distinct flight numbers, which
+ * usually repeat every day, and then each flight as the index of its number,
+ * the minutes since the departure of the previous flight, and its duration, all
+ * of them as variable length integers. A monthly schedule takes a few bytes per
+ * flight, instead of a few dozen for its JSON.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+final class FlightScheduleCodec {
+	/**
+	 * Class constructor, not to be instantiated.
+	 */
+	private FlightScheduleCodec() {
+	}
+
+	/**
+	 * Writes the flights of a schedule.
+	 * 
+	 * @param out
+	 *            the output
+	 * @param schedule
+	 *            the schedule
+	 * @throws IOException
+	 *             if it cannot be written
+	 */
+	static void write(DataOutput out, FlightSchedule schedule) throws IOException {
+		Map<String, Integer> numbers = new HashMap<>();
+		int[] numberIndexes = new int[schedule.size()];
+		for (int i = 0; i < schedule.size(); i++) {
+			Integer index = numbers.putIfAbsent(schedule.getNumber(i), numbers.size());
+			numberIndexes[i] = (index == null) ? numbers.size() - 1 : index;
+		}
+
+		String[] table = new String[numbers.size()];
+		numbers.forEach((number, index) -> table[index] = number);
+		writeVarInt(out, table.length);
+		for (String number : table) {
+			byte[] bytes = number.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		}
+
+		writeVarInt(out, schedule.size());
+		int previous = (schedule.size() > 0) ? schedule.getDeparture(0) : 0;
+		out.writeInt(previous);
+		for (int i = 0; i < schedule.size(); i++) {
+			writeVarInt(out, numberIndexes[i]);
+			// sorted by departure, so never negative
+			writeVarInt(out, schedule.getDeparture(i) - previous);
+			writeVarInt(out, zigZag(schedule.getArrival(i) - schedule.getDeparture(i)));
+			previous = schedule.getDeparture(i);
+		}
+	}
+
+	/**
+	 * Reads the flights of a schedule written by
+	 * {@link #write(DataOutput, FlightSchedule)}.
+	 * 
+	 * @param buffer
+	 *            the buffer to read from
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @return the schedule
+	 */
+	static FlightSchedule read(ByteBuffer buffer, String airportFrom, String airportTo) {
+		String[] table = new String[readVarInt(buffer)];
+		for (int i = 0; i < table.length; i++) {
+			byte[] bytes = new byte[readVarInt(buffer)];
+			buffer.get(bytes);
+			table[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		int size = readVarInt(buffer);
+		int departure = buffer.getInt();
+		FlightSchedule.Builder builder = FlightSchedule.builder(airportFrom, airportTo);
+		for (int i = 0; i < size; i++) {
+			String number = table[readVarInt(buffer)];
+			departure += readVarInt(buffer);
+			builder.add(number, departure, departure + unZigZag(readVarInt(buffer)));
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Writes a non negative integer in groups of 7 bits, lowest first, with the
+	 * highest bit of each byte set if more follow.
+	 */
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Reads an integer written by {@link #writeVarInt(DataOutput, int)}.
+	 */
+	static int readVarInt(ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed variable length integer");
+	}
+
+	/**
+	 * Maps a signed integer to a non negative one, small if its absolute value is.
+	 */
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/**
+	 * Reverses {@link #zigZag(int)}.
+	 */
+	private static int unZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
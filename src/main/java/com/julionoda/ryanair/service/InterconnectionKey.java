@@ -0,0 +1,102 @@
+package com.julionoda.ryanair.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+import lombok.Value;
+
+/**
+ * Represents what interconnections are ranked by: their times, stops and
+ * flights.
+ * 
+ * <p>
+ * Besides ranking them, a key is the cursor of a page of ranked
+ * interconnections, as the next page starts after the key of the last
+ * interconnection of the previous one.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Value
+public class InterconnectionKey {
+	/**
+	 * The departure time of the first leg, in minutes since the epoch.
+	 */
+	private int departure;
+
+	/**
+	 * The arrival time of the last leg, in minutes since the epoch.
+	 */
+	private int arrival;
+
+	/**
+	 * The number of stops.
+	 */
+	private int stops;
+
+	/**
+	 * The flight number and airports of every leg, which tell apart the
+	 * interconnections with the same times and stops, or {@code null} if not
+	 * known yet.
+	 */
+	private String path;
+
+	/**
+	 * Gets the key of an interconnection.
+	 * 
+	 * @param interconnection
+	 *            the interconnection
+	 * @return the key
+	 */
+	public static InterconnectionKey of(Interconnection interconnection) {
+		List<Flight> legs = interconnection.getLegs();
+		return new InterconnectionKey(FlightSchedule.toEpochMinute(legs.get(0).getDepartureDateTime()),
+				FlightSchedule.toEpochMinute(legs.get(legs.size() - 1).getArrivalDateTime()), legs.size() - 1,
+				legs
+						.stream()
+						.map(leg -> leg.getNumber() + ":" + leg.getDepartureAirport() + "-" + leg.getArrivalAirport())
+						.collect(Collectors.joining(",")));
+	}
+
+	/**
+	 * Gets the duration, in minutes.
+	 */
+	public int getDuration() {
+		return arrival - departure;
+	}
+
+	/**
+	 * Encodes the key as an opaque cursor, safe in a URL.
+	 * 
+	 * @return the cursor
+	 */
+	public String toCursor() {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(
+				(departure + "." + arrival + "." + stops + "." + path).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor encoded by {@link #toCursor()}.
+	 * 
+	 * @param cursor
+	 *            the cursor
+	 * @return the key
+	 * @throws IllegalArgumentException
+	 *             if the cursor is not valid
+	 */
+	public static InterconnectionKey fromCursor(String cursor) {
+		String[] fields = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\.", 4);
+		if ((fields.length < 4) || fields[3].isEmpty()) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+		// NumberFormatException is an IllegalArgumentException
+		return new InterconnectionKey(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+				Integer.parseInt(fields[2]), fields[3]);
+	}
+}
@@ -0,0 +1,68 @@
+package com.julionoda.ryanair.service;
+
+import java.util.Comparator;
+
+/**
+ * Orders in which interconnections can be ranked.
+ * 
+ * <p>
+ * Interconnections that rank the same are ordered by arrival, departure, stops
+ * and finally flights, so that no two of them are equal and pages of them
+ * never overlap.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public enum InterconnectionOrder {
+	/**
+	 * Earliest arrival first.
+	 */
+	ARRIVAL(Comparator.comparingInt(InterconnectionKey::getArrival)),
+
+	/**
+	 * Shortest duration first.
+	 */
+	DURATION(Comparator.comparingInt(InterconnectionKey::getDuration)),
+
+	/**
+	 * Fewest stops first.
+	 */
+	STOPS(Comparator.comparingInt(InterconnectionKey::getStops));
+
+	/**
+	 * Comparator of the keys by their times and stops, without their flights.
+	 */
+	private final Comparator<InterconnectionKey> timeComparator;
+
+	/**
+	 * Comparator of the keys.
+	 */
+	private final Comparator<InterconnectionKey> comparator;
+
+	/**
+	 * Class constructor.
+	 */
+	private InterconnectionOrder(Comparator<InterconnectionKey> rank) {
+		timeComparator = rank
+				.thenComparingInt(InterconnectionKey::getArrival)
+				.thenComparingInt(InterconnectionKey::getDeparture)
+				.thenComparingInt(InterconnectionKey::getStops);
+		comparator = timeComparator.thenComparing(InterconnectionKey::getPath);
+	}
+
+	/**
+	 * Gets the comparator of the keys by their times and stops, which may be
+	 * known before the flights of an interconnection.
+	 */
+	public Comparator<InterconnectionKey> getTimeComparator() {
+		return timeComparator;
+	}
+
+	/**
+	 * Gets the comparator of the keys.
+	 */
+	public Comparator<InterconnectionKey> getComparator() {
+		return comparator;
+	}
+}
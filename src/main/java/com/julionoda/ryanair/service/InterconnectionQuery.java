@@ -0,0 +1,90 @@
+package com.julionoda.ryanair.service;
+
+import java.time.LocalDateTime;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Represents a query of interconnections of a batch: the airports, the
+ * timeframe, the maximum number of stops and, if ranked, the order, limit and
+ * cursor of the page.
+ * 
+ * @author jnoda
+ *
+ */
+@Value
+public class InterconnectionQuery {
+	/**
+	 * The departure airport IATA code.
+	 */
+	@NonNull
+	private String departure;
+
+	/**
+	 * The arrival airport IATA code.
+	 */
+	@NonNull
+	private String arrival;
+
+	/**
+	 * The departure datetime.
+	 */
+	@NonNull
+	private LocalDateTime departureDateTime;
+
+	/**
+	 * The arrival datetime.
+	 */
+	@NonNull
+	private LocalDateTime arrivalDateTime;
+
+	/**
+	 * The maximum number of stops.
+	 */
+	private int maxStops;
+
+	/**
+	 * The order of the interconnections, or {@code null} if they are not ranked.
+	 */
+	private InterconnectionOrder order;
+
+	/**
+	 * The maximum number of interconnections, if ranked.
+	 */
+	private int limit;
+
+	/**
+	 * The key of the last interconnection of the previous page, if ranked, or
+	 * {@code null} if none.
+	 */
+	private InterconnectionKey after;
+
+	/**
+	 * Creates a query of every interconnection, not ranked.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param departureDateTime
+	 *            the departure datetime
+	 * @param arrivalDateTime
+	 *            the arrival datetime
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @return the query
+	 */
+	public static InterconnectionQuery of(String departure, String arrival, LocalDateTime departureDateTime,
+			LocalDateTime arrivalDateTime, int maxStops) {
+		return new InterconnectionQuery(departure, arrival, departureDateTime, arrivalDateTime, maxStops, null,
+				Integer.MAX_VALUE, null);
+	}
+
+	/**
+	 * Whether only the best interconnections are found, in order.
+	 */
+	public boolean isRanked() {
+		return order != null;
+	}
+}
@@ -0,0 +1,322 @@
+package com.julionoda.ryanair.service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of every interconnection between two airports over whole months, so
+ * that the queries of the same airports and months, whatever their
+ * timeframe, are answered by filtering the cached ones instead of searching
+ * again.
+ * 
+ * <p>
+ * The interconnections are cached in the background after a query is answered,
+ * as searching the whole months takes longer than the timeframe asked for.
+ * They are kept as an {@link InterconnectionSet}, and invalidated as soon as
+ * any schedule they were found in is refreshed or removed from the schedules
+ * cache.
+ * </p>
+ * 
+ * <p>
+ * An entry may miss the invalidation of a schedule removed from the cache
+ * while the same entry is replaced, and then it is kept until it expires.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Slf4j
+@Component
+public class InterconnectionResultCache implements ScheduleCacheListener {
+	/**
+	 * Whether the cache is enabled.
+	 */
+	@Value("${resultCacheEnabled}")
+	private boolean enabled;
+
+	/**
+	 * Specification of the cache (maximum weight in legs, and expiration).
+	 */
+	@Value("${resultCacheSpec}")
+	private String spec;
+
+	/**
+	 * Maximum number of legs of the interconnections of an entry, which is not
+	 * cached if it has more.
+	 */
+	@Value("${resultCacheMaxLegs}")
+	private int maxLegs;
+
+	/**
+	 * The executor of CPU bound work
+	 */
+	@Autowired
+	private ComputeExecutor computeExecutor;
+
+	/**
+	 * The dictionary of the airports of the cached interconnections.
+	 */
+	@Autowired
+	private AirportDictionary airportDictionary;
+
+	/**
+	 * The interconnections, by airports and months.
+	 */
+	private Cache<ResultKey, Entry> cache;
+
+	/**
+	 * The keys of the entries found in each schedule.
+	 */
+	private final ConcurrentMap<ScheduleKey, Set<ResultKey>> dependents = new ConcurrentHashMap<>();
+
+	/**
+	 * The entries being cached, and whether any of their schedules changed
+	 * meanwhile.
+	 */
+	private final ConcurrentMap<ResultKey, AtomicBoolean> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates the cache, if enabled.
+	 */
+	@PostConstruct
+	public void init() {
+		if (!enabled) {
+			return;
+		}
+
+		cache = Caffeine
+				.from(spec)
+				.<ResultKey, Entry>weigher((key, entry) -> entry.getInterconnections().getLegCount() + 1)
+				// run on the calling thread, so the dependents are updated before the entry
+				// is cached again
+				.executor(Runnable::run)
+				.removalListener((ResultKey key, Entry entry, RemovalCause cause) -> {
+					// a replaced entry depends on the same schedules as the new one
+					if ((entry != null) && (cause != RemovalCause.REPLACED)) {
+						removeDependents(entry.getScheduleKeys(), key);
+					}
+				})
+				.build();
+	}
+
+	/**
+	 * Gets the start of the first of the given months, in minutes since the
+	 * epoch, from which every interconnection over them is cached.
+	 * 
+	 * @param months
+	 *            the months
+	 * @return the start of the months, in minutes since the epoch
+	 */
+	public static int getStart(List<YearMonth> months) {
+		return FlightSchedule.toEpochMinute(months.get(0).atDay(1).atStartOfDay());
+	}
+
+	/**
+	 * Whether the cache is enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Finds the cached interconnections over the given months.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @param months
+	 *            the months
+	 * @return the interconnections, or {@code null} if they are not cached
+	 */
+	public InterconnectionSet find(String departure, String arrival, int maxStops, List<YearMonth> months) {
+		if (!enabled) {
+			return null;
+		}
+
+		Entry entry = cache.getIfPresent(new ResultKey(departure, arrival, maxStops, months));
+		return (entry != null) ? entry.getInterconnections() : null;
+	}
+
+	/**
+	 * Caches in the background every interconnection over the given months,
+	 * unless they are cached or being cached already, or any of their schedules
+	 * is {@link ScheduleService#UNAVAILABLE}. Such a schedule is the fallback of a
+	 * failure, not in the schedules cache, and its flights would be missing from
+	 * the interconnections until they expire. A schedule the external API does
+	 * not have is cached as any other, as it has no flights indeed.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @param months
+	 *            the months
+	 * @param schedules
+	 *            the flights of the schedules the interconnections are found in,
+	 *            by key
+	 * @param search
+	 *            the search of the interconnections over the whole months, given
+	 *            the consumer of each batch of them
+	 */
+	public void cacheAsync(String departure, String arrival, int maxStops, List<YearMonth> months,
+			Map<ScheduleKey, Iterable<Flight>> schedules, Consumer<Consumer<? super List<Interconnection>>> search) {
+		if (!enabled || schedules.values().stream().anyMatch(flights -> flights == ScheduleService.UNAVAILABLE)) {
+			return;
+		}
+
+		Collection<ScheduleKey> scheduleKeys = new ArrayList<>(schedules.keySet());
+		ResultKey key = new ResultKey(departure, arrival, maxStops, months);
+		AtomicBoolean changed = new AtomicBoolean();
+		if ((cache.getIfPresent(key) != null) || (pending.putIfAbsent(key, changed) != null)) {
+			return;
+		}
+
+		// registered before the search, so that no change is missed
+		scheduleKeys.forEach(scheduleKey -> dependents.compute(scheduleKey, (ignored, keys) -> {
+			Set<ResultKey> result = (keys != null) ? keys : ConcurrentHashMap.newKeySet();
+			result.add(key);
+			return result;
+		}));
+		CompletableFuture.runAsync(() -> {
+			boolean cached = false;
+			try {
+				InterconnectionSet.Builder builder = InterconnectionSet.builder(airportDictionary, maxLegs);
+				search.accept(builder::addAll);
+				if (builder.isOverflown()) {
+					log.debug("Not caching the interconnections of {}, more than {} legs", key, maxLegs);
+				} else if (!changed.get()) {
+					cache.put(key, new Entry(builder.build(), scheduleKeys));
+					cached = true;
+				}
+			} catch (RuntimeException e) {
+				log.warn("Failed caching the interconnections of {}", key, e);
+			} finally {
+				if (!cached) {
+					removeDependents(scheduleKeys, key);
+				}
+				pending.remove(key);
+			}
+		}, computeExecutor.getPool());
+	}
+
+	/**
+	 * Invalidates the interconnections found in the schedule, which is refreshed.
+	 */
+	@Override
+	public void put(ScheduleKey key, FlightSchedule schedule) {
+		invalidate(key);
+	}
+
+	/**
+	 * Invalidates the interconnections found in the schedule, which is removed.
+	 */
+	@Override
+	public void remove(ScheduleKey key) {
+		invalidate(key);
+	}
+
+	/**
+	 * Invalidates the interconnections found in a schedule, cached or being
+	 * cached.
+	 */
+	private void invalidate(ScheduleKey scheduleKey) {
+		Set<ResultKey> keys = dependents.remove(scheduleKey);
+		if (keys == null) {
+			return;
+		}
+
+		keys.forEach(key -> {
+			AtomicBoolean changed = pending.get(key);
+			if (changed != null) {
+				changed.set(true);
+			}
+			cache.invalidate(key);
+		});
+	}
+
+	/**
+	 * Removes the key of an entry from the dependents of its schedules.
+	 */
+	private void removeDependents(Collection<ScheduleKey> scheduleKeys, ResultKey key) {
+		scheduleKeys.forEach(scheduleKey -> dependents.computeIfPresent(scheduleKey, (ignored, keys) -> {
+			keys.remove(key);
+			return keys.isEmpty() ? null : keys;
+		}));
+	}
+
+	/**
+	 * Represents the key of an entry: the airports, the maximum number of stops
+	 * and the months.
+	 * 
+	 * @author jnoda
+	 */
+	@lombok.Value
+	static class ResultKey {
+		/**
+		 * The departure airport IATA code.
+		 */
+		private String departure;
+
+		/**
+		 * The arrival airport IATA code.
+		 */
+		private String arrival;
+
+		/**
+		 * The maximum number of stops.
+		 */
+		private int maxStops;
+
+		/**
+		 * The months.
+		 */
+		private List<YearMonth> months;
+	}
+
+	/**
+	 * Represents an entry: the interconnections, and the keys of the schedules
+	 * they were found in.
+	 * 
+	 * @author jnoda
+	 */
+	@lombok.Value
+	static class Entry {
+		/**
+		 * The interconnections.
+		 */
+		private InterconnectionSet interconnections;
+
+		/**
+		 * The keys of the schedules.
+		 */
+		private Collection<ScheduleKey> scheduleKeys;
+	}
+}
@@ -1,6 +1,9 @@
 package com.julionoda.ryanair.service;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import com.julionoda.ryanair.model.Interconnection;
 
@@ -29,4 +32,109 @@ public interface InterconnectionService {
 	 */
 	Iterable<Interconnection> findBy(String departure, String arrival, LocalDateTime departureDateTime,
 			LocalDateTime arrivalDateTime);
+
+	/**
+	 * Finds all the direct or interconnecting flights, with at most the given
+	 * number of stops, departing from the given airport not earlier that the
+	 * specified departure datetime and arriving to a given arrival airport not
+	 * latter than the specified arrival datetime.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param departureDateTime
+	 *            the departure datetime
+	 * @param arrivalDateTime
+	 *            the arrival datetime
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @return an iterable of direct or interconnecting flights
+	 */
+	Iterable<Interconnection> findBy(String departure, String arrival, LocalDateTime departureDateTime,
+			LocalDateTime arrivalDateTime, int maxStops);
+
+	/**
+	 * Finds the same flights as
+	 * {@link #findBy(String, String, LocalDateTime, LocalDateTime, int)}, but hands
+	 * them over to the given consumer in batches as they are found, instead of
+	 * collecting all of them first.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param departureDateTime
+	 *            the departure datetime
+	 * @param arrivalDateTime
+	 *            the arrival datetime
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @param consumer
+	 *            the consumer of each batch of direct or interconnecting flights
+	 */
+	void findBy(String departure, String arrival, LocalDateTime departureDateTime, LocalDateTime arrivalDateTime,
+			int maxStops, Consumer<? super List<Interconnection>> consumer);
+
+	/**
+	 * Finds the same flights as
+	 * {@link #findBy(String, String, LocalDateTime, LocalDateTime, int)}, but
+	 * without blocking the calling thread while the schedules are fetched.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param departureDateTime
+	 *            the departure datetime
+	 * @param arrivalDateTime
+	 *            the arrival datetime
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @return a future of the direct or interconnecting flights
+	 */
+	CompletableFuture<Iterable<Interconnection>> findByAsync(String departure, String arrival,
+			LocalDateTime departureDateTime, LocalDateTime arrivalDateTime, int maxStops);
+
+	/**
+	 * Finds the best flights of
+	 * {@link #findBy(String, String, LocalDateTime, LocalDateTime, int)} in the
+	 * given order, up to a limit, without blocking the calling thread while the
+	 * schedules are fetched.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param departureDateTime
+	 *            the departure datetime
+	 * @param arrivalDateTime
+	 *            the arrival datetime
+	 * @param maxStops
+	 *            the maximum number of stops
+	 * @param order
+	 *            the order of the flights
+	 * @param limit
+	 *            the maximum number of flights
+	 * @param after
+	 *            the key of the last flights of the previous page, to find the
+	 *            following ones, or {@code null} if none
+	 * @return a future of the direct or interconnecting flights, the best first
+	 */
+	CompletableFuture<List<Interconnection>> findTopAsync(String departure, String arrival,
+			LocalDateTime departureDateTime, LocalDateTime arrivalDateTime, int maxStops, InterconnectionOrder order,
+			int limit, InterconnectionKey after);
+
+	/**
+	 * Finds the flights of a batch of queries together, without blocking the
+	 * calling thread while the schedules are fetched: the routes of every query
+	 * are looked up in the same route graph, the schedules shared by several
+	 * queries are fetched once, and identical queries are searched once.
+	 * 
+	 * @param queries
+	 *            the queries
+	 * @return a future of the direct or interconnecting flights of each query, in
+	 *         the order of the queries, the best first if ranked
+	 */
+	List<CompletableFuture<List<Interconnection>>> findAllAsync(List<InterconnectionQuery> queries);
 }
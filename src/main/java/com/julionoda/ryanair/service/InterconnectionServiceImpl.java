@@ -1,216 +1,281 @@
 package com.julionoda.ryanair.service;
 
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Set;
-import java.util.function.Predicate;
-import java.util.stream.StreamSupport;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import com.julionoda.ryanair.model.Flight;
 import com.julionoda.ryanair.model.Interconnection;
 import com.julionoda.ryanair.model.Route;
 
-import lombok.Value;
-
 /**
- * Implementation of {@link InterconnectionService}.
+ * Implementation of {@link InterconnectionService} that joins the flights of
+ * the routes through each connecting airport, up to one stop, or does a
+ * {@link TimeDependentSearch} over the routes of every path with more stops.
  * 
  * @author jnoda
  *
  */
 @Service
-public class InterconnectionServiceImpl implements InterconnectionService {
+@ConditionalOnProperty(name = "interconnectionService", havingValue = "join", matchIfMissing = true)
+public class InterconnectionServiceImpl extends AbstractInterconnectionService {
 	/**
-	 * The route service
+	 * Minimum time between the arrival of a flight and the departure of the next
+	 * one, in minutes.
 	 */
-	@Autowired
-	private RouteService routeService;
+	static final int MIN_CONNECTION_MINUTES = 2 * 60;
 
 	/**
-	 * The schedule service
+	 * The dictionary of the airports of the searches
 	 */
 	@Autowired
-	private ScheduleService scheduleService;
+	private AirportDictionary airportDictionary;
 
 	@Override
-	public Iterable<Interconnection> findBy(String departure, String arrival, LocalDateTime departureDateTime,
-			LocalDateTime arrivalDateTime) {
+	SearchPlan plan(RouteGraph routeGraph, String departure, String arrival, List<YearMonth> months,
+			int minDeparture, int maxArrival, int maxStops,
+			Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched) {
+		FetchPlan.Builder fetchPlan = FetchPlan.builder(departure, arrival, months, minDeparture, maxArrival);
+		List<RouteTuple> routeTuples = Collections.emptyList();
+		List<Route> routes = Collections.emptyList();
+		if (maxStops > 1) {
+			// every route in a path with that many stops
+			routes = routeGraph.findRoutes(departure, arrival, maxStops + 1);
+			routes.forEach(fetchPlan::addLeg);
+		} else {
+			// the direct route and the routes through the airports connected to both ends
+			if (maxStops == 1) {
+				routeTuples = routeGraph
+						.findConnectingAirports(departure, arrival)
+						.stream()
+						// map them to a tuple of routes
+						.map(airport -> new RouteTuple(routeGraph.getRoute(departure, airport),
+								routeGraph.getRoute(airport, arrival)))
+						.collect(toList());
+			}
+			Route directRoute = routeGraph.getRoute(departure, arrival);
+			if (directRoute != null) {
+				fetchPlan.addLeg(directRoute);
+			}
+			routeTuples.forEach(routeTuple -> fetchPlan
+					.addLeg(routeTuple.getStartingRoute())
+					.addLeg(routeTuple.getNextRoute()));
+		}
 
-		List<Interconnection> results = new ArrayList<>();
+		boolean connected = !routes.isEmpty() || !routeTuples.isEmpty()
+				|| (routeGraph.getRoute(departure, arrival) != null);
 
-		// find direct flights
-		results.addAll(findFlights(departure, arrival, departureDateTime, arrivalDateTime)
-				.stream()
-				// map the results to an interconnection object
-				.map(f1 -> new Interconnection(Collections.singletonList(f1)))
-				// collect them to add to the results
-				.collect(toList()));
-
-		// find eligible routes
-		Set<Route> eligibleRoutes = StreamSupport
-				.stream(routeService.findAll().spliterator(), true)
-				.filter(isEligibleRoute(departure, arrival))
-				.collect(toSet());
-
-		// find interconnecting flights
-		eligibleRoutes
-				.stream()
-				// join routes in a list by connecting airport
-				.flatMap(r1 -> eligibleRoutes
-						.stream()
-						.filter(r2 -> r1.getAirportTo().equals(r2.getAirportFrom()))
-						// map them to a tuple
-						.map(r2 -> new RouteTuple(r1, r2)))
-				.forEach(routeTuple -> {
-					// we keep this collection to avoid multiple calls to the schedule service
-					// during cross join with flatMap
-					Collection<Flight> connectingFlights = findFlights(routeTuple.getNextRoute(), departureDateTime,
-							arrivalDateTime);
-
-					results.addAll(findFlights(routeTuple.getStartingRoute(), departureDateTime, arrivalDateTime)
-							.stream()
-							// cross join flights from the first route with flights from the second
-							.flatMap(f1 -> connectingFlights
-									.stream()
-									// use only valid connections
-									.filter(isValidConnectionWith(f1))
-									// map the results to an interconnection object
-									.map(f2 -> new Interconnection(Arrays.asList(f1, f2))))
-							// collect them to add to the results
-							.collect(toList()));
-				});
-
-		return results;
+		// fetch all the schedules at once, instead of one after the other, to use
+		// each of them as soon as it is available
+		FetchPlan keys = fetchPlan.build();
+		return new SearchPlan(departure, arrival, maxStops, months, minDeparture, maxArrival, connected, routeTuples,
+				routes, keys, scheduleFetcher.fetchAllAsync(keys.getScheduleKeys(), fetched));
 	}
 
 	/**
-	 * Determines if a route is eligible to be used as part of a travel route
-	 * between the given departure and arrival airports.
+	 * Searches the interconnections of a plan, waiting for each schedule when it
+	 * is needed.
 	 * 
-	 * @param departure
-	 *            the departure airport IATA code
-	 * @param arrival
-	 *            the arrival airport IATA code
-	 * @return true if the route is eligible; false, otherwise
+	 * <p>
+	 * Up to one stop, the flights of the direct route, and the connections between
+	 * the flights of the routes through each connecting airport, are found. With
+	 * more stops, a {@link TimeDependentSearch} is done over the schedules of every
+	 * route that can be part of an interconnection, instead of joining the flights
+	 * of every combination of routes.
+	 * </p>
+	 * 
+	 * @param plan
+	 *            the plan of the search
+	 * @param filter
+	 *            the filter of the interconnections worth creating
+	 * @param consumer
+	 *            the consumer of each batch of interconnections
+	 * @return the number of flights examined
 	 */
-	static Predicate<? super Route> isEligibleRoute(String departure, String arrival) {
-		// TODO: In the real data, there are routes with empty (not null) connecting
-		// airports. Should those be included too?
-		return route -> (route.getConnectingAirport() == null)
-				&& (departure.equals(route.getAirportFrom()) || arrival.equals(route.getAirportTo()));
+	@Override
+	int search(SearchPlan plan, InterconnectionSet.Filter filter, Consumer<? super List<Interconnection>> consumer) {
+		FetchPlan fetchPlan = plan.getFetchPlan();
+		int minDeparture = plan.getMinDeparture();
+		int maxArrival = plan.getMaxArrival();
+		Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> schedules = plan.getSchedules();
+
+		if (plan.getMaxStops() > 1) {
+			List<FlightSchedule> flights = plan
+					.getRoutes()
+					.stream()
+					.map(route -> findFlights(route, fetchPlan.getKeys(route), minDeparture, maxArrival, schedules))
+					.collect(toList());
+			new TimeDependentSearch(airportDictionary, plan.getDeparture(), plan.getArrival(), plan.getMaxStops() + 1,
+					flights).search(filter, consumer);
+			return flights.stream().mapToInt(FlightSchedule::size).sum();
+		}
+
+		// find direct flights
+		FlightSchedule directFlights = findFlights(plan.getDeparture(), plan.getArrival(),
+				fetchPlan.getKeys(plan.getDeparture(), plan.getArrival()), minDeparture, maxArrival, schedules);
+		List<Interconnection> directResults = new ArrayList<>(directFlights.size());
+		for (int i = 0; i < directFlights.size(); i++) {
+			// map the results to an interconnection object
+			if (filter.accept(directFlights.getDeparture(i), directFlights.getArrival(i), 0)) {
+				directResults.add(new Interconnection(Collections.singletonList(directFlights.toFlight(i))));
+			}
+		}
+		consumer.accept(directResults);
+		int candidates = directFlights.size();
+
+		// find interconnecting flights through the airports connected to both ends
+		for (RouteTuple routeTuple : plan.getRouteTuples()) {
+			Route startingRoute = routeTuple.getStartingRoute();
+			Route nextRoute = routeTuple.getNextRoute();
+			FlightSchedule startingFlights = findFlights(startingRoute, fetchPlan.getKeys(startingRoute),
+					minDeparture, maxArrival, schedules);
+			FlightSchedule connectingFlights = findFlights(nextRoute, fetchPlan.getKeys(nextRoute), minDeparture,
+					maxArrival, schedules);
+			consumer.accept(findConnections(startingFlights, connectingFlights, filter));
+			candidates += startingFlights.size() + connectingFlights.size();
+		}
+		return candidates;
 	}
 
 	/**
-	 * Determines if a flight departs not earlier than the given departure datetime
-	 * and arrive not after the given arrival datetime.
+	 * Finds the valid connections between the flights of a starting route and the
+	 * flights of the next route. A connection is valid if the connecting flight
+	 * departs more than {@value #MIN_CONNECTION_MINUTES} minutes after the
+	 * arrival.
 	 * 
-	 * @param departureDateTime
-	 *            the departure date and time
-	 * @param arrivalDateTime
-	 *            the arrival date and time
-	 * @return true if the flight is in the desired timeframe; false, otherwise.
+	 * <p>
+	 * Instead of checking every pair of flights, the valid connections of each
+	 * starting flight are all the connecting flights from the first one departing
+	 * late enough, found with a binary search, as the schedules are sorted by
+	 * departure. Only the flights that are part of a connection are turned into
+	 * {@link Flight} objects, and each of them only once; the starting ones only
+	 * if the filter accepts any of their connections.
+	 * </p>
+	 * 
+	 * @param startingFlights
+	 *            the flights of the starting route
+	 * @param connectingFlights
+	 *            the flights of the next route
+	 * @param filter
+	 *            the filter of the interconnections worth creating, which is only
+	 *            read meanwhile, from several threads
+	 * @return a list of interconnections, grouped by starting flight and then
+	 *         sorted by departure of the connecting flight
 	 */
-	static Predicate<? super Flight> isInTimeframe(LocalDateTime departureDateTime, LocalDateTime arrivalDateTime) {
-		return flight -> !flight.getDepartureDateTime().isBefore(departureDateTime)
-				&& !flight.getArrivalDateTime().isAfter(arrivalDateTime);
+	List<Interconnection> findConnections(FlightSchedule startingFlights, FlightSchedule connectingFlights,
+			InterconnectionSet.Filter filter) {
+		List<Integer> starting = new ArrayList<>();
+		int minArrival = Integer.MAX_VALUE;
+		for (int i = 0; i < startingFlights.size(); i++) {
+			if (findFirstValidConnection(connectingFlights, startingFlights.getArrival(i)) < connectingFlights.size()) {
+				starting.add(i);
+				minArrival = Math.min(minArrival, startingFlights.getArrival(i));
+			}
+		}
+		if (starting.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// every connecting flight after the first valid connection of the earliest
+		// arrival is part of at least one interconnection
+		int firstConnecting = findFirstValidConnection(connectingFlights, minArrival);
+		Flight[] connecting = new Flight[connectingFlights.size()];
+		for (int j = firstConnecting; j < connecting.length; j++) {
+			connecting[j] = connectingFlights.toFlight(j);
+		}
+
+		return computeExecutor.compute(starting, indexes -> indexes.flatMap(i -> {
+			int departure = startingFlights.getDeparture(i);
+			int first = findFirstValidConnection(connectingFlights, startingFlights.getArrival(i));
+			List<Interconnection> result = new ArrayList<>();
+			Flight f1 = null;
+			for (int j = first; j < connecting.length; j++) {
+				if (filter.accept(departure, connectingFlights.getArrival(j), 1)) {
+					if (f1 == null) {
+						f1 = startingFlights.toFlight(i);
+					}
+					result.add(new Interconnection(Arrays.asList(f1, connecting[j])));
+				}
+			}
+			return result.stream();
+		}).collect(toList()));
 	}
 
 	/**
-	 * Determines if a flight is a valid connection to another flight. Checks that
-	 * the difference between the arrival and the departure is at least 2 hours.
+	 * Finds the first valid connection to a flight arriving at the given time.
 	 * 
-	 * @param flight
-	 *            the starting flight
-	 * @return true if the connection is valid; false, otherwise
+	 * @param connectingFlights
+	 *            the connecting flights
+	 * @param arrival
+	 *            the arrival of the starting flight, in minutes since the epoch
+	 * @return the index of the first valid connection, or the size of the schedule
+	 *         if there is none
 	 */
-	static Predicate<? super Flight> isValidConnectionWith(Flight flight) {
-		return f2 -> f2.getDepartureDateTime().isAfter(flight.getArrivalDateTime().plusHours(2));
+	static int findFirstValidConnection(FlightSchedule connectingFlights, int arrival) {
+		return connectingFlights.findFirstDepartureAfter(arrival + MIN_CONNECTION_MINUTES);
 	}
 
 	/**
 	 * Finds all the flights that departs and arrives from the given airports, also
-	 * that depart not earlier than the given departure datetime and arrive not
-	 * after the given arrival datetime.
+	 * that depart not earlier than the given departure time and arrive not after
+	 * the given arrival time.
 	 * 
 	 * @param departure
 	 *            the departure airport
 	 * @param arrival
 	 *            the arrival airport
-	 * @param departureDateTime
-	 *            the departure date and time
-	 * @param arrivalDateTime
-	 *            the arrival date and time
-	 * @return a set of flights with the desired restrictions
+	 * @param keys
+	 *            the keys of the schedules to look the flights in, in
+	 *            chronological order
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @param schedules
+	 *            the schedules being fetched
+	 * @return a schedule of flights with the desired restrictions
 	 */
-	Collection<Flight> findFlights(String departure, String arrival, LocalDateTime departureDateTime,
-			LocalDateTime arrivalDateTime) {
-		List<Flight> result = new ArrayList<>();
-
-		// the difference between departureDate and arrival date can span several months
-		LocalDate processingDate = departureDateTime.toLocalDate();
-		do {
-			result
-					.addAll(StreamSupport
-							.stream(scheduleService
-									.findFlights(departure, arrival, processingDate.getYear(),
-											processingDate.getMonthValue())
-									.spliterator(), true)
-							.filter(isInTimeframe(departureDateTime, arrivalDateTime))
-							.collect(toList()));
-			processingDate = processingDate.plusMonths(1);
-		} while ((processingDate.getYear() <= arrivalDateTime.getYear())
-				&& (processingDate.getMonthValue() <= arrivalDateTime.getMonthValue()));
-
-		return result;
+	static FlightSchedule findFlights(String departure, String arrival, List<ScheduleKey> keys, int minDeparture,
+			int maxArrival, Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> schedules) {
+		List<FlightSchedule> result = new ArrayList<>(keys.size());
+
+		keys.forEach(key -> result.add(FlightSchedule
+				.of(departure, arrival, ScheduleFetcher.join(schedules.get(key)))
+				.filter(minDeparture, maxArrival)));
+
+		return FlightSchedule.concat(departure, arrival, result);
 	}
 
 	/**
 	 * Finds all the flights on the given route that depart not earlier than the
-	 * given departure datetime and arrive not after the given arrival datetime.
+	 * given departure time and arrive not after the given arrival time.
 	 * 
 	 * @param route
 	 *            the route
-	 * @param departureDateTime
-	 *            the departure date and time
-	 * @param arrivalDateTime
-	 *            the arrival date and time
-	 * @return a set of flights with the desired restrictions
-	 */
-	Collection<Flight> findFlights(Route route, LocalDateTime departureDateTime, LocalDateTime arrivalDateTime) {
-		return findFlights(route.getAirportFrom(), route.getAirportTo(), departureDateTime, arrivalDateTime);
-	}
-
-	/**
-	 * Represents a tuple of routes.
-	 * 
-	 * <p>
-	 * This is an inner class because it is only used here and is not relevant to
-	 * the rest of the application.
-	 * </p>
-	 * 
-	 * @author jnoda
+	 * @param keys
+	 *            the keys of the schedules to look the flights in, in
+	 *            chronological order
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @param schedules
+	 *            the schedules being fetched
+	 * @return a schedule of flights with the desired restrictions
 	 */
-	@Value
-	private static class RouteTuple {
-		/**
-		 * The starting route.
-		 */
-		private Route startingRoute;
-
-		/**
-		 * The next route.
-		 */
-		private Route nextRoute;
+	static FlightSchedule findFlights(Route route, List<ScheduleKey> keys, int minDeparture, int maxArrival,
+			Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> schedules) {
+		return findFlights(route.getAirportFrom(), route.getAirportTo(), keys, minDeparture, maxArrival, schedules);
 	}
 }
@@ -0,0 +1,338 @@
+package com.julionoda.ryanair.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+import lombok.NonNull;
+
+/**
+ * Compact, immutable set of interconnections, which can be filtered by a
+ * narrower timeframe without searching again.
+ * 
+ * <p>
+ * As in {@link FlightSchedule}, the legs are stored as a structure of arrays,
+ * with airports as identifiers of an {@link AirportDictionary} and times as
+ * minutes since the epoch, and {@link Interconnection} objects are only created
+ * for the ones that are returned.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class InterconnectionSet {
+	/**
+	 * The dictionary of the airports.
+	 */
+	private final AirportDictionary dictionary;
+
+	/**
+	 * Index of the first leg of each interconnection, and the number of legs at
+	 * the end.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Flight numbers of the legs.
+	 */
+	private final String[] numbers;
+
+	/**
+	 * Departure airport identifiers of the legs.
+	 */
+	private final short[] airportsFrom;
+
+	/**
+	 * Arrival airport identifiers of the legs.
+	 */
+	private final short[] airportsTo;
+
+	/**
+	 * Departure times of the legs, in minutes since the epoch.
+	 */
+	private final int[] departures;
+
+	/**
+	 * Arrival times of the legs, in minutes since the epoch.
+	 */
+	private final int[] arrivals;
+
+	/**
+	 * Class constructor.
+	 */
+	private InterconnectionSet(AirportDictionary dictionary, int[] offsets, String[] numbers, short[] airportsFrom,
+			short[] airportsTo, int[] departures, int[] arrivals) {
+		this.dictionary = dictionary;
+		this.offsets = offsets;
+		this.numbers = numbers;
+		this.airportsFrom = airportsFrom;
+		this.airportsTo = airportsTo;
+		this.departures = departures;
+		this.arrivals = arrivals;
+	}
+
+	/**
+	 * Creates a builder of a set.
+	 * 
+	 * @param dictionary
+	 *            the dictionary of the airports, which are added to it if not
+	 *            known yet
+	 * @param maxLegs
+	 *            the maximum number of legs of all the interconnections, beyond
+	 *            which the builder overflows
+	 * @return a new builder
+	 */
+	public static Builder builder(@NonNull AirportDictionary dictionary, int maxLegs) {
+		return new Builder(dictionary, maxLegs);
+	}
+
+	/**
+	 * Gets the number of interconnections.
+	 */
+	public int size() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Gets the number of legs of all the interconnections.
+	 */
+	public int getLegCount() {
+		return departures.length;
+	}
+
+	/**
+	 * Finds the interconnections that depart and arrive within the given
+	 * timeframe.
+	 * 
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @return the interconnections within the timeframe
+	 */
+	public List<Interconnection> filter(int minDeparture, int maxArrival) {
+		List<Interconnection> result = new ArrayList<>();
+		forEach(minDeparture, maxArrival, Filter.ALL, result::add);
+		return result;
+	}
+
+	/**
+	 * Performs an action for each interconnection that departs and arrives
+	 * within the given timeframe, and is accepted by a filter. Only those
+	 * interconnections are created, so the filter is cheaper than the action.
+	 * 
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @param filter
+	 *            the filter, checked just before each action
+	 * @param action
+	 *            the action
+	 */
+	public void forEach(int minDeparture, int maxArrival, Filter filter, Consumer<Interconnection> action) {
+		for (int i = 0; i < size(); i++) {
+			int first = offsets[i];
+			int last = offsets[i + 1] - 1;
+			// the legs in between depart and arrive within the first and the last ones
+			if ((departures[first] >= minDeparture) && (arrivals[last] <= maxArrival)
+					&& filter.accept(departures[first], arrivals[last], last - first)) {
+				List<Flight> legs = new ArrayList<>(last - first + 1);
+				for (int leg = first; leg <= last; leg++) {
+					legs.add(new Flight(numbers[leg], dictionary.getCode(airportsFrom[leg]),
+							dictionary.getCode(airportsTo[leg]), FlightSchedule.toLocalDateTime(departures[leg]),
+							FlightSchedule.toLocalDateTime(arrivals[leg])));
+				}
+				action.accept(new Interconnection(legs));
+			}
+		}
+	}
+
+	/**
+	 * Filter of the interconnections of a set, by their times and stops.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	@FunctionalInterface
+	public interface Filter {
+		/**
+		 * Filter accepting every interconnection.
+		 */
+		Filter ALL = (departure, arrival, stops) -> true;
+
+		/**
+		 * Whether an interconnection is accepted.
+		 * 
+		 * @param departure
+		 *            the departure time of its first leg, in minutes since the epoch
+		 * @param arrival
+		 *            the arrival time of its last leg, in minutes since the epoch
+		 * @param stops
+		 *            its number of stops
+		 * @return whether it is accepted
+		 */
+		boolean accept(int departure, int arrival, int stops);
+	}
+
+	/**
+	 * Builder for {@link InterconnectionSet}.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	public static class Builder {
+		/**
+		 * The dictionary of the airports.
+		 */
+		private final AirportDictionary dictionary;
+
+		/**
+		 * Maximum number of legs.
+		 */
+		private final int maxLegs;
+
+		/**
+		 * Index of the first leg of each interconnection.
+		 */
+		private int[] offsets = new int[16];
+
+		/**
+		 * Flight numbers of the legs.
+		 */
+		private String[] numbers = new String[32];
+
+		/**
+		 * Departure airport identifiers of the legs.
+		 */
+		private short[] airportsFrom = new short[32];
+
+		/**
+		 * Arrival airport identifiers of the legs.
+		 */
+		private short[] airportsTo = new short[32];
+
+		/**
+		 * Departure times of the legs.
+		 */
+		private int[] departures = new int[32];
+
+		/**
+		 * Arrival times of the legs.
+		 */
+		private int[] arrivals = new int[32];
+
+		/**
+		 * Number of interconnections added.
+		 */
+		private int size;
+
+		/**
+		 * Number of legs added.
+		 */
+		private int legCount;
+
+		/**
+		 * Whether more legs than the maximum were added.
+		 */
+		private boolean overflown;
+
+		/**
+		 * Class constructor.
+		 */
+		private Builder(AirportDictionary dictionary, int maxLegs) {
+			this.dictionary = dictionary;
+			this.maxLegs = maxLegs;
+		}
+
+		/**
+		 * Adds interconnections, unless the builder overflows.
+		 * 
+		 * @param interconnections
+		 *            the interconnections
+		 * @return this builder
+		 */
+		public Builder addAll(List<Interconnection> interconnections) {
+			for (Interconnection interconnection : interconnections) {
+				add(interconnection);
+			}
+			return this;
+		}
+
+		/**
+		 * Adds an interconnection, unless the builder overflows.
+		 * 
+		 * @param interconnection
+		 *            the interconnection
+		 * @return this builder
+		 */
+		public Builder add(Interconnection interconnection) {
+			List<Flight> legs = interconnection.getLegs();
+			if (overflown || (legCount + legs.size() > maxLegs)) {
+				// not worth keeping, and the memory is released at once
+				overflown = true;
+				offsets = null;
+				numbers = null;
+				airportsFrom = null;
+				airportsTo = null;
+				departures = null;
+				arrivals = null;
+				return this;
+			}
+
+			if (size + 1 >= offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			if (legCount + legs.size() > departures.length) {
+				int capacity = Math.max(departures.length * 2, legCount + legs.size());
+				numbers = Arrays.copyOf(numbers, capacity);
+				airportsFrom = Arrays.copyOf(airportsFrom, capacity);
+				airportsTo = Arrays.copyOf(airportsTo, capacity);
+				departures = Arrays.copyOf(departures, capacity);
+				arrivals = Arrays.copyOf(arrivals, capacity);
+			}
+
+			offsets[size++] = legCount;
+			for (Flight flight : legs) {
+				numbers[legCount] = flight.getNumber();
+				airportsFrom[legCount] = dictionary.getId(flight.getDepartureAirport());
+				airportsTo[legCount] = dictionary.getId(flight.getArrivalAirport());
+				departures[legCount] = FlightSchedule.toEpochMinute(flight.getDepartureDateTime());
+				arrivals[legCount] = FlightSchedule.toEpochMinute(flight.getArrivalDateTime());
+				legCount++;
+			}
+			return this;
+		}
+
+		/**
+		 * Whether more legs than the maximum were added, so there is nothing to
+		 * build.
+		 */
+		public boolean isOverflown() {
+			return overflown;
+		}
+
+		/**
+		 * Builds the set.
+		 * 
+		 * @return a new set
+		 * @throws IllegalStateException
+		 *             if the builder overflowed
+		 */
+		public InterconnectionSet build() {
+			if (overflown) {
+				throw new IllegalStateException("More than " + maxLegs + " legs");
+			}
+
+			int[] resultOffsets = Arrays.copyOf(offsets, size + 1);
+			resultOffsets[size] = legCount;
+			return new InterconnectionSet(dictionary, resultOffsets, Arrays.copyOf(numbers, legCount),
+					Arrays.copyOf(airportsFrom, legCount), Arrays.copyOf(airportsTo, legCount),
+					Arrays.copyOf(departures, legCount), Arrays.copyOf(arrivals, legCount));
+		}
+	}
+}
@@ -0,0 +1,328 @@
+package com.julionoda.ryanair.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Decodes the monthly schedules of the external schedules API straight into a
+ * {@link FlightSchedule}, reading the JSON as a stream of tokens.
+ * 
+ * <p>
+ * Unlike binding the payload to {@link ScheduleServiceApiImpl.MonthlySchedule}
+ * and extracting its flights afterwards, no object is created for the month,
+ * the days, or the flights: only the flight numbers, and the times as minutes
+ * since the start of the month, are kept until the schedule is built. Unknown
+ * properties are skipped.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+final class MonthlyScheduleDecoder {
+	/**
+	 * Factory of the parsers, thread safe.
+	 */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * The year of the schedule, which is not part of the payload.
+	 */
+	private final int year;
+
+	/**
+	 * The month of the schedule, or 0 until read.
+	 */
+	private int month;
+
+	/**
+	 * Flight numbers.
+	 */
+	private String[] numbers = new String[64];
+
+	/**
+	 * Days of the month of the flights.
+	 */
+	private int[] days = new int[64];
+
+	/**
+	 * Departure times, in minutes since the start of the day.
+	 */
+	private int[] departures = new int[64];
+
+	/**
+	 * Arrival times, in minutes since the start of the departure day.
+	 */
+	private int[] arrivals = new int[64];
+
+	/**
+	 * Number of flights read.
+	 */
+	private int size;
+
+	/**
+	 * Class constructor.
+	 */
+	private MonthlyScheduleDecoder(int year) {
+		this.year = year;
+	}
+
+	/**
+	 * Decodes a monthly schedule.
+	 * 
+	 * @param input
+	 *            the JSON payload
+	 * @param year
+	 *            the year of the schedule
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @return the flights of the schedule
+	 * @throws IOException
+	 *             if the payload cannot be read, or is not a valid schedule
+	 */
+	static FlightSchedule decode(InputStream input, int year, String airportFrom, String airportTo)
+			throws IOException {
+		try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+			return decode(parser, year, airportFrom, airportTo);
+		}
+	}
+
+	/**
+	 * Decodes a monthly schedule.
+	 * 
+	 * @param input
+	 *            the JSON payload
+	 * @param year
+	 *            the year of the schedule
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @return the flights of the schedule
+	 * @throws IOException
+	 *             if the payload is not a valid schedule
+	 */
+	static FlightSchedule decode(byte[] input, int year, String airportFrom, String airportTo) throws IOException {
+		try (JsonParser parser = JSON_FACTORY.createParser(input)) {
+			return decode(parser, year, airportFrom, airportTo);
+		}
+	}
+
+	/**
+	 * Decodes a monthly schedule from the current token of a parser.
+	 * 
+	 * @param parser
+	 *            the parser, at the start of the schedule object or before it
+	 * @param year
+	 *            the year of the schedule
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @return the flights of the schedule
+	 * @throws IOException
+	 *             if the payload is not a valid schedule
+	 */
+	static FlightSchedule decode(JsonParser parser, int year, String airportFrom, String airportTo)
+			throws IOException {
+		MonthlyScheduleDecoder decoder = new MonthlyScheduleDecoder(year);
+		decoder.readMonthlySchedule(parser);
+		return decoder.build(parser, airportFrom, airportTo);
+	}
+
+	/**
+	 * Reads the monthly schedule object.
+	 */
+	private void readMonthlySchedule(JsonParser parser) throws IOException {
+		expect(parser, (parser.currentToken() == null) ? parser.nextToken() : parser.currentToken(),
+				JsonToken.START_OBJECT);
+		boolean hasDays = false;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("month".equals(field)) {
+				month = readInt(parser, field);
+			} else if ("days".equals(field)) {
+				expect(parser, value, JsonToken.START_ARRAY);
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					readDailySchedule(parser);
+				}
+				hasDays = true;
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if (month == 0) {
+			throw new JsonParseException(parser, "Missing property 'month' of the monthly schedule");
+		}
+		if (!hasDays) {
+			throw new JsonParseException(parser, "Missing property 'days' of the monthly schedule");
+		}
+	}
+
+	/**
+	 * Reads a daily schedule object.
+	 */
+	private void readDailySchedule(JsonParser parser) throws IOException {
+		expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+		int day = 0;
+		int first = size;
+		boolean hasFlights = false;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken value = parser.nextToken();
+			if ("day".equals(field)) {
+				day = readInt(parser, field);
+			} else if ("flights".equals(field)) {
+				expect(parser, value, JsonToken.START_ARRAY);
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					readScheduledFlight(parser);
+				}
+				hasFlights = true;
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if (day == 0) {
+			throw new JsonParseException(parser, "Missing property 'day' of a daily schedule");
+		}
+		if (!hasFlights) {
+			throw new JsonParseException(parser, "Missing property 'flights' of a daily schedule");
+		}
+		// the day may come after the flights
+		Arrays.fill(days, first, size, day);
+	}
+
+	/**
+	 * Reads a scheduled flight object.
+	 */
+	private void readScheduledFlight(JsonParser parser) throws IOException {
+		expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+		String number = null;
+		int departureTime = -1;
+		int arrivalTime = -1;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if ("number".equals(field)) {
+				number = parser.getValueAsString();
+			} else if ("departureTime".equals(field)) {
+				departureTime = readSecondOfDay(parser, field);
+			} else if ("arrivalTime".equals(field)) {
+				arrivalTime = readSecondOfDay(parser, field);
+			} else {
+				parser.skipChildren();
+			}
+		}
+
+		if ((number == null) || (departureTime < 0) || (arrivalTime < 0)) {
+			throw new JsonParseException(parser,
+					"Missing property 'number', 'departureTime' or 'arrivalTime' of a scheduled flight");
+		}
+
+		if (size == numbers.length) {
+			numbers = Arrays.copyOf(numbers, size * 2);
+			days = Arrays.copyOf(days, size * 2);
+			departures = Arrays.copyOf(departures, size * 2);
+			arrivals = Arrays.copyOf(arrivals, size * 2);
+		}
+		numbers[size] = number;
+		departures[size] = departureTime / 60;
+		// it arrives the next day if it does not arrive after the departure time
+		arrivals[size] = (arrivalTime > departureTime) ? arrivalTime / 60
+				: arrivalTime / 60 + FlightSchedule.MINUTES_PER_DAY;
+		size++;
+	}
+
+	/**
+	 * Builds the schedule with the flights read.
+	 */
+	private FlightSchedule build(JsonParser parser, String airportFrom, String airportTo) throws IOException {
+		YearMonth yearMonth;
+		try {
+			yearMonth = YearMonth.of(year, month);
+		} catch (DateTimeException e) {
+			throw new JsonParseException(parser, "Invalid month of the monthly schedule: " + month, e);
+		}
+		// minutes since the epoch of the day before the first of the month, as days
+		// start at 1
+		int start = FlightSchedule.toEpochMinute(yearMonth.atDay(1).atStartOfDay()) - FlightSchedule.MINUTES_PER_DAY;
+
+		FlightSchedule.Builder builder = FlightSchedule.builder(airportFrom, airportTo);
+		for (int i = 0; i < size; i++) {
+			if (!yearMonth.isValidDay(days[i])) {
+				throw new JsonParseException(parser, "Invalid day of the monthly schedule: " + days[i]);
+			}
+			int dayStart = start + days[i] * FlightSchedule.MINUTES_PER_DAY;
+			builder.add(numbers[i], dayStart + departures[i], dayStart + arrivals[i]);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Checks the token is the expected one.
+	 */
+	private static void expect(JsonParser parser, JsonToken token, JsonToken expected) throws IOException {
+		if (token != expected) {
+			throw new JsonParseException(parser, "Expected " + expected + " but was " + token);
+		}
+	}
+
+	/**
+	 * Reads a positive integer, given as a number or as a string.
+	 */
+	private static int readInt(JsonParser parser, String field) throws IOException {
+		int value = parser.getValueAsInt(0);
+		if (value <= 0) {
+			throw new JsonParseException(parser, "Invalid property '" + field + "': " + parser.getText());
+		}
+		return value;
+	}
+
+	/**
+	 * Reads a time as seconds since the start of the day, without creating a
+	 * {@link LocalTime} for the usual HH:mm format.
+	 */
+	private static int readSecondOfDay(JsonParser parser, String field) throws IOException {
+		String text = parser.getValueAsString();
+		if (text == null) {
+			throw new JsonParseException(parser, "Invalid property '" + field + "': " + parser.getText());
+		}
+
+		if ((text.length() == 5) && (text.charAt(2) == ':')) {
+			int hour = digit(text, 0) * 10 + digit(text, 1);
+			int minute = digit(text, 3) * 10 + digit(text, 4);
+			if ((hour < 24) && (minute < 60)) {
+				return hour * 3600 + minute * 60;
+			}
+		}
+
+		// any other format accepted by LocalTime, such as HH:mm:ss
+		try {
+			return LocalTime.parse(text).toSecondOfDay();
+		} catch (DateTimeException e) {
+			throw new JsonParseException(parser, "Invalid property '" + field + "': " + text, e);
+		}
+	}
+
+	/**
+	 * Gets the value of a decimal digit, or a value too big for any time field if
+	 * it is not a digit.
+	 */
+	private static int digit(String text, int index) {
+		int digit = text.charAt(index) - '0';
+		return ((digit >= 0) && (digit <= 9)) ? digit : 100;
+	}
+}
@@ -0,0 +1,137 @@
+package com.julionoda.ryanair.service;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Run of an action over a sequence of items in the background, at a limited
+ * rate, such as the calls of a sweep over the external API.
+ * 
+ * <p>
+ * The next item is scheduled on a {@link TaskScheduler} once the previous one
+ * is done, after a pause, instead of sleeping in between, so the run holds no
+ * thread meanwhile, and does not delay the other scheduled tasks. The items the
+ * action skips are not paced.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Slf4j
+public class PacedRun<T> {
+	/**
+	 * The scheduler of the items.
+	 */
+	private final TaskScheduler scheduler;
+
+	/**
+	 * The items left.
+	 */
+	private final Iterator<? extends T> items;
+
+	/**
+	 * The action, which tells whether it did any work on an item, or skipped it.
+	 */
+	private final Predicate<? super T> action;
+
+	/**
+	 * The pause after each item worked on, in milliseconds.
+	 */
+	private final long pause;
+
+	/**
+	 * The consumer of the number of items worked on, once the run is done.
+	 */
+	private final IntConsumer onDone;
+
+	/**
+	 * The number of items worked on so far.
+	 */
+	private int count;
+
+	/**
+	 * Whether the run is done.
+	 */
+	private volatile boolean done;
+
+	/**
+	 * Class constructor.
+	 */
+	private PacedRun(TaskScheduler scheduler, Iterator<? extends T> items, Predicate<? super T> action, long pause,
+			IntConsumer onDone) {
+		this.scheduler = scheduler;
+		this.items = items;
+		this.action = action;
+		this.pause = pause;
+		this.onDone = onDone;
+	}
+
+	/**
+	 * Starts a run on the calling thread, up to the first item worked on.
+	 * 
+	 * @param scheduler
+	 *            the scheduler of the next items
+	 * @param rate
+	 *            the maximum number of items worked on per second
+	 * @param items
+	 *            the items
+	 * @param action
+	 *            the action, which returns whether it did any work on an item, or
+	 *            skipped it
+	 * @param onDone
+	 *            the consumer of the number of items worked on, once the run is
+	 *            done
+	 * @return the run
+	 */
+	public static <T> PacedRun<T> start(TaskScheduler scheduler, double rate, Iterable<? extends T> items,
+			Predicate<? super T> action, IntConsumer onDone) {
+		PacedRun<T> run = new PacedRun<>(scheduler, items.iterator(), action, (long) (1000 / rate), onDone);
+		run.next();
+		return run;
+	}
+
+	/**
+	 * Whether the run is done.
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Works on the items up to the next one worked on, and schedules the rest
+	 * after the pause.
+	 */
+	private void next() {
+		while (items.hasNext()) {
+			T item = items.next();
+			boolean worked;
+			try {
+				worked = action.test(item);
+			} catch (RuntimeException e) {
+				log.warn("Failed on {}", item, e);
+				worked = true;
+			}
+
+			if (worked) {
+				count++;
+				try {
+					scheduler.schedule(this::next, new Date(System.currentTimeMillis() + pause));
+					return;
+				} catch (TaskRejectedException e) {
+					// shutting down
+					log.debug("Stopped a paced run after {} items", count);
+					break;
+				}
+			}
+		}
+		done = true;
+		onDone.accept(count);
+	}
+}
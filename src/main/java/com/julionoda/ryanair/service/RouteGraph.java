@@ -0,0 +1,355 @@
+package com.julionoda.ryanair.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.julionoda.ryanair.model.Route;
+
+import lombok.NonNull;
+
+/**
+ * Index of direct routes by airport, used to look up connecting airports
+ * without scanning the whole list of routes.
+ * 
+ * <p>
+ * Airports are held as the identifiers of an {@link AirportDictionary}: the
+ * routes of each airport are arrays sorted by the identifier of the other
+ * airport, so lookups are binary searches, intersections are merges, and the
+ * searches keep their state in arrays indexed by airport, without comparing or
+ * hashing any code.
+ * </p>
+ * 
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class RouteGraph {
+	/**
+	 * The dictionary of the airports.
+	 */
+	private final AirportDictionary dictionary;
+
+	/**
+	 * Outgoing routes, by departure airport identifier, indexed by arrival
+	 * airport.
+	 */
+	private final Adjacency[] outgoing;
+
+	/**
+	 * Incoming routes, by arrival airport identifier, indexed by departure
+	 * airport.
+	 */
+	private final Adjacency[] incoming;
+
+	/**
+	 * Class constructor.
+	 * 
+	 * @param dictionary
+	 *            the dictionary of the airports, where those of the routes are
+	 *            added if not known yet
+	 * @param routes
+	 *            the routes to index; only direct routes are taken into account
+	 */
+	public RouteGraph(@NonNull AirportDictionary dictionary, @NonNull Iterable<Route> routes) {
+		this.dictionary = dictionary;
+		List<Route> directRoutes = new ArrayList<>();
+		for (Route route : routes) {
+			if (isDirectRoute().test(route)) {
+				// identifiers assigned before the size of the dictionary is read
+				dictionary.getId(route.getAirportFrom());
+				dictionary.getId(route.getAirportTo());
+				directRoutes.add(route);
+			}
+		}
+
+		int airports = dictionary.size();
+		this.outgoing = index(directRoutes, airports, Route::getAirportFrom, Route::getAirportTo);
+		this.incoming = index(directRoutes, airports, Route::getAirportTo, Route::getAirportFrom);
+	}
+
+	/**
+	 * Determines if a route is direct, and therefore can be used as a leg of an
+	 * interconnection.
+	 * 
+	 * @return true if the route is direct; false, otherwise
+	 */
+	static Predicate<? super Route> isDirectRoute() {
+		// TODO: In the real data, there are routes with empty (not null) connecting
+		// airports. Should those be included too?
+		return route -> route.getConnectingAirport() == null;
+	}
+
+	/**
+	 * Finds the direct routes departing from the given airport.
+	 * 
+	 * @param airport
+	 *            the departure airport IATA code
+	 * @return a collection of routes departing from the airport
+	 */
+	public Collection<Route> findOutgoing(String airport) {
+		return get(outgoing, dictionary.findId(airport)).getRoutes();
+	}
+
+	/**
+	 * Finds the direct routes arriving to the given airport.
+	 * 
+	 * @param airport
+	 *            the arrival airport IATA code
+	 * @return a collection of routes arriving to the airport
+	 */
+	public Collection<Route> findIncoming(String airport) {
+		return get(incoming, dictionary.findId(airport)).getRoutes();
+	}
+
+	/**
+	 * Gets the direct route between the given airports.
+	 * 
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @return the route, or null if there is no direct route between the airports
+	 */
+	public Route getRoute(String airportFrom, String airportTo) {
+		return get(outgoing, dictionary.findId(airportFrom)).getRoute(dictionary.findId(airportTo));
+	}
+
+	/**
+	 * Finds the airports that can be used to connect the given departure and
+	 * arrival airports with exactly one stop. That is, the intersection of the
+	 * arrival airports of the routes departing from the departure airport and the
+	 * departure airports of the routes arriving to the arrival airport.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @return a set of connecting airport IATA codes
+	 */
+	public Set<String> findConnectingAirports(String departure, String arrival) {
+		short[] reachable = get(outgoing, dictionary.findId(departure)).airports;
+		short[] reaching = get(incoming, dictionary.findId(arrival)).airports;
+
+		// both are sorted, so they are merged
+		Set<String> result = new LinkedHashSet<>();
+		int i = 0;
+		int j = 0;
+		while ((i < reachable.length) && (j < reaching.length)) {
+			if (reachable[i] < reaching[j]) {
+				i++;
+			} else if (reachable[i] > reaching[j]) {
+				j++;
+			} else {
+				result.add(dictionary.getCode(reachable[i]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the direct routes that are part of any path from the departure to the
+	 * arrival airport with at most the given number of legs. Paths do not go
+	 * through the departure or the arrival airport in between.
+	 * 
+	 * <p>
+	 * The airports are first reached from both ends with a breadth first search,
+	 * and a route is kept if the legs to reach its departure airport, plus the legs
+	 * to reach the arrival airport from its arrival airport, fit in the path.
+	 * </p>
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param maxLegs
+	 *            the maximum number of legs of the paths
+	 * @return a list of routes
+	 */
+	public List<Route> findRoutes(String departure, String arrival, int maxLegs) {
+		short departureId = dictionary.findId(departure);
+		short arrivalId = dictionary.findId(arrival);
+		List<Route> result = new ArrayList<>();
+		if ((departureId < 0) || (arrivalId < 0) || (departureId >= outgoing.length)
+				|| (arrivalId >= outgoing.length)) {
+			return result;
+		}
+
+		int[] fromDeparture = findDistances(departureId, arrivalId, maxLegs, outgoing);
+		int[] toArrival = findDistances(arrivalId, departureId, maxLegs, incoming);
+		for (int airport = 0; airport < outgoing.length; airport++) {
+			int legs = fromDeparture[airport];
+			if ((legs < 0) || (airport == arrivalId)) {
+				continue;
+			}
+			Adjacency routes = outgoing[airport];
+			for (int i = 0; i < routes.airports.length; i++) {
+				short next = routes.airports[i];
+				int remainingLegs = toArrival[next];
+				if ((remainingLegs >= 0) && (legs + 1 + remainingLegs <= maxLegs) && (next != departureId)) {
+					result.add(routes.routes[i]);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the number of legs needed to reach every airport from a given one, up
+	 * to a maximum, without going through another one.
+	 * 
+	 * @param start
+	 *            the identifier of the airport to start from
+	 * @param end
+	 *            the identifier of the airport not to go through
+	 * @param maxLegs
+	 *            the maximum number of legs
+	 * @param index
+	 *            the routes to follow, by airport identifier
+	 * @return the number of legs, by airport identifier, or -1 if not reached
+	 */
+	private static int[] findDistances(short start, short end, int maxLegs, Adjacency[] index) {
+		int[] result = new int[index.length];
+		Arrays.fill(result, -1);
+		short[] pending = new short[index.length];
+		int head = 0;
+		int tail = 0;
+		result[start] = 0;
+		pending[tail++] = start;
+
+		while (head < tail) {
+			short airport = pending[head++];
+			int legs = result[airport];
+			if ((legs == maxLegs) || (airport == end)) {
+				continue;
+			}
+			for (short next : index[airport].airports) {
+				if (result[next] < 0) {
+					result[next] = legs + 1;
+					pending[tail++] = next;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Gets the routes of an airport.
+	 * 
+	 * @param index
+	 *            the routes, by airport identifier
+	 * @param airport
+	 *            the airport identifier, or -1 if not known
+	 * @return the routes of the airport, empty if none
+	 */
+	private static Adjacency get(Adjacency[] index, short airport) {
+		return ((airport >= 0) && (airport < index.length)) ? index[airport] : Adjacency.EMPTY;
+	}
+
+	/**
+	 * Indexes the routes by one of their airports, sorted by the other one. If
+	 * there are several routes between the same airports, the last one is kept.
+	 * 
+	 * @param routes
+	 *            the direct routes, whose airports are in the dictionary
+	 * @param airports
+	 *            the number of airports in the dictionary
+	 * @param key
+	 *            the airport to index the routes by
+	 * @param other
+	 *            the other airport
+	 * @return the routes, by airport identifier
+	 */
+	private Adjacency[] index(List<Route> routes, int airports, Function<Route, String> key,
+			Function<Route, String> other) {
+		List<List<Route>> grouped = new ArrayList<>(airports);
+		for (int i = 0; i < airports; i++) {
+			grouped.add(new ArrayList<>());
+		}
+		routes.forEach(route -> grouped.get(dictionary.getId(key.apply(route))).add(route));
+
+		Adjacency[] result = new Adjacency[airports];
+		for (int airport = 0; airport < airports; airport++) {
+			List<Route> group = grouped.get(airport);
+			// stable, so the last of the routes between the same airports is found last
+			group.sort(Comparator.comparingInt(route -> dictionary.getId(other.apply(route))));
+			short[] otherAirports = new short[group.size()];
+			Route[] otherRoutes = new Route[group.size()];
+			int size = 0;
+			for (Route route : group) {
+				short id = dictionary.getId(other.apply(route));
+				if ((size > 0) && (otherAirports[size - 1] == id)) {
+					size--;
+				}
+				otherAirports[size] = id;
+				otherRoutes[size] = route;
+				size++;
+			}
+			result[airport] = (size == 0) ? Adjacency.EMPTY
+					: new Adjacency(Arrays.copyOf(otherAirports, size), Arrays.copyOf(otherRoutes, size));
+		}
+		return result;
+	}
+
+	/**
+	 * Routes of an airport, sorted by the identifier of their other airport.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	private static class Adjacency {
+		/**
+		 * No routes.
+		 */
+		static final Adjacency EMPTY = new Adjacency(new short[0], new Route[0]);
+
+		/**
+		 * Identifiers of the other airports, sorted.
+		 */
+		final short[] airports;
+
+		/**
+		 * Routes, in the same order.
+		 */
+		final Route[] routes;
+
+		/**
+		 * Class constructor.
+		 */
+		Adjacency(short[] airports, Route[] routes) {
+			this.airports = airports;
+			this.routes = routes;
+		}
+
+		/**
+		 * Gets the routes.
+		 */
+		Collection<Route> getRoutes() {
+			return Collections.unmodifiableList(Arrays.asList(routes));
+		}
+
+		/**
+		 * Gets the route to or from the given airport.
+		 * 
+		 * @param airport
+		 *            the identifier of the other airport, or -1 if not known
+		 * @return the route, or null if there is none
+		 */
+		Route getRoute(short airport) {
+			int index = (airport >= 0) ? Arrays.binarySearch(airports, airport) : -1;
+			return (index >= 0) ? routes[index] : null;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.julionoda.ryanair.service;
+
+/**
+ * Service for the route graph.
+ * 
+ * @author jnoda
+ *
+ */
+public interface RouteGraphService {
+	/**
+	 * Gets the graph of all available routes.
+	 * 
+	 * @return the route graph
+	 */
+	RouteGraph getRouteGraph();
+}
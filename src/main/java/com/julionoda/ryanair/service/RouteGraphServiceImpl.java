@@ -0,0 +1,49 @@
+package com.julionoda.ryanair.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.service.SearchMetrics.Stage;
+
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Implementation of {@link RouteGraphService} that indexes the routes provided
+ * by the {@link RouteService}.
+ * 
+ * @author jnoda
+ *
+ */
+@Service
+public class RouteGraphServiceImpl implements RouteGraphService {
+	/**
+	 * The route service
+	 */
+	@Autowired
+	private RouteService routeService;
+
+	/**
+	 * The metrics of the search
+	 */
+	@Autowired
+	private SearchMetrics searchMetrics;
+
+	/**
+	 * The dictionary of the airports of the routes
+	 */
+	@Autowired
+	private AirportDictionary airportDictionary;
+
+	@Cacheable(CacheConfiguration.ROUTE_GRAPH_CACHE)
+	@Override
+	public RouteGraph getRouteGraph() {
+		// the graph is built once from the cached routes, so requests only pay for
+		// the index lookups
+		Timer.Sample sample = searchMetrics.start();
+		RouteGraph routeGraph = new RouteGraph(airportDictionary, routeService.findAll());
+		searchMetrics.stop(sample, Stage.ROUTES);
+		return routeGraph;
+	}
+}
@@ -1,6 +1,11 @@
 package com.julionoda.ryanair.service;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
@@ -8,6 +13,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import com.julionoda.ryanair.ApiClientConfiguration;
+import com.julionoda.ryanair.CacheConfiguration;
 import com.julionoda.ryanair.model.Route;
 
 /**
@@ -18,6 +25,7 @@ import com.julionoda.ryanair.model.Route;
  *
  */
 @Service
+@ConditionalOnProperty(name = "apiClient", havingValue = "restTemplate", matchIfMissing = true)
 public class RouteServiceApiImpl implements RouteService {
 	/**
 	 * Endpoint of the routes API.
@@ -30,22 +38,35 @@ public class RouteServiceApiImpl implements RouteService {
 	 */
 	private final RestTemplate restTemplate;
 
+	/**
+	 * The dictionary where the airports of the routes are interned.
+	 */
+	private final AirportDictionary airportDictionary;
+
 	/**
 	 * Class constructor.
+	 * 
+	 * @param restTemplate
+	 *            the REST template to query the external API, on the shared pool of
+	 *            connections
+	 * @param airportDictionary
+	 *            the dictionary where the airports of the routes are interned
 	 */
-	public RouteServiceApiImpl() {
-		// We might have used a global RestTemplate or RestTemplateBuilder, but that
-		// would add some complexity to integration tests; and don't seem needed for
-		// this simple scenario.
-		this.restTemplate = new RestTemplate();
+	public RouteServiceApiImpl(@Qualifier(ApiClientConfiguration.API_REST_TEMPLATE) RestTemplate restTemplate,
+			AirportDictionary airportDictionary) {
+		this.restTemplate = restTemplate;
+		this.airportDictionary = airportDictionary;
 	}
 
-	@Cacheable("routes")
+	@Cacheable(CacheConfiguration.ROUTES_CACHE)
 	@Override
 	public Iterable<Route> findAll() {
 		ResponseEntity<Iterable<Route>> response = restTemplate.exchange(routesApiEndpoint, HttpMethod.GET, null,
 				new ParameterizedTypeReference<Iterable<Route>>() {
 				});
-		return response.getBody();
+		// the codes are held once, instead of a copy per route read
+		List<Route> routes = new ArrayList<>();
+		response.getBody().forEach(route -> routes.add(airportDictionary.intern(route)));
+		return routes;
 	}
 }
@@ -0,0 +1,59 @@
+package com.julionoda.ryanair.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.model.Route;
+
+/**
+ * Implementation of {@link RouteService} that consumes the data from an
+ * external routes API with a non-blocking client.
+ * 
+ * <p>
+ * Enabled with {@code apiClient=webClient}.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "apiClient", havingValue = "webClient")
+public class RouteServiceWebClientImpl implements RouteService {
+	/**
+	 * Endpoint of the routes API.
+	 */
+	@Value("${routesApiEndpoint}")
+	private String routesApiEndpoint;
+
+	/**
+	 * Client to query the external API.
+	 */
+	@Autowired
+	private WebClient webClient;
+
+	/**
+	 * The dictionary where the airports of the routes are interned.
+	 */
+	@Autowired
+	private AirportDictionary airportDictionary;
+
+	@Cacheable(CacheConfiguration.ROUTES_CACHE)
+	@Override
+	public Iterable<Route> findAll() {
+		// routes are fetched once and cached, so there is nothing to gain by not
+		// waiting for them
+		return webClient
+				.get()
+				.uri(routesApiEndpoint)
+				.retrieve()
+				.bodyToFlux(Route.class)
+				.map(airportDictionary::intern)
+				.collectList()
+				.block();
+	}
+}
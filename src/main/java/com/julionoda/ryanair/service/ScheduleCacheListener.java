@@ -0,0 +1,28 @@
+package com.julionoda.ryanair.service;
+
+/**
+ * Listener of the changes of the schedules cache, which is told about every
+ * schedule added or removed.
+ * 
+ * @author jnoda
+ *
+ */
+public interface ScheduleCacheListener {
+	/**
+	 * Called when a schedule is added, or replaced by one with other flights.
+	 * 
+	 * @param key
+	 *            the schedule key
+	 * @param schedule
+	 *            the schedule
+	 */
+	void put(ScheduleKey key, FlightSchedule schedule);
+
+	/**
+	 * Called when a schedule is removed, whether explicitly, evicted or expired.
+	 * 
+	 * @param key
+	 *            the schedule key
+	 */
+	void remove(ScheduleKey key);
+}
@@ -0,0 +1,143 @@
+package com.julionoda.ryanair.service;
+
+import lombok.Value;
+
+/**
+ * Represents how many flights changed between two versions of a schedule:
+ * those only in the new one, and those only in the previous one. A flight
+ * whose times changed is both removed and added. The flights themselves are not
+ * kept, as only whether any changed matters.
+ * 
+ * @author jnoda
+ *
+ */
+@Value
+public class ScheduleDiff {
+	/**
+	 * The number of flights only in the new schedule.
+	 */
+	private int added;
+
+	/**
+	 * The number of flights only in the previous schedule.
+	 */
+	private int removed;
+
+	/**
+	 * Counts the flights that changed between two versions of a schedule, walking
+	 * both at once, as they are sorted by departure, without creating any.
+	 * 
+	 * @param previous
+	 *            the previous schedule
+	 * @param current
+	 *            the new schedule, of the same route
+	 * @return the numbers of changed flights
+	 */
+	public static ScheduleDiff of(FlightSchedule previous, FlightSchedule current) {
+		int added = 0;
+		int removed = 0;
+		int i = 0;
+		int j = 0;
+		while ((i < previous.size()) || (j < current.size())) {
+			int departure = Math.min((i < previous.size()) ? previous.getDeparture(i) : Integer.MAX_VALUE,
+					(j < current.size()) ? current.getDeparture(j) : Integer.MAX_VALUE);
+			int previousEnd = findDepartureEnd(previous, i, departure);
+			int currentEnd = findDepartureEnd(current, j, departure);
+
+			// the flights departing at the same time are few, and matched one by one
+			int matches = 0;
+			if ((previousEnd - i == 1) && (currentEnd - j == 1)) {
+				// the usual case, a single flight departing at the time in both
+				matches = isSameFlight(previous, i, current, j) ? 1 : 0;
+			} else if ((previousEnd > i) && (currentEnd > j)) {
+				boolean[] matched = new boolean[currentEnd - j];
+				for (int p = i; p < previousEnd; p++) {
+					int match = findFlight(previous, p, current, j, currentEnd, matched);
+					if (match >= 0) {
+						matched[match - j] = true;
+						matches++;
+					}
+				}
+			}
+			added += currentEnd - j - matches;
+			removed += previousEnd - i - matches;
+			i = previousEnd;
+			j = currentEnd;
+		}
+		return new ScheduleDiff(added, removed);
+	}
+
+	/**
+	 * Whether no flight changed.
+	 */
+	public boolean isEmpty() {
+		return (added == 0) && (removed == 0);
+	}
+
+	/**
+	 * Finds the end of the flights of a schedule departing at the given time.
+	 * 
+	 * @param schedule
+	 *            the schedule
+	 * @param from
+	 *            the index of the first flight to look at
+	 * @param departure
+	 *            the departure time, in minutes since the epoch
+	 * @return the index after the last flight departing at the time
+	 */
+	private static int findDepartureEnd(FlightSchedule schedule, int from, int departure) {
+		int end = from;
+		while ((end < schedule.size()) && (schedule.getDeparture(end) == departure)) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * Finds a flight of a schedule among the flights of another one departing at
+	 * the same time, not matched yet.
+	 * 
+	 * @param schedule
+	 *            the schedule of the flight
+	 * @param index
+	 *            the index of the flight
+	 * @param other
+	 *            the other schedule
+	 * @param from
+	 *            the index of the first flight of the other schedule departing at
+	 *            the same time
+	 * @param to
+	 *            the index after the last one
+	 * @param matched
+	 *            whether each of those flights was matched already
+	 * @return the index of the flight in the other schedule, or -1 if not found
+	 */
+	private static int findFlight(FlightSchedule schedule, int index, FlightSchedule other, int from, int to,
+			boolean[] matched) {
+		for (int k = from; k < to; k++) {
+			if (!matched[k - from] && isSameFlight(schedule, index, other, k)) {
+				return k;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether two flights departing at the same time are the same, that is, they
+	 * have the same number and arrival.
+	 * 
+	 * @param schedule
+	 *            the schedule of the first flight
+	 * @param index
+	 *            the index of the first flight
+	 * @param other
+	 *            the schedule of the second flight
+	 * @param otherIndex
+	 *            the index of the second flight
+	 * @return whether they are the same
+	 */
+	private static boolean isSameFlight(FlightSchedule schedule, int index, FlightSchedule other, int otherIndex) {
+		return (other.getArrival(otherIndex) == schedule.getArrival(index))
+				&& other.getNumber(otherIndex).equals(schedule.getNumber(index));
+	}
+}
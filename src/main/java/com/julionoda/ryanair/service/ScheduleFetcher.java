@@ -0,0 +1,354 @@
+package com.julionoda.ryanair.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.ExecutorConfiguration;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.service.SearchMetrics.FetchResult;
+
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Fetches monthly schedules from the {@link ScheduleService} concurrently.
+ * 
+ * <p>
+ * Each distinct schedule is fetched at most once at a time: requests for a
+ * schedule that is already being fetched, or queued by the
+ * {@link ScheduleLimiter}, either by the same query or by a concurrent one,
+ * wait for that fetch instead of issuing a new one.
+ * </p>
+ * 
+ * <p>
+ * A cached schedule that is stale is still returned at once, while the
+ * {@link ScheduleRevalidator} revalidates it in the background.
+ * </p>
+ * 
+ * <p>
+ * A cached schedule is served from the cache on the calling thread, so a burst
+ * of cached queries never fills the executor. Otherwise, if there is an
+ * {@link AsyncScheduleService}, schedules are fetched through it, without
+ * holding any thread; or else on a bounded executor. A fetch rejected by the
+ * limiter or by the executor, as it is full, falls back to an unavailable
+ * schedule, so the calls are never run on the thread that queued or released
+ * them.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Component
+public class ScheduleFetcher {
+	/**
+	 * The schedule service
+	 */
+	@Autowired
+	private ScheduleService scheduleService;
+
+	/**
+	 * The non-blocking schedule service, if any
+	 */
+	@Autowired(required = false)
+	private AsyncScheduleService asyncScheduleService;
+
+	/**
+	 * Bounded executor where the schedules are fetched.
+	 */
+	@Autowired
+	@Qualifier(ExecutorConfiguration.SCHEDULE_FETCH_EXECUTOR)
+	private Executor executor;
+
+	/**
+	 * The cache manager
+	 */
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * The limiter of the calls to the external API
+	 */
+	@Autowired
+	private ScheduleLimiter scheduleLimiter;
+
+	/**
+	 * The revalidator of the stale schedules
+	 */
+	@Autowired
+	private ScheduleRevalidator scheduleRevalidator;
+
+	/**
+	 * The metrics of the search
+	 */
+	@Autowired
+	private SearchMetrics searchMetrics;
+
+	/**
+	 * Fetches in flight, by key.
+	 */
+	private final ConcurrentMap<ScheduleKey, CompletableFuture<Iterable<Flight>>> inFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * Fetches the given schedules concurrently, and waits until all of them are
+	 * available.
+	 * 
+	 * @param keys
+	 *            the keys of the schedules
+	 * @return a map of the flights of every schedule by key
+	 */
+	public Map<ScheduleKey, Iterable<Flight>> fetchAll(Collection<ScheduleKey> keys) {
+		// issue all the requests before waiting for any of them
+		return joinAll(fetchAllAsync(keys));
+	}
+
+	/**
+	 * Fetches the given schedules concurrently, without waiting for them.
+	 * 
+	 * @param keys
+	 *            the keys of the schedules
+	 * @return a map of the futures of the flights of every schedule by key
+	 */
+	public Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetchAllAsync(Collection<ScheduleKey> keys) {
+		return fetchAllAsync(keys, new HashMap<>());
+	}
+
+	/**
+	 * Fetches the given schedules concurrently, without waiting for them, unless
+	 * they were fetched already for another query of the same batch.
+	 * 
+	 * @param keys
+	 *            the keys of the schedules
+	 * @param fetched
+	 *            the futures of the schedules fetched for the batch so far, by key,
+	 *            which the new ones are added to
+	 * @return a map of the futures of the flights of every schedule by key
+	 */
+	public Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetchAllAsync(Collection<ScheduleKey> keys,
+			Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched) {
+		// only once per key
+		Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> result = new LinkedHashMap<>();
+		keys.forEach(key -> result.computeIfAbsent(key, ignored -> fetched.computeIfAbsent(key, this::fetch)));
+		return result;
+	}
+
+	/**
+	 * Fetches the given schedule asynchronously.
+	 * 
+	 * @param key
+	 *            the key of the schedule
+	 * @return a future of the flights of the schedule
+	 */
+	public CompletableFuture<Iterable<Flight>> fetch(ScheduleKey key) {
+		CompletableFuture<Iterable<Flight>> future = new CompletableFuture<>();
+		CompletableFuture<Iterable<Flight>> existing = inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			// join the fetch in flight
+			return existing;
+		}
+
+		Timer.Sample sample = searchMetrics.start();
+		Cache.ValueWrapper cached = getCached(CacheConfiguration.SCHEDULES_CACHE, key);
+		boolean stale = (cached != null) && scheduleRevalidator.revalidateIfStale(key);
+		if (cached == null) {
+			cached = getCached(CacheConfiguration.MISSING_SCHEDULES_CACHE, key);
+		}
+		boolean hit = cached != null;
+		future.whenComplete((flights, e) -> searchMetrics.stopFetch(sample, getResult(hit, stale, flights, e)));
+
+		if (hit) {
+			// served on the calling thread, so it is never rejected
+			@SuppressWarnings("unchecked")
+			Iterable<Flight> flights = (Iterable<Flight>) cached.get();
+			complete(key, future, flights, null);
+			return future;
+		}
+
+		// only the calls to the external API are limited; a rejected one falls back to
+		// no flights, as when the circuit breaker rejects it
+		CompletableFuture<Iterable<Flight>> fetch = scheduleLimiter.submit(() -> call(key),
+				flights -> flights == ScheduleService.UNAVAILABLE);
+		fetch.whenComplete((flights, e) -> {
+			if ((e != null) && (unwrap(e) instanceof RejectedExecutionException)) {
+				complete(key, future, ScheduleService.UNAVAILABLE, null);
+			} else {
+				complete(key, future, flights, e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Calls the schedule service, through the non-blocking one if any, or on the
+	 * bounded executor otherwise.
+	 * 
+	 * @param key
+	 *            the key of the schedule
+	 * @return a future of the flights of the schedule
+	 */
+	private CompletableFuture<Iterable<Flight>> call(ScheduleKey key) {
+		CompletableFuture<Iterable<Flight>> result = new CompletableFuture<>();
+		if (asyncScheduleService != null) {
+			try {
+				return asyncScheduleService.findFlightsAsync(key.getAirportFrom(), key.getAirportTo(),
+						key.getYearMonth().getYear(), key.getYearMonth().getMonthValue());
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+				return result;
+			}
+		}
+
+		try {
+			executor.execute(() -> {
+				try {
+					result.complete(scheduleService.findFlights(key.getAirportFrom(), key.getAirportTo(),
+							key.getYearMonth().getYear(), key.getYearMonth().getMonthValue()));
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets a cached schedule, counting it as a hit or a miss of the cache, as the
+	 * schedule service would.
+	 * 
+	 * @param cacheName
+	 *            the name of the cache
+	 * @param key
+	 *            the key of the schedule
+	 * @return the wrapper of the cached flights, or {@code null} if not cached
+	 */
+	private Cache.ValueWrapper getCached(String cacheName, ScheduleKey key) {
+		Cache cache = cacheManager.getCache(cacheName);
+		return (cache != null) ? cache.get(key) : null;
+	}
+
+	/**
+	 * Whether a key is in a cache, peeking at its native map, without counting it
+	 * as a hit or a miss of the cache.
+	 * 
+	 * @param cache
+	 *            the cache, or {@code null} if none
+	 * @param key
+	 *            the key
+	 * @return whether it is cached
+	 */
+	static boolean isCached(Cache cache, Object key) {
+		Object nativeCache = (cache != null) ? cache.getNativeCache() : null;
+		if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+			return ((com.github.benmanes.caffeine.cache.Cache<?, ?>) nativeCache).asMap().containsKey(key);
+		}
+		return (nativeCache instanceof Map) && ((Map<?, ?>) nativeCache).containsKey(key);
+	}
+
+	/**
+	 * Gets the result of a fetch, for its metrics.
+	 * 
+	 * @param cached
+	 *            whether the schedule was cached when the fetch started
+	 * @param stale
+	 *            whether the cached schedule was stale
+	 * @param flights
+	 *            the flights, if succeeded
+	 * @param e
+	 *            the error, if failed
+	 * @return the result of the fetch
+	 */
+	static FetchResult getResult(boolean cached, boolean stale, Iterable<Flight> flights, Throwable e) {
+		if (e != null) {
+			return FetchResult.ERROR;
+		}
+		if (flights == ScheduleService.UNAVAILABLE) {
+			return FetchResult.FALLBACK;
+		}
+		if (stale) {
+			return FetchResult.STALE;
+		}
+		return cached ? FetchResult.HIT : FetchResult.MISS;
+	}
+
+	/**
+	 * Completes a fetch in flight.
+	 * 
+	 * @param key
+	 *            the key of the schedule
+	 * @param future
+	 *            the future of the fetch
+	 * @param flights
+	 *            the flights, if succeeded
+	 * @param e
+	 *            the error, if failed
+	 */
+	private void complete(ScheduleKey key, CompletableFuture<Iterable<Flight>> future, Iterable<Flight> flights,
+			Throwable e) {
+		// unregister before completing, so whoever sees the result finished can
+		// fetch it again
+		inFlight.remove(key, future);
+		if (e != null) {
+			future.completeExceptionally(unwrap(e));
+		} else {
+			future.complete(flights);
+		}
+	}
+
+	/**
+	 * Unwraps the original exception of a failed future.
+	 * 
+	 * @param e
+	 *            the exception the future failed with
+	 * @return the original exception
+	 */
+	private static Throwable unwrap(Throwable e) {
+		return (e instanceof CompletionException) ? e.getCause() : e;
+	}
+
+	/**
+	 * Waits for the given schedules.
+	 * 
+	 * @param schedules
+	 *            the futures of the flights of every schedule by key
+	 * @return a map of the flights of every schedule by key
+	 */
+	static Map<ScheduleKey, Iterable<Flight>> joinAll(Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> schedules) {
+		Map<ScheduleKey, Iterable<Flight>> result = new LinkedHashMap<>();
+		schedules.forEach((key, future) -> result.put(key, join(future)));
+		return result;
+	}
+
+	/**
+	 * Waits for a future to complete, rethrowing the original exception if it
+	 * failed.
+	 * 
+	 * @param future
+	 *            the future
+	 * @return the result of the future
+	 */
+	static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.julionoda.ryanair.service;
+
+import java.time.YearMonth;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Identifies the monthly schedule of a route.
+ * 
+ * @author jnoda
+ *
+ */
+@Value
+public class ScheduleKey {
+	/**
+	 * Departure airport IATA code.
+	 */
+	@NonNull
+	private String airportFrom;
+
+	/**
+	 * Arrival airport IATA code.
+	 */
+	@NonNull
+	private String airportTo;
+
+	/**
+	 * Year and month of the schedule.
+	 */
+	@NonNull
+	private YearMonth yearMonth;
+}
@@ -0,0 +1,286 @@
+package com.julionoda.ryanair.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Adaptive limit of the concurrent calls to the external schedules API, so that
+ * the fan-out of a burst of queries does not get throttled by the API.
+ * 
+ * <p>
+ * The limit follows an additive increase, multiplicative decrease (AIMD)
+ * policy: it grows by one for each call faster than the latency threshold
+ * while at least half of it is in use, and it is multiplied by the backoff
+ * ratio for each call slower than that, or failed; always within the minimum
+ * and the maximum. Calls beyond the limit wait in a bounded queue, without
+ * holding any thread, and are started as the calls in flight end; when the
+ * queue is full, they are rejected.
+ * </p>
+ * 
+ * <p>
+ * The limit, the calls in flight, the calls queued and the calls rejected are
+ * shown by the metrics endpoint.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Component
+public class ScheduleLimiter {
+	/**
+	 * Prefix of the names of the meters of the limiter.
+	 */
+	public static final String METRICS_PREFIX = "schedules.limiter";
+
+	/**
+	 * Whether the limiter is enabled.
+	 */
+	@Value("${scheduleLimiterEnabled}")
+	private boolean enabled;
+
+	/**
+	 * Initial limit.
+	 */
+	@Value("${scheduleLimiterInitialLimit}")
+	private int initialLimit;
+
+	/**
+	 * Minimum limit.
+	 */
+	@Value("${scheduleLimiterMinLimit}")
+	private int minLimit;
+
+	/**
+	 * Maximum limit.
+	 */
+	@Value("${scheduleLimiterMaxLimit}")
+	private int maxLimit;
+
+	/**
+	 * Latency of a call beyond which the limit decreases, in milliseconds.
+	 */
+	@Value("${scheduleLimiterLatencyThreshold}")
+	private long latencyThreshold;
+
+	/**
+	 * Ratio the limit is multiplied by when it decreases.
+	 */
+	@Value("${scheduleLimiterBackoffRatio}")
+	private double backoffRatio;
+
+	/**
+	 * Maximum number of calls waiting beyond the limit.
+	 */
+	@Value("${scheduleLimiterQueueCapacity}")
+	private int queueCapacity;
+
+	/**
+	 * The registry of the meters of the limiter.
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * The current limit, fractional as it decreases.
+	 */
+	private double limit;
+
+	/**
+	 * The number of calls in flight.
+	 */
+	private int inFlight;
+
+	/**
+	 * The calls waiting beyond the limit, in order of arrival.
+	 */
+	private final Deque<Call<?>> queue = new ArrayDeque<>();
+
+	/**
+	 * Counter of the calls rejected.
+	 */
+	private Counter rejected;
+
+	/**
+	 * Sets the initial limit, and registers the meters.
+	 */
+	@PostConstruct
+	public void init() {
+		limit = initialLimit;
+
+		Gauge
+				.builder(METRICS_PREFIX + ".limit", this, ScheduleLimiter::getLimit)
+				.description("Limit of the concurrent calls to the schedules API")
+				.register(meterRegistry);
+		Gauge
+				.builder(METRICS_PREFIX + ".inflight", this, ScheduleLimiter::getInFlight)
+				.description("Calls to the schedules API in flight")
+				.register(meterRegistry);
+		Gauge
+				.builder(METRICS_PREFIX + ".queued", this, ScheduleLimiter::getQueued)
+				.description("Calls to the schedules API waiting beyond the limit")
+				.register(meterRegistry);
+		rejected = Counter
+				.builder(METRICS_PREFIX + ".rejected")
+				.description("Calls to the schedules API rejected, as the queue was full")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Starts a call, if within the limit; otherwise, queues it, or rejects it if
+	 * the queue is full.
+	 * 
+	 * @param call
+	 *            the call, started once there is room for it
+	 * @param isDropped
+	 *            whether the result of the call is a failure, such as a fallback,
+	 *            which decreases the limit
+	 * @return a future of the result of the call, failed with a
+	 *         {@link RejectedExecutionException} if rejected
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call, Predicate<? super T> isDropped) {
+		if (!enabled) {
+			return call.get();
+		}
+
+		Call<T> pending = new Call<>(call, isDropped);
+		synchronized (this) {
+			if (inFlight >= (int) limit) {
+				if (queue.size() < queueCapacity) {
+					queue.addLast(pending);
+					return pending.result;
+				}
+				rejected.increment();
+				pending.result.completeExceptionally(new RejectedExecutionException(
+						"More than " + queueCapacity + " calls to the schedules API queued"));
+				return pending.result;
+			}
+			inFlight++;
+		}
+		start(pending);
+		return pending.result;
+	}
+
+	/**
+	 * Starts a call, which already holds its room within the limit.
+	 * 
+	 * @param call
+	 *            the call
+	 */
+	private <T> void start(Call<T> call) {
+		long startTime = System.nanoTime();
+		CompletableFuture<T> future;
+		try {
+			future = call.call.get();
+		} catch (Throwable e) {
+			future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+		}
+
+		future.whenComplete((result, e) -> {
+			release((e != null) || call.isDropped.test(result), System.nanoTime() - startTime);
+			if (e != null) {
+				call.result.completeExceptionally(e);
+			} else {
+				call.result.complete(result);
+			}
+		});
+	}
+
+	/**
+	 * Ends a call, adjusting the limit to its outcome, and starts as many queued
+	 * calls as fit in the new limit.
+	 * 
+	 * @param dropped
+	 *            whether the call failed
+	 * @param latency
+	 *            the latency of the call, in nanoseconds
+	 */
+	private void release(boolean dropped, long latency) {
+		List<Call<?>> next = new ArrayList<>();
+		synchronized (this) {
+			if (dropped || (latency > TimeUnit.MILLISECONDS.toNanos(latencyThreshold))) {
+				limit = Math.max(minLimit, limit * backoffRatio);
+			} else if (inFlight * 2 >= limit) {
+				limit = Math.min(maxLimit, limit + 1);
+			}
+			inFlight--;
+
+			while ((inFlight < (int) limit) && !queue.isEmpty()) {
+				next.add(queue.pollFirst());
+				inFlight++;
+			}
+		}
+		// outside the lock, as a call may complete at once
+		next.forEach(this::start);
+	}
+
+	/**
+	 * Gets the current limit.
+	 */
+	public synchronized double getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Gets the number of calls in flight.
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Gets the number of calls waiting beyond the limit.
+	 */
+	public synchronized int getQueued() {
+		return queue.size();
+	}
+
+	/**
+	 * Represents a call to start once there is room for it, and the future of its
+	 * result.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	private static class Call<T> {
+		/**
+		 * The call.
+		 */
+		final Supplier<CompletableFuture<T>> call;
+
+		/**
+		 * Whether the result of the call is a failure.
+		 */
+		final Predicate<? super T> isDropped;
+
+		/**
+		 * The future of the result of the call.
+		 */
+		final CompletableFuture<T> result = new CompletableFuture<>();
+
+		/**
+		 * Class constructor.
+		 */
+		Call(Supplier<CompletableFuture<T>> call, Predicate<? super T> isDropped) {
+			this.call = call;
+			this.isDropped = isDropped;
+		}
+	}
+}
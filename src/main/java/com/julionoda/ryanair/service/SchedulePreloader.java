@@ -0,0 +1,233 @@
+package com.julionoda.ryanair.service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.model.Route;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads schedules into the cache in the background, so that queries rarely
+ * have to wait for the external API, even after a cold start or when a new
+ * month begins.
+ * 
+ * <p>
+ * Every run preloads the current and the following months of the routes of the
+ * most queried airport pairs first, and then of every other route. Schedules
+ * already in the cache are skipped, and the rest are fetched at a limited rate,
+ * not to flood the external API, as a {@link PacedRun}, which holds no thread
+ * in between. A run is skipped while the previous one is not done.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Slf4j
+@Component
+public class SchedulePreloader {
+	/**
+	 * Whether the preloading is enabled.
+	 */
+	@Value("${schedulePreloadEnabled}")
+	private boolean enabled;
+
+	/**
+	 * Number of months to preload after the current one.
+	 */
+	@Value("${schedulePreloadMonths}")
+	private int months;
+
+	/**
+	 * Number of most queried airport pairs to preload first.
+	 */
+	@Value("${schedulePreloadTopPairs}")
+	private int topPairs;
+
+	/**
+	 * Maximum number of schedules to fetch per second.
+	 */
+	@Value("${schedulePreloadRate}")
+	private double rate;
+
+	/**
+	 * The route service
+	 */
+	@Autowired
+	private RouteService routeService;
+
+	/**
+	 * The route graph service
+	 */
+	@Autowired
+	private RouteGraphService routeGraphService;
+
+	/**
+	 * The schedule fetcher
+	 */
+	@Autowired
+	private ScheduleFetcher scheduleFetcher;
+
+	/**
+	 * The cache manager, to skip the schedules already cached.
+	 */
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * The scheduler of the fetches
+	 */
+	@Autowired
+	private TaskScheduler taskScheduler;
+
+	/**
+	 * The last run, or {@code null} if none.
+	 */
+	private volatile PacedRun<ScheduleKey> run;
+
+	/**
+	 * Number of queries of each airport pair, halved on every run so that old
+	 * queries fade away.
+	 */
+	private final ConcurrentMap<AirportPair, Long> queries = new ConcurrentHashMap<>();
+
+	/**
+	 * Records a query between two airports, so that their schedules are preloaded
+	 * if it is one of the most queried.
+	 * 
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 */
+	public void recordQuery(String departure, String arrival) {
+		queries.merge(new AirportPair(departure, arrival), 1L, Long::sum);
+	}
+
+	/**
+	 * Preloads the schedules into the cache.
+	 */
+	@Scheduled(initialDelayString = "${schedulePreloadInitialDelay}", fixedDelayString = "${schedulePreloadInterval}")
+	public void preload() {
+		if (!enabled) {
+			return;
+		}
+
+		if ((run != null) && !run.isDone()) {
+			log.info("Skipped preloading, as the previous run is not done yet");
+			return;
+		}
+
+		Cache cache = cacheManager.getCache(CacheConfiguration.SCHEDULES_CACHE);
+		run = PacedRun.start(taskScheduler, rate, findScheduleKeys(YearMonth.now()), key -> {
+			// peeked, so the statistics of the cache are not touched
+			if (ScheduleFetcher.isCached(cache, key)) {
+				return false;
+			}
+
+			// the fetcher shares the request with any query asking for it meanwhile
+			scheduleFetcher.fetch(key);
+			return true;
+		}, fetched -> log.info("Preloaded {} schedules", fetched));
+	}
+
+	/**
+	 * Finds the keys of the schedules to preload, by priority: first the routes of
+	 * the most queried airport pairs, then every other route; and in each group
+	 * first the current month, then the following ones.
+	 * 
+	 * @param currentMonth
+	 *            the current month
+	 * @return the keys of the schedules to preload, in order
+	 */
+	Set<ScheduleKey> findScheduleKeys(YearMonth currentMonth) {
+		List<YearMonth> preloadMonths = new ArrayList<>();
+		for (int i = 0; i <= months; i++) {
+			preloadMonths.add(currentMonth.plusMonths(i));
+		}
+
+		// routes of the most queried pairs: the direct one and the ones through any
+		// connecting airport
+		RouteGraph routeGraph = routeGraphService.getRouteGraph();
+		Set<Route> routes = new LinkedHashSet<>();
+		findTopPairs().forEach(pair -> {
+			Route direct = routeGraph.getRoute(pair.getDeparture(), pair.getArrival());
+			if (direct != null) {
+				routes.add(direct);
+			}
+			routeGraph.findConnectingAirports(pair.getDeparture(), pair.getArrival()).forEach(airport -> {
+				routes.add(routeGraph.getRoute(pair.getDeparture(), airport));
+				routes.add(routeGraph.getRoute(airport, pair.getArrival()));
+			});
+		});
+
+		Set<ScheduleKey> result = new LinkedHashSet<>();
+		preloadMonths.forEach(month -> routes.forEach(route -> result
+				.add(new ScheduleKey(route.getAirportFrom(), route.getAirportTo(), month))));
+
+		// then every other route
+		List<Route> allRoutes = new ArrayList<>();
+		routeService.findAll().forEach(allRoutes::add);
+		preloadMonths.forEach(month -> allRoutes
+				.stream()
+				.filter(RouteGraph.isDirectRoute())
+				.forEach(route -> result.add(new ScheduleKey(route.getAirportFrom(), route.getAirportTo(), month))));
+
+		return result;
+	}
+
+	/**
+	 * Finds the most queried airport pairs, and halves the number of queries of
+	 * every pair.
+	 * 
+	 * @return the most queried airport pairs, most queried first
+	 */
+	List<AirportPair> findTopPairs() {
+		List<AirportPair> result = new ArrayList<>();
+		queries
+				.entrySet()
+				.stream()
+				.sorted(Map.Entry.<AirportPair, Long>comparingByValue(Comparator.reverseOrder()))
+				.limit(topPairs)
+				.forEach(entry -> result.add(entry.getKey()));
+
+		queries.replaceAll((pair, count) -> count / 2);
+		queries.values().removeIf(count -> count == 0);
+
+		return result;
+	}
+
+	/**
+	 * Represents a pair of airports asked for in a query.
+	 * 
+	 * @author jnoda
+	 */
+	@lombok.Value
+	static class AirportPair {
+		/**
+		 * The departure airport IATA code.
+		 */
+		private String departure;
+
+		/**
+		 * The arrival airport IATA code.
+		 */
+		private String arrival;
+	}
+}
@@ -0,0 +1,30 @@
+package com.julionoda.ryanair.service;
+
+import lombok.Value;
+
+/**
+ * Represents the result of revalidating a cached schedule with the external
+ * API: the schedule, unless it was not modified, and its validators.
+ * 
+ * @author jnoda
+ *
+ */
+@Value
+public class ScheduleRevalidation {
+	/**
+	 * The schedule, or {@code null} if not modified.
+	 */
+	private FlightSchedule schedule;
+
+	/**
+	 * The validators of the schedule, or {@code null} if the API gave none.
+	 */
+	private ScheduleValidators validators;
+
+	/**
+	 * Whether the schedule was modified, or the API does not tell.
+	 */
+	public boolean isModified() {
+		return schedule != null;
+	}
+}
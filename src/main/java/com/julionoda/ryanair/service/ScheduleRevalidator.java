@@ -0,0 +1,376 @@
+package com.julionoda.ryanair.service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.ExecutorConfiguration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Revalidates the cached schedules with the external API before they expire,
+ * so that a schedule is only fetched again, and only told to the
+ * {@link ScheduleCacheListener listeners}, if its flights changed.
+ * 
+ * <p>
+ * Every run revalidates the schedules cached longer than the configured age,
+ * at a limited rate, paced on the task scheduler instead of holding its thread,
+ * and through the {@link ScheduleLimiter}, as the calls of the queries, not to
+ * flood the external API; a run is skipped while the previous one is not done
+ * yet. The requests are conditional on the validators (entity tag and last
+ * modification date) of the previous response, if the API gave any, so a
+ * schedule not modified costs no payload. A revalidated schedule is put in the
+ * cache again, which renews it, and the cache tells the listeners only if any
+ * flight changed, as a {@link ScheduleDiff}. The schedules of the months
+ * already past are left to expire, and those the API no longer has are
+ * removed.
+ * </p>
+ * 
+ * <p>
+ * A schedule cached longer than the stale age, because its revalidations
+ * failed, is still served until it expires, so a failure of the external API
+ * serves the last known flights instead of none; it is revalidated in the
+ * background as soon as it is asked for, and kept if that fails again.
+ * </p>
+ * 
+ * <p>
+ * The revalidations run on an executor of their own, and are dropped when it,
+ * or the queue of the limiter, is full, so they never delay a query.
+ * </p>
+ * 
+ * <p>
+ * The first revalidation of a schedule is not conditional, as the validators
+ * of the responses are only kept from then on.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Slf4j
+@Component
+public class ScheduleRevalidator {
+	/**
+	 * Name of the counter of the revalidations.
+	 */
+	public static final String REVALIDATIONS_COUNTER = "schedules.revalidations";
+
+	/**
+	 * Whether the revalidation is enabled.
+	 */
+	@Value("${scheduleRevalidateEnabled}")
+	private boolean enabled;
+
+	/**
+	 * Age of a cached schedule to be revalidated, in milliseconds.
+	 */
+	@Value("${scheduleRevalidateAge}")
+	private long age;
+
+	/**
+	 * Age of a cached schedule to be stale, and revalidated as soon as it is
+	 * asked for, in milliseconds.
+	 */
+	@Value("${scheduleStaleAge}")
+	private long staleAge;
+
+	/**
+	 * Maximum number of schedules to revalidate per second.
+	 */
+	@Value("${scheduleRevalidateRate}")
+	private double rate;
+
+	/**
+	 * The schedule service
+	 */
+	@Autowired
+	private ScheduleService scheduleService;
+
+	/**
+	 * The cache manager, whose schedules are revalidated.
+	 */
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * The registry of the counter of the revalidations.
+	 */
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	/**
+	 * The limiter of the calls to the external API
+	 */
+	@Autowired
+	private ScheduleLimiter scheduleLimiter;
+
+	/**
+	 * The scheduler of the paced runs.
+	 */
+	@Autowired
+	private TaskScheduler taskScheduler;
+
+	/**
+	 * Bounded executor where the schedules are revalidated, which rejects them
+	 * when full.
+	 */
+	@Autowired
+	@Qualifier(ExecutorConfiguration.SCHEDULE_REVALIDATE_EXECUTOR)
+	private Executor executor;
+
+	/**
+	 * The stale schedules being revalidated in the background.
+	 */
+	private final Set<ScheduleKey> revalidating = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The validators of the last response of each schedule.
+	 */
+	private final ConcurrentMap<ScheduleKey, ScheduleValidators> validators = new ConcurrentHashMap<>();
+
+	/**
+	 * The last run, or {@code null} if none yet.
+	 */
+	private volatile PacedRun<ScheduleKey> run;
+
+	/**
+	 * Revalidates the schedules cached longer than the configured age.
+	 */
+	@Scheduled(initialDelayString = "${scheduleRevalidateInterval}",
+			fixedDelayString = "${scheduleRevalidateInterval}")
+	public void revalidate() {
+		if (!enabled) {
+			return;
+		}
+		if ((run != null) && !run.isDone()) {
+			log.info("Skipped revalidating, as the previous run is not done yet");
+			return;
+		}
+
+		Cache<Object, Object> cache = getCache();
+		Policy.Expiration<Object, Object> expiration = cache.policy().expireAfterWrite().orElse(null);
+		if (expiration == null) {
+			// the schedules never expire, so they are never fetched again either
+			return;
+		}
+
+		Map<Object, Object> schedules = cache.asMap();
+		// the validators of the schedules no longer cached are not needed anymore
+		validators.keySet().retainAll(schedules.keySet());
+
+		YearMonth currentMonth = YearMonth.now();
+		List<ScheduleKey> keys = new ArrayList<>();
+		for (Object key : schedules.keySet()) {
+			if ((key instanceof ScheduleKey) && !((ScheduleKey) key).getYearMonth().isBefore(currentMonth)
+					&& (expiration.ageOf(key, TimeUnit.MILLISECONDS).orElse(0) >= age)) {
+				keys.add((ScheduleKey) key);
+			}
+		}
+
+		run = PacedRun.start(taskScheduler, rate, keys, key -> {
+			// read through the map, so the statistics of the cache are not touched
+			Object cached = schedules.get(key);
+			if (!(cached instanceof FlightSchedule)) {
+				// expired or removed meanwhile
+				return false;
+			}
+			revalidate(key, (FlightSchedule) cached, schedules);
+			return true;
+		}, count -> log.info("Revalidating {} schedules", count));
+	}
+
+	/**
+	 * Revalidates a cached schedule in the background if it is stale, unless it
+	 * is being revalidated already. The stale schedule is served meanwhile,
+	 * instead of waiting for the external API.
+	 * 
+	 * @param key
+	 *            the schedule key
+	 * @return whether the cached schedule is stale
+	 */
+	public boolean revalidateIfStale(ScheduleKey key) {
+		if (!enabled || key.getYearMonth().isBefore(YearMonth.now())) {
+			return false;
+		}
+
+		Cache<Object, Object> cache = getCache();
+		Policy.Expiration<Object, Object> expiration = cache.policy().expireAfterWrite().orElse(null);
+		Object cached = cache.asMap().get(key);
+		if ((expiration == null) || !(cached instanceof FlightSchedule)
+				|| (expiration.ageOf(key, TimeUnit.MILLISECONDS).orElse(0) < staleAge)) {
+			return false;
+		}
+
+		if (revalidating.add(key)) {
+			// if dropped, rather than delaying the query, tried again the next time it is
+			// asked for
+			revalidate(key, (FlightSchedule) cached, cache.asMap())
+					.whenComplete((ignored, e) -> revalidating.remove(key));
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the native cache of the schedules.
+	 */
+	@SuppressWarnings("unchecked")
+	private Cache<Object, Object> getCache() {
+		return (Cache<Object, Object>) cacheManager.getCache(CacheConfiguration.SCHEDULES_CACHE).getNativeCache();
+	}
+
+	/**
+	 * Revalidates a cached schedule in the background, through the limiter, and
+	 * puts it in the cache again, unless it was replaced or removed meanwhile, or
+	 * the revalidation was dropped or failed; such a schedule is left to expire. A
+	 * schedule the external API no longer has is moved to the cache of the
+	 * missing schedules instead, which tells the listeners it has no flights
+	 * anymore.
+	 * 
+	 * @param key
+	 *            the schedule key
+	 * @param cached
+	 *            the cached schedule
+	 * @param schedules
+	 *            the cached schedules
+	 * @return a future completed once the revalidation is done, never failed
+	 */
+	CompletableFuture<Void> revalidate(ScheduleKey key, FlightSchedule cached, Map<Object, Object> schedules) {
+		return scheduleLimiter.submit(() -> call(key), revalidation -> false).handle((revalidation, e) -> {
+			if (e == null) {
+				update(key, cached, schedules, revalidation);
+			} else if (unwrap(e) instanceof RejectedExecutionException) {
+				log.debug("Dropped the revalidation of the schedule {}", key);
+				count(Result.DROPPED);
+			} else {
+				log.warn("Failed revalidating the schedule {}", key, unwrap(e));
+				count(Result.FAILED);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Calls the schedule service on the bounded executor.
+	 * 
+	 * @param key
+	 *            the schedule key
+	 * @return a future of the revalidation, failed with a
+	 *         {@link RejectedExecutionException} if the executor is full
+	 */
+	private CompletableFuture<ScheduleRevalidation> call(ScheduleKey key) {
+		CompletableFuture<ScheduleRevalidation> result = new CompletableFuture<>();
+		ScheduleValidators keyValidators = validators.get(key);
+		try {
+			executor.execute(() -> {
+				try {
+					result.complete(scheduleService.revalidate(key, keyValidators));
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * Updates a cached schedule with the result of its revalidation.
+	 * 
+	 * @param key
+	 *            the schedule key
+	 * @param cached
+	 *            the cached schedule
+	 * @param schedules
+	 *            the cached schedules
+	 * @param revalidation
+	 *            the result of the revalidation
+	 */
+	private void update(ScheduleKey key, FlightSchedule cached, Map<Object, Object> schedules,
+			ScheduleRevalidation revalidation) {
+		if (revalidation.getValidators() != null) {
+			validators.put(key, revalidation.getValidators());
+		}
+		count(revalidation.isModified() ? Result.MODIFIED : Result.NOT_MODIFIED);
+		FlightSchedule schedule = revalidation.isModified() ? revalidation.getSchedule() : cached;
+		if (schedule.size() > 0) {
+			schedules.replace(key, cached, schedule);
+		} else if (schedules.remove(key, cached)) {
+			validators.remove(key);
+			cacheManager.getCache(CacheConfiguration.MISSING_SCHEDULES_CACHE).put(key, schedule);
+		}
+	}
+
+	/**
+	 * Counts a revalidation.
+	 * 
+	 * @param result
+	 *            the result of the revalidation
+	 */
+	private void count(Result result) {
+		meterRegistry.counter(REVALIDATIONS_COUNTER, "result", result.name().toLowerCase(Locale.ROOT)).increment();
+	}
+
+	/**
+	 * Unwraps the exception a dependent future is failed with.
+	 * 
+	 * @param e
+	 *            the exception
+	 * @return the original exception
+	 */
+	private static Throwable unwrap(Throwable e) {
+		return (e instanceof CompletionException) ? e.getCause() : e;
+	}
+
+	/**
+	 * Results of a revalidation.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	enum Result {
+		/**
+		 * The schedule was not modified, so it was not fetched.
+		 */
+		NOT_MODIFIED,
+
+		/**
+		 * The schedule was fetched, as it was modified or the API does not tell.
+		 */
+		MODIFIED,
+
+		/**
+		 * The API failed.
+		 */
+		FAILED,
+
+		/**
+		 * The revalidation was dropped, as the executor or the queue of the limiter
+		 * was full.
+		 */
+		DROPPED
+	}
+}
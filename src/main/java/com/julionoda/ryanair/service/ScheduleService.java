@@ -1,5 +1,9 @@
 package com.julionoda.ryanair.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import com.julionoda.ryanair.model.Flight;
 
 /**
@@ -9,6 +13,24 @@ import com.julionoda.ryanair.model.Flight;
  *
  */
 public interface ScheduleService {
+	/**
+	 * No flights, returned when the schedule cannot be fetched from the external
+	 * API. Told apart from an empty schedule by identity.
+	 */
+	List<Flight> UNAVAILABLE = Collections.unmodifiableList(new ArrayList<>());
+
+	/**
+	 * Whether the given flights are of a schedule the external API does not have,
+	 * such as that of a route not flown on the month, and not of a failure.
+	 * 
+	 * @param flights
+	 *            the flights
+	 * @return whether the schedule is missing
+	 */
+	static boolean isMissing(Iterable<Flight> flights) {
+		return (flights != UNAVAILABLE) && !flights.iterator().hasNext();
+	}
+
 	/**
 	 * Finds all flights going from the departure to the arrival airport for the
 	 * given year and month.
@@ -24,4 +46,34 @@ public interface ScheduleService {
 	 * @return
 	 */
 	Iterable<Flight> findFlights(String airportFrom, String airportTo, int year, int month);
+
+	/**
+	 * Fetches a cached schedule again from the external API, bypassing the cache,
+	 * only if it was modified since the given validators were given. A schedule
+	 * the external API does not have is returned as modified, without flights.
+	 * 
+	 * <p>
+	 * By default, the schedule is fetched again with
+	 * {@link #findFlights(String, String, int, int)}, whatever the validators, and
+	 * returned as modified; the implementations whose own calls to it are cached
+	 * must override it.
+	 * </p>
+	 * 
+	 * @param key
+	 *            the schedule key
+	 * @param validators
+	 *            the validators of the cached schedule, or {@code null} if unknown,
+	 *            to fetch it anyway
+	 * @return the result of the revalidation
+	 * @throws IllegalStateException
+	 *             if the schedule is {@link #UNAVAILABLE}
+	 */
+	default ScheduleRevalidation revalidate(ScheduleKey key, ScheduleValidators validators) {
+		Iterable<Flight> flights = findFlights(key.getAirportFrom(), key.getAirportTo(),
+				key.getYearMonth().getYear(), key.getYearMonth().getMonthValue());
+		if (flights == UNAVAILABLE) {
+			throw new IllegalStateException("Failed revalidating " + key);
+		}
+		return new ScheduleRevalidation(FlightSchedule.of(key.getAirportFrom(), key.getAirportTo(), flights), null);
+	}
 }
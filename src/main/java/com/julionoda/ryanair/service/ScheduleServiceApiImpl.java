@@ -1,21 +1,25 @@
 package com.julionoda.ryanair.service;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.time.YearMonth;
+import java.util.Collections;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+import com.julionoda.ryanair.ApiClientConfiguration;
+import com.julionoda.ryanair.CacheConfiguration;
 import com.julionoda.ryanair.model.Flight;
 import com.netflix.hystrix.contrib.javanica.annotation.HystrixCommand;
 
@@ -30,6 +34,7 @@ import lombok.NonNull;
  *
  */
 @Service
+@ConditionalOnProperty(name = "apiClient", havingValue = "restTemplate", matchIfMissing = true)
 public class ScheduleServiceApiImpl implements ScheduleService {
 	/**
 	 * Endpoint of the schedules API.
@@ -44,21 +49,65 @@ public class ScheduleServiceApiImpl implements ScheduleService {
 
 	/**
 	 * Class constructor.
+	 * 
+	 * @param restTemplate
+	 *            the REST template to query the external API, on the shared pool of
+	 *            connections
 	 */
-	public ScheduleServiceApiImpl() {
-		// We might have used a global RestTemplate or RestTemplateBuilder, but that
-		// would add some complexity to integration tests; and don't seem needed for
-		// this simple scenario.
-		this.restTemplate = new RestTemplate();
+	public ScheduleServiceApiImpl(@Qualifier(ApiClientConfiguration.API_REST_TEMPLATE) RestTemplate restTemplate) {
+		this.restTemplate = restTemplate;
 	}
 
+	// schedules with flights and missing ones are cached apart, the latter only for
+	// a short while; the empty fallback of an upstream failure is not cached, so it
+	// is not served until the entry expires
+	@Caching(cacheable = {
+			@Cacheable(cacheNames = CacheConfiguration.SCHEDULES_CACHE,
+					keyGenerator = CacheConfiguration.SCHEDULE_KEY_GENERATOR, unless = "!#result.iterator().hasNext()"),
+			@Cacheable(cacheNames = CacheConfiguration.MISSING_SCHEDULES_CACHE,
+					keyGenerator = CacheConfiguration.SCHEDULE_KEY_GENERATOR,
+					unless = "!T(com.julionoda.ryanair.service.ScheduleService).isMissing(#result)") })
 	@HystrixCommand(fallbackMethod = "findFlightsFallback")
 	@Override
 	public Iterable<Flight> findFlights(String airportFrom, String airportTo, int year, int month) {
-		ResponseEntity<MonthlySchedule> response = restTemplate.exchange(schedulesApiEndpoint, HttpMethod.GET, null,
-				new ParameterizedTypeReference<MonthlySchedule>() {
-				}, airportFrom, airportTo, year, month);
-		return extractFlights(year, airportFrom, airportTo, response.getBody());
+		try {
+			// the payload is decoded as it is read, straight into the compact schedule
+			return restTemplate.execute(schedulesApiEndpoint, HttpMethod.GET,
+					request -> request.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_JSON)),
+					response -> MonthlyScheduleDecoder.decode(response.getBody(), year, airportFrom, airportTo),
+					airportFrom, airportTo, year, month);
+		} catch (HttpClientErrorException e) {
+			if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+				// no schedule for the route and month, which is no failure of the API
+				return FlightSchedule.of(airportFrom, airportTo, Collections.emptyList());
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public ScheduleRevalidation revalidate(ScheduleKey key, ScheduleValidators validators) {
+		YearMonth month = key.getYearMonth();
+		try {
+			return restTemplate.execute(schedulesApiEndpoint, HttpMethod.GET, request -> {
+				request.getHeaders().setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+				if (validators != null) {
+					validators.addTo(request.getHeaders());
+				}
+			}, response -> new ScheduleRevalidation(
+					(response.getStatusCode() == HttpStatus.NOT_MODIFIED) ? null
+							: MonthlyScheduleDecoder.decode(response.getBody(), month.getYear(),
+									key.getAirportFrom(), key.getAirportTo()),
+					ScheduleValidators.of(response.getHeaders())), key.getAirportFrom(), key.getAirportTo(),
+					month.getYear(), month.getMonthValue());
+		} catch (HttpClientErrorException e) {
+			if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+				// no schedule for the route and month anymore, as in findFlights
+				return new ScheduleRevalidation(
+						FlightSchedule.of(key.getAirportFrom(), key.getAirportTo(), Collections.emptyList()), null);
+			}
+			throw e;
+		}
 	}
 
 	/**
@@ -66,61 +115,10 @@ public class ScheduleServiceApiImpl implements ScheduleService {
 	 * use if the external API has problems. This allows to keep processing data
 	 * even if the endpoint fails.
 	 * 
-	 * @return an empty list
+	 * @return no flights, as {@link ScheduleService#UNAVAILABLE}
 	 */
 	public Iterable<Flight> findFlightsFallback(String airportFrom, String airportTo, int year, int month) {
-		return new ArrayList<>();
-	}
-
-	/**
-	 * Extracts flights from a given monthly schedule.
-	 * 
-	 * @param year
-	 *            the year
-	 * @param airportFrom
-	 *            the departure airport IATA code
-	 * @param airportTo
-	 *            the arrival airport IATA code
-	 * @param schedule
-	 *            the monthly schedule
-	 * @return an iterable of flights in the given schedule
-	 */
-	static Iterable<Flight> extractFlights(int year, String airportFrom, String airportTo, MonthlySchedule schedule) {
-		return StreamSupport
-				.stream(schedule.getDays().spliterator(), true)
-				.flatMap(dailySchedule -> StreamSupport
-						.stream(dailySchedule.getFlights().spliterator(), true)
-						.map(scheduledFlight -> createFlight(year, schedule.getMonth(), dailySchedule.getDay(),
-								airportFrom, airportTo, scheduledFlight)))
-				.collect(Collectors.toList());
-	}
-
-	/**
-	 * Creates a {@link Flight} from a given {@link ScheduledFlight}.
-	 * 
-	 * @param year
-	 *            the year
-	 * @param month
-	 *            the month
-	 * @param day
-	 *            the day
-	 * @param departureAirport
-	 *            the departure airport IATA code
-	 * @param arrivalAirport
-	 *            the arrival airport IATA code
-	 * @param scheduledFlight
-	 *            the scheduled flight
-	 * @return a new {@link Flight} from a given {@link ScheduledFlight}.
-	 */
-	static Flight createFlight(int year, int month, int day, String departureAirport, String arrivalAirport,
-			ScheduledFlight scheduledFlight) {
-		LocalDate departureDate = LocalDate.of(year, month, day);
-		return new Flight(scheduledFlight.getNumber(), departureAirport, arrivalAirport,
-				LocalDateTime.of(departureDate, scheduledFlight.getDepartureTime()),
-				LocalDateTime.of(
-						(scheduledFlight.getArrivalTime().isAfter(scheduledFlight.getDepartureTime())) ? departureDate
-								: departureDate.plusDays(1),
-						scheduledFlight.getArrivalTime()));
+		return UNAVAILABLE;
 	}
 
 	/**
@@ -131,6 +129,12 @@ public class ScheduleServiceApiImpl implements ScheduleService {
 	 * relevant to the rest of the application.
 	 * </p>
 	 * 
+	 * <p>
+	 * The responses of the external API are read with the
+	 * {@link MonthlyScheduleDecoder}, without creating these objects; they describe
+	 * the same payload, bound by Jackson.
+	 * </p>
+	 * 
 	 * @author jnoda
 	 *
 	 */
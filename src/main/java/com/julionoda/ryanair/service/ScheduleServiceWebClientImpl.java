@@ -0,0 +1,181 @@
+package com.julionoda.ryanair.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.model.Flight;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Implementation of {@link ScheduleService} that consumes the data from an
+ * external schedules API with a non-blocking client.
+ * 
+ * <p>
+ * The schedules are cached as in {@link ScheduleServiceApiImpl}, but by hand,
+ * as the cache annotations do not support asynchronous results: those with
+ * flights, and apart, for a short while, those the external API does not have.
+ * If the external API fails or does not answer in time, no flights are
+ * returned, and nothing is cached.
+ * </p>
+ * 
+ * <p>
+ * Enabled with {@code apiClient=webClient}.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "apiClient", havingValue = "webClient")
+public class ScheduleServiceWebClientImpl implements ScheduleService, AsyncScheduleService {
+	/**
+	 * Endpoint of the schedules API.
+	 */
+	@Value("${schedulesApiEndpoint}")
+	private String schedulesApiEndpoint;
+
+	/**
+	 * Maximum time to wait for the external API, in milliseconds.
+	 */
+	@Value("${webClientTimeout}")
+	private long timeout;
+
+	/**
+	 * Client to query the external API.
+	 */
+	@Autowired
+	private WebClient webClient;
+
+	/**
+	 * The cache manager
+	 */
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Override
+	public Iterable<Flight> findFlights(String airportFrom, String airportTo, int year, int month) {
+		return ScheduleFetcher.join(findFlightsAsync(airportFrom, airportTo, year, month));
+	}
+
+	@Override
+	public CompletableFuture<Iterable<Flight>> findFlightsAsync(String airportFrom, String airportTo, int year,
+			int month) {
+		Cache cache = cacheManager.getCache(CacheConfiguration.SCHEDULES_CACHE);
+		Cache missingCache = cacheManager.getCache(CacheConfiguration.MISSING_SCHEDULES_CACHE);
+		ScheduleKey key = new ScheduleKey(airportFrom, airportTo, YearMonth.of(year, month));
+		ValueWrapper cached = cache.get(key);
+		if (cached == null) {
+			cached = missingCache.get(key);
+		}
+		if (cached != null) {
+			@SuppressWarnings("unchecked")
+			Iterable<Flight> flights = (Iterable<Flight>) cached.get();
+			return CompletableFuture.completedFuture(flights);
+		}
+
+		return webClient
+				.get()
+				.uri(schedulesApiEndpoint, airportFrom, airportTo, year, month)
+				.retrieve()
+				.bodyToMono(byte[].class)
+				.timeout(Duration.ofMillis(timeout))
+				.map(payload -> decode(payload, year, airportFrom, airportTo))
+				// no schedule for the route and month, which is no failure of the API
+				.onErrorResume(WebClientResponseException.class,
+						e -> (e.getStatusCode() == HttpStatus.NOT_FOUND)
+								? Mono.just(FlightSchedule.of(airportFrom, airportTo, Collections.emptyList()))
+								: Mono.error(e))
+				.<Iterable<Flight>>map(flights -> {
+					// as with the blocking client
+					((flights.size() > 0) ? cache : missingCache).put(key, flights);
+					return flights;
+				})
+				.onErrorReturn(UNAVAILABLE)
+				.defaultIfEmpty(Collections.emptyList())
+				.toFuture();
+	}
+
+	@Override
+	public ScheduleRevalidation revalidate(ScheduleKey key, ScheduleValidators validators) {
+		YearMonth month = key.getYearMonth();
+		return webClient
+				.get()
+				.uri(schedulesApiEndpoint, key.getAirportFrom(), key.getAirportTo(), month.getYear(),
+						month.getMonthValue())
+				.headers(headers -> {
+					if (validators != null) {
+						validators.addTo(headers);
+					}
+				})
+				.exchange()
+				.flatMap(response -> {
+					HttpStatus status = response.statusCode();
+					ScheduleValidators responseValidators = ScheduleValidators
+							.of(response.headers().asHttpHeaders());
+					// the body is always consumed, so the connection is released
+					if (status == HttpStatus.NOT_MODIFIED) {
+						return response
+								.bodyToMono(Void.class)
+								.thenReturn(new ScheduleRevalidation(null, responseValidators));
+					}
+					if (status == HttpStatus.NOT_FOUND) {
+						// no schedule for the route and month anymore, as in findFlightsAsync
+						return response
+								.bodyToMono(Void.class)
+								.thenReturn(new ScheduleRevalidation(FlightSchedule.of(key.getAirportFrom(),
+										key.getAirportTo(), Collections.emptyList()), null));
+					}
+					if (status.isError()) {
+						return response
+								.bodyToMono(Void.class)
+								.then(Mono.<ScheduleRevalidation>error(
+										new IllegalStateException("Failed revalidating " + key + ": " + status)));
+					}
+					return response
+							.bodyToMono(byte[].class)
+							.defaultIfEmpty(new byte[0])
+							.map(payload -> new ScheduleRevalidation(
+									decode(payload, month.getYear(), key.getAirportFrom(), key.getAirportTo()),
+									responseValidators));
+				})
+				.block(Duration.ofMillis(timeout));
+	}
+
+	/**
+	 * Decodes a monthly schedule with the {@link MonthlyScheduleDecoder}.
+	 * 
+	 * @param payload
+	 *            the JSON payload
+	 * @param year
+	 *            the year of the schedule
+	 * @param airportFrom
+	 *            the departure airport IATA code
+	 * @param airportTo
+	 *            the arrival airport IATA code
+	 * @return the flights of the schedule
+	 */
+	static FlightSchedule decode(byte[] payload, int year, String airportFrom, String airportTo) {
+		try {
+			return MonthlyScheduleDecoder.decode(payload, year, airportFrom, airportTo);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,373 @@
+package com.julionoda.ryanair.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Route;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Saves the cached routes and schedules to a local file from time to time, and
+ * loads them back into the caches on startup, so that a restarted instance does
+ * not have to ask the external APIs for all of them again.
+ * 
+ * <p>
+ * The file is written to a temporary file first and then moved over the
+ * previous one, so it is never read half written; it is read memory mapped. A
+ * snapshot older than the configured age is ignored, as well as the schedules
+ * of the months already past.
+ * </p>
+ * 
+ * <p>
+ * The format is a header (magic number, version and creation time), a table of
+ * the airport codes, then the routes and the schedules, with the airports as
+ * indexes of the table and the flights encoded by the
+ * {@link FlightScheduleCodec}.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Slf4j
+@Component
+public class ScheduleSnapshot {
+	/**
+	 * First bytes of a snapshot file.
+	 */
+	static final int MAGIC = 0x52594e53;
+
+	/**
+	 * Version of the format of the snapshot files.
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * Whether the snapshots are saved and loaded.
+	 */
+	@Value("${scheduleSnapshotEnabled}")
+	private boolean enabled;
+
+	/**
+	 * Path of the snapshot file.
+	 */
+	@Value("${scheduleSnapshotFile}")
+	private String file;
+
+	/**
+	 * Maximum age of a snapshot to be loaded, in milliseconds.
+	 */
+	@Value("${scheduleSnapshotMaxAge}")
+	private long maxAge;
+
+	/**
+	 * The cache manager, whose routes and schedules are saved.
+	 */
+	@Autowired
+	private CacheManager cacheManager;
+
+	/**
+	 * The dictionary where the airports of the snapshot are interned.
+	 */
+	@Autowired
+	private AirportDictionary airportDictionary;
+
+	/**
+	 * Loads the last snapshot, if any and recent enough, into the caches.
+	 */
+	@PostConstruct
+	public void load() {
+		Path path = Paths.get(file);
+		if (!enabled || !Files.exists(path)) {
+			return;
+		}
+
+		try {
+			Snapshot snapshot = read(path, airportDictionary);
+			long age = System.currentTimeMillis() - snapshot.getCreatedAt();
+			if (age > maxAge) {
+				log.info("Ignored snapshot {}, {} ms old", path, age);
+				return;
+			}
+
+			// the routes are cached with the key of a method without parameters
+			cacheManager.getCache(CacheConfiguration.ROUTES_CACHE).put(SimpleKey.EMPTY, snapshot.getRoutes());
+
+			Cache schedules = cacheManager.getCache(CacheConfiguration.SCHEDULES_CACHE);
+			YearMonth currentMonth = YearMonth.now();
+			int loaded = 0;
+			for (Map.Entry<ScheduleKey, FlightSchedule> entry : snapshot.getSchedules().entrySet()) {
+				if (!entry.getKey().getYearMonth().isBefore(currentMonth)) {
+					schedules.put(entry.getKey(), entry.getValue());
+					loaded++;
+				}
+			}
+			log.info("Loaded {} routes and {} schedules from snapshot {}", snapshot.getRoutes().size(), loaded,
+					path);
+		} catch (IOException | RuntimeException e) {
+			// not worth failing the startup, the data will be fetched again
+			log.warn("Could not load snapshot " + path, e);
+		}
+	}
+
+	/**
+	 * Saves the cached routes and schedules, if any, to the snapshot file.
+	 */
+	@PreDestroy
+	@Scheduled(initialDelayString = "${scheduleSnapshotInterval}", fixedDelayString = "${scheduleSnapshotInterval}")
+	public void save() {
+		if (!enabled) {
+			return;
+		}
+
+		List<Route> routes = findCachedRoutes();
+		if (routes == null) {
+			// nothing asked yet, do not overwrite the last snapshot
+			return;
+		}
+
+		Map<ScheduleKey, FlightSchedule> schedules = findCachedSchedules();
+		Path path = Paths.get(file);
+		try {
+			write(path, new Snapshot(System.currentTimeMillis(), routes, schedules));
+			log.info("Saved {} routes and {} schedules to snapshot {}", routes.size(), schedules.size(), path);
+		} catch (IOException e) {
+			log.warn("Could not save snapshot " + path, e);
+		}
+	}
+
+	/**
+	 * Finds the cached routes.
+	 * 
+	 * @return the cached routes, or null if not cached
+	 */
+	@SuppressWarnings("unchecked")
+	List<Route> findCachedRoutes() {
+		Cache.ValueWrapper cached = cacheManager.getCache(CacheConfiguration.ROUTES_CACHE).get(SimpleKey.EMPTY);
+		if ((cached == null) || (cached.get() == null)) {
+			return null;
+		}
+
+		List<Route> routes = new ArrayList<>();
+		((Iterable<Route>) cached.get()).forEach(routes::add);
+		return routes;
+	}
+
+	/**
+	 * Finds the cached schedules.
+	 * 
+	 * @return the cached schedules by key
+	 */
+	@SuppressWarnings("unchecked")
+	Map<ScheduleKey, FlightSchedule> findCachedSchedules() {
+		Map<Object, Object> cached = ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) cacheManager
+				.getCache(CacheConfiguration.SCHEDULES_CACHE)
+				.getNativeCache()).asMap();
+
+		Map<ScheduleKey, FlightSchedule> result = new LinkedHashMap<>();
+		cached.forEach((key, value) -> {
+			ScheduleKey scheduleKey = (ScheduleKey) key;
+			result.put(scheduleKey, FlightSchedule.of(scheduleKey.getAirportFrom(), scheduleKey.getAirportTo(),
+					(Iterable<Flight>) value));
+		});
+		return result;
+	}
+
+	/**
+	 * Writes a snapshot to the given file, replacing it.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	static void write(Path path, Snapshot snapshot) throws IOException {
+		// table of the airports, so each one is written once
+		Map<String, Integer> airports = new LinkedHashMap<>();
+		snapshot.getRoutes().forEach(route -> {
+			airports.putIfAbsent(route.getAirportFrom(), airports.size());
+			airports.putIfAbsent(route.getAirportTo(), airports.size());
+		});
+		snapshot.getSchedules().keySet().forEach(key -> {
+			airports.putIfAbsent(key.getAirportFrom(), airports.size());
+			airports.putIfAbsent(key.getAirportTo(), airports.size());
+		});
+
+		Path directory = path.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(snapshot.getCreatedAt());
+
+			out.writeInt(airports.size());
+			for (String airport : airports.keySet()) {
+				writeString(out, airport);
+			}
+
+			out.writeInt(snapshot.getRoutes().size());
+			for (Route route : snapshot.getRoutes()) {
+				out.writeInt(airports.get(route.getAirportFrom()));
+				out.writeInt(airports.get(route.getAirportTo()));
+				writeString(out, (route.getConnectingAirport() == null) ? "" : route.getConnectingAirport());
+			}
+
+			out.writeInt(snapshot.getSchedules().size());
+			for (Map.Entry<ScheduleKey, FlightSchedule> entry : snapshot.getSchedules().entrySet()) {
+				ScheduleKey key = entry.getKey();
+				FlightSchedule schedule = entry.getValue();
+				out.writeInt(airports.get(key.getAirportFrom()));
+				out.writeInt(airports.get(key.getAirportTo()));
+				out.writeInt(key.getYearMonth().getYear());
+				out.writeByte(key.getYearMonth().getMonthValue());
+				FlightScheduleCodec.write(out, schedule);
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a snapshot from the given file.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @param dictionary
+	 *            the dictionary where the airports are interned
+	 * @return the snapshot
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a valid snapshot
+	 */
+	static Snapshot read(Path path, AirportDictionary dictionary) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if ((buffer.remaining() < 8) || (buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+				throw new IOException("Not a snapshot of version " + VERSION + ": " + path);
+			}
+			long createdAt = buffer.getLong();
+
+			String[] airports = new String[buffer.getInt()];
+			for (int i = 0; i < airports.length; i++) {
+				airports[i] = dictionary.intern(readString(buffer));
+			}
+
+			int routeCount = buffer.getInt();
+			List<Route> routes = new ArrayList<>(routeCount);
+			for (int i = 0; i < routeCount; i++) {
+				String airportFrom = airports[buffer.getInt()];
+				String airportTo = airports[buffer.getInt()];
+				String connectingAirport = readString(buffer);
+				routes.add(Route
+						.builder()
+						.airportFrom(airportFrom)
+						.airportTo(airportTo)
+						.connectingAirport(
+								connectingAirport.isEmpty() ? null : dictionary.intern(connectingAirport))
+						.build());
+			}
+
+			int scheduleCount = buffer.getInt();
+			Map<ScheduleKey, FlightSchedule> schedules = new HashMap<>(scheduleCount * 2);
+			for (int i = 0; i < scheduleCount; i++) {
+				String airportFrom = airports[buffer.getInt()];
+				String airportTo = airports[buffer.getInt()];
+				YearMonth yearMonth = YearMonth.of(buffer.getInt(), buffer.get());
+				schedules.put(new ScheduleKey(airportFrom, airportTo, yearMonth),
+						FlightScheduleCodec.read(buffer, airportFrom, airportTo));
+			}
+			return new Snapshot(createdAt, routes, schedules);
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new IOException("Truncated snapshot: " + path, e);
+		}
+	}
+
+	/**
+	 * Writes a string as its length followed by its UTF-8 bytes.
+	 * 
+	 * @param out
+	 *            the output
+	 * @param value
+	 *            the string
+	 * @throws IOException
+	 *             if it cannot be written
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+	 * 
+	 * @param buffer
+	 *            the buffer to read from
+	 * @return the string
+	 */
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xffff];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Represents the contents of a snapshot.
+	 * 
+	 * @author jnoda
+	 */
+	@lombok.Value
+	static class Snapshot {
+		/**
+		 * Time when the snapshot was taken, in milliseconds since the epoch.
+		 */
+		private long createdAt;
+
+		/**
+		 * The routes.
+		 */
+		@NonNull
+		private List<Route> routes;
+
+		/**
+		 * The schedules by key.
+		 */
+		@NonNull
+		private Map<ScheduleKey, FlightSchedule> schedules;
+	}
+}
@@ -0,0 +1,54 @@
+package com.julionoda.ryanair.service;
+
+import org.springframework.http.HttpHeaders;
+
+import lombok.Value;
+
+/**
+ * Represents the validators of a schedule fetched from the external API (its
+ * entity tag and last modification date, as given by the API), to ask for it
+ * again only if it was modified.
+ * 
+ * @author jnoda
+ *
+ */
+@Value
+public class ScheduleValidators {
+	/**
+	 * The entity tag, or {@code null} if not given.
+	 */
+	private String etag;
+
+	/**
+	 * The last modification date, or {@code null} if not given.
+	 */
+	private String lastModified;
+
+	/**
+	 * Gets the validators of a response.
+	 * 
+	 * @param headers
+	 *            the headers of the response
+	 * @return the validators, or {@code null} if the response has none
+	 */
+	public static ScheduleValidators of(HttpHeaders headers) {
+		String etag = headers.getETag();
+		String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+		return ((etag != null) || (lastModified != null)) ? new ScheduleValidators(etag, lastModified) : null;
+	}
+
+	/**
+	 * Makes a request conditional on the schedule being modified.
+	 * 
+	 * @param headers
+	 *            the headers of the request
+	 */
+	public void addTo(HttpHeaders headers) {
+		if (etag != null) {
+			headers.set(HttpHeaders.IF_NONE_MATCH, etag);
+		}
+		if (lastModified != null) {
+			headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+		}
+	}
+}
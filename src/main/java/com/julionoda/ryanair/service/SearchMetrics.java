@@ -0,0 +1,226 @@
+package com.julionoda.ryanair.service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Metrics of the stages of the search of interconnections, shown by the
+ * metrics endpoint, to tell where the time of a query goes:
+ * 
+ * <ul>
+ * <li>{@value #STAGE_TIMER}: time of each stage, tagged by {@link Stage}.</li>
+ * <li>{@value #FETCH_TIMER}: time of each schedule fetch, tagged by
+ * {@link FetchResult}.</li>
+ * <li>{@value #CANDIDATES_SUMMARY} and {@value #RESULTS_SUMMARY}: flights
+ * examined, and interconnections found, by each search.</li>
+ * </ul>
+ * 
+ * <p>
+ * The meters are registered once, so recording costs no lookup. Their
+ * percentiles are configured with the
+ * {@code management.metrics.distribution} properties.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Component
+public class SearchMetrics {
+	/**
+	 * Name of the timer of the stages.
+	 */
+	public static final String STAGE_TIMER = "interconnections.stage";
+
+	/**
+	 * Name of the timer of the schedule fetches.
+	 */
+	public static final String FETCH_TIMER = "schedules.fetch";
+
+	/**
+	 * Name of the summary of the flights examined by each search.
+	 */
+	public static final String CANDIDATES_SUMMARY = "interconnections.candidates";
+
+	/**
+	 * Name of the summary of the interconnections found by each search.
+	 */
+	public static final String RESULTS_SUMMARY = "interconnections.results";
+
+	/**
+	 * The registry of the meters.
+	 */
+	private final MeterRegistry registry;
+
+	/**
+	 * Timers of the stages.
+	 */
+	private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+
+	/**
+	 * Timers of the schedule fetches, by result.
+	 */
+	private final Map<FetchResult, Timer> fetchTimers = new EnumMap<>(FetchResult.class);
+
+	/**
+	 * Summary of the flights examined by each search.
+	 */
+	private final DistributionSummary candidates;
+
+	/**
+	 * Summary of the interconnections found by each search.
+	 */
+	private final DistributionSummary results;
+
+	/**
+	 * Class constructor.
+	 * 
+	 * @param registry
+	 *            the registry of the meters
+	 */
+	public SearchMetrics(MeterRegistry registry) {
+		this.registry = registry;
+		for (Stage stage : Stage.values()) {
+			stageTimers.put(stage, Timer
+					.builder(STAGE_TIMER)
+					.tag("stage", stage.name().toLowerCase(Locale.ROOT))
+					.description("Time of each stage of the search of interconnections")
+					.register(registry));
+		}
+		for (FetchResult result : FetchResult.values()) {
+			fetchTimers.put(result, Timer
+					.builder(FETCH_TIMER)
+					.tag("result", result.name().toLowerCase(Locale.ROOT))
+					.description("Time of each fetch of a monthly schedule")
+					.register(registry));
+		}
+		candidates = DistributionSummary
+				.builder(CANDIDATES_SUMMARY)
+				.baseUnit("flights")
+				.description("Flights examined by each search of interconnections")
+				.register(registry);
+		results = DistributionSummary
+				.builder(RESULTS_SUMMARY)
+				.baseUnit("interconnections")
+				.description("Interconnections found by each search")
+				.register(registry);
+	}
+
+	/**
+	 * Starts timing a stage or a fetch.
+	 * 
+	 * @return the sample to stop once done
+	 */
+	public Timer.Sample start() {
+		return Timer.start(registry);
+	}
+
+	/**
+	 * Stops timing a stage.
+	 * 
+	 * @param sample
+	 *            the sample started with the stage
+	 * @param stage
+	 *            the stage
+	 */
+	public void stop(Timer.Sample sample, Stage stage) {
+		sample.stop(stageTimers.get(stage));
+	}
+
+	/**
+	 * Stops timing a search, and records how many flights it examined and how many
+	 * interconnections it found.
+	 * 
+	 * @param sample
+	 *            the sample started with the search
+	 * @param candidateCount
+	 *            the number of flights examined
+	 * @param resultCount
+	 *            the number of interconnections found
+	 */
+	public void stopSearch(Timer.Sample sample, int candidateCount, int resultCount) {
+		stop(sample, Stage.SEARCH);
+		candidates.record(candidateCount);
+		results.record(resultCount);
+	}
+
+	/**
+	 * Stops timing a schedule fetch.
+	 * 
+	 * @param sample
+	 *            the sample started with the fetch
+	 * @param result
+	 *            the result of the fetch
+	 */
+	public void stopFetch(Timer.Sample sample, FetchResult result) {
+		sample.stop(fetchTimers.get(result));
+	}
+
+	/**
+	 * Stages of the search of interconnections.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	public enum Stage {
+		/**
+		 * Loading the routes, and indexing them in the route graph.
+		 */
+		ROUTES,
+
+		/**
+		 * Finding the routes that may be part of an interconnection.
+		 */
+		FILTER,
+
+		/**
+		 * Joining or scanning the flights of those routes.
+		 */
+		SEARCH,
+
+		/**
+		 * Writing the interconnections to the response.
+		 */
+		SERIALIZE
+	}
+
+	/**
+	 * Results of a schedule fetch.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	public enum FetchResult {
+		/**
+		 * The schedule was cached.
+		 */
+		HIT,
+
+		/**
+		 * The schedule was cached, but stale, so it was revalidated in the
+		 * background.
+		 */
+		STALE,
+
+		/**
+		 * The schedule was fetched from the external API.
+		 */
+		MISS,
+
+		/**
+		 * The external API failed, and the fallback had no flights.
+		 */
+		FALLBACK,
+
+		/**
+		 * The fetch failed, without a fallback.
+		 */
+		ERROR
+	}
+}
@@ -0,0 +1,381 @@
+package com.julionoda.ryanair.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+import lombok.NonNull;
+
+/**
+ * Search of interconnections with any number of legs, which follows the flights
+ * forward in time from the departure airport.
+ * 
+ * <p>
+ * Before searching, the latest time to be at each airport, with a given number
+ * of legs left, and still reach the arrival airport in time is computed
+ * backwards from the arrival airport. The search only takes the flights that
+ * arrive before that deadline, and stops looking at the flights of an airport
+ * once they depart too late, so it never follows a flight that cannot lead to
+ * an interconnection, instead of trying every combination of flights.
+ * </p>
+ * 
+ * <p>
+ * Interconnections never go through the same airport twice, and a connection
+ * is valid if the next flight departs more than
+ * {@value InterconnectionServiceImpl#MIN_CONNECTION_MINUTES} minutes after the
+ * arrival.
+ * </p>
+ * 
+ * <p>
+ * Airports are held as identifiers of an {@link AirportDictionary}, so the
+ * state of the search is kept in arrays indexed by airport; an airport it does
+ * not know has no routes, so there are no interconnections to search, and it is
+ * not added.
+ * </p>
+ * 
+ * <p>
+ * Instances are meant for a single query and are not thread safe.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class TimeDependentSearch {
+	/**
+	 * Departure airport identifier, or -1 if unknown.
+	 */
+	private final short departure;
+
+	/**
+	 * Arrival airport identifier, or -1 if unknown.
+	 */
+	private final short arrival;
+
+	/**
+	 * No schedules.
+	 */
+	private static final FlightSchedule[] NO_SCHEDULES = new FlightSchedule[0];
+
+	/**
+	 * Maximum number of legs of an interconnection.
+	 */
+	private final int maxLegs;
+
+	/**
+	 * Schedules, by departure airport identifier.
+	 */
+	private final FlightSchedule[][] outgoing;
+
+	/**
+	 * Arrival airport identifiers of the schedules, by departure airport
+	 * identifier, as in {@link #outgoing}.
+	 */
+	private final short[][] outgoingTo;
+
+	/**
+	 * Latest arrival time to each airport, by airport identifier and number of
+	 * legs left, that still allows to reach the arrival airport. Minutes since the
+	 * epoch, or {@code null} if no schedule departs from the airport.
+	 */
+	private final int[][] latestArrivals;
+
+	/**
+	 * Flights already created, by schedule and index.
+	 */
+	private final Map<FlightSchedule, Flight[]> flights = new IdentityHashMap<>();
+
+	/**
+	 * Class constructor.
+	 * 
+	 * @param dictionary
+	 *            the dictionary of the airports, where those of the schedules are
+	 *            added if not known yet
+	 * @param departure
+	 *            the departure airport IATA code
+	 * @param arrival
+	 *            the arrival airport IATA code
+	 * @param maxLegs
+	 *            the maximum number of legs of an interconnection
+	 * @param schedules
+	 *            the schedules of the routes that can be part of an
+	 *            interconnection, with only the flights in the desired timeframe
+	 */
+	public TimeDependentSearch(@NonNull AirportDictionary dictionary, @NonNull String departure,
+			@NonNull String arrival, int maxLegs, @NonNull Collection<FlightSchedule> schedules) {
+		// the airports of the schedules are added before the size of the dictionary is
+		// read, and the query ones are only looked up
+		FlightSchedule[] scheduleArray = schedules.toArray(new FlightSchedule[schedules.size()]);
+		short[] airportsFrom = new short[scheduleArray.length];
+		short[] airportsTo = new short[scheduleArray.length];
+		for (int i = 0; i < scheduleArray.length; i++) {
+			airportsFrom[i] = dictionary.getId(scheduleArray[i].getAirportFrom());
+			airportsTo[i] = dictionary.getId(scheduleArray[i].getAirportTo());
+		}
+		this.departure = dictionary.findId(departure);
+		this.arrival = dictionary.findId(arrival);
+		this.maxLegs = maxLegs;
+
+		int airports = dictionary.size();
+		List<List<Integer>> grouped = new ArrayList<>(airports);
+		for (int i = 0; i < airports; i++) {
+			grouped.add(null);
+		}
+		for (int i = 0; isKnown() && (i < scheduleArray.length); i++) {
+			// interconnections end on the arrival airport, and never return to the
+			// departure one
+			if ((airportsFrom[i] != this.arrival) && (airportsTo[i] != this.departure)) {
+				List<Integer> group = grouped.get(airportsFrom[i]);
+				if (group == null) {
+					group = new ArrayList<>();
+					grouped.set(airportsFrom[i], group);
+				}
+				group.add(i);
+			}
+		}
+
+		this.outgoing = new FlightSchedule[airports][];
+		this.outgoingTo = new short[airports][];
+		this.latestArrivals = new int[airports][];
+		for (int airport = 0; airport < airports; airport++) {
+			List<Integer> group = grouped.get(airport);
+			int size = (group != null) ? group.size() : 0;
+			outgoing[airport] = (size > 0) ? new FlightSchedule[size] : NO_SCHEDULES;
+			outgoingTo[airport] = new short[size];
+			for (int i = 0; i < size; i++) {
+				outgoing[airport][i] = scheduleArray[group.get(i)];
+				outgoingTo[airport][i] = airportsTo[group.get(i)];
+			}
+		}
+		computeLatestArrivals();
+	}
+
+	/**
+	 * Searches the interconnections, and hands them over to the given consumer in
+	 * batches, one for each first flight.
+	 * 
+	 * @param consumer
+	 *            the consumer of each batch of interconnections
+	 */
+	public void search(Consumer<? super List<Interconnection>> consumer) {
+		search(InterconnectionSet.Filter.ALL, consumer);
+	}
+
+	/**
+	 * Searches the interconnections the given filter accepts, and hands them over
+	 * to the given consumer in batches, one for each first flight. The filter is
+	 * checked before the flights of each interconnection are created.
+	 * 
+	 * @param filter
+	 *            the filter of the interconnections worth creating
+	 * @param consumer
+	 *            the consumer of each batch of interconnections
+	 */
+	public void search(InterconnectionSet.Filter filter, Consumer<? super List<Interconnection>> consumer) {
+		if (!isKnown()) {
+			return;
+		}
+
+		Path path = new Path(maxLegs);
+		boolean[] visited = new boolean[outgoing.length];
+		visited[departure] = true;
+
+		for (int k = 0; k < outgoing[departure].length; k++) {
+			FlightSchedule schedule = outgoing[departure][k];
+			short to = outgoingTo[departure][k];
+			for (int i = 0; i < schedule.size() && isInTime(schedule, i, departure, maxLegs); i++) {
+				if (isFeasible(schedule, to, i, maxLegs - 1)) {
+					List<Interconnection> batch = new ArrayList<>();
+					follow(schedule, to, i, maxLegs - 1, path, visited, filter, batch);
+					consumer.accept(batch);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Follows a flight, adding the interconnections it leads to.
+	 * 
+	 * @param schedule
+	 *            the schedule of the flight
+	 * @param airport
+	 *            the arrival airport identifier of the schedule
+	 * @param index
+	 *            the index of the flight
+	 * @param legsLeft
+	 *            the number of legs left after the flight
+	 * @param path
+	 *            the flights taken so far
+	 * @param visited
+	 *            the airports visited so far
+	 * @param filter
+	 *            the filter of the interconnections worth creating
+	 * @param result
+	 *            the interconnections found
+	 */
+	private void follow(FlightSchedule schedule, short airport, int index, int legsLeft, Path path,
+			boolean[] visited, InterconnectionSet.Filter filter, List<Interconnection> result) {
+		path.add(schedule, index);
+
+		if (airport == arrival) {
+			if (filter.accept(path.schedules[0].getDeparture(path.indexes[0]), schedule.getArrival(index),
+					path.size - 1)) {
+				List<Flight> legs = new ArrayList<>(path.size);
+				for (int i = 0; i < path.size; i++) {
+					legs.add(getFlight(path.schedules[i], path.indexes[i]));
+				}
+				result.add(new Interconnection(legs));
+			}
+		} else if (!visited[airport]) {
+			visited[airport] = true;
+			int ready = schedule.getArrival(index) + InterconnectionServiceImpl.MIN_CONNECTION_MINUTES;
+			for (int k = 0; k < outgoing[airport].length; k++) {
+				FlightSchedule next = outgoing[airport][k];
+				short nextAirport = outgoingTo[airport][k];
+				if (visited[nextAirport]) {
+					continue;
+				}
+				for (int i = next.findFirstDepartureAfter(ready); i < next.size()
+						&& isInTime(next, i, airport, legsLeft); i++) {
+					if (isFeasible(next, nextAirport, i, legsLeft - 1)) {
+						follow(next, nextAirport, i, legsLeft - 1, path, visited, filter, result);
+					}
+				}
+			}
+			visited[airport] = false;
+		}
+
+		path.size--;
+	}
+
+	/**
+	 * Determines if a flight departs early enough to be taken from an airport with
+	 * the given number of legs left. As flights are sorted, none of the following
+	 * ones can be taken if this one cannot.
+	 */
+	private boolean isInTime(FlightSchedule schedule, int index, short airport, int legsLeft) {
+		return schedule.getDeparture(index) - InterconnectionServiceImpl.MIN_CONNECTION_MINUTES
+				- 1 <= getLatestArrival(airport, legsLeft);
+	}
+
+	/**
+	 * Determines if a flight, to the given airport, arrives in time to reach the
+	 * arrival airport with the given number of legs left after it.
+	 */
+	private boolean isFeasible(FlightSchedule schedule, short airport, int index, int legsLeft) {
+		return schedule.getArrival(index) <= getLatestArrival(airport, legsLeft);
+	}
+
+	/**
+	 * Computes the latest arrival time to every airport, for each number of legs
+	 * left. For one leg, it is the latest departure to the arrival airport minus
+	 * the connection time; for more legs, the latest departure of a flight that
+	 * arrives in time with one leg less.
+	 */
+	private void computeLatestArrivals() {
+		for (int airport = 0; airport < outgoing.length; airport++) {
+			if (outgoing[airport].length > 0) {
+				latestArrivals[airport] = new int[maxLegs + 1];
+				Arrays.fill(latestArrivals[airport], Integer.MIN_VALUE);
+			}
+		}
+
+		for (int legs = 1; legs <= maxLegs; legs++) {
+			for (int airport = 0; airport < outgoing.length; airport++) {
+				if (latestArrivals[airport] == null) {
+					continue;
+				}
+				int latest = Integer.MIN_VALUE;
+				for (int k = 0; k < outgoing[airport].length; k++) {
+					FlightSchedule schedule = outgoing[airport][k];
+					// the latest feasible flight is the first one found from the end
+					for (int i = schedule.size() - 1; i >= 0 && schedule.getDeparture(i)
+							- InterconnectionServiceImpl.MIN_CONNECTION_MINUTES - 1 > latest; i--) {
+						if (isFeasible(schedule, outgoingTo[airport][k], i, legs - 1)) {
+							latest = schedule.getDeparture(i) - InterconnectionServiceImpl.MIN_CONNECTION_MINUTES - 1;
+						}
+					}
+				}
+				latestArrivals[airport][legs] = latest;
+			}
+		}
+	}
+
+	/**
+	 * Gets the latest arrival time to an airport, with the given number of legs
+	 * left, that still allows to reach the arrival airport.
+	 */
+	private int getLatestArrival(short airport, int legsLeft) {
+		if (airport == arrival) {
+			// the schedules only have flights arriving in time
+			return Integer.MAX_VALUE;
+		}
+		int[] latest = latestArrivals[airport];
+		return ((latest == null) || (legsLeft < 0)) ? Integer.MIN_VALUE : latest[legsLeft];
+	}
+
+	/**
+	 * Whether both the departure and the arrival airports are known.
+	 */
+	private boolean isKnown() {
+		return (departure >= 0) && (arrival >= 0);
+	}
+
+	/**
+	 * Gets the flight at the given index of a schedule, creating it only once.
+	 */
+	private Flight getFlight(FlightSchedule schedule, int index) {
+		Flight[] scheduleFlights = flights.computeIfAbsent(schedule, key -> new Flight[key.size()]);
+		if (scheduleFlights[index] == null) {
+			scheduleFlights[index] = schedule.toFlight(index);
+		}
+		return scheduleFlights[index];
+	}
+
+	/**
+	 * Flights taken so far, as their schedules and indexes, so they are only
+	 * created for the interconnections found.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	private static class Path {
+		/**
+		 * The schedules of the flights.
+		 */
+		final FlightSchedule[] schedules;
+
+		/**
+		 * The indexes of the flights in their schedules.
+		 */
+		final int[] indexes;
+
+		/**
+		 * The number of flights.
+		 */
+		int size;
+
+		/**
+		 * Class constructor.
+		 */
+		Path(int maxLegs) {
+			this.schedules = new FlightSchedule[maxLegs];
+			this.indexes = new int[maxLegs];
+		}
+
+		/**
+		 * Adds a flight.
+		 */
+		void add(FlightSchedule schedule, int index) {
+			schedules[size] = schedule;
+			indexes[size] = index;
+			size++;
+		}
+	}
+}
@@ -0,0 +1,465 @@
+package com.julionoda.ryanair.service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.julionoda.ryanair.model.Flight;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Timetable with every flight of the cached schedules, as arrays of
+ * connections sorted by departure, to be scanned by a {@link ConnectionScan}.
+ * 
+ * <p>
+ * The schedules cache tells the timetable about every schedule added or
+ * removed. The connections are kept by month, and only the months whose
+ * schedules changed are rebuilt, the next time they are asked for.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "interconnectionService", havingValue = "timetable")
+public class Timetable implements ScheduleCacheListener {
+	/**
+	 * The dictionary of the airports of the connections.
+	 */
+	@Autowired
+	private AirportDictionary airportDictionary;
+
+	/**
+	 * Schedules, by month and key.
+	 */
+	private final ConcurrentMap<YearMonth, ConcurrentMap<ScheduleKey, FlightSchedule>> schedules =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Months whose schedules changed since their connections were built.
+	 */
+	private final Set<YearMonth> changedMonths = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Connections, with the keys of their schedules, by month. Replaced as a whole
+	 * when any month is rebuilt.
+	 */
+	private volatile Map<YearMonth, MonthConnections> connections = Collections.emptyMap();
+
+	/**
+	 * Adds or replaces a schedule.
+	 * 
+	 * @param key
+	 *            the schedule key
+	 * @param schedule
+	 *            the schedule
+	 */
+	@Override
+	public void put(ScheduleKey key, FlightSchedule schedule) {
+		schedules.computeIfAbsent(key.getYearMonth(), month -> new ConcurrentHashMap<>()).put(key, schedule);
+		// marked after the change, so it is never missed by a rebuild
+		changedMonths.add(key.getYearMonth());
+	}
+
+	/**
+	 * Removes a schedule.
+	 * 
+	 * @param key
+	 *            the schedule key
+	 */
+	@Override
+	public void remove(ScheduleKey key) {
+		Map<ScheduleKey, FlightSchedule> monthSchedules = schedules.get(key.getYearMonth());
+		if ((monthSchedules != null) && (monthSchedules.remove(key) != null)) {
+			changedMonths.add(key.getYearMonth());
+		}
+	}
+
+	/**
+	 * Gets the connections departing not earlier than the given departure time and
+	 * arriving not after the given arrival time, in the given months, if the
+	 * given schedules are all in the timetable.
+	 * 
+	 * @param months
+	 *            the months, in chronological order
+	 * @param keys
+	 *            the keys of the schedules the connections must have, such as
+	 *            those just fetched, which may have been evicted or removed since
+	 * @param minDeparture
+	 *            the departure time, in minutes since the epoch
+	 * @param maxArrival
+	 *            the arrival time, in minutes since the epoch
+	 * @return the connections, sorted by departure, or {@code null} if any of the
+	 *         schedules is not in the timetable
+	 */
+	public Connections getConnections(List<YearMonth> months, Collection<ScheduleKey> keys, int minDeparture,
+			int maxArrival) {
+		if (!changedMonths.isEmpty()) {
+			rebuild();
+		}
+
+		// checked on the same connections that are returned
+		Map<YearMonth, MonthConnections> current = connections;
+		for (ScheduleKey key : keys) {
+			MonthConnections monthConnections = current.get(key.getYearMonth());
+			if ((monthConnections == null) || !monthConnections.getKeys().contains(key)) {
+				return null;
+			}
+		}
+
+		List<Connections> result = new ArrayList<>(months.size());
+		months.forEach(month -> {
+			MonthConnections monthConnections = current.get(month);
+			result.add((monthConnections != null) ? monthConnections.getConnections().filter(minDeparture, maxArrival)
+					: Connections.of(airportDictionary, Collections.emptyList()));
+		});
+		return Connections.concat(result);
+	}
+
+	/**
+	 * Rebuilds the connections of the months whose schedules changed.
+	 */
+	private synchronized void rebuild() {
+		Map<YearMonth, MonthConnections> rebuilt = new HashMap<>(connections);
+		for (YearMonth month : new ArrayList<>(changedMonths)) {
+			// unmarked before reading the schedules, so later changes mark it again
+			changedMonths.remove(month);
+			Map<ScheduleKey, FlightSchedule> monthSchedules = schedules.get(month);
+			if ((monthSchedules == null) || monthSchedules.isEmpty()) {
+				rebuilt.remove(month);
+			} else {
+				// a copy, as the schedules may change while they are read
+				Map<ScheduleKey, FlightSchedule> copy = new HashMap<>(monthSchedules);
+				rebuilt.put(month, new MonthConnections(copy.keySet(),
+						Connections.of(airportDictionary, copy.values())));
+			}
+		}
+		connections = Collections.unmodifiableMap(rebuilt);
+	}
+
+	/**
+	 * The connections of a month, with the keys of the schedules they were built
+	 * from.
+	 * 
+	 * @author jnoda
+	 */
+	@Value
+	private static class MonthConnections {
+		/**
+		 * The keys of the schedules.
+		 */
+		private Set<ScheduleKey> keys;
+
+		/**
+		 * The connections.
+		 */
+		private Connections connections;
+	}
+
+	/**
+	 * Immutable array of connections, that is, flights between two airports,
+	 * sorted by departure. The connections are stored as a structure of arrays,
+	 * as in {@link FlightSchedule}, with airports as identifiers of an
+	 * {@link AirportDictionary}.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	public static class Connections {
+		/**
+		 * The dictionary of the airports.
+		 */
+		private final AirportDictionary dictionary;
+
+		/**
+		 * Departure airport identifiers.
+		 */
+		private final short[] airportsFrom;
+
+		/**
+		 * Arrival airport identifiers.
+		 */
+		private final short[] airportsTo;
+
+		/**
+		 * Flight numbers.
+		 */
+		private final String[] numbers;
+
+		/**
+		 * Departure times, in minutes since the epoch, sorted.
+		 */
+		private final int[] departures;
+
+		/**
+		 * Arrival times, in minutes since the epoch.
+		 */
+		private final int[] arrivals;
+
+		/**
+		 * Class constructor. The connections must be already sorted by departure.
+		 */
+		private Connections(AirportDictionary dictionary, short[] airportsFrom, short[] airportsTo, String[] numbers,
+				int[] departures, int[] arrivals) {
+			this.dictionary = dictionary;
+			this.airportsFrom = airportsFrom;
+			this.airportsTo = airportsTo;
+			this.numbers = numbers;
+			this.departures = departures;
+			this.arrivals = arrivals;
+		}
+
+		/**
+		 * Creates the connections of every flight in the given schedules.
+		 * 
+		 * @param dictionary
+		 *            the dictionary of the airports, which are added to it if not
+		 *            known yet
+		 * @param schedules
+		 *            the schedules
+		 * @return the connections, sorted by departure
+		 */
+		public static Connections of(@NonNull AirportDictionary dictionary, Collection<FlightSchedule> schedules) {
+			int size = schedules.stream().mapToInt(FlightSchedule::size).sum();
+
+			// sort by departure through primitive keys: the departure in the high bits and
+			// the position in the low bits
+			long[] order = new long[size];
+			FlightSchedule[] positionSchedules = new FlightSchedule[size];
+			int[] positionIndexes = new int[size];
+			// the airports are looked up once per schedule, and placed by position too
+			short[] airportsFrom = new short[size];
+			short[] airportsTo = new short[size];
+			int position = 0;
+			for (FlightSchedule schedule : schedules) {
+				short airportFrom = dictionary.getId(schedule.getAirportFrom());
+				short airportTo = dictionary.getId(schedule.getAirportTo());
+				for (int i = 0; i < schedule.size(); i++) {
+					order[position] = ((long) schedule.getDeparture(i) << 32) | position;
+					positionSchedules[position] = schedule;
+					positionIndexes[position] = i;
+					airportsFrom[position] = airportFrom;
+					airportsTo[position] = airportTo;
+					position++;
+				}
+			}
+			Arrays.sort(order);
+
+			short[] sortedAirportsFrom = new short[size];
+			short[] sortedAirportsTo = new short[size];
+			String[] numbers = new String[size];
+			int[] departures = new int[size];
+			int[] arrivals = new int[size];
+			for (int i = 0; i < size; i++) {
+				int sorted = (int) order[i];
+				FlightSchedule schedule = positionSchedules[sorted];
+				int index = positionIndexes[sorted];
+				sortedAirportsFrom[i] = airportsFrom[sorted];
+				sortedAirportsTo[i] = airportsTo[sorted];
+				numbers[i] = schedule.getNumber(index);
+				departures[i] = schedule.getDeparture(index);
+				arrivals[i] = schedule.getArrival(index);
+			}
+			return new Connections(dictionary, sortedAirportsFrom, sortedAirportsTo, numbers, departures, arrivals);
+		}
+
+		/**
+		 * Concatenates connections where each one departs after the previous one, such
+		 * as consecutive months.
+		 * 
+		 * @param connections
+		 *            the connections, in chronological order, with the same
+		 *            dictionary; at least one
+		 * @return the connections of all of them
+		 */
+		public static Connections concat(List<Connections> connections) {
+			if (connections.size() == 1) {
+				return connections.get(0);
+			}
+
+			int size = connections.stream().mapToInt(Connections::size).sum();
+			Connections result = new Connections(connections.get(0).dictionary, new short[size], new short[size],
+					new String[size], new int[size], new int[size]);
+			int position = 0;
+			for (Connections part : connections) {
+				part.copyTo(0, part.size(), result, position);
+				position += part.size();
+			}
+			return result;
+		}
+
+		/**
+		 * Gets the connections that depart not earlier than the given departure time
+		 * and arrive not after the given arrival time. The times are local to each
+		 * airport, so a westbound connection may arrive in time even if it departs
+		 * after the arrival time.
+		 * 
+		 * @param minDeparture
+		 *            the departure time, in minutes since the epoch
+		 * @param maxArrival
+		 *            the arrival time, in minutes since the epoch
+		 * @return the connections in the timeframe
+		 */
+		public Connections filter(int minDeparture, int maxArrival) {
+			int from = findFirstDepartureAfter(minDeparture - 1);
+			int size = 0;
+			for (int i = from; i < size(); i++) {
+				if (arrivals[i] <= maxArrival) {
+					size++;
+				}
+			}
+			if (size == size()) {
+				return this;
+			}
+
+			Connections result = new Connections(dictionary, new short[size], new short[size], new String[size],
+					new int[size], new int[size]);
+			int position = 0;
+			for (int i = from; i < size(); i++) {
+				if (arrivals[i] <= maxArrival) {
+					copyTo(i, 1, result, position++);
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Copies connections to the given position of other connections.
+		 */
+		private void copyTo(int from, int length, Connections target, int position) {
+			System.arraycopy(airportsFrom, from, target.airportsFrom, position, length);
+			System.arraycopy(airportsTo, from, target.airportsTo, position, length);
+			System.arraycopy(numbers, from, target.numbers, position, length);
+			System.arraycopy(departures, from, target.departures, position, length);
+			System.arraycopy(arrivals, from, target.arrivals, position, length);
+		}
+
+		/**
+		 * Gets the number of connections.
+		 */
+		public int size() {
+			return departures.length;
+		}
+
+		/**
+		 * Gets the dictionary of the airports.
+		 */
+		public AirportDictionary getDictionary() {
+			return dictionary;
+		}
+
+		/**
+		 * Gets the departure airport identifier of a connection.
+		 * 
+		 * @param index
+		 *            the index of the connection
+		 */
+		public short getAirportFrom(int index) {
+			return airportsFrom[index];
+		}
+
+		/**
+		 * Gets the arrival airport identifier of a connection.
+		 * 
+		 * @param index
+		 *            the index of the connection
+		 */
+		public short getAirportTo(int index) {
+			return airportsTo[index];
+		}
+
+		/**
+		 * Gets the departure time of a connection, in minutes since the epoch.
+		 * 
+		 * @param index
+		 *            the index of the connection
+		 */
+		public int getDeparture(int index) {
+			return departures[index];
+		}
+
+		/**
+		 * Gets the arrival time of a connection, in minutes since the epoch.
+		 * 
+		 * @param index
+		 *            the index of the connection
+		 */
+		public int getArrival(int index) {
+			return arrivals[index];
+		}
+
+		/**
+		 * Creates the {@link Flight} of a connection.
+		 * 
+		 * @param index
+		 *            the index of the connection
+		 * @return a new flight
+		 */
+		public Flight toFlight(int index) {
+			return new Flight(numbers[index], dictionary.getCode(airportsFrom[index]),
+					dictionary.getCode(airportsTo[index]), FlightSchedule.toLocalDateTime(departures[index]),
+					FlightSchedule.toLocalDateTime(arrivals[index]));
+		}
+
+		/**
+		 * Finds the first connection departing after the given time.
+		 * 
+		 * @param minute
+		 *            the time, in minutes since the epoch
+		 * @return the index of the first connection departing after the time, or the
+		 *         size if there is none
+		 */
+		public int findFirstDepartureAfter(int minute) {
+			int low = 0;
+			int high = departures.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (departures[middle] > minute) {
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Finds the first of the given connection indexes, sorted by departure, that
+		 * departs after the given time.
+		 * 
+		 * @param indexes
+		 *            the connection indexes, sorted
+		 * @param minute
+		 *            the time, in minutes since the epoch
+		 * @return the position of the first index departing after the time, or the
+		 *         length of the indexes if there is none
+		 */
+		int findFirstDepartureAfter(int[] indexes, int minute) {
+			int low = 0;
+			int high = indexes.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (departures[indexes[middle]] > minute) {
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+			return low;
+		}
+	}
+}
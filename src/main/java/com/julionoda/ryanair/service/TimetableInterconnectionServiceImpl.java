@@ -0,0 +1,97 @@
+package com.julionoda.ryanair.service;
+
+import static java.util.stream.Collectors.toList;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+import com.julionoda.ryanair.model.Route;
+import com.julionoda.ryanair.service.Timetable.Connections;
+
+/**
+ * Implementation of {@link InterconnectionService} that scans the
+ * {@link Timetable} of cached schedules with a {@link ConnectionScan}, instead
+ * of joining the flights of the routes through each connecting airport.
+ * 
+ * <p>
+ * Enabled with {@code interconnectionService=timetable}.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "interconnectionService", havingValue = "timetable")
+public class TimetableInterconnectionServiceImpl extends AbstractInterconnectionService {
+	/**
+	 * The timetable
+	 */
+	@Autowired
+	private Timetable timetable;
+
+	/**
+	 * The dictionary of the airports
+	 */
+	@Autowired
+	private AirportDictionary airportDictionary;
+
+	/**
+	 * Plans a search: finds the schedules that may be part of an interconnection,
+	 * which must be cached, and so in the timetable, before the scan, and starts
+	 * fetching them.
+	 */
+	@Override
+	SearchPlan plan(RouteGraph routeGraph, String departure, String arrival, List<YearMonth> months,
+			int minDeparture, int maxArrival, int maxStops,
+			Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched) {
+		List<Route> routes = routeGraph.findRoutes(departure, arrival, maxStops + 1);
+		FetchPlan.Builder builder = FetchPlan.builder(departure, arrival, months, minDeparture, maxArrival);
+		routes.forEach(builder::addLeg);
+		FetchPlan fetchPlan = builder.build();
+		return new SearchPlan(departure, arrival, maxStops, months, minDeparture, maxArrival, !routes.isEmpty(),
+				Collections.emptyList(), routes, fetchPlan,
+				scheduleFetcher.fetchAllAsync(fetchPlan.getScheduleKeys(), fetched));
+	}
+
+	/**
+	 * Scans the timetable for the interconnections, once every schedule of the
+	 * plan is fetched. If any schedule with flights is no longer in the timetable,
+	 * as it was evicted or removed meanwhile, the flights fetched are scanned
+	 * instead.
+	 * 
+	 * @return the number of connections scanned
+	 */
+	@Override
+	int search(SearchPlan plan, InterconnectionSet.Filter filter, Consumer<? super List<Interconnection>> consumer) {
+		List<ScheduleKey> keys = ScheduleFetcher
+				.joinAll(plan.getSchedules())
+				.entrySet()
+				.stream()
+				.filter(entry -> entry.getValue().iterator().hasNext())
+				.map(Map.Entry::getKey)
+				.collect(toList());
+		Connections connections = timetable.getConnections(plan.getMonths(), keys, plan.getMinDeparture(),
+				plan.getMaxArrival());
+		if (connections == null) {
+			connections = Connections.of(airportDictionary, plan
+					.getRoutes()
+					.stream()
+					.map(route -> InterconnectionServiceImpl.findFlights(route, plan.getFetchPlan().getKeys(route),
+							plan.getMinDeparture(), plan.getMaxArrival(), plan.getSchedules()))
+					.collect(toList()));
+		}
+		new ConnectionScan(connections, plan.getDeparture(), plan.getArrival(), plan.getMaxStops() + 1)
+				.search(filter, consumer);
+		return connections.size();
+	}
+}
@@ -0,0 +1,160 @@
+package com.julionoda.ryanair.service;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.julionoda.ryanair.model.Interconnection;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Collects the best interconnections in a given order, up to a limit, and
+ * optionally after a given key, as the next page of a previous query.
+ * 
+ * <p>
+ * The worst interconnection kept is always at hand, in a bounded priority
+ * queue, so any worse one is discarded at once, and
+ * {@link #isCandidate(int, int, int)} tells it apart by its times and stops
+ * before it is even created. Not thread safe, as the consumers of a search.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class TopInterconnections {
+	/**
+	 * The order.
+	 */
+	private final InterconnectionOrder order;
+
+	/**
+	 * The maximum number of interconnections.
+	 */
+	private final int limit;
+
+	/**
+	 * The key the interconnections go after, or {@code null} if none.
+	 */
+	private final InterconnectionKey after;
+
+	/**
+	 * Comparator of the interconnections, the best first.
+	 */
+	private final Comparator<Ranked> comparator;
+
+	/**
+	 * The best interconnections, the worst first.
+	 */
+	private final PriorityQueue<Ranked> queue;
+
+	/**
+	 * Class constructor.
+	 * 
+	 * @param order
+	 *            the order
+	 * @param limit
+	 *            the maximum number of interconnections
+	 * @param after
+	 *            the key the interconnections go after, or {@code null} if none
+	 */
+	public TopInterconnections(@NonNull InterconnectionOrder order, int limit, InterconnectionKey after) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Invalid limit: " + limit);
+		}
+
+		this.order = order;
+		this.limit = limit;
+		this.after = after;
+		comparator = Comparator.comparing(Ranked::getKey, order.getComparator());
+		queue = new PriorityQueue<>(Math.min(limit, 1024), comparator.reversed());
+	}
+
+	/**
+	 * Whether an interconnection with the given times and stops may be one of the
+	 * best.
+	 * 
+	 * @param departure
+	 *            the departure time of the first leg, in minutes since the epoch
+	 * @param arrival
+	 *            the arrival time of the last leg, in minutes since the epoch
+	 * @param stops
+	 *            the number of stops
+	 * @return whether it may be one of the best
+	 */
+	public boolean isCandidate(int departure, int arrival, int stops) {
+		InterconnectionKey key = new InterconnectionKey(departure, arrival, stops, null);
+		Comparator<InterconnectionKey> comparator = order.getTimeComparator();
+		return ((after == null) || (comparator.compare(key, after) >= 0))
+				&& ((queue.size() < limit) || (comparator.compare(key, queue.peek().getKey()) <= 0));
+	}
+
+	/**
+	 * Adds an interconnection, if it is one of the best.
+	 * 
+	 * @param interconnection
+	 *            the interconnection
+	 */
+	public void add(Interconnection interconnection) {
+		InterconnectionKey key = InterconnectionKey.of(interconnection);
+		Comparator<InterconnectionKey> comparator = order.getComparator();
+		if ((after != null) && (comparator.compare(key, after) <= 0)) {
+			return;
+		}
+
+		if (queue.size() < limit) {
+			queue.add(new Ranked(key, interconnection));
+		} else if (comparator.compare(key, queue.peek().getKey()) < 0) {
+			queue.poll();
+			queue.add(new Ranked(key, interconnection));
+		}
+	}
+
+	/**
+	 * Adds a batch of interconnections, keeping only the best.
+	 * 
+	 * @param interconnections
+	 *            the interconnections
+	 */
+	public void addAll(List<Interconnection> interconnections) {
+		interconnections.forEach(this::add);
+	}
+
+	/**
+	 * Whether there are as many interconnections as the limit, so there may be
+	 * more after them.
+	 */
+	public boolean isFull() {
+		return queue.size() == limit;
+	}
+
+	/**
+	 * Gets the best interconnections, the best first.
+	 * 
+	 * @return the interconnections
+	 */
+	public List<Interconnection> getResults() {
+		return queue.stream().sorted(comparator).map(Ranked::getInterconnection).collect(toList());
+	}
+
+	/**
+	 * Represents an interconnection with its key.
+	 * 
+	 * @author jnoda
+	 */
+	@Value
+	private static class Ranked {
+		/**
+		 * The key.
+		 */
+		private InterconnectionKey key;
+
+		/**
+		 * The interconnection.
+		 */
+		private Interconnection interconnection;
+	}
+}
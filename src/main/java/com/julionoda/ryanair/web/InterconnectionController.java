@@ -1,19 +1,58 @@
 package com.julionoda.ryanair.web;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.julionoda.ryanair.model.Interconnection;
+import com.julionoda.ryanair.service.InterconnectionKey;
+import com.julionoda.ryanair.service.InterconnectionOrder;
+import com.julionoda.ryanair.service.InterconnectionQuery;
 import com.julionoda.ryanair.service.InterconnectionService;
+import com.julionoda.ryanair.service.SearchMetrics;
+import com.julionoda.ryanair.service.SearchMetrics.Stage;
+import com.julionoda.ryanair.service.TopInterconnections;
+
+import io.micrometer.core.instrument.Timer;
 
 import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * REST controller for interconnecting flights.
@@ -21,22 +60,300 @@ import lombok.Value;
  * @author jnoda
  *
  */
+@Slf4j
 @RestController
 public class InterconnectionController {
+	/**
+	 * Media type of newline delimited JSON.
+	 */
+	public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+	/**
+	 * Maximum number of stops if none is given.
+	 */
+	public static final int DEFAULT_MAX_STOPS = 1;
+
+	/**
+	 * Highest maximum number of stops allowed.
+	 */
+	public static final int MAX_STOPS = 3;
+
+	/**
+	 * Highest maximum number of interconnections allowed in a page.
+	 */
+	public static final int MAX_LIMIT = 1000;
+
+	/**
+	 * Highest number of queries allowed in a batch.
+	 */
+	public static final int MAX_QUERIES = 500;
+
 	@Autowired
 	private InterconnectionService interconnectionService;
 
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private SearchMetrics searchMetrics;
+
 	/**
 	 * Finds interconnected flights with the given restrictions.
 	 * 
+	 * <p>
+	 * The request thread is released while the schedules are fetched, and the
+	 * response is written once the search ends.
+	 * </p>
+	 * 
+	 * <p>
+	 * If sorted, limited or after a cursor, only the best interconnections are
+	 * kept while searching, and if there may be more, the response links to the
+	 * next page, whose cursor follows the last interconnection.
+	 * </p>
+	 * 
 	 * @param form
 	 *            the restrictions for the flights
-	 * @return an iterable of interconnected flights with the given restrictions.
+	 * @return a future of the interconnected flights with the given restrictions.
 	 */
 	@GetMapping("interconnections")
-	public Iterable<Interconnection> findBy(@Valid InterconnectionsQueryForm form) {
-		return interconnectionService.findBy(form.getDeparture(), form.getArrival(), form.getDepartureDateTime(),
-				form.getArrivalDateTime());
+	public CompletableFuture<ResponseEntity<Iterable<Interconnection>>> findBy(
+			@Valid InterconnectionsQueryForm form) {
+		if (!form.isRanked()) {
+			return interconnectionService
+					.findByAsync(form.getDeparture(), form.getArrival(), form.getDepartureDateTime(),
+							form.getArrivalDateTime(), form.getMaxStops())
+					.thenApply(ResponseEntity::ok);
+		}
+
+		// the request is not at hand once the search ends
+		UriComponentsBuilder nextPage = ServletUriComponentsBuilder.fromCurrentRequest();
+		return interconnectionService
+				.findTopAsync(form.getDeparture(), form.getArrival(), form.getDepartureDateTime(),
+						form.getArrivalDateTime(), form.getMaxStops(), form.getOrder(), form.getLimit(),
+						getAfter(form))
+				.thenApply(results -> {
+					ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+					if (results.size() == form.getLimit()) {
+						String cursor = InterconnectionKey.of(results.get(results.size() - 1)).toCursor();
+						response.header(HttpHeaders.LINK,
+								"<" + nextPage.replaceQueryParam("cursor", cursor).toUriString() + ">; rel=\"next\"");
+					}
+					return response.body(results);
+				});
+	}
+
+	/**
+	 * Finds interconnected flights with the given restrictions, and streams them as
+	 * newline delimited JSON as they are found, one interconnection per line.
+	 * 
+	 * <p>
+	 * Each batch of interconnections (the direct flights, and those through each
+	 * connecting airport) is flushed as soon as it is written, so the first results
+	 * are sent before the search ends and the whole response is never held in
+	 * memory. The body is written on the bounded executor of the asynchronous
+	 * requests.
+	 * </p>
+	 * 
+	 * <p>
+	 * If sorted, limited or after a cursor, the best interconnections are written
+	 * once the search ends instead. The link to the next page is only given in
+	 * JSON responses.
+	 * </p>
+	 * 
+	 * @param form
+	 *            the restrictions for the flights
+	 * @return the streamed body of the response
+	 */
+	@GetMapping(path = "interconnections", produces = APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> findByAsStream(@Valid InterconnectionsQueryForm form) {
+		ObjectWriter writer = objectMapper
+				.writerFor(Interconnection.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+		InterconnectionKey after = getAfter(form);
+
+		StreamingResponseBody body = outputStream -> {
+			try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+				// values are separated by new lines, instead of the default space
+				generator.setRootValueSeparator(null);
+				if (form.isRanked()) {
+					TopInterconnections top = new TopInterconnections(form.getOrder(), form.getLimit(), after);
+					interconnectionService.findBy(form.getDeparture(), form.getArrival(),
+							form.getDepartureDateTime(), form.getArrivalDateTime(), form.getMaxStops(), top::addAll);
+					writeTimed(writer, generator, top.getResults());
+				} else {
+					interconnectionService.findBy(form.getDeparture(), form.getArrival(),
+							form.getDepartureDateTime(), form.getArrivalDateTime(), form.getMaxStops(),
+							batch -> writeTimed(writer, generator, batch));
+				}
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		};
+		return ResponseEntity.ok().contentType(MediaType.valueOf(APPLICATION_NDJSON_VALUE)).body(body);
+	}
+
+	/**
+	 * Finds interconnected flights for a batch of queries, and streams the
+	 * interconnections of each query as newline delimited JSON as soon as they
+	 * are found, one query per line, with its index in the batch.
+	 * 
+	 * <p>
+	 * The queries are planned together, instead of as many separate requests:
+	 * the routes of every query are looked up in the same route graph, the
+	 * schedules shared by several queries are fetched once, and identical queries
+	 * are searched once. If there may be more interconnections of a ranked query,
+	 * its line has the cursor of the next page.
+	 * </p>
+	 * 
+	 * <p>
+	 * Each line is sent by the thread that completes its query, so no thread
+	 * waits for the queries meanwhile, and the response ends with the last one.
+	 * </p>
+	 * 
+	 * @param form
+	 *            the queries
+	 * @return the emitter of the lines of the response
+	 */
+	@PostMapping(path = "interconnections/batch", produces = APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<ResponseBodyEmitter> findAllAsStream(@Valid @RequestBody BatchQueryForm form) {
+		List<InterconnectionsQueryForm> forms = form.getQueries();
+		List<InterconnectionQuery> queries = new ArrayList<>(forms.size());
+		for (InterconnectionsQueryForm query : forms) {
+			queries.add(new InterconnectionQuery(query.getDeparture(), query.getArrival(),
+					query.getDepartureDateTime(), query.getArrivalDateTime(), query.getMaxStops(),
+					query.isRanked() ? query.getOrder() : null, query.getLimit(), getAfter(query)));
+		}
+
+		// start fetching the schedules before the response is committed
+		List<CompletableFuture<List<Interconnection>>> results = interconnectionService.findAllAsync(queries);
+
+		ObjectWriter writer = objectMapper.writerFor(QueryResult.class);
+		ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+		AtomicInteger pending = new AtomicInteger(results.size());
+		for (int i = 0; i < results.size(); i++) {
+			int index = i;
+			results.get(i).whenComplete((interconnections, e) -> {
+				sendTimed(emitter, writer, getResult(index, forms.get(index), results.get(index)));
+				if (pending.decrementAndGet() == 0) {
+					emitter.complete();
+				}
+			});
+		}
+		return ResponseEntity.ok().contentType(MediaType.valueOf(APPLICATION_NDJSON_VALUE)).body(emitter);
+	}
+
+	/**
+	 * Gets the result of a query of a batch, once found.
+	 * 
+	 * @param index
+	 *            the index of the query in the batch
+	 * @param form
+	 *            the restrictions for the flights
+	 * @param future
+	 *            the future of the interconnections, completed
+	 * @return the result of the query
+	 */
+	static QueryResult getResult(int index, InterconnectionsQueryForm form,
+			CompletableFuture<List<Interconnection>> future) {
+		List<Interconnection> interconnections;
+		try {
+			interconnections = future.join();
+		} catch (CompletionException e) {
+			// the other queries of the batch are still answered
+			log.warn("Failed finding the interconnections of {}", form, e.getCause());
+			return new QueryResult(index, null, null, HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase());
+		}
+
+		String cursor = (form.isRanked() && (interconnections.size() == form.getLimit()))
+				? InterconnectionKey.of(interconnections.get(interconnections.size() - 1)).toCursor()
+				: null;
+		return new QueryResult(index, interconnections, cursor, null);
+	}
+
+	/**
+	 * Gets the key the interconnections of a query go after.
+	 * 
+	 * @param form
+	 *            the restrictions for the flights
+	 * @return the key of the cursor, or {@code null} if none
+	 * @throws ResponseStatusException
+	 *             if the cursor is not valid
+	 */
+	static InterconnectionKey getAfter(InterconnectionsQueryForm form) {
+		if (form.getCursor() == null) {
+			return null;
+		}
+
+		try {
+			return InterconnectionKey.fromCursor(form.getCursor());
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+		}
+	}
+
+	/**
+	 * Writes a batch of interconnections, one per line, flushes them, and records
+	 * how long it takes as the {@link Stage#SERIALIZE} stage.
+	 * 
+	 * @param writer
+	 *            the writer of each interconnection
+	 * @param generator
+	 *            the generator to write to
+	 * @param batch
+	 *            the batch of interconnections, or of any other values
+	 */
+	private void writeTimed(ObjectWriter writer, JsonGenerator generator, List<?> batch) {
+		Timer.Sample sample = searchMetrics.start();
+		writeBatch(writer, generator, batch);
+		searchMetrics.stop(sample, Stage.SERIALIZE);
+	}
+
+	/**
+	 * Sends the result of a query of a batch as a line, and records how long it
+	 * takes as the {@link Stage#SERIALIZE} stage.
+	 * 
+	 * @param emitter
+	 *            the emitter of the lines of the response
+	 * @param writer
+	 *            the writer of each result
+	 * @param result
+	 *            the result of the query
+	 */
+	private void sendTimed(ResponseBodyEmitter emitter, ObjectWriter writer, QueryResult result) {
+		Timer.Sample sample = searchMetrics.start();
+		try {
+			byte[] json = writer.writeValueAsBytes(result);
+			byte[] line = Arrays.copyOf(json, json.length + 1);
+			line[json.length] = '\n';
+			emitter.send(line);
+		} catch (IOException e) {
+			// the client is gone, and the container ends the request
+			log.debug("Failed sending the result of the query {} of a batch", result.getIndex(), e);
+		}
+		searchMetrics.stop(sample, Stage.SERIALIZE);
+	}
+
+	/**
+	 * Writes a batch of interconnections, one per line, and flushes them.
+	 * 
+	 * @param writer
+	 *            the writer of each interconnection
+	 * @param generator
+	 *            the generator to write to
+	 * @param batch
+	 *            the batch of interconnections, or of any other values
+	 */
+	static void writeBatch(ObjectWriter writer, JsonGenerator generator, List<?> batch) {
+		try {
+			for (Object value : batch) {
+				writer.writeValue(generator, value);
+				generator.writeRaw('\n');
+			}
+			generator.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	/**
@@ -73,5 +390,110 @@ public class InterconnectionController {
 		 */
 		@NotNull
 		private LocalDateTime arrivalDateTime;
+
+		/**
+		 * Desired maximum number of stops, optional.
+		 */
+		@Min(0)
+		@Max(MAX_STOPS)
+		private Integer maxStops;
+
+		/**
+		 * Desired order of the interconnections, optional: arrival (earliest
+		 * first), duration (shortest first) or stops (fewest first).
+		 */
+		@Pattern(regexp = "^(arrival|duration|stops)$")
+		private String sort;
+
+		/**
+		 * Desired maximum number of interconnections, optional.
+		 */
+		@Min(1)
+		@Max(MAX_LIMIT)
+		private Integer limit;
+
+		/**
+		 * Cursor of the page of interconnections, given by the previous one,
+		 * optional.
+		 */
+		private String cursor;
+
+		/**
+		 * Gets the desired maximum number of stops, or {@value #DEFAULT_MAX_STOPS}
+		 * if none.
+		 */
+		public int getMaxStops() {
+			return (maxStops == null) ? DEFAULT_MAX_STOPS : maxStops;
+		}
+
+		/**
+		 * Whether the interconnections are sorted, limited or after a cursor.
+		 */
+		public boolean isRanked() {
+			return (sort != null) || (limit != null) || (cursor != null);
+		}
+
+		/**
+		 * Gets the desired order of the interconnections, or by arrival if none.
+		 */
+		public InterconnectionOrder getOrder() {
+			return (sort == null) ? InterconnectionOrder.ARRIVAL
+					: InterconnectionOrder.valueOf(sort.toUpperCase(Locale.ROOT));
+		}
+
+		/**
+		 * Gets the desired maximum number of interconnections, or no limit if none.
+		 */
+		public int getLimit() {
+			return (limit == null) ? Integer.MAX_VALUE : limit;
+		}
+	}
+
+	/**
+	 * Holds a batch of queries of interconnecting flights.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	@Value
+	static class BatchQueryForm {
+		/**
+		 * The restrictions of each query.
+		 */
+		@NotEmpty
+		@Size(max = MAX_QUERIES)
+		@Valid
+		private List<InterconnectionsQueryForm> queries;
+	}
+
+	/**
+	 * Holds the result of a query of a batch.
+	 * 
+	 * @author jnoda
+	 *
+	 */
+	@Value
+	@JsonInclude(Include.NON_NULL)
+	static class QueryResult {
+		/**
+		 * Index of the query in the batch.
+		 */
+		private int index;
+
+		/**
+		 * The interconnections found, or {@code null} if failed.
+		 */
+		private List<Interconnection> interconnections;
+
+		/**
+		 * Cursor of the next page of a ranked query, or {@code null} if there are no
+		 * more interconnections.
+		 */
+		private String cursor;
+
+		/**
+		 * The error, or {@code null} if succeeded.
+		 */
+		private String error;
 	}
 }
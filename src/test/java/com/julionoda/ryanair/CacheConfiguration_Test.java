@@ -0,0 +1,74 @@
+package com.julionoda.ryanair;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.service.FlightSchedule;
+import com.julionoda.ryanair.service.ScheduleCacheListener;
+import com.julionoda.ryanair.service.ScheduleKey;
+
+/**
+ * Test suite for {@link CacheConfiguration}.
+ * 
+ * @author jnoda
+ *
+ */
+public class CacheConfiguration_Test {
+	/**
+	 * The key of the schedule.
+	 */
+	private static final ScheduleKey KEY = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+
+	/**
+	 * The listener of the schedules cache.
+	 */
+	private final ScheduleCacheListener listener = mock(ScheduleCacheListener.class);
+
+	/**
+	 * The writer to test.
+	 */
+	private final CacheConfiguration.ListenerWriter writer = new CacheConfiguration.ListenerWriter(
+			Collections.singletonList(listener));
+
+	/**
+	 * Creates a schedule with a flight departing at the given hour.
+	 */
+	private static FlightSchedule schedule(int departureHour) {
+		LocalDateTime departure = LocalDateTime.of(2018, 7, 15, departureHour, 0);
+		return FlightSchedule.of("DUB", "MAD",
+				Collections.singletonList(new Flight("1", "DUB", "MAD", departure, departure.plusHours(2))));
+	}
+
+	/**
+	 * Test that the writer of the schedules cache tells the listeners a schedule
+	 * replaced only if its flights changed.
+	 */
+	@Test
+	public void listenerWriter_TellsChanges_IfFlightsChanged() {
+		FlightSchedule schedule = schedule(8);
+		writer.write(KEY, schedule);
+		writer.write(KEY, schedule);
+		FlightSchedule same = schedule(8);
+		writer.write(KEY, same);
+		verify(listener).put(KEY, schedule);
+		verify(listener, never()).put(KEY, same);
+
+		FlightSchedule changed = schedule(9);
+		writer.write(KEY, changed);
+		verify(listener).put(KEY, changed);
+
+		writer.delete(KEY, changed, RemovalCause.EXPIRED);
+		verify(listener).remove(KEY);
+		writer.write(KEY, same);
+		verify(listener).put(KEY, same);
+	}
+}
@@ -0,0 +1,53 @@
+package com.julionoda.ryanair.model;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.julionoda.ryanair.service.SyntheticNetwork;
+
+/**
+ * Benchmark of the JSON deserialization of a list of {@link Route}.
+ * 
+ * @author jnoda
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Route_JsonBenchmark {
+	/**
+	 * Number of routes in the list.
+	 */
+	@Param({ "200", "2000", "20000" })
+	public int routes;
+
+	private ObjectReader reader;
+
+	private String json;
+
+	@Setup
+	public void setUp() throws Exception {
+		ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+		reader = mapper.readerFor(new TypeReference<List<Route>>() {
+		});
+		json = mapper.writeValueAsString(new SyntheticNetwork(routes, 1).findAll());
+	}
+
+	@Benchmark
+	public List<Route> deserialize() throws Exception {
+		return reader.readValue(json);
+	}
+}
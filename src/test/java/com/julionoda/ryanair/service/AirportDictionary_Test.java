@@ -0,0 +1,49 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Route;
+
+/**
+ * Test suite for {@link AirportDictionary}.
+ * 
+ * @author jnoda
+ *
+ */
+public class AirportDictionary_Test {
+	/**
+	 * The dictionary, new for each test.
+	 */
+	private final AirportDictionary dictionary = new AirportDictionary();
+
+	/**
+	 * Test that {@link AirportDictionary#intern(Route)} returns an equal route,
+	 * whose codes are the ones held by the dictionary.
+	 */
+	@Test
+	public void intern_ReturnsSameCodes_IfEqual() {
+		Route route = Route.builder().airportFrom(new String("DUB")).airportTo(new String("MAD")).build();
+
+		Route result = dictionary.intern(route);
+
+		assertThat(result).isEqualTo(route);
+		assertThat(result.getAirportFrom()).isSameAs(dictionary.intern(new String("DUB")));
+		assertThat(result.getAirportTo()).isSameAs(dictionary.intern(new String("MAD")));
+		assertThat(result.getConnectingAirport()).isNull();
+	}
+
+	/**
+	 * Test that {@link AirportDictionary#findId(String)} does not add unknown
+	 * airports.
+	 */
+	@Test
+	public void findId_ReturnsMinusOne_IfUnknown() {
+		short id = dictionary.getId("DUB");
+
+		assertThat(dictionary.findId("ZZZ")).isEqualTo((short) -1);
+		assertThat(dictionary.size()).isEqualTo(1);
+		assertThat(dictionary.findId("DUB")).isEqualTo(id);
+	}
+}
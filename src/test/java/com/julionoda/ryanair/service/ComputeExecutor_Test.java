@@ -0,0 +1,59 @@
+package com.julionoda.ryanair.service;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test suite for {@link ComputeExecutor}.
+ * 
+ * @author jnoda
+ *
+ */
+public class ComputeExecutor_Test {
+	private final ComputeExecutor computeExecutor = new ComputeExecutor(new ForkJoinPool(2), 10);
+
+	@After
+	public void tearDown() {
+		computeExecutor.shutdown();
+	}
+
+	/**
+	 * Test that {@link ComputeExecutor#compute(Iterable, java.util.function.Function)}
+	 * processes small inputs sequentially on the calling thread.
+	 */
+	@Test
+	public void compute_RunsOnCallingThread_IfSmallInput() {
+		Thread caller = Thread.currentThread();
+
+		List<Thread> threads = computeExecutor.compute(Arrays.asList(1, 2, 3),
+				stream -> stream.map(i -> Thread.currentThread()).distinct().collect(toList()));
+
+		assertThat(threads).containsExactly(caller);
+	}
+
+	/**
+	 * Test that {@link ComputeExecutor#compute(Iterable, java.util.function.Function)}
+	 * processes big inputs on the pool, and not on the common pool.
+	 */
+	@Test
+	public void compute_RunsOnPool_IfBigInput() {
+		List<Integer> input = IntStream.range(0, 1000).boxed().collect(toList());
+
+		List<Integer> result = computeExecutor.compute(input, stream -> stream.map(i -> {
+			assertThat(Thread.currentThread()).isInstanceOf(ForkJoinWorkerThread.class);
+			assertThat(((ForkJoinWorkerThread) Thread.currentThread()).getPool()).isSameAs(computeExecutor.getPool());
+			return i * 2;
+		}).collect(toList()));
+
+		assertThat(result).hasSize(1000).startsWith(0, 2, 4).endsWith(1998);
+	}
+}
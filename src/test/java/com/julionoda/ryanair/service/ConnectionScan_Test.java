@@ -0,0 +1,141 @@
+package com.julionoda.ryanair.service;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+import com.julionoda.ryanair.service.Timetable.Connections;
+
+/**
+ * Test suite for {@link ConnectionScan}.
+ * 
+ * @author jnoda
+ *
+ */
+public class ConnectionScan_Test {
+	/**
+	 * Gets the arrival time of the last leg of an interconnection, in minutes
+	 * since the epoch.
+	 */
+	private static int arrival(Interconnection interconnection) {
+		List<Flight> legs = interconnection.getLegs();
+		return FlightSchedule.toEpochMinute(legs.get(legs.size() - 1).getArrivalDateTime());
+	}
+
+	/**
+	 * Searches the interconnections, collecting all the batches.
+	 */
+	private static List<Interconnection> search(List<FlightSchedule> schedules, String departure, String arrival,
+			int maxLegs) {
+		List<Interconnection> result = new ArrayList<>();
+		new ConnectionScan(Connections.of(new AirportDictionary(), schedules), departure, arrival, maxLegs)
+				.search(result::addAll);
+		return result;
+	}
+
+	/**
+	 * Test that {@link ConnectionScan#search(java.util.function.Consumer)} returns
+	 * the same interconnections than checking every combination of flights, for
+	 * any number of legs.
+	 */
+	@Test
+	public void search_ReturnsSameAsAllCombinations() {
+		List<FlightSchedule> schedules = TimeDependentSearch_Test.getTestSchedules();
+
+		for (int maxLegs = 1; maxLegs <= 4; maxLegs++) {
+			List<Interconnection> expected = TimeDependentSearch_Test.findAll(schedules, "DUB", "MAD", maxLegs);
+			assertThat(search(schedules, "DUB", "MAD", maxLegs)).hasSameSizeAs(expected)
+					.containsExactlyInAnyOrderElementsOf(expected);
+		}
+	}
+
+	/**
+	 * Test that {@link ConnectionScan#search(java.util.function.Consumer)} returns
+	 * only the connections departing more than 2 hours after the arrival, one
+	 * batch for each first flight.
+	 */
+	@Test
+	public void search_HandsOverBatchByFirstFlight() {
+		Flight first = new Flight("1", "DUB", "STN", TimeDependentSearch_Test.START,
+				TimeDependentSearch_Test.START.plusHours(1));
+		Flight tooSoon = new Flight("2", "STN", "MAD", TimeDependentSearch_Test.START.plusHours(3),
+				TimeDependentSearch_Test.START.plusHours(4));
+		Flight valid = new Flight("3", "STN", "MAD", TimeDependentSearch_Test.START.plusHours(4),
+				TimeDependentSearch_Test.START.plusHours(5));
+		Flight direct = new Flight("4", "DUB", "MAD", TimeDependentSearch_Test.START,
+				TimeDependentSearch_Test.START.plusHours(2));
+
+		List<List<Interconnection>> batches = new ArrayList<>();
+		Connections connections = Connections.of(new AirportDictionary(), Arrays.asList(
+				FlightSchedule.of("DUB", "STN", Collections.singletonList(first)),
+				FlightSchedule.of("STN", "MAD", Arrays.asList(tooSoon, valid)),
+				FlightSchedule.of("DUB", "MAD", Collections.singletonList(direct))));
+		new ConnectionScan(connections, "DUB", "MAD", 2).search(batches::add);
+
+		assertThat(batches).containsExactlyInAnyOrder(
+				Collections.singletonList(new Interconnection(Arrays.asList(first, valid))),
+				Collections.singletonList(new Interconnection(Collections.singletonList(direct))));
+	}
+
+	/**
+	 * Test that {@link ConnectionScan#search(java.util.function.Consumer)} returns
+	 * nothing if the arrival airport is unknown.
+	 */
+	@Test
+	public void search_ReturnsEmpty_IfUnknownAirport() {
+		assertThat(search(TimeDependentSearch_Test.getTestSchedules(), "DUB", "XYZ", 3)).isEmpty();
+	}
+
+	/**
+	 * Test that {@link ConnectionScan#search(java.util.function.Consumer)} does
+	 * not add an unknown departure airport to the dictionary.
+	 */
+	@Test
+	public void search_DoesNotAddAirport_IfUnknown() {
+		AirportDictionary dictionary = new AirportDictionary();
+		Connections connections = Connections.of(dictionary, TimeDependentSearch_Test.getTestSchedules());
+		int size = dictionary.size();
+
+		List<List<Interconnection>> batches = new ArrayList<>();
+		new ConnectionScan(connections, "XYZ", "MAD", 3).search(batches::add);
+
+		assertThat(batches).isEmpty();
+		assertThat(dictionary.size()).isEqualTo(size);
+		assertThat(dictionary.findId("XYZ")).isEqualTo((short) -1);
+	}
+
+	/**
+	 * Test that {@link ConnectionScan#search(InterconnectionSet.Filter, java.util.function.Consumer)}
+	 * returns only the interconnections the filter accepts, by their departure,
+	 * arrival and stops.
+	 */
+	@Test
+	public void search_SkipsInterconnections_IfFilterRejects() {
+		List<FlightSchedule> schedules = TimeDependentSearch_Test.getTestSchedules();
+		List<Interconnection> all = TimeDependentSearch_Test.findAll(schedules, "DUB", "MAD", 3);
+		int maxArrival = all
+				.stream()
+				.mapToInt(interconnection -> arrival(interconnection))
+				.sorted()
+				.toArray()[all.size() / 2];
+		List<Interconnection> expected = all
+				.stream()
+				.filter(interconnection -> (interconnection.getStops() <= 1)
+						&& (arrival(interconnection) <= maxArrival))
+				.collect(toList());
+
+		List<Interconnection> result = new ArrayList<>();
+		new ConnectionScan(Connections.of(new AirportDictionary(), schedules), "DUB", "MAD", 3)
+				.search((departure, arrival, stops) -> (stops <= 1) && (arrival <= maxArrival), result::addAll);
+
+		assertThat(result).isNotEmpty().hasSameSizeAs(expected).containsExactlyInAnyOrderElementsOf(expected);
+	}
+}
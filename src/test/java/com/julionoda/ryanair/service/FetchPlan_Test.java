@@ -0,0 +1,101 @@
+package com.julionoda.ryanair.service;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test suite for {@link FetchPlan}.
+ * 
+ * @author jnoda
+ *
+ */
+public class FetchPlan_Test {
+	/**
+	 * June, July and August of 2018.
+	 */
+	private static final List<YearMonth> SUMMER = Arrays.asList(YearMonth.of(2018, 6), YearMonth.of(2018, 7),
+			YearMonth.of(2018, 8));
+
+	/**
+	 * Creates a builder of a plan from DUB to MAD over the summer, within the
+	 * given timeframe.
+	 */
+	private static FetchPlan.Builder builder(LocalDateTime departureDateTime, LocalDateTime arrivalDateTime) {
+		return FetchPlan.builder("DUB", "MAD", SUMMER, FlightSchedule.toEpochMinute(departureDateTime),
+				FlightSchedule.toEpochMinute(arrivalDateTime));
+	}
+
+	/**
+	 * Creates the keys of the schedules of a leg for the given months.
+	 */
+	private static List<ScheduleKey> keys(String airportFrom, String airportTo, int... months) {
+		return Arrays
+				.stream(months)
+				.mapToObj(month -> new ScheduleKey(airportFrom, airportTo, YearMonth.of(2018, month)))
+				.collect(toList());
+	}
+
+	/**
+	 * Test that {@link FetchPlan.Builder#addLeg(String, String)} keeps every month
+	 * of the query for the legs that can depart in all of them.
+	 */
+	@Test
+	public void addLeg_KeepsEveryMonth_IfNotAtTheEdges() {
+		FetchPlan plan = builder(LocalDateTime.of(2018, 6, 15, 0, 0), LocalDateTime.of(2018, 8, 15, 0, 0))
+				.addLeg("DUB", "MAD")
+				.addLeg("DUB", "STN")
+				.addLeg("STN", "MAD")
+				.build();
+
+		assertThat(plan.getKeys("DUB", "MAD")).isEqualTo(keys("DUB", "MAD", 6, 7, 8));
+		assertThat(plan.getKeys("DUB", "STN")).isEqualTo(keys("DUB", "STN", 6, 7, 8));
+		assertThat(plan.getKeys("STN", "MAD")).isEqualTo(keys("STN", "MAD", 6, 7, 8));
+		assertThat(plan.getScheduleKeys()).hasSize(9);
+		assertThat(plan.isTrimmed()).isFalse();
+	}
+
+	/**
+	 * Test that {@link FetchPlan.Builder#addLeg(String, String)} drops the first
+	 * month of the legs that do not start at the departure airport, and the last
+	 * month of the legs that do not end at the arrival airport, if they cannot
+	 * depart in them after the minimum connection time.
+	 */
+	@Test
+	public void addLeg_TrimsMonths_IfWithinConnectionTime() {
+		FetchPlan plan = builder(LocalDateTime.of(2018, 6, 30, 23, 0), LocalDateTime.of(2018, 8, 1, 1, 0))
+				.addLeg("DUB", "MAD")
+				.addLeg("DUB", "STN")
+				.addLeg("STN", "BGY")
+				.addLeg("BGY", "MAD")
+				.build();
+
+		assertThat(plan.getKeys("DUB", "MAD")).isEqualTo(keys("DUB", "MAD", 6, 7, 8));
+		assertThat(plan.getKeys("DUB", "STN")).isEqualTo(keys("DUB", "STN", 6, 7));
+		assertThat(plan.getKeys("STN", "BGY")).isEqualTo(keys("STN", "BGY", 7));
+		assertThat(plan.getKeys("BGY", "MAD")).isEqualTo(keys("BGY", "MAD", 7, 8));
+		assertThat(plan.getScheduleKeys()).hasSize(8);
+		assertThat(plan.isTrimmed()).isTrue();
+	}
+
+	/**
+	 * Test that {@link FetchPlan#getKeys(String, String)} returns no keys for the
+	 * legs not in the plan, and that adding a leg again does not repeat its keys.
+	 */
+	@Test
+	public void getKeys_ReturnsEmpty_IfNotPlanned() {
+		FetchPlan plan = builder(LocalDateTime.of(2018, 7, 1, 0, 0), LocalDateTime.of(2018, 7, 31, 23, 59))
+				.addLeg("DUB", "STN")
+				.addLeg("DUB", "STN")
+				.build();
+
+		assertThat(plan.getKeys("STN", "MAD")).isEmpty();
+		assertThat(plan.getScheduleKeys()).containsExactly(new ScheduleKey("DUB", "STN", YearMonth.of(2018, 7)));
+	}
+}
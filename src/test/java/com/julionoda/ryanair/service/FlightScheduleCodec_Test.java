@@ -0,0 +1,91 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+
+/**
+ * Test suite for {@link FlightScheduleCodec}.
+ * 
+ * @author jnoda
+ *
+ */
+public class FlightScheduleCodec_Test {
+	/**
+	 * Encodes a schedule.
+	 */
+	private static byte[] encode(FlightSchedule schedule) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			FlightScheduleCodec.write(out, schedule);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Test that {@link FlightScheduleCodec#read(ByteBuffer, String, String)}
+	 * returns the same flights written by
+	 * {@link FlightScheduleCodec#write(java.io.DataOutput, FlightSchedule)}, in a
+	 * few bytes per flight.
+	 */
+	@Test
+	public void read_ReturnsSameFlights() throws IOException {
+		LocalDateTime departure = LocalDateTime.of(2018, 7, 15, 10, 0);
+		FlightSchedule schedule = FlightSchedule.of("DUB", "MAD", Arrays.asList(
+				new Flight("1234", "DUB", "MAD", departure, departure.plusHours(2)),
+				new Flight("5678", "DUB", "MAD", departure, departure.plusMinutes(150)),
+				new Flight("1234", "DUB", "MAD", departure.plusDays(1), departure.plusDays(1).plusHours(2)),
+				new Flight("1234", "DUB", "MAD", departure.plusDays(2), departure.plusDays(2).plusHours(2))));
+
+		byte[] bytes = encode(schedule);
+
+		// less than the flight number, departure and arrival as three ints
+		assertThat(bytes.length).isLessThan(schedule.size() * 3 * Integer.BYTES);
+		assertThat(FlightScheduleCodec.read(ByteBuffer.wrap(bytes), "DUB", "MAD")).containsExactlyElementsOf(schedule);
+	}
+
+	/**
+	 * Test that {@link FlightScheduleCodec#read(ByteBuffer, String, String)}
+	 * returns an empty schedule if written empty.
+	 */
+	@Test
+	public void read_ReturnsEmpty_IfEmpty() throws IOException {
+		byte[] bytes = encode(FlightSchedule.of("DUB", "MAD", Collections.emptyList()));
+
+		assertThat(FlightScheduleCodec.read(ByteBuffer.wrap(bytes), "DUB", "MAD")).isEmpty();
+	}
+
+	/**
+	 * Test that {@link FlightScheduleCodec#readVarInt(ByteBuffer)} reads the
+	 * values written by
+	 * {@link FlightScheduleCodec#writeVarInt(java.io.DataOutput, int)}, and that
+	 * small values take a single byte.
+	 */
+	@Test
+	public void readVarInt_ReturnsSameValue() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			FlightScheduleCodec.writeVarInt(out, 0);
+			FlightScheduleCodec.writeVarInt(out, 127);
+			FlightScheduleCodec.writeVarInt(out, 128);
+			FlightScheduleCodec.writeVarInt(out, Integer.MAX_VALUE);
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		assertThat(buffer.remaining()).isEqualTo(1 + 1 + 2 + 5);
+		assertThat(FlightScheduleCodec.readVarInt(buffer)).isEqualTo(0);
+		assertThat(FlightScheduleCodec.readVarInt(buffer)).isEqualTo(127);
+		assertThat(FlightScheduleCodec.readVarInt(buffer)).isEqualTo(128);
+		assertThat(FlightScheduleCodec.readVarInt(buffer)).isEqualTo(Integer.MAX_VALUE);
+	}
+}
@@ -0,0 +1,121 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+
+/**
+ * Test suite for {@link FlightSchedule}.
+ * 
+ * @author jnoda
+ *
+ */
+public class FlightSchedule_Test {
+	/**
+	 * A morning flight.
+	 */
+	private static final Flight EARLY = new Flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 8, 0),
+			LocalDateTime.of(2018, 7, 15, 10, 0));
+
+	/**
+	 * A midday flight.
+	 */
+	private static final Flight MIDDAY = new Flight("2", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 12, 0),
+			LocalDateTime.of(2018, 7, 15, 14, 0));
+
+	/**
+	 * A night flight, arriving the next month.
+	 */
+	private static final Flight LATE = new Flight("3", "DUB", "STN", LocalDateTime.of(2018, 7, 31, 23, 0),
+			LocalDateTime.of(2018, 8, 1, 1, 0));
+
+	/**
+	 * Test that {@link FlightSchedule#of(String, String, Iterable)} keeps the
+	 * flights, sorted by departure.
+	 */
+	@Test
+	public void of_Succeed() {
+		FlightSchedule schedule = FlightSchedule.of("DUB", "STN", Arrays.asList(LATE, EARLY, MIDDAY));
+
+		assertEquals("DUB", schedule.getAirportFrom());
+		assertEquals("STN", schedule.getAirportTo());
+		assertThat(schedule).containsExactly(EARLY, MIDDAY, LATE);
+	}
+
+	/**
+	 * Test that {@link FlightSchedule#filter(int, int)} keeps only the flights in
+	 * the timeframe, bounds included.
+	 */
+	@Test
+	public void filter_Succeed() {
+		FlightSchedule schedule = FlightSchedule.of("DUB", "STN", Arrays.asList(EARLY, MIDDAY, LATE));
+
+		assertThat(schedule.filter(FlightSchedule.toEpochMinute(EARLY.getDepartureDateTime()),
+				FlightSchedule.toEpochMinute(MIDDAY.getArrivalDateTime()))).containsExactly(EARLY, MIDDAY);
+		assertThat(schedule.filter(FlightSchedule.toEpochMinute(EARLY.getDepartureDateTime()) + 1,
+				FlightSchedule.toEpochMinute(LATE.getArrivalDateTime()) - 1)).containsExactly(MIDDAY);
+	}
+
+	/**
+	 * Test that {@link FlightSchedule#filter(int, int)} keeps a westbound flight
+	 * arriving, in local time, within the timeframe, even if it departs after its
+	 * end.
+	 */
+	@Test
+	public void filter_KeepsFlight_IfArrivesBeforeDeparture() {
+		Flight westbound = new Flight("4", "STN", "LIS", LocalDateTime.of(2018, 7, 15, 20, 30),
+				LocalDateTime.of(2018, 7, 15, 20, 0));
+		FlightSchedule schedule = FlightSchedule.of("STN", "LIS", Collections.singletonList(westbound));
+
+		assertThat(schedule.filter(FlightSchedule.toEpochMinute(LocalDateTime.of(2018, 7, 15, 0, 0)),
+				FlightSchedule.toEpochMinute(LocalDateTime.of(2018, 7, 15, 20, 15)))).containsExactly(westbound);
+	}
+
+	/**
+	 * Test that {@link FlightSchedule#findFirstDepartureAfter(int)} finds the first
+	 * flight departing strictly after the given time.
+	 */
+	@Test
+	public void findFirstDepartureAfter_Succeed() {
+		FlightSchedule schedule = FlightSchedule.of("DUB", "STN", Arrays.asList(EARLY, MIDDAY, LATE));
+		int midday = FlightSchedule.toEpochMinute(MIDDAY.getDepartureDateTime());
+
+		assertEquals(0, schedule.findFirstDepartureAfter(Integer.MIN_VALUE));
+		assertEquals(1, schedule.findFirstDepartureAfter(midday - 1));
+		assertEquals(2, schedule.findFirstDepartureAfter(midday));
+		assertEquals(3, schedule.findFirstDepartureAfter(Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Test that {@link FlightSchedule#concat(String, String, java.util.List)} keeps
+	 * the flights of every schedule in order.
+	 */
+	@Test
+	public void concat_Succeed() {
+		FlightSchedule july = FlightSchedule.of("DUB", "STN", Arrays.asList(EARLY, MIDDAY));
+		FlightSchedule august = FlightSchedule.of("DUB", "STN", Collections.singletonList(LATE));
+
+		assertThat(FlightSchedule.concat("DUB", "STN", Arrays.asList(july, august))).containsExactly(EARLY, MIDDAY,
+				LATE);
+	}
+
+	/**
+	 * Test that {@link FlightSchedule#toEpochMinute(LocalDateTime)} and
+	 * {@link FlightSchedule#toLocalDateTime(int)} are inverse.
+	 */
+	@Test
+	public void toEpochMinute_Succeed() {
+		LocalDateTime dateTime = LocalDateTime.of(2038, 1, 19, 3, 14);
+
+		assertEquals(dateTime, FlightSchedule.toLocalDateTime(FlightSchedule.toEpochMinute(dateTime)));
+		assertEquals(FlightSchedule.toEpochMinute(dateTime),
+				FlightSchedule.toEpochMinute(dateTime.toLocalDate(), dateTime.toLocalTime()));
+	}
+}
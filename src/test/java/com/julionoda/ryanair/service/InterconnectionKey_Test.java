@@ -0,0 +1,51 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+/**
+ * Test suite for {@link InterconnectionKey}.
+ * 
+ * @author jnoda
+ *
+ */
+public class InterconnectionKey_Test {
+	/**
+	 * Test that {@link InterconnectionKey#fromCursor(String)} returns the same key
+	 * encoded by {@link InterconnectionKey#toCursor()}.
+	 */
+	@Test
+	public void fromCursor_ReturnsSameKey() {
+		InterconnectionKey key = InterconnectionKey.of(new Interconnection(Arrays.asList(
+				new Flight("1234", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 6, 0),
+						LocalDateTime.of(2018, 7, 15, 8, 0)),
+				new Flight("5678", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0),
+						LocalDateTime.of(2018, 7, 15, 14, 30)))));
+
+		assertThat(key.getStops()).isEqualTo(1);
+		assertThat(key.getDuration()).isEqualTo(8 * 60 + 30);
+		assertThat(key.getPath()).isEqualTo("1234:DUB-STN,5678:STN-MAD");
+		assertThat(key.toCursor()).matches("[A-Za-z0-9_-]+");
+		assertThat(InterconnectionKey.fromCursor(key.toCursor())).isEqualTo(key);
+	}
+
+	/**
+	 * Test that {@link InterconnectionKey#fromCursor(String)} throws an exception
+	 * if the cursor is not valid.
+	 */
+	@Test
+	public void fromCursor_ThrowsException_IfInvalid() {
+		assertThatThrownBy(() -> InterconnectionKey.fromCursor("not a cursor"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> InterconnectionKey.fromCursor(new InterconnectionKey(1, 2, 0, "x").toCursor()
+				.substring(2))).isInstanceOf(IllegalArgumentException.class);
+	}
+}
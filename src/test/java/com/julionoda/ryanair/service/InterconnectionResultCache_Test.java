@@ -0,0 +1,209 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+/**
+ * Test suite for {@link InterconnectionResultCache}.
+ * 
+ * @author jnoda
+ *
+ */
+public class InterconnectionResultCache_Test {
+	/**
+	 * July of 2018.
+	 */
+	private static final List<YearMonth> JULY = Collections.singletonList(YearMonth.of(2018, 7));
+
+	/**
+	 * The key of the schedule of the flights.
+	 */
+	private static final ScheduleKey SCHEDULE_KEY = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+
+	/**
+	 * An early interconnection.
+	 */
+	private static final Interconnection EARLY = interconnection("1", LocalDateTime.of(2018, 7, 15, 8, 0));
+
+	/**
+	 * A late interconnection.
+	 */
+	private static final Interconnection LATE = interconnection("2", LocalDateTime.of(2018, 7, 20, 8, 0));
+
+	/**
+	 * The pool the interconnections are cached on.
+	 */
+	private final ForkJoinPool pool = new ForkJoinPool(1);
+
+	/**
+	 * The cache to test.
+	 */
+	private final InterconnectionResultCache resultCache = new InterconnectionResultCache();
+
+	/**
+	 * Number of searches run.
+	 */
+	private final AtomicInteger searches = new AtomicInteger();
+
+	/**
+	 * Sets up the cache.
+	 */
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(resultCache, "enabled", true);
+		ReflectionTestUtils.setField(resultCache, "spec", "maximumWeight=1000");
+		ReflectionTestUtils.setField(resultCache, "maxLegs", 100);
+		ReflectionTestUtils.setField(resultCache, "computeExecutor", new ComputeExecutor(pool, 1000));
+		ReflectionTestUtils.setField(resultCache, "airportDictionary", new AirportDictionary());
+		resultCache.init();
+	}
+
+	/**
+	 * Shuts down the pool.
+	 */
+	@After
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Creates a direct interconnection departing at the given date and time.
+	 */
+	private static Interconnection interconnection(String number, LocalDateTime departureDateTime) {
+		return new Interconnection(Collections.singletonList(
+				new Flight(number, "DUB", "MAD", departureDateTime, departureDateTime.plusHours(2))));
+	}
+
+	/**
+	 * Caches the interconnections of July found in the given schedules, and waits
+	 * until they are cached.
+	 */
+	private void cache(Map<ScheduleKey, Iterable<Flight>> schedules) {
+		resultCache.cacheAsync("DUB", "MAD", 1, JULY, schedules, consumer -> {
+			searches.incrementAndGet();
+			consumer.accept(Arrays.asList(EARLY, LATE));
+		});
+		pool.awaitQuiescence(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Finds the cached interconnections of July departing after the 16th.
+	 */
+	private List<Interconnection> findAfter16th() {
+		InterconnectionSet cached = resultCache.find("DUB", "MAD", 1, JULY);
+		return (cached != null)
+				? cached.filter(FlightSchedule.toEpochMinute(LocalDateTime.of(2018, 7, 16, 0, 0)), Integer.MAX_VALUE)
+				: null;
+	}
+
+	/**
+	 * Test that {@link InterconnectionResultCache#find(String, String, int, List)}
+	 * returns the cached interconnections, to be filtered by timeframe, without
+	 * searching again.
+	 */
+	@Test
+	public void find_ReturnsFiltered_IfCached() {
+		assertThat(findAfter16th()).isNull();
+
+		cache(Collections.singletonMap(SCHEDULE_KEY, LATE.getLegs()));
+		cache(Collections.singletonMap(SCHEDULE_KEY, LATE.getLegs()));
+
+		assertThat(searches.get()).isEqualTo(1);
+		assertThat(findAfter16th()).containsExactly(LATE);
+		assertThat(resultCache.find("DUB", "MAD", 1, JULY).filter(Integer.MIN_VALUE, Integer.MAX_VALUE))
+				.containsExactly(EARLY, LATE);
+		// other airports or stops are cached apart
+		assertThat(resultCache.find("DUB", "MAD", 2, JULY)).isNull();
+	}
+
+	/**
+	 * Test that {@link InterconnectionResultCache#put(ScheduleKey, FlightSchedule)}
+	 * and {@link InterconnectionResultCache#remove(ScheduleKey)} invalidate the
+	 * interconnections found in the schedule.
+	 */
+	@Test
+	public void put_Invalidates_IfDependent() {
+		cache(Collections.singletonMap(SCHEDULE_KEY, LATE.getLegs()));
+
+		resultCache.put(new ScheduleKey("DUB", "STN", YearMonth.of(2018, 7)),
+				FlightSchedule.of("DUB", "STN", Collections.emptyList()));
+		assertThat(findAfter16th()).containsExactly(LATE);
+
+		resultCache.put(SCHEDULE_KEY, FlightSchedule.of("DUB", "MAD", LATE.getLegs()));
+		assertThat(findAfter16th()).isNull();
+
+		cache(Collections.singletonMap(SCHEDULE_KEY, LATE.getLegs()));
+		resultCache.remove(SCHEDULE_KEY);
+		assertThat(findAfter16th()).isNull();
+	}
+
+	/**
+	 * Test that {@link InterconnectionResultCache#cacheAsync} caches the
+	 * interconnections if a schedule has no flights, as the external API does not
+	 * have it, but not if it is {@link ScheduleService#UNAVAILABLE}.
+	 */
+	@Test
+	public void cacheAsync_DoesNothing_IfUnavailableSchedule() {
+		Map<ScheduleKey, Iterable<Flight>> schedules = new HashMap<>();
+		schedules.put(SCHEDULE_KEY, LATE.getLegs());
+		schedules.put(new ScheduleKey("DUB", "STN", YearMonth.of(2018, 7)), ScheduleService.UNAVAILABLE);
+		cache(schedules);
+
+		assertThat(searches.get()).isEqualTo(0);
+		assertThat(findAfter16th()).isNull();
+
+		schedules.put(new ScheduleKey("DUB", "STN", YearMonth.of(2018, 7)), Collections.emptyList());
+		cache(schedules);
+
+		assertThat(searches.get()).isEqualTo(1);
+		assertThat(findAfter16th()).containsExactly(LATE);
+	}
+
+	/**
+	 * Test that {@link InterconnectionResultCache#cacheAsync} does not cache the
+	 * interconnections if they have more legs than the maximum.
+	 */
+	@Test
+	public void cacheAsync_DoesNothing_IfTooManyLegs() {
+		ReflectionTestUtils.setField(resultCache, "maxLegs", 1);
+
+		cache(Collections.singletonMap(SCHEDULE_KEY, LATE.getLegs()));
+
+		assertThat(searches.get()).isEqualTo(1);
+		assertThat(findAfter16th()).isNull();
+	}
+
+	/**
+	 * Test that {@link InterconnectionResultCache#cacheAsync} does not search if
+	 * the cache is disabled.
+	 */
+	@Test
+	public void cacheAsync_DoesNothing_IfDisabled() {
+		InterconnectionResultCache disabled = new InterconnectionResultCache();
+		disabled.init();
+
+		disabled.cacheAsync("DUB", "MAD", 1, JULY, Collections.singletonMap(SCHEDULE_KEY, LATE.getLegs()),
+				consumer -> searches.incrementAndGet());
+
+		assertThat(searches.get()).isEqualTo(0);
+		assertThat(disabled.find("DUB", "MAD", 1, JULY)).isNull();
+	}
+}
@@ -0,0 +1,100 @@
+package com.julionoda.ryanair.service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.julionoda.ryanair.model.Interconnection;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Benchmark of {@link InterconnectionServiceImpl#findBy(String, String,
+ * LocalDateTime, LocalDateTime)} on a {@link SyntheticNetwork}.
+ * 
+ * @author jnoda
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InterconnectionServiceImpl_Benchmark {
+	/**
+	 * Number of routes in the network.
+	 */
+	@Param({ "200", "2000", "20000" })
+	public int routes;
+
+	/**
+	 * Number of months between the departure and the arrival datetimes.
+	 */
+	@Param({ "1", "3", "12" })
+	public int months;
+
+	private SyntheticNetwork network;
+
+	private InterconnectionServiceImpl interconnectionService;
+
+	private LocalDateTime departureDateTime;
+
+	private LocalDateTime arrivalDateTime;
+
+	@Setup
+	public void setUp() {
+		// a single flight per day, as every pair of flights in the window is a result
+		network = new SyntheticNetwork(routes, 1);
+		AirportDictionary airportDictionary = new AirportDictionary();
+		RouteGraph routeGraph = new RouteGraph(airportDictionary, network.findAll());
+
+		// schedules are fetched on the calling thread, so only the search is measured
+		ScheduleFetcher scheduleFetcher = new ScheduleFetcher();
+		inject(scheduleFetcher, "scheduleService", network);
+		inject(scheduleFetcher, "executor", (Executor) Runnable::run);
+		inject(scheduleFetcher, "cacheManager", new NoOpCacheManager());
+		// the limiter is disabled, so the calls are not queued
+		inject(scheduleFetcher, "scheduleLimiter", new ScheduleLimiter());
+		inject(scheduleFetcher, "scheduleRevalidator", new ScheduleRevalidator());
+		SearchMetrics searchMetrics = new SearchMetrics(new SimpleMeterRegistry());
+		inject(scheduleFetcher, "searchMetrics", searchMetrics);
+
+		interconnectionService = new InterconnectionServiceImpl();
+		inject(interconnectionService, "routeGraphService",
+				(RouteGraphService) () -> routeGraph);
+		inject(interconnectionService, "scheduleFetcher", scheduleFetcher);
+		inject(interconnectionService, "computeExecutor", new ComputeExecutor(new ForkJoinPool(), 2000));
+		inject(interconnectionService, "schedulePreloader", new SchedulePreloader());
+		// the result cache is disabled, so every query is searched
+		inject(interconnectionService, "resultCache", new InterconnectionResultCache());
+		inject(interconnectionService, "searchMetrics", searchMetrics);
+		inject(interconnectionService, "airportDictionary", airportDictionary);
+
+		departureDateTime = LocalDateTime.of(2019, 1, 1, 0, 0);
+		arrivalDateTime = departureDateTime.plusMonths(months).minusMinutes(1);
+	}
+
+	@Benchmark
+	public Iterable<Interconnection> findBy() {
+		return interconnectionService.findBy(network.getDeparture(), network.getArrival(), departureDateTime,
+				arrivalDateTime);
+	}
+
+	/**
+	 * Sets the value of an autowired field, declared by the class or by any
+	 * superclass, as there is no application context.
+	 */
+	static void inject(Object target, String name, Object value) {
+		ReflectionTestUtils.setField(target, name, value);
+	}
+}
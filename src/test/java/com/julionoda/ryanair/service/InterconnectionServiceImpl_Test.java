@@ -0,0 +1,232 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+import com.julionoda.ryanair.model.Route;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test suite for {@link InterconnectionServiceImpl}.
+ * 
+ * @author jnoda
+ *
+ */
+public class InterconnectionServiceImpl_Test {
+	/**
+	 * The service to test, with a sequential executor.
+	 */
+	private final InterconnectionServiceImpl service = new InterconnectionServiceImpl();
+
+	/**
+	 * Sets up the service.
+	 */
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(service, "computeExecutor", new ComputeExecutor(ForkJoinPool.commonPool(), 1000));
+		ReflectionTestUtils.setField(service, "airportDictionary", new AirportDictionary());
+	}
+
+	/**
+	 * Creates a flight with the given number, departure and arrival.
+	 */
+	private static Flight flight(String number, String departureAirport, String arrivalAirport,
+			LocalDateTime departureDateTime, LocalDateTime arrivalDateTime) {
+		return new Flight(number, departureAirport, arrivalAirport, departureDateTime, arrivalDateTime);
+	}
+
+	/**
+	 * Creates a schedule with the given flights.
+	 */
+	private static FlightSchedule schedule(String departureAirport, String arrivalAirport, List<Flight> flights) {
+		return FlightSchedule.of(departureAirport, arrivalAirport, flights);
+	}
+
+	/**
+	 * Test that
+	 * {@link InterconnectionServiceImpl#findConnections(FlightSchedule, FlightSchedule, InterconnectionSet.Filter)}
+	 * returns only the connections departing more than 2 hours after the arrival.
+	 */
+	@Test
+	public void findConnections_Succeed() {
+		Flight first = flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 8, 0),
+				LocalDateTime.of(2018, 7, 15, 10, 0));
+		Flight tooSoon = flight("2", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0),
+				LocalDateTime.of(2018, 7, 15, 15, 0));
+		Flight late = flight("3", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 18, 0),
+				LocalDateTime.of(2018, 7, 15, 21, 0));
+		Flight valid = flight("4", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 1),
+				LocalDateTime.of(2018, 7, 15, 15, 1));
+
+		List<Interconnection> result = service.findConnections(schedule("DUB", "STN", Collections.singletonList(first)),
+				schedule("STN", "MAD", Arrays.asList(late, tooSoon, valid)), InterconnectionSet.Filter.ALL);
+
+		assertThat(result).containsExactly(new Interconnection(Arrays.asList(first, valid)),
+				new Interconnection(Arrays.asList(first, late)));
+	}
+
+	/**
+	 * Test that
+	 * {@link InterconnectionServiceImpl#findConnections(FlightSchedule, FlightSchedule, InterconnectionSet.Filter)}
+	 * returns only the connections the filter accepts.
+	 */
+	@Test
+	public void findConnections_SkipsConnections_IfFilterRejects() {
+		Flight first = flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 8, 0),
+				LocalDateTime.of(2018, 7, 15, 10, 0));
+		Flight early = flight("2", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 1),
+				LocalDateTime.of(2018, 7, 15, 15, 1));
+		Flight late = flight("3", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 18, 0),
+				LocalDateTime.of(2018, 7, 15, 21, 0));
+		int maxArrival = FlightSchedule.toEpochMinute(LocalDateTime.of(2018, 7, 15, 16, 0));
+
+		List<Interconnection> result = service.findConnections(schedule("DUB", "STN", Collections.singletonList(first)),
+				schedule("STN", "MAD", Arrays.asList(early, late)),
+				(departure, arrival, stops) -> (stops == 1) && (arrival <= maxArrival));
+
+		assertThat(result).containsExactly(new Interconnection(Arrays.asList(first, early)));
+	}
+
+	/**
+	 * Test that
+	 * {@link InterconnectionServiceImpl#findConnections(FlightSchedule, FlightSchedule, InterconnectionSet.Filter)}
+	 * returns the same connections than checking every pair of flights.
+	 */
+	@Test
+	public void findConnections_ReturnsSameAsCrossJoin() {
+		LocalDateTime start = LocalDateTime.of(2018, 7, 1, 0, 0);
+		List<Flight> startingFlights = new ArrayList<>();
+		List<Flight> connectingFlights = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			startingFlights.add(flight("A" + i, "DUB", "STN", start.plusMinutes(i * 97),
+					start.plusMinutes(i * 97 + 120)));
+			connectingFlights.add(flight("B" + i, "STN", "MAD", start.plusMinutes(i * 89 + 60),
+					start.plusMinutes(i * 89 + 200)));
+		}
+
+		long expected = startingFlights
+				.stream()
+				.mapToLong(f1 -> connectingFlights
+						.stream()
+						.filter(f2 -> f2.getDepartureDateTime().isAfter(f1.getArrivalDateTime().plusHours(2)))
+						.count())
+				.sum();
+
+		assertEquals(expected,
+				service
+						.findConnections(schedule("DUB", "STN", startingFlights),
+								schedule("STN", "MAD", connectingFlights), InterconnectionSet.Filter.ALL)
+						.size());
+	}
+
+	/**
+	 * Test that
+	 * {@link InterconnectionServiceImpl#findConnections(FlightSchedule, FlightSchedule, InterconnectionSet.Filter)}
+	 * returns nothing if there are no connecting flights.
+	 */
+	@Test
+	public void findConnections_ReturnsEmpty_IfNoConnectingFlights() {
+		Flight first = flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 8, 0),
+				LocalDateTime.of(2018, 7, 15, 10, 0));
+
+		assertThat(service.findConnections(schedule("DUB", "STN", Collections.singletonList(first)),
+				schedule("STN", "MAD", Collections.emptyList()), InterconnectionSet.Filter.ALL)).isEmpty();
+	}
+
+	/**
+	 * Test that
+	 * {@link InterconnectionServiceImpl#findMonths(LocalDateTime, LocalDateTime)}
+	 * returns every month of a timeframe that spans the end of a year.
+	 */
+	@Test
+	public void findMonths_Succeed_IfAcrossYears() {
+		assertThat(InterconnectionServiceImpl.findMonths(LocalDateTime.of(2018, 11, 20, 0, 0),
+				LocalDateTime.of(2019, 1, 10, 0, 0))).containsExactly(YearMonth.of(2018, 11), YearMonth.of(2018, 12),
+						YearMonth.of(2019, 1));
+		assertThat(InterconnectionServiceImpl.findMonths(LocalDateTime.of(2018, 7, 1, 0, 0),
+				LocalDateTime.of(2018, 7, 31, 23, 59))).containsExactly(YearMonth.of(2018, 7));
+	}
+
+	/**
+	 * Test that
+	 * {@link InterconnectionServiceImpl#findBy(String, String, LocalDateTime, LocalDateTime)}
+	 * caches the interconnections of airports without a direct route, and with
+	 * some months without flights, so the next query is not searched again.
+	 */
+	@Test
+	public void findBy_CachesResults_IfNoDirectRoute() {
+		Flight first = flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 8, 0),
+				LocalDateTime.of(2018, 7, 15, 10, 0));
+		Flight next = flight("2", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 13, 0),
+				LocalDateTime.of(2018, 7, 15, 15, 0));
+		AtomicInteger calls = new AtomicInteger();
+		ScheduleService scheduleService = (airportFrom, airportTo, year, month) -> {
+			calls.incrementAndGet();
+			if (month != 7) {
+				return Collections.emptyList();
+			}
+			return airportFrom.equals("DUB") ? Collections.singletonList(first) : Collections.singletonList(next);
+		};
+		RouteGraph routeGraph = new RouteGraph(new AirportDictionary(), Arrays.asList(
+				Route.builder().airportFrom("DUB").airportTo("STN").build(),
+				Route.builder().airportFrom("STN").airportTo("MAD").build()));
+		ForkJoinPool pool = new ForkJoinPool(1);
+		ComputeExecutor computeExecutor = new ComputeExecutor(pool, 1000);
+		SearchMetrics searchMetrics = new SearchMetrics(new SimpleMeterRegistry());
+		ScheduleFetcher scheduleFetcher = new ScheduleFetcher();
+		ReflectionTestUtils.setField(scheduleFetcher, "scheduleService", scheduleService);
+		ReflectionTestUtils.setField(scheduleFetcher, "executor", (Executor) Runnable::run);
+		ReflectionTestUtils.setField(scheduleFetcher, "cacheManager", new NoOpCacheManager());
+		ReflectionTestUtils.setField(scheduleFetcher, "scheduleLimiter", new ScheduleLimiter());
+		ReflectionTestUtils.setField(scheduleFetcher, "scheduleRevalidator", new ScheduleRevalidator());
+		ReflectionTestUtils.setField(scheduleFetcher, "searchMetrics", searchMetrics);
+		InterconnectionResultCache resultCache = new InterconnectionResultCache();
+		ReflectionTestUtils.setField(resultCache, "enabled", true);
+		ReflectionTestUtils.setField(resultCache, "spec", "maximumWeight=1000");
+		ReflectionTestUtils.setField(resultCache, "maxLegs", 100);
+		ReflectionTestUtils.setField(resultCache, "computeExecutor", computeExecutor);
+		ReflectionTestUtils.setField(resultCache, "airportDictionary", new AirportDictionary());
+		resultCache.init();
+		ReflectionTestUtils.setField(service, "routeGraphService", (RouteGraphService) () -> routeGraph);
+		ReflectionTestUtils.setField(service, "scheduleFetcher", scheduleFetcher);
+		ReflectionTestUtils.setField(service, "computeExecutor", computeExecutor);
+		ReflectionTestUtils.setField(service, "schedulePreloader", new SchedulePreloader());
+		ReflectionTestUtils.setField(service, "resultCache", resultCache);
+		ReflectionTestUtils.setField(service, "searchMetrics", searchMetrics);
+
+		Interconnection expected = new Interconnection(Arrays.asList(first, next));
+		try {
+			assertThat(service.findBy("DUB", "MAD", LocalDateTime.of(2018, 7, 1, 0, 0),
+					LocalDateTime.of(2018, 8, 31, 23, 59))).containsExactly(expected);
+			pool.awaitQuiescence(10, TimeUnit.SECONDS);
+			int fetched = calls.get();
+
+			assertThat(service.findBy("DUB", "MAD", LocalDateTime.of(2018, 7, 15, 0, 0),
+					LocalDateTime.of(2018, 8, 1, 0, 0))).containsExactly(expected);
+			assertThat(calls.get()).isEqualTo(fetched);
+			assertThat(resultCache.find("DUB", "MAD", 1, Arrays.asList(YearMonth.of(2018, 7), YearMonth.of(2018, 8))))
+					.isNotNull();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
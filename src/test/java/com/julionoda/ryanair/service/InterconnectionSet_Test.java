@@ -0,0 +1,104 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+/**
+ * Test suite for {@link InterconnectionSet}.
+ * 
+ * @author jnoda
+ *
+ */
+public class InterconnectionSet_Test {
+	/**
+	 * Creates a flight departing at the given date and time, and arriving two hours
+	 * later.
+	 */
+	private static Flight flight(String number, String departureAirport, String arrivalAirport,
+			LocalDateTime departureDateTime) {
+		return new Flight(number, departureAirport, arrivalAirport, departureDateTime, departureDateTime.plusHours(2));
+	}
+
+	/**
+	 * Test that {@link InterconnectionSet#filter(int, int)} returns the same
+	 * interconnections added, in the same order, that depart and arrive within
+	 * the timeframe.
+	 */
+	@Test
+	public void filter_Succeed() {
+		Interconnection direct = new Interconnection(
+				Collections.singletonList(flight("1", "DUB", "MAD", LocalDateTime.of(2018, 7, 15, 8, 0))));
+		Interconnection oneStop = new Interconnection(Arrays.asList(
+				flight("2", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 6, 0)),
+				flight("3", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0))));
+		Interconnection late = new Interconnection(
+				Collections.singletonList(flight("4", "DUB", "MAD", LocalDateTime.of(2018, 7, 15, 20, 0))));
+
+		InterconnectionSet set = InterconnectionSet
+				.builder(new AirportDictionary(), 10)
+				.addAll(Arrays.asList(direct, oneStop))
+				.add(late)
+				.build();
+
+		assertThat(set.size()).isEqualTo(3);
+		assertThat(set.getLegCount()).isEqualTo(4);
+		assertThat(set.filter(Integer.MIN_VALUE, Integer.MAX_VALUE)).containsExactly(direct, oneStop, late);
+		// the first leg of the interconnection departs too soon, the last flight
+		// arrives too late
+		assertThat(set.filter(FlightSchedule.toEpochMinute(LocalDateTime.of(2018, 7, 15, 7, 0)),
+				FlightSchedule.toEpochMinute(LocalDateTime.of(2018, 7, 15, 21, 0)))).containsExactly(direct);
+	}
+
+	/**
+	 * Test that {@link InterconnectionSet.Builder#build()} throws an exception if
+	 * more legs than the maximum were added.
+	 */
+	@Test
+	public void build_ThrowsException_IfOverflown() {
+		InterconnectionSet.Builder builder = InterconnectionSet
+				.builder(new AirportDictionary(), 2)
+				.add(new Interconnection(Arrays.asList(flight("2", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 6, 0)),
+						flight("3", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0)))));
+		assertThat(builder.isOverflown()).isFalse();
+
+		builder.add(new Interconnection(
+				Collections.singletonList(flight("1", "DUB", "MAD", LocalDateTime.of(2018, 7, 15, 8, 0)))));
+
+		assertThat(builder.isOverflown()).isTrue();
+		assertThatThrownBy(builder::build).isInstanceOf(IllegalStateException.class);
+	}
+
+	/**
+	 * Test that
+	 * {@link InterconnectionSet#forEach(int, int, InterconnectionSet.Filter, java.util.function.Consumer)}
+	 * only creates the interconnections accepted by the filter.
+	 */
+	@Test
+	public void forEach_Succeed_IfFilter() {
+		Interconnection direct = new Interconnection(
+				Collections.singletonList(flight("1", "DUB", "MAD", LocalDateTime.of(2018, 7, 15, 8, 0))));
+		Interconnection oneStop = new Interconnection(Arrays.asList(
+				flight("2", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 6, 0)),
+				flight("3", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0))));
+		InterconnectionSet set = InterconnectionSet
+				.builder(new AirportDictionary(), 10)
+				.addAll(Arrays.asList(direct, oneStop))
+				.build();
+		List<Interconnection> result = new ArrayList<>();
+
+		set.forEach(Integer.MIN_VALUE, Integer.MAX_VALUE, (departure, arrival, stops) -> stops > 0, result::add);
+
+		assertThat(result).containsExactly(oneStop);
+	}
+}
@@ -0,0 +1,110 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.service.ScheduleServiceApiImpl.MonthlySchedule;
+
+/**
+ * Test suite for {@link MonthlyScheduleDecoder}.
+ * 
+ * @author jnoda
+ *
+ */
+public class MonthlyScheduleDecoder_Test {
+	/**
+	 * Reader of the payloads, with the same configuration as the application.
+	 */
+	private static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+	/**
+	 * Test that {@link MonthlyScheduleDecoder#decode(byte[], int, String, String)}
+	 * returns the flights of the payload, the same as binding it with Jackson.
+	 */
+	@Test
+	public void decode_ReturnsSameAsBinding() throws Exception {
+		byte[] json = SyntheticNetwork.createMonthlyScheduleJson(YearMonth.of(2019, 2), 5);
+		MonthlySchedule schedule = MAPPER.readValue(json, MonthlySchedule.class);
+		List<Flight> expected = new ArrayList<>();
+		schedule.getDays().forEach(day -> day.getFlights().forEach(flight -> {
+			LocalDateTime departure = LocalDateTime.of(LocalDate.of(2019, schedule.getMonth(), day.getDay()),
+					flight.getDepartureTime());
+			LocalDateTime arrival = LocalDateTime.of(departure.toLocalDate(), flight.getArrivalTime());
+			expected.add(new Flight(flight.getNumber(), "DUB", "MAD", departure,
+					arrival.isAfter(departure) ? arrival : arrival.plusDays(1)));
+		}));
+
+		FlightSchedule result = MonthlyScheduleDecoder.decode(json, 2019, "DUB", "MAD");
+
+		assertThat(result.size()).isGreaterThan(0);
+		assertThat(result).containsExactlyInAnyOrderElementsOf(expected);
+	}
+
+	/**
+	 * Test that {@link MonthlyScheduleDecoder#decode(byte[], int, String, String)}
+	 * reads the properties in any order, skips the unknown ones, and moves the
+	 * arrival of the flights not arriving after their departure time to the next
+	 * day.
+	 */
+	@Test
+	public void decode_Succeed_IfAnyOrder() throws Exception {
+		String json = "{\"days\":[{\"flights\":[{\"arrivalTime\":\"01:05\",\"number\":\"1234\","
+				+ "\"departureTime\":\"22:10:30\",\"carrier\":{\"code\":\"FR\"}}],\"day\":31}],"
+				+ "\"extra\":[1,2],\"month\":\"12\"}";
+
+		assertThat(MonthlyScheduleDecoder.decode(json.getBytes(), 2017, "DUB", "MAD")).containsExactly(
+				new Flight("1234", "DUB", "MAD", LocalDateTime.of(2017, 12, 31, 22, 10),
+						LocalDateTime.of(2018, 1, 1, 1, 5)));
+	}
+
+	/**
+	 * Test that {@link MonthlyScheduleDecoder#decode(byte[], int, String, String)}
+	 * throws an exception if the month is missing.
+	 */
+	@Test
+	public void decode_ThrowsException_IfNoMonth() {
+		assertThatThrownBy(() -> MonthlyScheduleDecoder.decode("{\"days\":[]}".getBytes(), 2018, "DUB", "MAD"))
+				.isInstanceOf(JsonParseException.class)
+				.hasMessageContaining("month");
+	}
+
+	/**
+	 * Test that {@link MonthlyScheduleDecoder#decode(byte[], int, String, String)}
+	 * throws an exception if a day does not exist in the month.
+	 */
+	@Test
+	public void decode_ThrowsException_IfInvalidDay() {
+		String json = "{\"month\":2,\"days\":[{\"day\":30,\"flights\":[{\"number\":\"1234\","
+				+ "\"departureTime\":\"10:00\",\"arrivalTime\":\"12:00\"}]}]}";
+
+		assertThatThrownBy(() -> MonthlyScheduleDecoder.decode(json.getBytes(), 2018, "DUB", "MAD"))
+				.isInstanceOf(JsonParseException.class)
+				.hasMessageContaining("day");
+	}
+
+	/**
+	 * Test that {@link MonthlyScheduleDecoder#decode(byte[], int, String, String)}
+	 * throws an exception if a time is not valid.
+	 */
+	@Test
+	public void decode_ThrowsException_IfInvalidTime() {
+		String json = "{\"month\":2,\"days\":[{\"day\":3,\"flights\":[{\"number\":\"1234\","
+				+ "\"departureTime\":\"25:00\",\"arrivalTime\":\"12:00\"}]}]}";
+
+		assertThatThrownBy(() -> MonthlyScheduleDecoder.decode(json.getBytes(), 2018, "DUB", "MAD"))
+				.isInstanceOf(JsonParseException.class)
+				.hasMessageContaining("departureTime");
+	}
+}
@@ -0,0 +1,133 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Test suite for {@link PacedRun}.
+ * 
+ * @author jnoda
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PacedRun_Test {
+	@Mock
+	private TaskScheduler taskScheduler;
+
+	/**
+	 * The scheduled items, run by hand.
+	 */
+	private final List<Runnable> tasks = new ArrayList<>();
+
+	/**
+	 * The times the items were scheduled at.
+	 */
+	private final List<Date> times = new ArrayList<>();
+
+	/**
+	 * The items worked on.
+	 */
+	private final List<Integer> worked = new ArrayList<>();
+
+	/**
+	 * The number of items worked on, once done, or -1.
+	 */
+	private final AtomicInteger done = new AtomicInteger(-1);
+
+	@Before
+	public void setUp() {
+		given(taskScheduler.schedule(any(Runnable.class), any(Date.class))).willAnswer(invocation -> {
+			tasks.add(invocation.getArgument(0));
+			times.add(invocation.getArgument(1));
+			return null;
+		});
+	}
+
+	/**
+	 * Starts a run over the given items at ten items per second, working on the
+	 * even ones and skipping the odd ones.
+	 */
+	private PacedRun<Integer> start(Integer... items) {
+		return PacedRun.start(taskScheduler, 10, Arrays.asList(items), item -> {
+			if (item % 2 != 0) {
+				return false;
+			}
+			worked.add(item);
+			return true;
+		}, done::set);
+	}
+
+	/**
+	 * Test that {@link PacedRun#start} works on an item at a time, scheduling the
+	 * next one after the pause, without pausing on the items skipped.
+	 */
+	@Test
+	public void start_SchedulesNext_IfWorked() {
+		long start = System.currentTimeMillis();
+		PacedRun<Integer> run = start(1, 2, 3, 5, 4, 7);
+
+		assertThat(worked).containsExactly(2);
+		assertThat(tasks).hasSize(1);
+		assertThat(times.get(0).getTime()).isGreaterThanOrEqualTo(start + 100);
+		assertThat(run.isDone()).isFalse();
+
+		tasks.remove(0).run();
+		assertThat(worked).containsExactly(2, 4);
+		assertThat(run.isDone()).isFalse();
+
+		tasks.remove(0).run();
+		assertThat(tasks).isEmpty();
+		assertThat(run.isDone()).isTrue();
+		assertThat(done.get()).isEqualTo(2);
+	}
+
+	/**
+	 * Test that {@link PacedRun#start} goes on after an item fails.
+	 */
+	@Test
+	public void start_GoesOn_IfFailed() {
+		PacedRun<Integer> run = PacedRun.start(taskScheduler, 10, Arrays.asList(1, 2), item -> {
+			if (item == 1) {
+				throw new IllegalStateException("failed");
+			}
+			worked.add(item);
+			return true;
+		}, done::set);
+		tasks.remove(0).run();
+		tasks.remove(0).run();
+
+		assertThat(worked).containsExactly(2);
+		assertThat(run.isDone()).isTrue();
+		assertThat(done.get()).isEqualTo(2);
+	}
+
+	/**
+	 * Test that {@link PacedRun#start} ends the run if the scheduler is shut down.
+	 */
+	@Test
+	public void start_Ends_IfRejected() {
+		given(taskScheduler.schedule(any(Runnable.class), any(Date.class)))
+				.willThrow(new TaskRejectedException("shut down"));
+
+		PacedRun<Integer> run = start(2, 4);
+
+		assertThat(worked).containsExactly(2);
+		assertThat(run.isDone()).isTrue();
+		assertThat(done.get()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,96 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Route;
+
+/**
+ * Test suite for {@link RouteGraph}.
+ * 
+ * @author jnoda
+ *
+ */
+public class RouteGraph_Test {
+
+	/**
+	 * Creates a route with the given airports.
+	 */
+	private static Route route(String airportFrom, String airportTo, String connectingAirport) {
+		return Route.builder().airportFrom(airportFrom).airportTo(airportTo).connectingAirport(connectingAirport).build();
+	}
+
+	/**
+	 * Gets a graph with a few routes to be used on the tests.
+	 */
+	private RouteGraph getTestGraph() {
+		return new RouteGraph(new AirportDictionary(),
+				Arrays.asList(route("DUB", "MAD", null), route("DUB", "BCN", null), route("DUB", "STN", null),
+						route("BCN", "MAD", null), route("STN", "MAD", null), route("STN", "WRO", null),
+						route("DUB", "WRO", "STN")));
+	}
+
+	/**
+	 * Test that {@link RouteGraph#findConnectingAirports(String, String)} returns
+	 * the airports with routes to both ends.
+	 */
+	@Test
+	public void findConnectingAirports_Succeed() {
+		assertThat(getTestGraph().findConnectingAirports("DUB", "MAD")).containsExactlyInAnyOrder("BCN", "STN");
+	}
+
+	/**
+	 * Test that {@link RouteGraph#findConnectingAirports(String, String)} returns
+	 * nothing if any of the airports is unknown.
+	 */
+	@Test
+	public void findConnectingAirports_ReturnsEmpty_IfUnknownAirport() {
+		assertThat(getTestGraph().findConnectingAirports("XXX", "MAD")).isEmpty();
+		assertThat(getTestGraph().findConnectingAirports("DUB", "XXX")).isEmpty();
+	}
+
+	/**
+	 * Test that the routes with a connecting airport are not indexed.
+	 */
+	@Test
+	public void getRoute_ReturnsNull_IfRouteNotDirect() {
+		RouteGraph graph = getTestGraph();
+
+		assertNull(graph.getRoute("DUB", "WRO"));
+		assertEquals(route("STN", "WRO", null), graph.getRoute("STN", "WRO"));
+		assertThat(graph.findOutgoing("DUB")).hasSize(3);
+		assertThat(graph.findIncoming("WRO")).containsExactly(route("STN", "WRO", null));
+	}
+
+	/**
+	 * Test that {@link RouteGraph#findRoutes(String, String, int)} returns the
+	 * routes of the paths with at most the given number of legs.
+	 */
+	@Test
+	public void findRoutes_Succeed() {
+		RouteGraph graph = new RouteGraph(new AirportDictionary(),
+				Arrays.asList(route("DUB", "MAD", null), route("DUB", "STN", null), route("STN", "BCN", null),
+						route("BCN", "MAD", null), route("STN", "WRO", null), route("MAD", "STN", null),
+						route("BCN", "DUB", null)));
+
+		assertThat(graph.findRoutes("DUB", "MAD", 1)).containsExactly(route("DUB", "MAD", null));
+		assertThat(graph.findRoutes("DUB", "MAD", 2)).containsExactly(route("DUB", "MAD", null));
+		assertThat(graph.findRoutes("DUB", "MAD", 3)).containsExactlyInAnyOrder(route("DUB", "MAD", null),
+				route("DUB", "STN", null), route("STN", "BCN", null), route("BCN", "MAD", null));
+	}
+
+	/**
+	 * Test that {@link RouteGraph#findRoutes(String, String, int)} returns nothing
+	 * if any of the airports is unknown.
+	 */
+	@Test
+	public void findRoutes_ReturnsEmpty_IfUnknownAirport() {
+		assertThat(getTestGraph().findRoutes("XXX", "MAD", 3)).isEmpty();
+		assertThat(getTestGraph().findRoutes("DUB", "XXX", 3)).isEmpty();
+	}
+}
@@ -0,0 +1,79 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+
+/**
+ * Test suite for {@link ScheduleDiff}.
+ * 
+ * @author jnoda
+ *
+ */
+public class ScheduleDiff_Test {
+	/**
+	 * A flight departing at 8:00.
+	 */
+	private static final Flight EARLY = flight("1", 8, 10);
+
+	/**
+	 * Another flight departing at 8:00.
+	 */
+	private static final Flight EARLY_OTHER = flight("2", 8, 11);
+
+	/**
+	 * A flight departing at 18:00.
+	 */
+	private static final Flight LATE = flight("3", 18, 20);
+
+	/**
+	 * Creates a flight from Dublin to Madrid on the 15th of July of 2018.
+	 */
+	private static Flight flight(String number, int departureHour, int arrivalHour) {
+		return new Flight(number, "DUB", "MAD", LocalDateTime.of(2018, 7, 15, departureHour, 0),
+				LocalDateTime.of(2018, 7, 15, arrivalHour, 0));
+	}
+
+	/**
+	 * Creates a schedule from Dublin to Madrid with the given flights.
+	 */
+	private static FlightSchedule schedule(Flight... flights) {
+		return FlightSchedule.of("DUB", "MAD", Arrays.asList(flights));
+	}
+
+	/**
+	 * Test that {@link ScheduleDiff#of(FlightSchedule, FlightSchedule)} finds no
+	 * change between schedules with the same flights, whatever their order.
+	 */
+	@Test
+	public void of_ReturnsEmpty_IfSameFlights() {
+		ScheduleDiff diff = ScheduleDiff.of(schedule(EARLY, EARLY_OTHER, LATE), schedule(LATE, EARLY_OTHER, EARLY));
+
+		assertThat(diff.isEmpty()).isTrue();
+		assertThat(ScheduleDiff.of(schedule(), schedule()).isEmpty()).isTrue();
+	}
+
+	/**
+	 * Test that {@link ScheduleDiff#of(FlightSchedule, FlightSchedule)} counts the
+	 * flights added and removed, and a flight whose times changed as both.
+	 */
+	@Test
+	public void of_ReturnsChangedFlights() {
+		Flight delayed = flight("3", 19, 21);
+
+		ScheduleDiff diff = ScheduleDiff.of(schedule(EARLY, EARLY_OTHER, LATE), schedule(EARLY, delayed));
+
+		assertThat(diff.isEmpty()).isFalse();
+		assertThat(diff.getAdded()).isEqualTo(1);
+		assertThat(diff.getRemoved()).isEqualTo(2);
+		assertThat(ScheduleDiff.of(schedule(), schedule(LATE))).isEqualTo(new ScheduleDiff(1, 0));
+		assertThat(ScheduleDiff.of(schedule(LATE), schedule(delayed))).isEqualTo(new ScheduleDiff(1, 1));
+		assertThat(ScheduleDiff.of(schedule(EARLY, LATE), schedule(EARLY_OTHER, LATE)))
+				.isEqualTo(new ScheduleDiff(1, 1));
+	}
+}
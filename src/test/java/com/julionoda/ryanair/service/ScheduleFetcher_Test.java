@@ -0,0 +1,331 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.service.SearchMetrics.FetchResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test suite for {@link ScheduleFetcher}.
+ * 
+ * @author jnoda
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ScheduleFetcher_Test {
+	@Mock
+	private ScheduleService scheduleService;
+
+	@Mock
+	private CacheManager cacheManager;
+
+	@Mock
+	private ScheduleRevalidator scheduleRevalidator;
+
+	@Spy
+	private ScheduleLimiter scheduleLimiter = new ScheduleLimiter();
+
+	@Spy
+	private SearchMetrics searchMetrics = new SearchMetrics(new SimpleMeterRegistry());
+
+	@InjectMocks
+	private ScheduleFetcher scheduleFetcher;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(2);
+		ReflectionTestUtils.setField(scheduleFetcher, "executor", executor);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetchAll(java.util.Collection)} returns the
+	 * flights of every schedule.
+	 */
+	@Test
+	public void fetchAll_Succeed() {
+		Flight flight = new Flight("1234", "DUB", "MAD", LocalDateTime.of(2018, 7, 15, 10, 0),
+				LocalDateTime.of(2018, 7, 15, 13, 0));
+		given(scheduleService.findFlights("DUB", "MAD", 2018, 7)).willReturn(Collections.singletonList(flight));
+		given(scheduleService.findFlights("DUB", "MAD", 2018, 8)).willReturn(Collections.emptyList());
+
+		ScheduleKey july = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+		ScheduleKey august = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 8));
+		Map<ScheduleKey, Iterable<Flight>> result = scheduleFetcher.fetchAll(Arrays.asList(july, august));
+
+		assertThat(result).containsOnlyKeys(july, august);
+		assertThat(result.get(july)).containsExactly(flight);
+		assertThat(result.get(august)).isEmpty();
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetchAll(java.util.Collection)} issues the
+	 * requests concurrently, instead of one after the other.
+	 */
+	@Test
+	public void fetchAll_FetchesConcurrently() {
+		// each call waits for the other one, so it would time out if they were
+		// sequential
+		CountDownLatch latch = new CountDownLatch(2);
+		given(scheduleService.findFlights("DUB", "MAD", 2018, 7)).will(invocation -> awaitOther(latch));
+		given(scheduleService.findFlights("MAD", "DUB", 2018, 7)).will(invocation -> awaitOther(latch));
+
+		Map<ScheduleKey, Iterable<Flight>> result = scheduleFetcher
+				.fetchAll(Arrays.asList(new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7)),
+						new ScheduleKey("MAD", "DUB", YearMonth.of(2018, 7))));
+
+		assertThat(result).hasSize(2);
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetchAll(java.util.Collection)} fetches
+	 * repeated keys only once.
+	 */
+	@Test
+	public void fetchAll_FetchesOnce_IfRepeatedKeys() {
+		given(scheduleService.findFlights("DUB", "MAD", 2018, 7)).willReturn(Collections.emptyList());
+
+		ScheduleKey key = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+		assertThat(scheduleFetcher.fetchAll(Arrays.asList(key, key))).containsOnlyKeys(key);
+
+		verify(scheduleService, times(1)).findFlights("DUB", "MAD", 2018, 7);
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetchAllAsync(java.util.Collection, Map)}
+	 * shares the schedules fetched for another query of the same batch, even
+	 * once they are not in flight anymore.
+	 */
+	@Test
+	public void fetchAllAsync_FetchesOnce_IfFetchedForBatch() {
+		given(scheduleService.findFlights("DUB", "MAD", 2018, 7)).willReturn(Collections.emptyList());
+		given(scheduleService.findFlights("DUB", "STN", 2018, 7)).willReturn(Collections.emptyList());
+
+		ScheduleKey key = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+		ScheduleKey other = new ScheduleKey("DUB", "STN", YearMonth.of(2018, 7));
+		Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> fetched = new HashMap<>();
+		Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> first = scheduleFetcher
+				.fetchAllAsync(Collections.singletonList(key), fetched);
+		first.get(key).join();
+		Map<ScheduleKey, CompletableFuture<Iterable<Flight>>> second = scheduleFetcher
+				.fetchAllAsync(Arrays.asList(key, other), fetched);
+
+		assertThat(second).containsOnlyKeys(key, other);
+		assertThat(second.get(key)).isSameAs(first.get(key));
+		assertThat(fetched).containsOnlyKeys(key, other);
+		verify(scheduleService, times(1)).findFlights("DUB", "MAD", 2018, 7);
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetch(ScheduleKey)} joins the fetch in
+	 * flight for the same key, instead of issuing a new one.
+	 */
+	@Test
+	public void fetch_JoinsFetchInFlight_IfSameKey() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		given(scheduleService.findFlights("DUB", "MAD", 2018, 7)).will(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return Collections.emptyList();
+		});
+
+		ScheduleKey key = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+		CompletableFuture<Iterable<Flight>> first = scheduleFetcher.fetch(key);
+		CompletableFuture<Iterable<Flight>> second = scheduleFetcher.fetch(key);
+		release.countDown();
+
+		assertThat(second).isSameAs(first);
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEmpty();
+		verify(scheduleService, times(1)).findFlights("DUB", "MAD", 2018, 7);
+
+		// once finished, a new fetch is issued
+		assertThat(scheduleFetcher.fetch(key).get(5, TimeUnit.SECONDS)).isEmpty();
+		verify(scheduleService, times(2)).findFlights("DUB", "MAD", 2018, 7);
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetchAll(java.util.Collection)} rethrows the
+	 * exception of a failed request.
+	 */
+	@Test
+	public void fetchAll_ThrowsException_IfRequestFails() {
+		given(scheduleService.findFlights("DUB", "MAD", 2018, 7)).willThrow(new IllegalStateException("failed"));
+
+		assertThatThrownBy(() -> {
+			scheduleFetcher.fetchAll(Collections.singletonList(new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7))));
+		}).isInstanceOf(IllegalStateException.class).hasMessage("failed");
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetch(ScheduleKey)} uses the non-blocking
+	 * schedule service if there is one, and unregisters the fetch once it is
+	 * complete.
+	 */
+	@Test
+	public void fetch_UsesAsyncScheduleService_IfAny() throws Exception {
+		AsyncScheduleService asyncScheduleService = mock(AsyncScheduleService.class);
+		ReflectionTestUtils.setField(scheduleFetcher, "asyncScheduleService", asyncScheduleService);
+		CompletableFuture<Iterable<Flight>> response = new CompletableFuture<>();
+		given(asyncScheduleService.findFlightsAsync("DUB", "MAD", 2018, 7)).willReturn(response);
+
+		ScheduleKey key = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+		CompletableFuture<Iterable<Flight>> first = scheduleFetcher.fetch(key);
+		assertThat(scheduleFetcher.fetch(key)).isSameAs(first);
+		assertThat(first).isNotDone();
+
+		response.complete(Collections.emptyList());
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEmpty();
+		assertThat(scheduleFetcher.fetch(key)).isNotSameAs(first);
+		verify(asyncScheduleService, times(2)).findFlightsAsync("DUB", "MAD", 2018, 7);
+		verify(scheduleService, never()).findFlights(anyString(), anyString(), anyInt(), anyInt());
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetch(ScheduleKey)} records the result of
+	 * the fetch once it is complete.
+	 */
+	@Test
+	public void fetch_RecordsFallback_IfUnavailable() {
+		AsyncScheduleService asyncScheduleService = mock(AsyncScheduleService.class);
+		ReflectionTestUtils.setField(scheduleFetcher, "asyncScheduleService", asyncScheduleService);
+		CompletableFuture<Iterable<Flight>> response = new CompletableFuture<>();
+		given(asyncScheduleService.findFlightsAsync("DUB", "MAD", 2018, 7)).willReturn(response);
+
+		scheduleFetcher.fetch(new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7)));
+		verify(searchMetrics, never()).stopFetch(any(), any());
+
+		response.complete(ScheduleService.UNAVAILABLE);
+		verify(searchMetrics).stopFetch(any(), eq(FetchResult.FALLBACK));
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetch(ScheduleKey)} falls back to no
+	 * flights if the limiter rejects the call.
+	 */
+	@Test
+	public void fetch_ReturnsUnavailable_IfRejected() {
+		CompletableFuture<Iterable<Flight>> rejected = new CompletableFuture<>();
+		rejected.completeExceptionally(new RejectedExecutionException("full"));
+		doReturn(rejected).when(scheduleLimiter).submit(any(), any());
+
+		assertThat(scheduleFetcher.fetch(new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7))))
+				.isCompletedWithValue(ScheduleService.UNAVAILABLE);
+		verify(scheduleService, never()).findFlights(anyString(), anyString(), anyInt(), anyInt());
+		verify(searchMetrics).stopFetch(any(), eq(FetchResult.FALLBACK));
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetch(ScheduleKey)} falls back to no
+	 * flights if the executor is full, instead of running the call on the calling
+	 * thread.
+	 */
+	@Test
+	public void fetch_ReturnsUnavailable_IfExecutorFull() {
+		ReflectionTestUtils.setField(scheduleFetcher, "executor", (Executor) task -> {
+			throw new RejectedExecutionException("full");
+		});
+
+		assertThat(scheduleFetcher.fetch(new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7))))
+				.isCompletedWithValue(ScheduleService.UNAVAILABLE);
+		verify(scheduleService, never()).findFlights(anyString(), anyString(), anyInt(), anyInt());
+		verify(searchMetrics).stopFetch(any(), eq(FetchResult.FALLBACK));
+	}
+
+	/**
+	 * Test that {@link ScheduleFetcher#fetch(ScheduleKey)} serves a cached
+	 * schedule on the calling thread, without the limiter, even if the executor
+	 * is full.
+	 */
+	@Test
+	public void fetch_ServesFromCache_IfExecutorFull() {
+		ReflectionTestUtils.setField(scheduleFetcher, "executor", (Executor) task -> {
+			throw new RejectedExecutionException("full");
+		});
+		ScheduleKey key = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+		FlightSchedule schedule = FlightSchedule.of("DUB", "MAD", Collections.singletonList(new Flight("1", "DUB",
+				"MAD", LocalDateTime.of(2018, 7, 1, 8, 0), LocalDateTime.of(2018, 7, 1, 10, 0))));
+		ConcurrentMapCache cache = new ConcurrentMapCache(CacheConfiguration.SCHEDULES_CACHE);
+		cache.put(key, schedule);
+		given(cacheManager.getCache(CacheConfiguration.SCHEDULES_CACHE)).willReturn(cache);
+
+		assertThat(scheduleFetcher.fetch(key)).isCompletedWithValue(schedule);
+		verify(scheduleLimiter, never()).submit(any(), any());
+		verify(scheduleService, never()).findFlights(anyString(), anyString(), anyInt(), anyInt());
+		verify(searchMetrics).stopFetch(any(), eq(FetchResult.HIT));
+	}
+
+	/**
+	 * Test that
+	 * {@link ScheduleFetcher#getResult(boolean, boolean, Iterable, Throwable)}
+	 * tells fresh and stale hits from misses, and all of them from fallbacks and
+	 * errors.
+	 */
+	@Test
+	public void getResult_Succeed() {
+		assertThat(ScheduleFetcher.getResult(true, false, Collections.emptyList(), null)).isEqualTo(FetchResult.HIT);
+		assertThat(ScheduleFetcher.getResult(true, true, Collections.emptyList(), null))
+				.isEqualTo(FetchResult.STALE);
+		assertThat(ScheduleFetcher.getResult(false, false, Collections.emptyList(), null))
+				.isEqualTo(FetchResult.MISS);
+		assertThat(ScheduleFetcher.getResult(false, false, ScheduleService.UNAVAILABLE, null))
+				.isEqualTo(FetchResult.FALLBACK);
+		assertThat(ScheduleFetcher.getResult(true, false, null, new IllegalStateException()))
+				.isEqualTo(FetchResult.ERROR);
+	}
+
+	/**
+	 * Counts down the latch and waits for the other calls to do the same.
+	 */
+	private static Iterable<Flight> awaitOther(CountDownLatch latch) throws InterruptedException {
+		latch.countDown();
+		if (!latch.await(5, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("Requests were not concurrent");
+		}
+		return Collections.emptyList();
+	}
+}
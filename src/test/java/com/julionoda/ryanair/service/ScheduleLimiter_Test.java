@@ -0,0 +1,159 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test suite for {@link ScheduleLimiter}.
+ * 
+ * @author jnoda
+ *
+ */
+public class ScheduleLimiter_Test {
+	/**
+	 * The registry of the meters.
+	 */
+	private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	/**
+	 * The limiter to test.
+	 */
+	private final ScheduleLimiter limiter = new ScheduleLimiter();
+
+	/**
+	 * The calls started, not completed yet.
+	 */
+	private final List<CompletableFuture<String>> calls = new ArrayList<>();
+
+	/**
+	 * Sets up a limiter of two calls, up to four, with room for one more in the
+	 * queue.
+	 */
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(limiter, "enabled", true);
+		ReflectionTestUtils.setField(limiter, "initialLimit", 2);
+		ReflectionTestUtils.setField(limiter, "minLimit", 1);
+		ReflectionTestUtils.setField(limiter, "maxLimit", 4);
+		ReflectionTestUtils.setField(limiter, "latencyThreshold", 60000L);
+		ReflectionTestUtils.setField(limiter, "backoffRatio", 0.5);
+		ReflectionTestUtils.setField(limiter, "queueCapacity", 1);
+		ReflectionTestUtils.setField(limiter, "meterRegistry", meterRegistry);
+		limiter.init();
+	}
+
+	/**
+	 * Submits a call, dropped if its result is "fallback".
+	 */
+	private CompletableFuture<String> submit() {
+		return limiter.submit(() -> {
+			CompletableFuture<String> call = new CompletableFuture<>();
+			calls.add(call);
+			return call;
+		}, "fallback"::equals);
+	}
+
+	/**
+	 * Test that {@link ScheduleLimiter#submit} queues the calls beyond the limit,
+	 * rejects them once the queue is full, and starts the queued ones as the calls
+	 * in flight end.
+	 */
+	@Test
+	public void submit_Queues_IfLimitReached() {
+		CompletableFuture<String> first = submit();
+		submit();
+		CompletableFuture<String> queued = submit();
+		CompletableFuture<String> rejected = submit();
+
+		assertThat(calls).hasSize(2);
+		assertThat(limiter.getQueued()).isEqualTo(1);
+		assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+		assertThat(meterRegistry.get(ScheduleLimiter.METRICS_PREFIX + ".rejected").counter().count()).isEqualTo(1);
+
+		calls.get(0).complete("ok");
+		assertThat(first).isCompletedWithValue("ok");
+		assertThat(calls).hasSize(3);
+		assertThat(limiter.getQueued()).isEqualTo(0);
+
+		calls.get(2).complete("queued");
+		assertThat(queued).isCompletedWithValue("queued");
+		assertThat(meterRegistry.get(ScheduleLimiter.METRICS_PREFIX + ".inflight").gauge().value()).isEqualTo(1);
+	}
+
+	/**
+	 * Test that {@link ScheduleLimiter#submit} increases the limit by one for each
+	 * call in time while it is in use, up to the maximum.
+	 */
+	@Test
+	public void submit_IncreasesLimit_IfInTime() {
+		submit();
+		submit();
+		calls.get(0).complete("ok");
+		assertThat(limiter.getLimit()).isEqualTo(3);
+
+		submit();
+		submit();
+		calls.get(1).complete("ok");
+		calls.get(2).complete("ok");
+		assertThat(limiter.getLimit()).isEqualTo(4);
+		assertThat(meterRegistry.get(ScheduleLimiter.METRICS_PREFIX + ".limit").gauge().value()).isEqualTo(4);
+	}
+
+	/**
+	 * Test that {@link ScheduleLimiter#submit} decreases the limit for each call
+	 * dropped or failed, down to the minimum.
+	 */
+	@Test
+	public void submit_DecreasesLimit_IfDroppedOrFailed() {
+		submit();
+		CompletableFuture<String> failed = submit();
+		calls.get(0).complete("fallback");
+		assertThat(limiter.getLimit()).isEqualTo(1);
+
+		calls.get(1).completeExceptionally(new IllegalStateException("failed"));
+		assertThat(failed).isCompletedExceptionally();
+		assertThat(limiter.getLimit()).isEqualTo(1);
+	}
+
+	/**
+	 * Test that {@link ScheduleLimiter#submit} decreases the limit for each call
+	 * slower than the latency threshold.
+	 */
+	@Test
+	public void submit_DecreasesLimit_IfSlow() {
+		ReflectionTestUtils.setField(limiter, "latencyThreshold", -1L);
+
+		submit();
+		calls.get(0).complete("ok");
+
+		assertThat(limiter.getLimit()).isEqualTo(1);
+	}
+
+	/**
+	 * Test that {@link ScheduleLimiter#submit} calls at once, without any limit,
+	 * if the limiter is disabled.
+	 */
+	@Test
+	public void submit_DoesNotLimit_IfDisabled() {
+		ReflectionTestUtils.setField(limiter, "enabled", false);
+
+		for (int i = 0; i < 5; i++) {
+			submit();
+		}
+
+		assertThat(calls).hasSize(5);
+		assertThat(limiter.getInFlight()).isEqualTo(0);
+	}
+}
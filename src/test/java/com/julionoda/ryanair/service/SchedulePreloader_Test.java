@@ -0,0 +1,186 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.model.Route;
+import com.julionoda.ryanair.service.SchedulePreloader.AirportPair;
+
+/**
+ * Test suite for {@link SchedulePreloader}.
+ * 
+ * @author jnoda
+ *
+ */
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class SchedulePreloader_Test {
+	@Mock
+	private RouteService routeService;
+
+	@Mock
+	private RouteGraphService routeGraphService;
+
+	@Mock
+	private ScheduleFetcher scheduleFetcher;
+
+	@Mock
+	private CacheManager cacheManager;
+
+	@Mock
+	private TaskScheduler taskScheduler;
+
+	@InjectMocks
+	private SchedulePreloader schedulePreloader;
+
+	private final ConcurrentMapCache cache = new ConcurrentMapCache(CacheConfiguration.SCHEDULES_CACHE);
+
+	/**
+	 * The scheduled fetches, run by hand.
+	 */
+	private final List<Runnable> tasks = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(schedulePreloader, "enabled", true);
+		ReflectionTestUtils.setField(schedulePreloader, "months", 1);
+		ReflectionTestUtils.setField(schedulePreloader, "topPairs", 1);
+		ReflectionTestUtils.setField(schedulePreloader, "rate", Double.MAX_VALUE);
+
+		List<Route> routes = Arrays.asList(route("AAA", "BBB"), route("DUB", "STN"), route("STN", "MAD"),
+				Route.builder().airportFrom("DUB").airportTo("MAD").connectingAirport("STN").build());
+		given(routeService.findAll()).willReturn(routes);
+		given(routeGraphService.getRouteGraph()).willReturn(new RouteGraph(new AirportDictionary(), routes));
+		given(cacheManager.getCache(CacheConfiguration.SCHEDULES_CACHE)).willReturn(cache);
+		// the fetches are scheduled by hand
+		given(taskScheduler.schedule(any(Runnable.class), any(Date.class))).willAnswer(invocation -> {
+			tasks.add(invocation.getArgument(0));
+			return null;
+		});
+	}
+
+	/**
+	 * Runs the scheduled fetches, until the run is done.
+	 */
+	private void runTasks() {
+		while (!tasks.isEmpty()) {
+			tasks.remove(0).run();
+		}
+	}
+
+	/**
+	 * Creates a direct route.
+	 */
+	private static Route route(String airportFrom, String airportTo) {
+		return Route.builder().airportFrom(airportFrom).airportTo(airportTo).build();
+	}
+
+	/**
+	 * Test that {@link SchedulePreloader#findScheduleKeys(YearMonth)} returns the
+	 * routes of the most queried pairs first, and then every other direct route,
+	 * for the current and the following months.
+	 */
+	@Test
+	public void findScheduleKeys_Succeed() {
+		schedulePreloader.recordQuery("AAA", "BBB");
+		schedulePreloader.recordQuery("DUB", "MAD");
+		schedulePreloader.recordQuery("DUB", "MAD");
+
+		YearMonth december = YearMonth.of(2018, 12);
+		YearMonth january = YearMonth.of(2019, 1);
+		assertThat(schedulePreloader.findScheduleKeys(december)).containsExactly(
+				new ScheduleKey("DUB", "STN", december), new ScheduleKey("STN", "MAD", december),
+				new ScheduleKey("DUB", "STN", january), new ScheduleKey("STN", "MAD", january),
+				new ScheduleKey("AAA", "BBB", december), new ScheduleKey("AAA", "BBB", january));
+	}
+
+	/**
+	 * Test that {@link SchedulePreloader#findTopPairs()} halves the number of
+	 * queries of every pair, forgetting the ones left without queries.
+	 */
+	@Test
+	public void findTopPairs_HalvesQueries() {
+		schedulePreloader.recordQuery("AAA", "BBB");
+		schedulePreloader.recordQuery("DUB", "MAD");
+		schedulePreloader.recordQuery("DUB", "MAD");
+		ReflectionTestUtils.setField(schedulePreloader, "topPairs", 2);
+
+		assertThat(schedulePreloader.findTopPairs()).containsExactly(new AirportPair("DUB", "MAD"),
+				new AirportPair("AAA", "BBB"));
+		assertThat(schedulePreloader.findTopPairs()).containsExactly(new AirportPair("DUB", "MAD"));
+		assertThat(schedulePreloader.findTopPairs()).isEmpty();
+	}
+
+	/**
+	 * Test that {@link SchedulePreloader#preload()} fetches only the schedules not
+	 * in the cache.
+	 */
+	@Test
+	public void preload_SkipsCachedSchedules() {
+		YearMonth currentMonth = YearMonth.now();
+		ScheduleKey cached = new ScheduleKey("AAA", "BBB", currentMonth);
+		cache.put(cached, Arrays.asList());
+
+		schedulePreloader.preload();
+		runTasks();
+
+		verify(scheduleFetcher, never()).fetch(cached);
+		verify(scheduleFetcher).fetch(new ScheduleKey("AAA", "BBB", currentMonth.plusMonths(1)));
+		verify(scheduleFetcher).fetch(new ScheduleKey("DUB", "STN", currentMonth));
+		verify(scheduleFetcher).fetch(new ScheduleKey("STN", "MAD", currentMonth.plusMonths(1)));
+	}
+
+	/**
+	 * Test that {@link SchedulePreloader#preload()} fetches one schedule at a
+	 * time, scheduling the next one instead of waiting for it, and skips a run
+	 * while the previous one is not done.
+	 */
+	@Test
+	public void preload_SkipsRun_IfPreviousNotDone() {
+		schedulePreloader.preload();
+		verify(scheduleFetcher, times(1)).fetch(any());
+		assertThat(tasks).hasSize(1);
+
+		schedulePreloader.preload();
+		verify(scheduleFetcher, times(1)).fetch(any());
+		assertThat(tasks).hasSize(1);
+
+		runTasks();
+		verify(scheduleFetcher, times(6)).fetch(any());
+		schedulePreloader.preload();
+		verify(scheduleFetcher, times(7)).fetch(any());
+	}
+
+	/**
+	 * Test that {@link SchedulePreloader#preload()} does nothing if disabled.
+	 */
+	@Test
+	public void preload_DoesNothing_IfDisabled() {
+		ReflectionTestUtils.setField(schedulePreloader, "enabled", false);
+
+		schedulePreloader.preload();
+
+		verify(scheduleFetcher, never()).fetch(any());
+	}
+}
@@ -0,0 +1,356 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.model.Flight;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Test suite for {@link ScheduleRevalidator}.
+ * 
+ * @author jnoda
+ *
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ScheduleRevalidator_Test {
+	/**
+	 * The key of a schedule of the current month.
+	 */
+	private static final ScheduleKey KEY = new ScheduleKey("DUB", "MAD", YearMonth.now());
+
+	/**
+	 * The validators of the schedule.
+	 */
+	private static final ScheduleValidators VALIDATORS = new ScheduleValidators("\"1\"", null);
+
+	@Mock
+	private ScheduleService scheduleService;
+
+	@Mock
+	private CacheManager cacheManager;
+
+	@Spy
+	private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Spy
+	private ScheduleLimiter scheduleLimiter = new ScheduleLimiter();
+
+	@InjectMocks
+	private ScheduleRevalidator scheduleRevalidator;
+
+	/**
+	 * The revalidations in the background, and the next steps of the runs, run by
+	 * hand.
+	 */
+	private final List<Runnable> tasks = new ArrayList<>();
+
+	/**
+	 * The scheduler of the runs, which leaves their next steps to be run by hand.
+	 */
+	private final TaskScheduler taskScheduler = mock(TaskScheduler.class, invocation -> {
+		tasks.add(invocation.getArgument(0));
+		return null;
+	});
+
+	/**
+	 * The time of the cache, in nanoseconds.
+	 */
+	private final AtomicLong now = new AtomicLong();
+
+	/**
+	 * The cached schedules, expiring after six hours.
+	 */
+	private final Cache<Object, Object> cache = Caffeine
+			.newBuilder()
+			.expireAfterWrite(6, TimeUnit.HOURS)
+			.ticker(now::get)
+			.build();
+
+	/**
+	 * The cached schedule.
+	 */
+	private final FlightSchedule cached = schedule(10);
+
+	@Before
+	public void setUp() {
+		ReflectionTestUtils.setField(scheduleRevalidator, "enabled", true);
+		ReflectionTestUtils.setField(scheduleRevalidator, "age", TimeUnit.MINUTES.toMillis(45));
+		ReflectionTestUtils.setField(scheduleRevalidator, "staleAge", TimeUnit.MINUTES.toMillis(60));
+		ReflectionTestUtils.setField(scheduleRevalidator, "rate", Double.MAX_VALUE);
+		ReflectionTestUtils.setField(scheduleRevalidator, "executor", (Executor) tasks::add);
+		ReflectionTestUtils.setField(scheduleRevalidator, "taskScheduler", taskScheduler);
+		given(cacheManager.getCache(CacheConfiguration.SCHEDULES_CACHE))
+				.willReturn(new CaffeineCache(CacheConfiguration.SCHEDULES_CACHE, cache));
+		cache.put(KEY, cached);
+	}
+
+	/**
+	 * Creates a schedule with a flight departing at the given hour of the first
+	 * day of the month of the key.
+	 */
+	private static FlightSchedule schedule(int departureHour) {
+		LocalDateTime departure = KEY.getYearMonth().atDay(1).atTime(departureHour, 0);
+		return FlightSchedule.of("DUB", "MAD",
+				Collections.singletonList(new Flight("1", "DUB", "MAD", departure, departure.plusHours(2))));
+	}
+
+	/**
+	 * Runs a revalidation of the cached schedules, until it is done.
+	 */
+	private void revalidate() {
+		scheduleRevalidator.revalidate();
+		while (!tasks.isEmpty()) {
+			tasks.remove(0).run();
+		}
+	}
+
+	/**
+	 * Gets the age of the cached schedule, in minutes.
+	 */
+	private long getAge() {
+		return cache.policy().expireAfterWrite().get().ageOf(KEY, TimeUnit.MINUTES).getAsLong();
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidate()} renews a schedule not
+	 * modified, and asks for the next one with its validators.
+	 */
+	@Test
+	public void revalidate_Renews_IfNotModified() {
+		given(scheduleService.revalidate(KEY, null)).willReturn(new ScheduleRevalidation(null, VALIDATORS));
+		given(scheduleService.revalidate(KEY, VALIDATORS)).willReturn(new ScheduleRevalidation(null, null));
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+		revalidate();
+		assertThat(cache.getIfPresent(KEY)).isSameAs(cached);
+		assertThat(getAge()).isEqualTo(0);
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+		revalidate();
+		verify(scheduleService).revalidate(KEY, VALIDATORS);
+		assertThat(cache.getIfPresent(KEY)).isSameAs(cached);
+		assertThat(meterRegistry.counter(ScheduleRevalidator.REVALIDATIONS_COUNTER, "result", "not_modified")
+				.count()).isEqualTo(2);
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidate()} replaces a modified
+	 * schedule.
+	 */
+	@Test
+	public void revalidate_Replaces_IfModified() {
+		FlightSchedule modified = schedule(12);
+		given(scheduleService.revalidate(KEY, null)).willReturn(new ScheduleRevalidation(modified, null));
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+		revalidate();
+
+		assertThat(cache.getIfPresent(KEY)).isSameAs(modified);
+		assertThat(getAge()).isEqualTo(0);
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidate()} leaves a schedule to
+	 * expire if the external API fails.
+	 */
+	@Test
+	public void revalidate_KeepsAge_IfFailed() {
+		given(scheduleService.revalidate(KEY, null)).willThrow(new IllegalStateException("failed"));
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+		revalidate();
+
+		assertThat(cache.getIfPresent(KEY)).isSameAs(cached);
+		assertThat(getAge()).isEqualTo(50);
+		assertThat(meterRegistry.counter(ScheduleRevalidator.REVALIDATIONS_COUNTER, "result", "failed").count())
+				.isEqualTo(1);
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidate()} moves a schedule the
+	 * external API no longer has to the cache of the missing schedules.
+	 */
+	@Test
+	public void revalidate_MovesToMissing_IfEmpty() {
+		FlightSchedule missing = FlightSchedule.of("DUB", "MAD", Collections.emptyList());
+		given(scheduleService.revalidate(KEY, null)).willReturn(new ScheduleRevalidation(missing, null));
+		CaffeineCache missingCache = new CaffeineCache(CacheConfiguration.MISSING_SCHEDULES_CACHE,
+				Caffeine.newBuilder().build());
+		given(cacheManager.getCache(CacheConfiguration.MISSING_SCHEDULES_CACHE)).willReturn(missingCache);
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+		revalidate();
+
+		assertThat(cache.getIfPresent(KEY)).isNull();
+		assertThat(missingCache.get(KEY).get()).isSameAs(missing);
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidate()} does not revalidate the
+	 * schedules cached recently, nor those of the months already past.
+	 */
+	@Test
+	public void revalidate_DoesNothing_IfRecentOrPast() {
+		now.addAndGet(TimeUnit.MINUTES.toNanos(30));
+		revalidate();
+
+		cache.invalidate(KEY);
+		cache.put(new ScheduleKey("DUB", "MAD", YearMonth.now().minusMonths(1)), cached);
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+		revalidate();
+
+		verify(scheduleService, never()).revalidate(any(), any());
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidateIfStale(ScheduleKey)} serves
+	 * a stale schedule while it is revalidated in the background, only once at a
+	 * time.
+	 */
+	@Test
+	public void revalidateIfStale_RevalidatesOnce_IfStale() {
+		given(scheduleService.revalidate(KEY, null)).willReturn(new ScheduleRevalidation(null, null));
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(70));
+		assertThat(scheduleRevalidator.revalidateIfStale(KEY)).isTrue();
+		assertThat(scheduleRevalidator.revalidateIfStale(KEY)).isTrue();
+		assertThat(tasks).hasSize(1);
+		verify(scheduleService, never()).revalidate(any(), any());
+
+		tasks.remove(0).run();
+		assertThat(cache.getIfPresent(KEY)).isSameAs(cached);
+		assertThat(getAge()).isEqualTo(0);
+		assertThat(scheduleRevalidator.revalidateIfStale(KEY)).isFalse();
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidateIfStale(ScheduleKey)} keeps
+	 * serving a stale schedule if the external API fails, and tries again the next
+	 * time it is asked for.
+	 */
+	@Test
+	public void revalidateIfStale_KeepsStale_IfFailed() {
+		given(scheduleService.revalidate(KEY, null)).willThrow(new IllegalStateException("failed"));
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(70));
+		assertThat(scheduleRevalidator.revalidateIfStale(KEY)).isTrue();
+		tasks.remove(0).run();
+
+		assertThat(cache.getIfPresent(KEY)).isSameAs(cached);
+		assertThat(scheduleRevalidator.revalidateIfStale(KEY)).isTrue();
+		assertThat(tasks).hasSize(1);
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidateIfStale(ScheduleKey)} does
+	 * nothing if the schedule is fresh, or not cached.
+	 */
+	@Test
+	public void revalidateIfStale_DoesNothing_IfFreshOrMissing() {
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+
+		assertThat(scheduleRevalidator.revalidateIfStale(KEY)).isFalse();
+		assertThat(scheduleRevalidator.revalidateIfStale(new ScheduleKey("DUB", "STN", YearMonth.now()))).isFalse();
+		assertThat(tasks).isEmpty();
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidateIfStale(ScheduleKey)} serves
+	 * a stale schedule, dropping its revalidation, if the executor is full, and
+	 * tries again the next time it is asked for.
+	 */
+	@Test
+	public void revalidateIfStale_Drops_IfRejected() {
+		ReflectionTestUtils.setField(scheduleRevalidator, "executor", (Executor) task -> {
+			throw new RejectedExecutionException("full");
+		});
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(70));
+		assertThat(scheduleRevalidator.revalidateIfStale(KEY)).isTrue();
+		verify(scheduleService, never()).revalidate(any(), any());
+
+		ReflectionTestUtils.setField(scheduleRevalidator, "executor", (Executor) tasks::add);
+		assertThat(scheduleRevalidator.revalidateIfStale(KEY)).isTrue();
+		assertThat(tasks).hasSize(1);
+		assertThat(meterRegistry.counter(ScheduleRevalidator.REVALIDATIONS_COUNTER, "result", "dropped").count())
+				.isEqualTo(1);
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidate()} leaves a schedule to
+	 * expire if the limiter rejects its revalidation, as its queue is full.
+	 */
+	@Test
+	public void revalidate_Drops_IfLimiterRejects() {
+		CompletableFuture<Object> rejected = new CompletableFuture<>();
+		rejected.completeExceptionally(new RejectedExecutionException("full"));
+		doReturn(rejected).when(scheduleLimiter).submit(any(), any());
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+		revalidate();
+
+		verify(scheduleService, never()).revalidate(any(), any());
+		assertThat(cache.getIfPresent(KEY)).isSameAs(cached);
+		assertThat(getAge()).isEqualTo(50);
+		assertThat(meterRegistry.counter(ScheduleRevalidator.REVALIDATIONS_COUNTER, "result", "dropped").count())
+				.isEqualTo(1);
+	}
+
+	/**
+	 * Test that {@link ScheduleRevalidator#revalidate()} paces the revalidations
+	 * on the scheduler, and skips a run while the previous one is not done yet.
+	 */
+	@Test
+	public void revalidate_SkipsRun_IfPreviousNotDone() {
+		ScheduleKey nextMonth = new ScheduleKey("DUB", "MAD", YearMonth.now().plusMonths(1));
+		cache.put(nextMonth, cached);
+		given(scheduleService.revalidate(any(), any())).willReturn(new ScheduleRevalidation(null, null));
+
+		now.addAndGet(TimeUnit.MINUTES.toNanos(50));
+		scheduleRevalidator.revalidate();
+		// the first revalidation, and the rest of the run
+		assertThat(tasks).hasSize(2);
+
+		scheduleRevalidator.revalidate();
+		assertThat(tasks).hasSize(2);
+
+		revalidate();
+		verify(scheduleService).revalidate(KEY, null);
+		verify(scheduleService).revalidate(nextMonth, null);
+		assertThat(getAge()).isEqualTo(0);
+	}
+}
@@ -0,0 +1,48 @@
+package com.julionoda.ryanair.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.julionoda.ryanair.model.Flight;
+
+/**
+ * Benchmark of the decoding of the responses of
+ * {@link ScheduleServiceApiImpl#findFlights(String, String, int, int)}, streamed
+ * from the body by the {@link MonthlyScheduleDecoder}.
+ * 
+ * @author jnoda
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScheduleServiceApiImpl_Benchmark {
+	/**
+	 * Number of flights per day in the schedule.
+	 */
+	@Param({ "1", "5", "20" })
+	public int flightsPerDay;
+
+	private byte[] json;
+
+	@Setup
+	public void setUp() {
+		json = SyntheticNetwork.createMonthlyScheduleJson(YearMonth.of(2019, 1), flightsPerDay);
+	}
+
+	@Benchmark
+	public Iterable<Flight> decodeFlights() throws IOException {
+		return MonthlyScheduleDecoder.decode(new ByteArrayInputStream(json), 2019, "DUB", "MAD");
+	}
+}
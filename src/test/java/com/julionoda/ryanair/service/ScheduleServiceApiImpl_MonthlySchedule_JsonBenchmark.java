@@ -0,0 +1,60 @@
+package com.julionoda.ryanair.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.julionoda.ryanair.service.ScheduleServiceApiImpl.MonthlySchedule;
+
+/**
+ * Benchmark of the JSON deserialization of {@link MonthlySchedule}, bound by
+ * Jackson or decoded by the {@link MonthlyScheduleDecoder}.
+ * 
+ * @author jnoda
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScheduleServiceApiImpl_MonthlySchedule_JsonBenchmark {
+	/**
+	 * Number of flights per day in the schedule.
+	 */
+	@Param({ "1", "5", "20" })
+	public int flightsPerDay;
+
+	private ObjectReader reader;
+
+	private String json;
+
+	private byte[] jsonBytes;
+
+	@Setup
+	public void setUp() throws Exception {
+		// same configuration as the application
+		reader = Jackson2ObjectMapperBuilder.json().build().readerFor(MonthlySchedule.class);
+		jsonBytes = SyntheticNetwork.createMonthlyScheduleJson(YearMonth.of(2019, 1), flightsPerDay);
+		json = new String(jsonBytes, StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public MonthlySchedule deserialize() throws Exception {
+		return reader.readValue(json);
+	}
+
+	@Benchmark
+	public FlightSchedule decode() throws Exception {
+		return MonthlyScheduleDecoder.decode(jsonBytes, 2019, "DUB", "MAD");
+	}
+}
@@ -1,19 +1,22 @@
 package com.julionoda.ryanair.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
-import java.time.LocalDate;
-import java.time.LocalTime;
-import java.util.Collections;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 
 import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
 
 import com.julionoda.ryanair.model.Flight;
-import com.julionoda.ryanair.service.ScheduleServiceApiImpl.DailySchedule;
-import com.julionoda.ryanair.service.ScheduleServiceApiImpl.MonthlySchedule;
-import com.julionoda.ryanair.service.ScheduleServiceApiImpl.ScheduledFlight;
 
 /**
  * Test suite for {@link ScheduleServiceApiImpl}.
@@ -22,61 +25,59 @@ import com.julionoda.ryanair.service.ScheduleServiceApiImpl.ScheduledFlight;
  *
  */
 public class ScheduleServiceApiImpl_Test {
-
 	/**
-	 * Test that
-	 * {@link ScheduleServiceApiImpl#createFlight(int, int, int, ScheduledFlight)}
-	 * creates a new {@link Flight} correctly.
+	 * Test that {@link ScheduleServiceApiImpl#findFlights(String, String, int, int)}
+	 * decodes the flights of the response, moving the arrival of the flights not
+	 * arriving after their departure time to the next day, even of the next year.
 	 */
 	@Test
-	public void createFlight_Succeed() {
-		ScheduledFlight scheduledFlight = new ScheduledFlight("1234", LocalTime.of(13, 22), LocalTime.of(17, 44));
-		Flight flight = ScheduleServiceApiImpl.createFlight(2018, 10, 24, "DUB", "MAD", scheduledFlight);
+	public void findFlights_Succeed() {
+		RestTemplate restTemplate = new RestTemplate();
+		MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+		ScheduleServiceApiImpl scheduleService = new ScheduleServiceApiImpl(restTemplate);
+		ReflectionTestUtils.setField(scheduleService, "schedulesApiEndpoint",
+				"http://localhost/schedules/{from}/{to}/years/{year}/months/{month}");
+		server
+				.expect(requestTo("http://localhost/schedules/DUB/MAD/years/2017/months/12"))
+				.andRespond(withSuccess("{\"month\":12,\"days\":[{\"day\":31,\"flights\":["
+						+ "{\"number\":\"1234\",\"departureTime\":\"23:22\",\"arrivalTime\":\"03:44\"},"
+						+ "{\"number\":\"5678\",\"departureTime\":\"13:22\",\"arrivalTime\":\"17:44\"}]}]}",
+						MediaType.APPLICATION_JSON));
 
-		assertNotNull(flight);
-		assertEquals(scheduledFlight.getNumber(), flight.getNumber());
-		assertEquals(LocalDate.of(2018, 10, 24), flight.getDepartureDateTime().toLocalDate());
-		assertEquals(scheduledFlight.getDepartureTime(), flight.getDepartureDateTime().toLocalTime());
-		assertEquals(LocalDate.of(2018, 10, 24), flight.getArrivalDateTime().toLocalDate());
-		assertEquals(scheduledFlight.getArrivalTime(), flight.getArrivalDateTime().toLocalTime());
-		assertEquals("DUB", flight.getDepartureAirport());
-		assertEquals("MAD", flight.getArrivalAirport());
-	}
+		Iterable<Flight> result = scheduleService.findFlights("DUB", "MAD", 2017, 12);
 
-	/**
-	 * Test that
-	 * {@link ScheduleServiceApiImpl#createFlight(int, int, int, ScheduledFlight)}
-	 * increase the arrival date if arrival time in the scheduled flight is before
-	 * the departure time.
-	 * 
-	 * TODO Check if this is correct
-	 */
-	@Test
-	public void createFlight_IncreasesArrivalDate_IfArrivalTimeBeforeDepartureTime() {
-		ScheduledFlight scheduledFlight = new ScheduledFlight("1234", LocalTime.of(23, 22), LocalTime.of(3, 44));
-		Flight flight = ScheduleServiceApiImpl.createFlight(2017, 12, 31, "DUB", "MAD", scheduledFlight);
-
-		assertEquals(LocalDate.of(2017, 12, 31), flight.getDepartureDateTime().toLocalDate());
-		assertEquals(LocalDate.of(2018, 01, 01), flight.getArrivalDateTime().toLocalDate());
+		server.verify();
+		assertThat(result).containsExactly(
+				new Flight("5678", "DUB", "MAD", LocalDateTime.of(2017, 12, 31, 13, 22),
+						LocalDateTime.of(2017, 12, 31, 17, 44)),
+				new Flight("1234", "DUB", "MAD", LocalDateTime.of(2017, 12, 31, 23, 22),
+						LocalDateTime.of(2018, 1, 1, 3, 44)));
 	}
 
 	/**
-	 * Test that {@link ScheduleServiceApiImpl#extractFlights(int, MonthlySchedule)}
-	 * extracts the {@link Flight} correctly.
+	 * Test that {@link ScheduleServiceApiImpl#revalidate(ScheduleKey, ScheduleValidators)}
+	 * returns a modified schedule without flights if the external API does not have
+	 * it anymore, as {@link ScheduleServiceApiImpl#findFlights(String, String, int, int)}
+	 * does.
 	 */
 	@Test
-	public void extractFlights_Succeed() {
-		ScheduledFlight scheduledFlight = new ScheduledFlight("1234", LocalTime.of(13, 22), LocalTime.of(17, 44));
-		DailySchedule dailySchedule = new DailySchedule(24, Collections.singletonList(scheduledFlight));
-		MonthlySchedule monthlySchedule = new MonthlySchedule(10, Collections.singletonList(dailySchedule));
-
-		Iterable<Flight> result = ScheduleServiceApiImpl.extractFlights(2018, "DUB", "MAD", monthlySchedule);
-		assertThat(result).isNotNull().isNotEmpty();
+	public void revalidate_ReturnsEmpty_IfNotFound() {
+		RestTemplate restTemplate = new RestTemplate();
+		MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+		ScheduleServiceApiImpl scheduleService = new ScheduleServiceApiImpl(restTemplate);
+		ReflectionTestUtils.setField(scheduleService, "schedulesApiEndpoint",
+				"http://localhost/schedules/{from}/{to}/years/{year}/months/{month}");
+		server
+				.expect(requestTo("http://localhost/schedules/DUB/MAD/years/2018/months/7"))
+				.andExpect(header("If-None-Match", "\"1\""))
+				.andRespond(withStatus(HttpStatus.NOT_FOUND));
 
-		Flight flight = result.iterator().next();
-		// only need to test one property to verify the object is returned, actual
-		// verification will be done on {link #createFlight_Succeed()}
-		assertEquals(scheduledFlight.getNumber(), flight.getNumber());
+		ScheduleRevalidation revalidation = scheduleService.revalidate(
+				new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7)), new ScheduleValidators("\"1\"", null));
 
+		server.verify();
+		assertThat(revalidation.isModified()).isTrue();
+		assertThat(revalidation.getSchedule()).isEmpty();
+		assertThat(ScheduleService.isMissing(revalidation.getSchedule())).isTrue();
 	}
 }
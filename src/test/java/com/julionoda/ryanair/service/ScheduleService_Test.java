@@ -0,0 +1,58 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+
+/**
+ * Test suite for {@link ScheduleService}.
+ * 
+ * @author jnoda
+ *
+ */
+public class ScheduleService_Test {
+	/**
+	 * The key of a schedule.
+	 */
+	private static final ScheduleKey KEY = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+
+	/**
+	 * Test that {@link ScheduleService#revalidate(ScheduleKey, ScheduleValidators)}
+	 * fetches the schedule again by default, as modified.
+	 */
+	@Test
+	public void revalidate_FetchesAgain_ByDefault() {
+		LocalDateTime departure = LocalDateTime.of(2018, 7, 1, 10, 0);
+		List<Flight> flights = Collections
+				.singletonList(new Flight("1", "DUB", "MAD", departure, departure.plusHours(2)));
+		ScheduleService scheduleService = (airportFrom, airportTo, year, month) -> {
+			assertThat(new ScheduleKey(airportFrom, airportTo, YearMonth.of(year, month))).isEqualTo(KEY);
+			return flights;
+		};
+
+		ScheduleRevalidation revalidation = scheduleService.revalidate(KEY, new ScheduleValidators("\"1\"", null));
+
+		assertThat(revalidation.isModified()).isTrue();
+		assertThat(revalidation.getSchedule()).containsExactlyElementsOf(flights);
+		assertThat(revalidation.getValidators()).isNull();
+	}
+
+	/**
+	 * Test that {@link ScheduleService#revalidate(ScheduleKey, ScheduleValidators)}
+	 * fails by default if the schedule is unavailable, so the cached one is kept.
+	 */
+	@Test
+	public void revalidate_Fails_IfUnavailable() {
+		ScheduleService scheduleService = (airportFrom, airportTo, year, month) -> ScheduleService.UNAVAILABLE;
+
+		assertThatThrownBy(() -> scheduleService.revalidate(KEY, null)).isInstanceOf(IllegalStateException.class);
+	}
+}
@@ -0,0 +1,176 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.julionoda.ryanair.CacheConfiguration;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Route;
+import com.julionoda.ryanair.service.ScheduleSnapshot.Snapshot;
+
+/**
+ * Test suite for {@link ScheduleSnapshot}.
+ * 
+ * @author jnoda
+ *
+ */
+public class ScheduleSnapshot_Test {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+
+	private final List<Route> routes = Arrays.asList(
+			Route.builder().airportFrom("DUB").airportTo("MAD").build(),
+			Route.builder().airportFrom("DUB").airportTo("WRO").connectingAirport("STN").build());
+
+	@Before
+	public void setUp() {
+		file = folder.getRoot().toPath().resolve("snapshots").resolve("schedules.snapshot");
+	}
+
+	/**
+	 * Creates a snapshot component on a new cache manager, with the same caches
+	 * as the application.
+	 */
+	private ScheduleSnapshot createScheduleSnapshot() {
+		SimpleCacheManager cacheManager = new SimpleCacheManager();
+		cacheManager.setCaches(Arrays.asList(new ConcurrentMapCache(CacheConfiguration.ROUTES_CACHE),
+				new CaffeineCache(CacheConfiguration.SCHEDULES_CACHE, Caffeine.newBuilder().build())));
+		cacheManager.initializeCaches();
+
+		ScheduleSnapshot scheduleSnapshot = new ScheduleSnapshot();
+		ReflectionTestUtils.setField(scheduleSnapshot, "enabled", true);
+		ReflectionTestUtils.setField(scheduleSnapshot, "file", file.toString());
+		ReflectionTestUtils.setField(scheduleSnapshot, "maxAge", 60_000L);
+		ReflectionTestUtils.setField(scheduleSnapshot, "cacheManager", cacheManager);
+		ReflectionTestUtils.setField(scheduleSnapshot, "airportDictionary", new AirportDictionary());
+		return scheduleSnapshot;
+	}
+
+	/**
+	 * Gets a cache of the given snapshot component.
+	 */
+	private static Cache getCache(ScheduleSnapshot scheduleSnapshot, String name) {
+		SimpleCacheManager cacheManager = (SimpleCacheManager) ReflectionTestUtils.getField(scheduleSnapshot,
+				"cacheManager");
+		return cacheManager.getCache(name);
+	}
+
+	/**
+	 * Creates a schedule with a flight on the first day of the given month.
+	 */
+	private static FlightSchedule createSchedule(String airportFrom, String airportTo, YearMonth month) {
+		LocalDateTime departure = month.atDay(1).atTime(10, 0);
+		return FlightSchedule.of(airportFrom, airportTo, Arrays.asList(
+				new Flight("1234", airportFrom, airportTo, departure, departure.plusHours(2)),
+				new Flight("FR 5678", airportFrom, airportTo, departure.plusHours(4), departure.plusHours(6))));
+	}
+
+	/**
+	 * Test that {@link ScheduleSnapshot#read(Path)} returns the same routes and
+	 * schedules written by {@link ScheduleSnapshot#write(Path, Snapshot)}.
+	 */
+	@Test
+	public void write_ReadsSameSnapshot() throws IOException {
+		ScheduleKey key = new ScheduleKey("DUB", "MAD", YearMonth.of(2018, 7));
+		Map<ScheduleKey, FlightSchedule> schedules = new HashMap<>();
+		schedules.put(key, createSchedule("DUB", "MAD", key.getYearMonth()));
+
+		ScheduleSnapshot.write(file, new Snapshot(1234L, routes, schedules));
+		Snapshot result = ScheduleSnapshot.read(file, new AirportDictionary());
+
+		assertThat(result.getCreatedAt()).isEqualTo(1234L);
+		assertThat(result.getRoutes()).isEqualTo(routes);
+		assertThat(result.getSchedules()).containsOnlyKeys(key);
+		assertThat(result.getSchedules().get(key)).containsExactlyElementsOf(schedules.get(key));
+	}
+
+	/**
+	 * Test that {@link ScheduleSnapshot#load()} fills the caches with what
+	 * {@link ScheduleSnapshot#save()} saved, except the schedules of past months.
+	 */
+	@Test
+	public void load_FillsCaches_IfSaved() {
+		YearMonth currentMonth = YearMonth.now();
+		ScheduleKey current = new ScheduleKey("DUB", "MAD", currentMonth);
+		ScheduleKey past = new ScheduleKey("DUB", "MAD", currentMonth.minusMonths(1));
+
+		ScheduleSnapshot saving = createScheduleSnapshot();
+		getCache(saving, CacheConfiguration.ROUTES_CACHE).put(SimpleKey.EMPTY, routes);
+		Cache savedSchedules = getCache(saving, CacheConfiguration.SCHEDULES_CACHE);
+		savedSchedules.put(current, createSchedule("DUB", "MAD", currentMonth));
+		savedSchedules.put(past, createSchedule("DUB", "MAD", past.getYearMonth()));
+		saving.save();
+
+		ScheduleSnapshot loading = createScheduleSnapshot();
+		loading.load();
+
+		assertThat(getCache(loading, CacheConfiguration.ROUTES_CACHE).get(SimpleKey.EMPTY).get()).isEqualTo(routes);
+		Cache loadedSchedules = getCache(loading, CacheConfiguration.SCHEDULES_CACHE);
+		assertThat((Iterable<?>) loadedSchedules.get(current).get())
+				.containsExactlyElementsOf(createSchedule("DUB", "MAD", currentMonth));
+		assertThat(loadedSchedules.get(past)).isNull();
+	}
+
+	/**
+	 * Test that {@link ScheduleSnapshot#save()} does not overwrite the last
+	 * snapshot if the routes are not cached yet.
+	 */
+	@Test
+	public void save_DoesNothing_IfNoRoutes() {
+		createScheduleSnapshot().save();
+
+		assertThat(file).doesNotExist();
+	}
+
+	/**
+	 * Test that {@link ScheduleSnapshot#load()} ignores a snapshot older than the
+	 * maximum age.
+	 */
+	@Test
+	public void load_IgnoresSnapshot_IfTooOld() throws IOException {
+		ScheduleSnapshot.write(file, new Snapshot(System.currentTimeMillis() - 120_000L, routes,
+				Collections.emptyMap()));
+
+		ScheduleSnapshot loading = createScheduleSnapshot();
+		loading.load();
+
+		assertThat(getCache(loading, CacheConfiguration.ROUTES_CACHE).get(SimpleKey.EMPTY)).isNull();
+	}
+
+	/**
+	 * Test that {@link ScheduleSnapshot#read(Path)} fails if the file is not a
+	 * snapshot.
+	 */
+	@Test
+	public void read_ThrowsException_IfNotSnapshot() throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, "[]".getBytes());
+
+		assertThatThrownBy(() -> ScheduleSnapshot.read(file, new AirportDictionary())).isInstanceOf(IOException.class);
+	}
+}
@@ -0,0 +1,193 @@
+package com.julionoda.ryanair.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Route;
+import com.julionoda.ryanair.service.ScheduleServiceApiImpl.DailySchedule;
+import com.julionoda.ryanair.service.ScheduleServiceApiImpl.MonthlySchedule;
+import com.julionoda.ryanair.service.ScheduleServiceApiImpl.ScheduledFlight;
+
+/**
+ * In-memory network of routes and schedules, used to run the benchmarks
+ * offline.
+ * 
+ * <p>
+ * The departure and arrival airports are always connected by a direct route
+ * and through {@link #HUBS} connecting airports, whatever the size of the
+ * network, so that the queries between them are comparable. The rest of the
+ * routes are random, but always the same for a given size.
+ * </p>
+ * 
+ * @author jnoda
+ *
+ */
+public class SyntheticNetwork implements RouteService, ScheduleService {
+	/**
+	 * Number of connecting airports between the departure and the arrival.
+	 */
+	public static final int HUBS = 40;
+
+	/**
+	 * Writer of the payloads of the schedules, with the same configuration as the
+	 * application, writing times as the external API.
+	 */
+	private static final ObjectMapper MAPPER = Jackson2ObjectMapperBuilder
+			.json()
+			.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+			.build();
+
+	/**
+	 * The routes.
+	 */
+	private final List<Route> routes;
+
+	/**
+	 * Number of flights per day on every route.
+	 */
+	private final int flightsPerDay;
+
+	/**
+	 * Schedules already created, by key.
+	 */
+	private final ConcurrentMap<ScheduleKey, Iterable<Flight>> schedules = new ConcurrentHashMap<>();
+
+	/**
+	 * Class constructor.
+	 * 
+	 * @param routeCount
+	 *            the number of routes
+	 * @param flightsPerDay
+	 *            the number of flights per day on every route
+	 */
+	public SyntheticNetwork(int routeCount, int flightsPerDay) {
+		this.flightsPerDay = flightsPerDay;
+
+		List<Route> result = new ArrayList<>();
+		result.add(route(getDeparture(), getArrival()));
+		for (int i = 0; i < HUBS; i++) {
+			result.add(route(getDeparture(), airportCode(i + 2)));
+			result.add(route(airportCode(i + 2), getArrival()));
+		}
+
+		// about ten routes per airport
+		int airports = Math.max(HUBS + 12, routeCount / 10);
+		Random random = new Random(42);
+		while (result.size() < routeCount) {
+			int from = HUBS + 2 + random.nextInt(airports - HUBS - 2);
+			int to = random.nextInt(airports);
+			if (from != to) {
+				result.add(route(airportCode(from), airportCode(to)));
+			}
+		}
+		this.routes = Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Gets the departure airport of the benchmark queries.
+	 */
+	public String getDeparture() {
+		return airportCode(0);
+	}
+
+	/**
+	 * Gets the arrival airport of the benchmark queries.
+	 */
+	public String getArrival() {
+		return airportCode(1);
+	}
+
+	@Override
+	public Iterable<Route> findAll() {
+		return routes;
+	}
+
+	@Override
+	public Iterable<Flight> findFlights(String airportFrom, String airportTo, int year, int month) {
+		// decoded as the responses of the external API
+		YearMonth yearMonth = YearMonth.of(year, month);
+		return schedules.computeIfAbsent(new ScheduleKey(airportFrom, airportTo, yearMonth), key -> {
+			try {
+				return MonthlyScheduleDecoder.decode(createMonthlyScheduleJson(yearMonth, flightsPerDay), year,
+						airportFrom, airportTo);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Creates a monthly schedule with the given number of flights every day.
+	 * 
+	 * @param yearMonth
+	 *            the year and month
+	 * @param flightsPerDay
+	 *            the number of flights per day
+	 * @return the monthly schedule
+	 */
+	public static MonthlySchedule createMonthlySchedule(YearMonth yearMonth, int flightsPerDay) {
+		List<DailySchedule> days = new ArrayList<>();
+		for (int day = 1; day <= yearMonth.lengthOfMonth(); day++) {
+			List<ScheduledFlight> flights = new ArrayList<>();
+			for (int i = 0; i < flightsPerDay; i++) {
+				// spread the flights over the day, some of them arriving the next day
+				LocalTime departureTime = LocalTime.of(6, 0).plusMinutes(i * 24 * 60 / flightsPerDay);
+				flights.add(new ScheduledFlight(String.valueOf(day * 100 + i), departureTime,
+						departureTime.plusMinutes(150)));
+			}
+			days.add(new DailySchedule(day, flights));
+		}
+		return new MonthlySchedule(yearMonth.getMonthValue(), days);
+	}
+
+	/**
+	 * Creates the JSON payload of a monthly schedule with the given number of
+	 * flights every day, as the external API returns it.
+	 * 
+	 * @param yearMonth
+	 *            the year and month
+	 * @param flightsPerDay
+	 *            the number of flights per day
+	 * @return the JSON payload
+	 */
+	public static byte[] createMonthlyScheduleJson(YearMonth yearMonth, int flightsPerDay) {
+		try {
+			return MAPPER.writeValueAsBytes(createMonthlySchedule(yearMonth, flightsPerDay));
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets a unique IATA-like code for the airport with the given index.
+	 * 
+	 * @param index
+	 *            the index of the airport
+	 * @return a three letter code
+	 */
+	static String airportCode(int index) {
+		return new String(new char[] { (char) ('A' + index / (26 * 26) % 26), (char) ('A' + index / 26 % 26),
+				(char) ('A' + index % 26) });
+	}
+
+	/**
+	 * Creates a direct route between the given airports.
+	 */
+	private static Route route(String airportFrom, String airportTo) {
+		return Route.builder().airportFrom(airportFrom).airportTo(airportTo).build();
+	}
+}
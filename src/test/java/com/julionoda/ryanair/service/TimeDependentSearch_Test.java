@@ -0,0 +1,205 @@
+package com.julionoda.ryanair.service;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+/**
+ * Test suite for {@link TimeDependentSearch}.
+ * 
+ * @author jnoda
+ *
+ */
+public class TimeDependentSearch_Test {
+	/**
+	 * Start of the flights of the test network.
+	 */
+	static final LocalDateTime START = LocalDateTime.of(2018, 7, 1, 0, 0);
+
+	/**
+	 * Gets the schedules of a small network with several paths, and flights every
+	 * few hours, used to be compared with checking every combination of flights.
+	 */
+	static List<FlightSchedule> getTestSchedules() {
+		String[][] routes = { { "DUB", "MAD" }, { "DUB", "STN" }, { "DUB", "BCN" }, { "STN", "MAD" },
+				{ "STN", "BCN" }, { "BCN", "STN" }, { "BCN", "MAD" }, { "STN", "WRO" }, { "WRO", "MAD" },
+				{ "BCN", "DUB" }, { "MAD", "STN" } };
+
+		List<FlightSchedule> result = new ArrayList<>();
+		for (int r = 0; r < routes.length; r++) {
+			List<Flight> flights = new ArrayList<>();
+			for (int i = 0; i < 12; i++) {
+				LocalDateTime departure = START.plusMinutes(r * 37 + i * 211);
+				flights.add(new Flight(r + "-" + i, routes[r][0], routes[r][1], departure,
+						departure.plusMinutes(60 + (r * 13 + i * 7) % 90)));
+			}
+			result.add(FlightSchedule.of(routes[r][0], routes[r][1], flights));
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the interconnections by checking every combination of flights.
+	 */
+	static List<Interconnection> findAll(List<FlightSchedule> schedules, String departure, String arrival,
+			int maxLegs) {
+		List<Flight> flights = new ArrayList<>();
+		schedules.forEach(schedule -> schedule.forEach(flights::add));
+
+		List<Interconnection> result = new ArrayList<>();
+		findAll(flights, new LinkedList<>(), departure, arrival, maxLegs, result);
+		return result;
+	}
+
+	/**
+	 * Adds the interconnections that continue the given path.
+	 */
+	private static void findAll(List<Flight> flights, LinkedList<Flight> path, String airport, String arrival,
+			int legsLeft, List<Interconnection> result) {
+		if (legsLeft == 0) {
+			return;
+		}
+		for (Flight flight : flights) {
+			boolean departsFromAirport = flight.getDepartureAirport().equals(airport);
+			boolean isValidConnection = path.isEmpty() || flight.getDepartureDateTime().isAfter(
+					path.getLast().getArrivalDateTime().plusMinutes(InterconnectionServiceImpl.MIN_CONNECTION_MINUTES));
+			boolean isNewAirport = path.stream().noneMatch(leg -> leg.getDepartureAirport().equals(
+					flight.getArrivalAirport()));
+			if (departsFromAirport && isValidConnection && isNewAirport) {
+				path.addLast(flight);
+				if (flight.getArrivalAirport().equals(arrival)) {
+					result.add(new Interconnection(new ArrayList<>(path)));
+				} else {
+					findAll(flights, path, flight.getArrivalAirport(), arrival, legsLeft - 1, result);
+				}
+				path.removeLast();
+			}
+		}
+	}
+
+	/**
+	 * Gets the arrival time of the last leg of an interconnection, in minutes
+	 * since the epoch.
+	 */
+	private static int arrival(Interconnection interconnection) {
+		List<Flight> legs = interconnection.getLegs();
+		return FlightSchedule.toEpochMinute(legs.get(legs.size() - 1).getArrivalDateTime());
+	}
+
+	/**
+	 * Searches the interconnections, collecting all the batches.
+	 */
+	private static List<Interconnection> search(List<FlightSchedule> schedules, String departure, String arrival,
+			int maxLegs) {
+		List<Interconnection> result = new ArrayList<>();
+		new TimeDependentSearch(new AirportDictionary(), departure, arrival, maxLegs, schedules)
+				.search(result::addAll);
+		return result;
+	}
+
+	/**
+	 * Test that {@link TimeDependentSearch#search(java.util.function.Consumer)}
+	 * returns the same interconnections than checking every combination of
+	 * flights, for any number of legs.
+	 */
+	@Test
+	public void search_ReturnsSameAsAllCombinations() {
+		List<FlightSchedule> schedules = getTestSchedules();
+
+		for (int maxLegs = 1; maxLegs <= 4; maxLegs++) {
+			List<Interconnection> expected = findAll(schedules, "DUB", "MAD", maxLegs);
+			assertThat(search(schedules, "DUB", "MAD", maxLegs)).hasSameSizeAs(expected)
+					.containsExactlyInAnyOrderElementsOf(expected);
+		}
+	}
+
+	/**
+	 * Test that {@link TimeDependentSearch#search(java.util.function.Consumer)}
+	 * only takes the flights in the given schedules, so it does not return
+	 * interconnections arriving too late when the schedules are filtered.
+	 */
+	@Test
+	public void search_ReturnsEmpty_IfNoFlightsToArrival() {
+		List<FlightSchedule> schedules = new ArrayList<>(getTestSchedules());
+		schedules.removeIf(schedule -> schedule.getAirportTo().equals("MAD"));
+
+		assertThat(search(schedules, "DUB", "MAD", 3)).isEmpty();
+	}
+
+	/**
+	 * Test that {@link TimeDependentSearch#search(java.util.function.Consumer)}
+	 * hands over one batch for each first flight.
+	 */
+	@Test
+	public void search_HandsOverBatchByFirstFlight() {
+		Flight first = new Flight("1", "DUB", "STN", START, START.plusHours(1));
+		Flight tooSoon = new Flight("2", "STN", "MAD", START.plusHours(3), START.plusHours(4));
+		Flight valid = new Flight("3", "STN", "MAD", START.plusHours(4), START.plusHours(5));
+		Flight direct = new Flight("4", "DUB", "MAD", START, START.plusHours(2));
+
+		List<List<Interconnection>> batches = new ArrayList<>();
+		new TimeDependentSearch(new AirportDictionary(), "DUB", "MAD", 2,
+				Arrays.asList(FlightSchedule.of("DUB", "STN", Collections.singletonList(first)),
+						FlightSchedule.of("STN", "MAD", Arrays.asList(tooSoon, valid)),
+						FlightSchedule.of("DUB", "MAD", Collections.singletonList(direct)))).search(batches::add);
+
+		assertThat(batches).containsExactlyInAnyOrder(
+				Collections.singletonList(new Interconnection(Arrays.asList(first, valid))),
+				Collections.singletonList(new Interconnection(Collections.singletonList(direct))));
+	}
+
+	/**
+	 * Test that {@link TimeDependentSearch#search(java.util.function.Consumer)}
+	 * returns nothing, and does not add the airport to the dictionary, if the
+	 * departure airport is unknown.
+	 */
+	@Test
+	public void search_ReturnsEmpty_IfUnknownAirport() {
+		AirportDictionary dictionary = new AirportDictionary();
+		List<FlightSchedule> schedules = getTestSchedules();
+
+		List<List<Interconnection>> batches = new ArrayList<>();
+		new TimeDependentSearch(dictionary, "XYZ", "MAD", 3, schedules).search(batches::add);
+
+		assertThat(batches).isEmpty();
+		assertThat(dictionary.findId("XYZ")).isEqualTo((short) -1);
+	}
+
+	/**
+	 * Test that {@link TimeDependentSearch#search(InterconnectionSet.Filter, java.util.function.Consumer)}
+	 * returns only the interconnections the filter accepts, by their departure,
+	 * arrival and stops.
+	 */
+	@Test
+	public void search_SkipsInterconnections_IfFilterRejects() {
+		List<FlightSchedule> schedules = getTestSchedules();
+		List<Interconnection> all = findAll(schedules, "DUB", "MAD", 3);
+		int maxArrival = all
+				.stream()
+				.mapToInt(interconnection -> arrival(interconnection))
+				.sorted()
+				.toArray()[all.size() / 2];
+		List<Interconnection> expected = all
+				.stream()
+				.filter(interconnection -> (interconnection.getStops() <= 1)
+						&& (arrival(interconnection) <= maxArrival))
+				.collect(toList());
+
+		List<Interconnection> result = new ArrayList<>();
+		new TimeDependentSearch(new AirportDictionary(), "DUB", "MAD", 3, schedules)
+				.search((departure, arrival, stops) -> (stops <= 1) && (arrival <= maxArrival), result::addAll);
+
+		assertThat(result).isNotEmpty().hasSameSizeAs(expected).containsExactlyInAnyOrderElementsOf(expected);
+	}
+}
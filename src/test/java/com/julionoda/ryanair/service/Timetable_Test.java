@@ -0,0 +1,183 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.service.Timetable.Connections;
+
+/**
+ * Test suite for {@link Timetable}.
+ * 
+ * @author jnoda
+ *
+ */
+public class Timetable_Test {
+	/**
+	 * July of 2018.
+	 */
+	private static final YearMonth JULY = YearMonth.of(2018, 7);
+
+	/**
+	 * August of 2018.
+	 */
+	private static final YearMonth AUGUST = YearMonth.of(2018, 8);
+
+	/**
+	 * Creates a flight departing at the given date and time, and arriving two hours
+	 * later.
+	 */
+	private static Flight flight(String number, String departureAirport, String arrivalAirport,
+			LocalDateTime departureDateTime) {
+		return new Flight(number, departureAirport, arrivalAirport, departureDateTime, departureDateTime.plusHours(2));
+	}
+
+	/**
+	 * Creates a timetable with a new dictionary of airports.
+	 */
+	private static Timetable createTimetable() {
+		Timetable timetable = new Timetable();
+		ReflectionTestUtils.setField(timetable, "airportDictionary", new AirportDictionary());
+		return timetable;
+	}
+
+	/**
+	 * Gets all the flights of the given connections.
+	 */
+	private static Flight[] getFlights(Connections connections) {
+		Flight[] result = new Flight[connections.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = connections.toFlight(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Gets all the connections of the given months of a timetable.
+	 */
+	private static Connections getConnections(Timetable timetable, List<YearMonth> months) {
+		return timetable.getConnections(months, Collections.emptyList(), Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Test that
+	 * {@link Timetable#getConnections(List, java.util.Collection, int, int)}
+	 * returns the flights of every schedule, sorted by departure.
+	 */
+	@Test
+	public void getConnections_Succeed() {
+		Flight late = flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 18, 0));
+		Flight early = flight("2", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 8, 0));
+		Flight august = flight("3", "DUB", "STN", LocalDateTime.of(2018, 8, 1, 8, 0));
+
+		Timetable timetable = createTimetable();
+		timetable.put(new ScheduleKey("DUB", "STN", AUGUST),
+				FlightSchedule.of("DUB", "STN", Collections.singletonList(august)));
+		timetable.put(new ScheduleKey("DUB", "STN", JULY),
+				FlightSchedule.of("DUB", "STN", Collections.singletonList(late)));
+		timetable.put(new ScheduleKey("STN", "MAD", JULY),
+				FlightSchedule.of("STN", "MAD", Collections.singletonList(early)));
+
+		assertThat(getFlights(getConnections(timetable, Arrays.asList(JULY, AUGUST)))).containsExactly(early, late,
+				august);
+		assertThat(getFlights(getConnections(timetable, Collections.singletonList(AUGUST)))).containsExactly(august);
+	}
+
+	/**
+	 * Test that
+	 * {@link Timetable#getConnections(List, java.util.Collection, int, int)}
+	 * reflects the schedules replaced or removed after the connections were built.
+	 */
+	@Test
+	public void getConnections_ReturnsChanges_IfScheduleReplacedOrRemoved() {
+		Flight first = flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 8, 0));
+		Flight replaced = flight("2", "DUB", "STN", LocalDateTime.of(2018, 7, 16, 8, 0));
+		Flight other = flight("3", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0));
+		ScheduleKey key = new ScheduleKey("DUB", "STN", JULY);
+		ScheduleKey otherKey = new ScheduleKey("STN", "MAD", JULY);
+
+		Timetable timetable = createTimetable();
+		timetable.put(key, FlightSchedule.of("DUB", "STN", Collections.singletonList(first)));
+		timetable.put(otherKey, FlightSchedule.of("STN", "MAD", Collections.singletonList(other)));
+		assertThat(getFlights(getConnections(timetable, Collections.singletonList(JULY)))).containsExactly(first,
+				other);
+
+		timetable.put(key, FlightSchedule.of("DUB", "STN", Collections.singletonList(replaced)));
+		assertThat(getFlights(getConnections(timetable, Collections.singletonList(JULY)))).containsExactly(other,
+				replaced);
+
+		timetable.remove(otherKey);
+		assertThat(getFlights(getConnections(timetable, Collections.singletonList(JULY)))).containsExactly(replaced);
+	}
+
+	/**
+	 * Test that
+	 * {@link Timetable#getConnections(List, java.util.Collection, int, int)}
+	 * returns {@code null} if any of the given schedules is not in the timetable,
+	 * as it was removed.
+	 */
+	@Test
+	public void getConnections_ReturnsNull_IfScheduleMissing() {
+		ScheduleKey key = new ScheduleKey("DUB", "STN", JULY);
+		ScheduleKey otherKey = new ScheduleKey("STN", "MAD", JULY);
+
+		Timetable timetable = createTimetable();
+		timetable.put(key, FlightSchedule.of("DUB", "STN",
+				Collections.singletonList(flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 8, 0)))));
+		timetable.put(otherKey, FlightSchedule.of("STN", "MAD",
+				Collections.singletonList(flight("2", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0)))));
+		List<YearMonth> months = Collections.singletonList(JULY);
+		assertThat(timetable.getConnections(months, Arrays.asList(key, otherKey), Integer.MIN_VALUE + 1,
+				Integer.MAX_VALUE)).isNotNull();
+
+		timetable.remove(otherKey);
+		assertThat(timetable.getConnections(months, Arrays.asList(key, otherKey), Integer.MIN_VALUE + 1,
+				Integer.MAX_VALUE)).isNull();
+		assertThat(timetable.getConnections(months, Collections.singletonList(key), Integer.MIN_VALUE + 1,
+				Integer.MAX_VALUE)).isNotNull();
+	}
+
+	/**
+	 * Test that {@link Connections#filter(int, int)} keeps only the connections in
+	 * the timeframe, bounds included.
+	 */
+	@Test
+	public void filter_Succeed() {
+		Flight first = flight("1", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 8, 0));
+		Flight second = flight("2", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0));
+		Connections connections = Connections.of(new AirportDictionary(), Arrays.asList(
+				FlightSchedule.of("DUB", "STN", Collections.singletonList(first)),
+				FlightSchedule.of("STN", "MAD", Collections.singletonList(second))));
+
+		Connections result = connections.filter(FlightSchedule.toEpochMinute(first.getDepartureDateTime()) + 1,
+				FlightSchedule.toEpochMinute(second.getArrivalDateTime()));
+
+		assertEquals(1, result.size());
+		assertThat(getFlights(result)).containsExactly(second);
+	}
+
+	/**
+	 * Test that {@link Connections#filter(int, int)} keeps a westbound connection
+	 * arriving, in local time, within the timeframe, even if it departs after its
+	 * end.
+	 */
+	@Test
+	public void filter_KeepsConnection_IfArrivesBeforeDeparture() {
+		Flight westbound = new Flight("1", "STN", "LIS", LocalDateTime.of(2018, 7, 15, 20, 30),
+				LocalDateTime.of(2018, 7, 15, 20, 0));
+		Connections connections = Connections.of(new AirportDictionary(),
+				Collections.singletonList(FlightSchedule.of("STN", "LIS", Collections.singletonList(westbound))));
+
+		assertThat(getFlights(connections.filter(FlightSchedule.toEpochMinute(LocalDateTime.of(2018, 7, 15, 0, 0)),
+				FlightSchedule.toEpochMinute(LocalDateTime.of(2018, 7, 15, 20, 15))))).containsExactly(westbound);
+	}
+}
@@ -0,0 +1,123 @@
+package com.julionoda.ryanair.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.julionoda.ryanair.model.Flight;
+import com.julionoda.ryanair.model.Interconnection;
+
+/**
+ * Test suite for {@link TopInterconnections}.
+ * 
+ * @author jnoda
+ *
+ */
+public class TopInterconnections_Test {
+	/**
+	 * A direct flight arriving late.
+	 */
+	private static final Interconnection DIRECT = new Interconnection(
+			Collections.singletonList(flight("1", "DUB", "MAD", LocalDateTime.of(2018, 7, 15, 16, 0), 3)));
+
+	/**
+	 * A long interconnection arriving early.
+	 */
+	private static final Interconnection EARLY = new Interconnection(
+			Arrays.asList(flight("2", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 6, 0), 2),
+					flight("3", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 12, 0), 2)));
+
+	/**
+	 * A short interconnection arriving in between.
+	 */
+	private static final Interconnection SHORT = new Interconnection(
+			Arrays.asList(flight("4", "DUB", "STN", LocalDateTime.of(2018, 7, 15, 10, 0), 1),
+					flight("5", "STN", "MAD", LocalDateTime.of(2018, 7, 15, 13, 0), 1)));
+
+	/**
+	 * Creates a flight departing at the given date and time, and arriving the
+	 * given hours later.
+	 */
+	private static Flight flight(String number, String departureAirport, String arrivalAirport,
+			LocalDateTime departureDateTime, int hours) {
+		return new Flight(number, departureAirport, arrivalAirport, departureDateTime,
+				departureDateTime.plusHours(hours));
+	}
+
+	/**
+	 * Collects the given interconnections.
+	 */
+	private static List<Interconnection> top(InterconnectionOrder order, int limit, InterconnectionKey after) {
+		TopInterconnections top = new TopInterconnections(order, limit, after);
+		top.addAll(Arrays.asList(DIRECT, EARLY, SHORT));
+		return top.getResults();
+	}
+
+	/**
+	 * Test that {@link TopInterconnections#getResults()} returns the best
+	 * interconnections in each order, up to the limit.
+	 */
+	@Test
+	public void getResults_ReturnsBest() {
+		assertThat(top(InterconnectionOrder.ARRIVAL, 10, null)).containsExactly(EARLY, SHORT, DIRECT);
+		assertThat(top(InterconnectionOrder.DURATION, 2, null)).containsExactly(DIRECT, SHORT);
+		assertThat(top(InterconnectionOrder.STOPS, 2, null)).containsExactly(DIRECT, EARLY);
+	}
+
+	/**
+	 * Test that {@link TopInterconnections#getResults()} returns the
+	 * interconnections after the cursor, so that pages neither overlap nor miss
+	 * any, even if they rank the same.
+	 */
+	@Test
+	public void getResults_ReturnsNextPage_IfAfter() {
+		List<Interconnection> all = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			// same times and stops through another airport
+			all.add(new Interconnection(
+					Arrays.asList(flight("6", "DUB", "H" + i, LocalDateTime.of(2018, 7, 15, 6, 0), 2),
+							flight("7", "H" + i, "MAD", LocalDateTime.of(2018, 7, 15, 12, 0), 2))));
+		}
+
+		List<Interconnection> pages = new ArrayList<>();
+		InterconnectionKey after = null;
+		for (int page = 0; page < 3; page++) {
+			TopInterconnections top = new TopInterconnections(InterconnectionOrder.DURATION, 2, after);
+			top.addAll(all);
+			List<Interconnection> results = top.getResults();
+			assertThat(results).hasSize((page < 2) ? 2 : 1);
+			pages.addAll(results);
+			after = InterconnectionKey.fromCursor(InterconnectionKey.of(results.get(results.size() - 1)).toCursor());
+		}
+
+		assertThat(pages).containsExactlyInAnyOrderElementsOf(all).doesNotHaveDuplicates();
+	}
+
+	/**
+	 * Test that {@link TopInterconnections#isCandidate(int, int, int)} rejects the
+	 * interconnections worse than every one kept, once full, and those before the
+	 * cursor.
+	 */
+	@Test
+	public void isCandidate_ReturnsFalse_IfWorse() {
+		TopInterconnections top = new TopInterconnections(InterconnectionOrder.ARRIVAL, 1, null);
+		InterconnectionKey early = InterconnectionKey.of(EARLY);
+		InterconnectionKey direct = InterconnectionKey.of(DIRECT);
+		assertThat(top.isCandidate(direct.getDeparture(), direct.getArrival(), direct.getStops())).isTrue();
+
+		top.add(EARLY);
+
+		assertThat(top.isFull()).isTrue();
+		assertThat(top.isCandidate(direct.getDeparture(), direct.getArrival(), direct.getStops())).isFalse();
+		assertThat(top.isCandidate(early.getDeparture(), early.getArrival(), early.getStops())).isTrue();
+
+		TopInterconnections next = new TopInterconnections(InterconnectionOrder.ARRIVAL, 1, direct);
+		assertThat(next.isCandidate(early.getDeparture(), early.getArrival(), early.getStops())).isFalse();
+	}
+}
@@ -1,28 +1,48 @@
 package com.julionoda.ryanair.web;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
 import com.julionoda.ryanair.model.Flight;
 import com.julionoda.ryanair.model.Interconnection;
+import com.julionoda.ryanair.service.InterconnectionKey;
+import com.julionoda.ryanair.service.InterconnectionOrder;
+import com.julionoda.ryanair.service.InterconnectionQuery;
 import com.julionoda.ryanair.service.InterconnectionService;
+import com.julionoda.ryanair.service.SearchMetrics;
 
 /**
  * Unit test suite for {@link InterconnectionController}.
@@ -43,6 +63,12 @@ public class InterconnectionController_Test {
 	@MockBean
 	private InterconnectionService interconnectionService;
 
+	/**
+	 * Mocked metrics of the search.
+	 */
+	@MockBean
+	private SearchMetrics searchMetrics;
+
 	/**
 	 * Gets a valid map to be used as parameters for
 	 * {@link InterconnectionController#findBy(com.julionoda.ryanair.web.InterconnectionController.InterconnectionsQueryForm)}.
@@ -64,14 +90,20 @@ public class InterconnectionController_Test {
 	public void findBy_Succeeded() throws Exception {
 		MultiValueMap<String, String> params = getFindByTestParams();
 
-		given(this.interconnectionService.findBy(params.getFirst("departure"), params.getFirst("arrival"),
+		given(this.interconnectionService.findByAsync(params.getFirst("departure"), params.getFirst("arrival"),
 				LocalDateTime.parse(params.getFirst("departureDateTime")),
-				LocalDateTime.parse(params.getFirst("arrivalDateTime")))).willReturn(
-						Collections.singleton(new Interconnection(Collections.singletonList(new Flight("1234", "DUB",
-								"MAD", LocalDateTime.now(), LocalDateTime.now().plusHours(3))))));
+				LocalDateTime.parse(params.getFirst("arrivalDateTime")), InterconnectionController.DEFAULT_MAX_STOPS))
+						.willReturn(CompletableFuture.completedFuture(Collections.singleton(new Interconnection(
+								Collections.singletonList(new Flight("1234", "DUB", "MAD", LocalDateTime.now(),
+										LocalDateTime.now().plusHours(3)))))));
 
-		this.mvc
+		MvcResult result = this.mvc
 				.perform(get("/interconnections").params(params).accept(MediaType.APPLICATION_JSON))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		this.mvc
+				.perform(asyncDispatch(result))
 				.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
 				// only need to test one property to verify the object is returned, actual
@@ -80,6 +112,332 @@ public class InterconnectionController_Test {
 				.andExpect(jsonPath("$[0].stops").value(0));
 	}
 
+	/**
+	 * Tests that the interconnections endpoint returns a JSON array if no media
+	 * type is requested.
+	 */
+	@Test
+	public void findBy_ReturnsJson_IfAnyMediaType() throws Exception {
+		MultiValueMap<String, String> params = getFindByTestParams();
+
+		given(this.interconnectionService.findByAsync(params.getFirst("departure"), params.getFirst("arrival"),
+				LocalDateTime.parse(params.getFirst("departureDateTime")),
+				LocalDateTime.parse(params.getFirst("arrivalDateTime")), InterconnectionController.DEFAULT_MAX_STOPS))
+						.willReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+
+		MvcResult result = this.mvc
+				.perform(get("/interconnections").params(params).accept(MediaType.ALL))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		this.mvc
+				.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+				.andExpect(content().json("[]"));
+	}
+
+	/**
+	 * Tests that the interconnections endpoint streams the interconnections, one
+	 * per line, if newline delimited JSON is requested.
+	 */
+	@Test
+	public void findByAsStream_Succeeded() throws Exception {
+		MultiValueMap<String, String> params = getFindByTestParams();
+		Flight flight = new Flight("1234", "DUB", "MAD", LocalDateTime.of(2018, 7, 15, 10, 0),
+				LocalDateTime.of(2018, 7, 15, 13, 0));
+
+		willAnswer(invocation -> {
+			Consumer<List<Interconnection>> consumer = invocation.getArgument(5);
+			consumer.accept(Collections.singletonList(new Interconnection(Collections.singletonList(flight))));
+			consumer.accept(Collections.emptyList());
+			consumer.accept(Collections.singletonList(new Interconnection(Arrays.asList(flight, flight))));
+			return null;
+		}).given(this.interconnectionService).findBy(eq(params.getFirst("departure")),
+				eq(params.getFirst("arrival")), eq(LocalDateTime.parse(params.getFirst("departureDateTime"))),
+				eq(LocalDateTime.parse(params.getFirst("arrivalDateTime"))),
+				eq(InterconnectionController.DEFAULT_MAX_STOPS), any());
+
+		MvcResult result = this.mvc
+				.perform(get("/interconnections")
+						.params(params)
+						.accept(MediaType.valueOf(InterconnectionController.APPLICATION_NDJSON_VALUE)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		this.mvc
+				.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(InterconnectionController.APPLICATION_NDJSON_VALUE));
+
+		String[] lines = result.getResponse().getContentAsString().split("\n");
+		assertThat(lines).hasSize(2);
+		assertThat(lines[0]).contains("\"stops\":0");
+		assertThat(lines[1]).contains("\"stops\":1");
+	}
+
+	/**
+	 * Tests that the interconnections endpoint writes the streamed body on the
+	 * bounded executor of the asynchronous requests.
+	 */
+	@Test
+	public void findByAsStream_RunsOnAsyncRequestExecutor() throws Exception {
+		AtomicReference<String> threadName = new AtomicReference<>();
+		willAnswer(invocation -> {
+			threadName.set(Thread.currentThread().getName());
+			return null;
+		}).given(this.interconnectionService).findBy(any(), any(), any(), any(), eq(1), any());
+
+		MvcResult result = this.mvc
+				.perform(get("/interconnections")
+						.params(getFindByTestParams())
+						.accept(MediaType.valueOf(InterconnectionController.APPLICATION_NDJSON_VALUE)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		this.mvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+		assertThat(threadName.get()).startsWith("async-request-");
+	}
+
+	/**
+	 * Tests that the interconnections endpoint passes the maximum number of stops
+	 * to the service.
+	 */
+	@Test
+	public void findBy_Succeeded_IfMaxStops() throws Exception {
+		MultiValueMap<String, String> params = getFindByTestParams();
+		params.set("maxStops", "2");
+
+		given(this.interconnectionService.findByAsync(params.getFirst("departure"), params.getFirst("arrival"),
+				LocalDateTime.parse(params.getFirst("departureDateTime")),
+				LocalDateTime.parse(params.getFirst("arrivalDateTime")), 2))
+						.willReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+
+		MvcResult result = this.mvc
+				.perform(get("/interconnections").params(params).accept(MediaType.APPLICATION_JSON))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		this.mvc
+				.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[]"));
+	}
+
+	/**
+	 * Tests that the interconnections endpoint shows a validation error if the
+	 * maximum number of stops is too high.
+	 */
+	@Test
+	public void findBy_ReturnValidationError_IfTooManyStops() throws Exception {
+		MultiValueMap<String, String> params = getFindByTestParams();
+		params.set("maxStops", String.valueOf(InterconnectionController.MAX_STOPS + 1));
+
+		this.mvc
+				.perform(get("/interconnections").params(params).accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Tests that the interconnections endpoint finds the best interconnections if
+	 * sorted and limited, and links to the next page, after the last one.
+	 */
+	@Test
+	public void findBy_Succeeded_IfSortAndLimit() throws Exception {
+		MultiValueMap<String, String> params = getFindByTestParams();
+		params.set("sort", "duration");
+		params.set("limit", "1");
+		Interconnection interconnection = new Interconnection(Collections.singletonList(new Flight("1234", "DUB",
+				"MAD", LocalDateTime.of(2018, 7, 15, 10, 0), LocalDateTime.of(2018, 7, 15, 13, 0))));
+
+		given(this.interconnectionService.findTopAsync(params.getFirst("departure"), params.getFirst("arrival"),
+				LocalDateTime.parse(params.getFirst("departureDateTime")),
+				LocalDateTime.parse(params.getFirst("arrivalDateTime")), InterconnectionController.DEFAULT_MAX_STOPS,
+				InterconnectionOrder.DURATION, 1, null))
+						.willReturn(CompletableFuture.completedFuture(Collections.singletonList(interconnection)));
+
+		MvcResult result = this.mvc
+				.perform(get("/interconnections").params(params).accept(MediaType.APPLICATION_JSON))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		this.mvc
+				.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].stops").value(0))
+				.andExpect(header().string(HttpHeaders.LINK, containsString(
+						"cursor=" + InterconnectionKey.of(interconnection).toCursor() + ">; rel=\"next\"")));
+	}
+
+	/**
+	 * Tests that the interconnections endpoint passes the cursor to the service,
+	 * and does not link to a next page if the page is not full.
+	 */
+	@Test
+	public void findBy_Succeeded_IfCursor() throws Exception {
+		MultiValueMap<String, String> params = getFindByTestParams();
+		InterconnectionKey after = new InterconnectionKey(1, 2, 0, "1234:DUB-MAD");
+		params.set("cursor", after.toCursor());
+
+		given(this.interconnectionService.findTopAsync(params.getFirst("departure"), params.getFirst("arrival"),
+				LocalDateTime.parse(params.getFirst("departureDateTime")),
+				LocalDateTime.parse(params.getFirst("arrivalDateTime")), InterconnectionController.DEFAULT_MAX_STOPS,
+				InterconnectionOrder.ARRIVAL, Integer.MAX_VALUE, after))
+						.willReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+
+		MvcResult result = this.mvc
+				.perform(get("/interconnections").params(params).accept(MediaType.APPLICATION_JSON))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		this.mvc
+				.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().json("[]"))
+				.andExpect(header().doesNotExist(HttpHeaders.LINK));
+	}
+
+	/**
+	 * Tests that the interconnections endpoint shows a validation error if the
+	 * sort, limit or cursor are not valid.
+	 */
+	@Test
+	public void findBy_ReturnValidationError_IfInvalidPage() throws Exception {
+		for (String[] param : new String[][] { { "sort", "price" }, { "limit", "0" },
+				{ "limit", String.valueOf(InterconnectionController.MAX_LIMIT + 1) }, { "cursor", "not a cursor" } }) {
+			MultiValueMap<String, String> params = getFindByTestParams();
+			params.set(param[0], param[1]);
+
+			this.mvc
+					.perform(get("/interconnections").params(params).accept(MediaType.APPLICATION_JSON))
+					.andExpect(status().isBadRequest());
+		}
+	}
+
+	/**
+	 * Gets a valid query of a batch, from Dublin to the given airport, with the
+	 * given extra properties.
+	 */
+	private static String getBatchTestQuery(String arrival, String extra) {
+		return "{\"departure\": \"DUB\", \"arrival\": \"" + arrival + "\", "
+				+ "\"departureDateTime\": \"2018-07-15T01:00\", \"arrivalDateTime\": \"2018-07-15T16:00\"" + extra
+				+ "}";
+	}
+
+	/**
+	 * Tests that the batch endpoint finds the interconnections of every query at
+	 * once, and streams the result of each query in a line, with the cursor of
+	 * the next page if ranked, or the error if failed.
+	 */
+	@Test
+	public void findAllAsStream_Succeeded() throws Exception {
+		LocalDateTime departureDateTime = LocalDateTime.of(2018, 7, 15, 1, 0);
+		LocalDateTime arrivalDateTime = LocalDateTime.of(2018, 7, 15, 16, 0);
+		Interconnection interconnection = new Interconnection(Collections.singletonList(new Flight("1234", "DUB",
+				"MAD", LocalDateTime.of(2018, 7, 15, 10, 0), LocalDateTime.of(2018, 7, 15, 13, 0))));
+		CompletableFuture<List<Interconnection>> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new IllegalStateException("Failed"));
+
+		given(this.interconnectionService.findAllAsync(Arrays.asList(
+				InterconnectionQuery.of("DUB", "MAD", departureDateTime, arrivalDateTime,
+						InterconnectionController.DEFAULT_MAX_STOPS),
+				new InterconnectionQuery("DUB", "MAD", departureDateTime, arrivalDateTime, 0,
+						InterconnectionOrder.DURATION, 1, null),
+				InterconnectionQuery.of("DUB", "STN", departureDateTime, arrivalDateTime,
+						InterconnectionController.DEFAULT_MAX_STOPS))))
+								.willReturn(Arrays.asList(
+										CompletableFuture.completedFuture(Collections.singletonList(interconnection)),
+										CompletableFuture.completedFuture(Collections.singletonList(interconnection)),
+										failed));
+
+		MvcResult result = this.mvc
+				.perform(post("/interconnections/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"queries\": [" + getBatchTestQuery("MAD", "") + ", "
+								+ getBatchTestQuery("MAD", ", \"maxStops\": 0, \"sort\": \"duration\", \"limit\": 1")
+								+ ", " + getBatchTestQuery("STN", "") + "]}")
+						.accept(MediaType.valueOf(InterconnectionController.APPLICATION_NDJSON_VALUE)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		this.mvc
+				.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(InterconnectionController.APPLICATION_NDJSON_VALUE));
+
+		String[] lines = result.getResponse().getContentAsString().split("\n");
+		assertThat(lines).hasSize(3);
+		assertThat(lines[0]).startsWith("{\"index\":0,\"interconnections\":[{").doesNotContain("cursor");
+		assertThat(lines[1]).startsWith("{\"index\":1,\"interconnections\":[{")
+				.contains("\"cursor\":\"" + InterconnectionKey.of(interconnection).toCursor() + "\"");
+		assertThat(lines[2]).isEqualTo("{\"index\":2,\"error\":\"Internal Server Error\"}");
+	}
+
+	/**
+	 * Tests that the batch endpoint sends the result of each query as soon as it
+	 * is found, in the order they are found, and ends with the last one.
+	 */
+	@Test
+	public void findAllAsStream_SendsAsFound() throws Exception {
+		CompletableFuture<List<Interconnection>> first = new CompletableFuture<>();
+		CompletableFuture<List<Interconnection>> second = new CompletableFuture<>();
+		given(this.interconnectionService.findAllAsync(any())).willReturn(Arrays.asList(first, second));
+
+		MvcResult result = this.mvc
+				.perform(post("/interconnections/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("{\"queries\": [" + getBatchTestQuery("MAD", "") + ", "
+								+ getBatchTestQuery("STN", "") + "]}")
+						.accept(MediaType.valueOf(InterconnectionController.APPLICATION_NDJSON_VALUE)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		assertThat(result.getResponse().getContentAsString()).isEmpty();
+
+		second.complete(Collections.emptyList());
+		assertThat(result.getResponse().getContentAsString()).isEqualTo("{\"index\":1,\"interconnections\":[]}\n");
+
+		first.complete(Collections.emptyList());
+		this.mvc
+				.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(InterconnectionController.APPLICATION_NDJSON_VALUE));
+		assertThat(result.getResponse().getContentAsString().split("\n")).containsExactly(
+				"{\"index\":1,\"interconnections\":[]}", "{\"index\":0,\"interconnections\":[]}");
+	}
+
+	/**
+	 * Tests that the batch endpoint shows a validation error if there are no
+	 * queries, or any of them is not valid.
+	 */
+	@Test
+	public void findAllAsStream_ReturnValidationError_IfInvalidQueries() throws Exception {
+		for (String content : new String[] { "{\"queries\": []}",
+				"{\"queries\": [{\"departure\": \"DUB\", \"arrival\": \"MAD\"}]}" }) {
+			this.mvc
+					.perform(post("/interconnections/batch")
+							.contentType(MediaType.APPLICATION_JSON)
+							.content(content)
+							.accept(MediaType.valueOf(InterconnectionController.APPLICATION_NDJSON_VALUE)))
+					.andExpect(status().isBadRequest());
+		}
+	}
+
+	/**
+	 * Tests that the interconnections endpoint shows a validation error if newline
+	 * delimited JSON is requested and a parameter is not valid.
+	 */
+	@Test
+	public void findByAsStream_ReturnValidationError_IfDepartureNotIataCode() throws Exception {
+		MultiValueMap<String, String> params = getFindByTestParams();
+		params.set("departure", "n12");
+
+		this.mvc
+				.perform(get("/interconnections")
+						.params(params)
+						.accept(MediaType.valueOf(InterconnectionController.APPLICATION_NDJSON_VALUE)))
+				.andExpect(status().isBadRequest());
+	}
+
 	/**
 	 * Tests that the interconnections endpoint shows a validation error if the
 	 * departure parameter is not provided.